@@ -1,6 +1,10 @@
 package com.oap2024team7.team7mediastreamingapp;
 
 import com.oap2024team7.team7mediastreamingapp.services.DatabaseManager;
+import com.oap2024team7.team7mediastreamingapp.services.DataAccessExecutor;
+import com.oap2024team7.team7mediastreamingapp.services.FilmCatalog;
+import com.oap2024team7.team7mediastreamingapp.services.ReferenceDataCache;
+import com.oap2024team7.team7mediastreamingapp.services.SchemaMigrator;
 
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
@@ -28,6 +32,15 @@ public class App extends Application {
         stage.show();
 	}
 
+	@Override
+	public void stop() {
+		// Stop the background work and close the pooled database connections when the application exits
+		FilmCatalog.getInstance().shutdown();
+		ReferenceDataCache.getInstance().shutdown();
+		DataAccessExecutor.getInstance().shutdown();
+		DatabaseManager.shutdown();
+	}
+
 	public static void setRoot(String fxml) throws IOException {
         scene.setRoot(loadFXML(fxml));
     }
@@ -43,7 +56,8 @@ public class App extends Application {
 	}	
 
     public static void main(String[] args) {
-        DatabaseManager.updateDatabaseSchema();
+        // Bring the schema up to date while the UI starts; the first query waits for it
+        SchemaMigrator.migrateInBackground();
         launch();
     }
 }
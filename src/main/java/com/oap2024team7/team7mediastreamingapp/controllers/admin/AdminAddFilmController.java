@@ -14,7 +14,6 @@ import com.oap2024team7.team7mediastreamingapp.models.Actor;
 import com.oap2024team7.team7mediastreamingapp.models.Category;
 import com.oap2024team7.team7mediastreamingapp.models.Film;
 import com.oap2024team7.team7mediastreamingapp.models.Language;
-import com.oap2024team7.team7mediastreamingapp.services.ActorManager;
 import com.oap2024team7.team7mediastreamingapp.services.CategoryManager;
 import com.oap2024team7.team7mediastreamingapp.services.FilmManager;
 import com.oap2024team7.team7mediastreamingapp.services.InventoryManager;
@@ -202,29 +201,12 @@ public class AdminAddFilmController {
     }
 
     /**
-     * Loads into the ComboBox all actors registered in the actor table in the database
-     * The staff member can then choose an actor from this CB to be added to the selected film
+     * Sets up the actor ComboBox as a search field: the staff member types a name and picks
+     * one of the matching actors from the ActorDirectory, which is then added to the film
      */
     private void loadActors() {
-        // Clear existing items
         actorsCB.getItems().clear();
-    
-        ActorManager actorManager = ActorManager.getInstance();
-        List<Actor> actors = actorManager.getAllActors();
-    
-        if (actors == null) {
-            GeneralUtils.showAlert(AlertType.ERROR, "Error", "Unable to load actors", "An error occurred while trying to load the actors");
-            return;
-        }
-    
-        // Add Actor objects directly to the ComboBox
-        actorsCB.getItems().addAll(actors);
-    
-        // Use the custom cell class for displaying actors
-        actorsCB.setCellFactory(lv -> new ActorComboBoxCell());
-    
-        // Set the display for ComboBox when an actor is selected
-        actorsCB.setButtonCell(new ActorComboBoxCell());
+        ActorComboBoxCell.enableSearch(actorsCB);
 
         // Define custom cell for displaying actors in the List View
         actorsLV.setCellFactory(lv -> new AdminActorCell(this));
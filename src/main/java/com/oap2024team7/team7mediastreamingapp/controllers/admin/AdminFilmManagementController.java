@@ -5,10 +5,8 @@ import com.oap2024team7.team7mediastreamingapp.models.Film;
 
 import java.util.List;
 import java.util.HashSet;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.sql.SQLException;
-import java.sql.Connection;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 
@@ -19,22 +17,22 @@ import com.oap2024team7.team7mediastreamingapp.models.Language;
 import com.oap2024team7.team7mediastreamingapp.customcells.RatingCell;
 import com.oap2024team7.team7mediastreamingapp.utils.SessionData;
 import com.oap2024team7.team7mediastreamingapp.services.CategoryManager;
+import com.oap2024team7.team7mediastreamingapp.services.DataAccessExecutor;
 import com.oap2024team7.team7mediastreamingapp.utils.GeneralUtils;
+import com.oap2024team7.team7mediastreamingapp.utils.StageUtils;
 import com.oap2024team7.team7mediastreamingapp.services.LanguageManager;
 import com.oap2024team7.team7mediastreamingapp.models.Actor;
-import com.oap2024team7.team7mediastreamingapp.models.Staff;
 import com.oap2024team7.team7mediastreamingapp.services.InventoryManager;
-import com.oap2024team7.team7mediastreamingapp.models.Inventory;
 import com.oap2024team7.team7mediastreamingapp.customcells.AdminActorCell;
 import com.oap2024team7.team7mediastreamingapp.customcells.AdminSpecialFeaturesCell;
 import com.oap2024team7.team7mediastreamingapp.services.ActorManager;
 import com.oap2024team7.team7mediastreamingapp.customcells.ActorComboBoxCell;
 import com.oap2024team7.team7mediastreamingapp.services.FilmManager;
-import com.oap2024team7.team7mediastreamingapp.services.DatabaseManager;
+import com.oap2024team7.team7mediastreamingapp.services.TransactionManager;
 import com.oap2024team7.team7mediastreamingapp.models.Discount;
 import com.oap2024team7.team7mediastreamingapp.services.DiscountManager;
-import com.oap2024team7.team7mediastreamingapp.services.RentalManager;
 
+import javafx.application.Platform;
 import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
@@ -126,7 +124,7 @@ public class AdminFilmManagementController {
     private InventoryManager inventoryManager = new InventoryManager();
     private FilmManager filmManager = new FilmManager();
     private DiscountManager discountManager = new DiscountManager();
-    private RentalManager rentalManager = new RentalManager();
+    private DataAccessExecutor.Scope detailLoads = DataAccessExecutor.getInstance().newScope();
         
     // Store information about chosen inputs
     private Category selectedCategory;
@@ -146,7 +144,8 @@ public class AdminFilmManagementController {
         loadActors();
 
         if (selectedFilm != null) {
-            updateFilmDetails();
+            loadFilmDetails(false);
+            StageUtils.onScreenLeft(filmTitleTF, detailLoads::cancelAll);
         } else {
             GeneralUtils.showAlert(AlertType.ERROR, "Error", "Film not found", "Unable to retrieve the selected film.");
         }
@@ -164,16 +163,68 @@ public class AdminFilmManagementController {
             public void handle(WindowEvent event) {
                 // Clear the selected film from SessionData
                 SessionData.getInstance().setSelectedFilm(null);
+                // Don't show details that are still loading
+                detailLoads.cancelAll();
             }
         });
     }
 
+    /**
+     * Loads the film's discount, inventory in the staff member's store and category in the background,
+     * then shows them together with the rest of the film details.
+     * The update button stays disabled until they are shown, since the inventory change is counted from the loaded inventory.
+     * @param reloadFilm true to load the film itself again as well, e.g. after it has been updated
+     */
+    private void loadFilmDetails(boolean reloadFilm) {
+        Film film = selectedFilm;
+        int filmId = film.getFilmId();
+        int storeId = SessionData.getInstance().getLoggedInStaff().getStoreId();
+        updateButton.setDisable(true);
+        detailLoads.cancelAll();
+        detailLoads.submit(() -> {
+            LoadedFilm loadedFilm = new LoadedFilm();
+            loadedFilm.film = reloadFilm ? filmManager.getFilmById(filmId) : film;
+            if (loadedFilm.film == null) {
+                return loadedFilm;
+            }
+            loadedFilm.discount = discountManager.getActiveDiscount(filmId);
+            loadedFilm.inventorySize = inventoryManager.checkInventoryForFilmAndStore(loadedFilm.film, storeId).size();
+            loadedFilm.category = categoryManager.getCategoryByFilmId(filmId);
+            return loadedFilm;
+        }).whenCompleteAsync((loadedFilm, error) -> {
+            if (DataAccessExecutor.isCancellation(error)) {
+                return; // The window was closed
+            }
+            if (error != null) {
+                error.printStackTrace();
+            }
+            if (error != null || loadedFilm.film == null) {
+                GeneralUtils.showAlert(AlertType.ERROR, "Error", "Film details not loaded", "Unable to load the details of the selected film.");
+                return;
+            }
+            selectedFilm = loadedFilm.film;
+            updateFilmDetails(loadedFilm);
+            updateButton.setDisable(false);
+        }, Platform::runLater);
+    }
+
+    /**
+     * Film details that are loaded in the background by loadFilmDetails.
+     */
+    private static class LoadedFilm {
+        private Film film;
+        private Discount discount;
+        private int inventorySize;
+        private Category category;
+    }
+
     /**
      * Method to update the film details in the admin screen.
      * It pre-sets the text fields and ComboBoxes to the values of the selected film (based on the info from the DB).
+     * Runs on the JavaFX Application Thread.
+     * @param loadedFilm
      */
-    
-    private void updateFilmDetails() {
+    private void updateFilmDetails(LoadedFilm loadedFilm) {
         filmTitleTF.setText(selectedFilm.getTitle());
         descriptionTA.setText(selectedFilm.getDescription());
         releaseYearTF.setText(String.valueOf(selectedFilm.getReleaseYear()));
@@ -185,17 +236,14 @@ public class AdminFilmManagementController {
         enableReviewCheckBox.setSelected(selectedFilm.isReviewable());
 
         // Set the discount information
-        Discount discount = discountManager.getActiveDiscount(selectedFilm.getFilmId());
+        Discount discount = loadedFilm.discount;
         if (discount != null) {
             discountPercentageTF.setText(String.valueOf(discount.getDiscountPercentage()));
             discountEndDateDP.setValue(discount.getEndDate());
         }
 
         // Set the current inventory label
-        InventoryManager inventoryManager = new InventoryManager();
-        Staff staff = SessionData.getInstance().getLoggedInStaff();
-        List<Inventory> currentInventory = inventoryManager.checkInventoryForFilmAndStore(selectedFilm, staff.getStoreId());
-        currentInventorySize = currentInventory.size();
+        currentInventorySize = loadedFilm.inventorySize;
         
         currentInventoryLabel.setText("Current inventory: " + currentInventorySize);
         inventoryAmountTF.setText(String.valueOf(currentInventorySize));
@@ -218,7 +266,7 @@ public class AdminFilmManagementController {
         }
 
         // Pre-select the category for the current film
-        selectedCategory = categoryManager.getCategoryByFilmId(selectedFilm.getFilmId());
+        selectedCategory = loadedFilm.category;
         if (selectedCategory != null) {
             for (Category category : categoryCB.getItems()) {
                 if (category.getCategoryId() == selectedCategory.getCategoryId()) {
@@ -338,29 +386,12 @@ public class AdminFilmManagementController {
     }
 
     /**
-     * Loads into the ComboBox all actors registered in the actor table in the database
-     * The staff member can then choose an actor from this CB to be added to the selected film
+     * Sets up the actor ComboBox as a search field: the staff member types a name and picks
+     * one of the matching actors from the ActorDirectory, which is then added to the film
      */
     private void loadActors() {
-        // Clear existing items
         actorsCB.getItems().clear();
-    
-        ActorManager actorManager = ActorManager.getInstance();
-        List<Actor> actors = actorManager.getAllActors();
-    
-        if (actors == null) {
-            GeneralUtils.showAlert(AlertType.ERROR, "Error", "Unable to load actors", "An error occurred while trying to load the actors");
-            return;
-        }
-    
-        // Add Actor objects directly to the ComboBox
-        actorsCB.getItems().addAll(actors);
-    
-        // Use the custom cell class for displaying actors
-        actorsCB.setCellFactory(lv -> new ActorComboBoxCell());
-    
-        // Set the display for ComboBox when an actor is selected
-        actorsCB.setButtonCell(new ActorComboBoxCell());
+        ActorComboBoxCell.enableSearch(actorsCB);
     }    
 
     /**
@@ -469,120 +500,168 @@ public class AdminFilmManagementController {
             return;
         }
 
-        boolean filmDetailsUpdated = updateFilmDetails(selectedFilm, category, actors);
-
-        // Get feedback from the updates that need to happen and display appropriate message to the user
-        if (filmDetailsUpdated) {
-            GeneralUtils.showAlert(AlertType.INFORMATION, "Success!", "Successfully edited selected film", "You've successfully edited selected film item.");
-            refreshFilmData();
-        } else {
-            GeneralUtils.showAlert(AlertType.ERROR, "Error", "Something went wrong", "Try again.");
+        // Validate the inventory amount
+        int inventoryAmount;
+        try {
+            inventoryAmount = Integer.parseInt(inventoryAmountTF.getText());
+        } catch (NumberFormatException e) {
+            inventoryAmount = -1;
         }
+        if (inventoryAmount < 0) {
+            GeneralUtils.showAlert(AlertType.WARNING, "Warning", "Invalid Inventory Amount", "Please enter a valid inventory amount (0 or positive number).");
+            return;
+        }
+
+        // The update runs in the background; the film can't be updated again until it has finished and the film has been reloaded
+        Film film = selectedFilm;
+        List<Actor> filmActors = new ArrayList<>(actors);
+        int inventoryChange = inventoryAmount - currentInventorySize;
+        int storeId = SessionData.getInstance().getLoggedInStaff().getStoreId();
+        updateButton.setDisable(true);
+        DataAccessExecutor.getInstance().submit(() -> updateFilmDetails(film, category, filmActors, inventoryChange, storeId))
+            .whenCompleteAsync((filmUpdate, error) -> {
+                if (error != null) {
+                    error.printStackTrace();
+                }
+
+                // Get feedback from the updates that need to happen and display appropriate message to the user
+                if (error == null && filmUpdate.isUpdated()) {
+                    showRemovedInventory(filmUpdate);
+                    GeneralUtils.showAlert(AlertType.INFORMATION, "Success!", "Successfully edited selected film", "You've successfully edited selected film item.");
+                    refreshFilmData();
+                    return;
+                }
+                updateButton.setDisable(false);
+                if (error == null && filmUpdate.getFailureHeader() != null) {
+                    GeneralUtils.showAlert(filmUpdate.getFailureType(), filmUpdate.getFailureType() == AlertType.ERROR ? "Error" : "Warning",
+                        filmUpdate.getFailureHeader(), filmUpdate.getFailureContent());
+                } else {
+                    GeneralUtils.showAlert(AlertType.ERROR, "Error", "Something went wrong", "Try again.");
+                }
+            }, Platform::runLater);
     }
 
     /**
      * Method for updating the film details in the database, in a transaction.
+     * All managers join the same transaction (and connection), so either every change is committed or none is.
+     * Runs in the background and doesn't touch the UI; the outcome is shown once the transaction has finished.
      * @param selectedFilm
      * @param category
      * @param actors
-     * @return true if the update was successful, false otherwise
+     * @param inventoryChange Number of inventory items to add (positive) or remove (negative)
+     * @param storeId Store of the inventory items
+     * @return FilmUpdate object telling if the update was committed, with the inventory items that were removed
      */
-    public boolean updateFilmDetails(Film selectedFilm, Category category, List<Actor> actors) {
-        Connection connection = null;
-        boolean success = false;
-    
+    public FilmUpdate updateFilmDetails(Film selectedFilm, Category category, List<Actor> actors, int inventoryChange, int storeId) {
+        FilmUpdate filmUpdate = new FilmUpdate();
         try {
-            // Obtain the database connection (assuming DatabaseManager handles this)
-            connection = DatabaseManager.getConnection();
-            connection.setAutoCommit(false); // Start transaction
-    
-            // Try to update the film in the database
-            boolean filmUpdated = filmManager.updateFilm(selectedFilm);
-            if (!filmUpdated) {
-                throw new SQLException("Failed to update film");
-            }
-    
-            // Try to update category in the database
-            boolean categoryUpdated = categoryManager.updateCategoryForFilm(selectedFilm, category);
-            if (!categoryUpdated) {
-                throw new SQLException("Failed to update category for film");
-            }
-    
-            // Try to update actors in the database
-            boolean actorsUpdated = actorManager.setActorsForFilm(actors, selectedFilm.getFilmId());
-            if (!actorsUpdated) {
-                throw new SQLException("Failed to update actors for film");
-            }
-    
-            // Inventory handling
-            boolean inventoryUpdated = handleInventory();
-            if (!inventoryUpdated) {
-                throw new SQLException("Failed to update inventory");
-            }
-    
-            connection.commit(); // Commit transaction if all operations succeed
-            success = true;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            if (connection != null) {
-                try {
-                    connection.rollback(); // Roll back transaction if any operation fails
-                } catch (SQLException rollbackEx) {
-                    rollbackEx.printStackTrace();
+            return TransactionManager.execute(TransactionManager.Propagation.REQUIRED, () -> {
+                // Try to update the film in the database
+                boolean filmUpdated = filmManager.updateFilm(selectedFilm);
+                if (!filmUpdated) {
+                    throw new SQLException("Failed to update film");
                 }
-            }
-        } finally {
-            if (connection != null) {
-                try {
-                    connection.setAutoCommit(true); // Reset to default auto-commit mode
-                    connection.close();
-                } catch (SQLException closeEx) {
-                    closeEx.printStackTrace();
+        
+                // Try to update category in the database
+                boolean categoryUpdated = categoryManager.updateCategoryForFilm(selectedFilm, category);
+                if (!categoryUpdated) {
+                    throw new SQLException("Failed to update category for film");
                 }
-            }
+        
+                // Try to update actors in the database
+                boolean actorsUpdated = actorManager.setActorsForFilm(actors, selectedFilm.getFilmId());
+                if (!actorsUpdated) {
+                    throw new SQLException("Failed to update actors for film");
+                }
+        
+                // Inventory handling
+                boolean inventoryUpdated = handleInventory(selectedFilm.getFilmId(), storeId, inventoryChange, filmUpdate);
+                if (!inventoryUpdated) {
+                    throw new SQLException("Failed to update inventory");
+                }
+                filmUpdate.updated = true;
+                return filmUpdate;
+            });
+        } catch (SQLException e) {
+            // The transaction has been rolled back
+            e.printStackTrace();
+            filmUpdate.updated = false;
+            return filmUpdate;
+        }
+    }
+
+    /**
+     * Outcome of updateFilmDetails that is reported to the staff member once the transaction has finished,
+     * so no alert is waiting for the staff member while the transaction holds its locks.
+     */
+    public static class FilmUpdate {
+        private boolean updated;
+        private int copiesToRemove; // Number of inventory items the staff member asked to remove
+        private List<Integer> removedCopies = new ArrayList<>();
+        // Why the update was rolled back, if the staff member can do something about it
+        private AlertType failureType;
+        private String failureHeader;
+        private String failureContent;
+
+        private void fail(AlertType type, String header, String content) {
+            failureType = type;
+            failureHeader = header;
+            failureContent = content;
+        }
+
+        public boolean isUpdated() {
+            return updated;
+        }
+
+        public AlertType getFailureType() {
+            return failureType;
+        }
+
+        public String getFailureHeader() {
+            return failureHeader;
+        }
+
+        public String getFailureContent() {
+            return failureContent;
+        }
+
+        public int getCopiesToRemove() {
+            return copiesToRemove;
+        }
+
+        public List<Integer> getRemovedCopies() {
+            return removedCopies;
         }
-        return success;
     }
 
     /**
-     * Method for refreshing film data (querrying the database).
+     * Method for refreshing film data (querrying the database in the background).
      * Used after the staff member have updated film information
      * (since the window doesn't close after update, it should show current information).
      */
     private void refreshFilmData() {
         if (selectedFilm != null) {
-            selectedFilm = filmManager.getFilmById(selectedFilm.getFilmId());
-            updateFilmDetails();
+            loadFilmDetails(true);
         }
     }
 
     /**
-     * Method for handling inventory changes. It validates user input first (if it's the correct format and above 0),
-     * then establishes if the user is trying to increase, decrease or not change the inventory and calls the correct method.
+     * Method for handling inventory changes. It establishes if the user is trying to increase, decrease or not change the inventory
+     * and calls the correct method. The new amount has already been validated by tryToUpdateFilm.
+     * @param filmId
+     * @param storeId
+     * @param inventoryChange Number of inventory items to add (positive) or remove (negative)
+     * @param filmUpdate Records the inventory items that were removed, or why the inventory couldn't be changed
      * @return true if successful (in either of the 3 options) and false otherwise
      */
-    private boolean handleInventory() {
-        try {
-            int inventoryAmount = Integer.parseInt(inventoryAmountTF.getText());
-            if (inventoryAmount < 0) {
-            GeneralUtils.showAlert(AlertType.WARNING, "Warning", "Invalid Inventory Amount", "Please enter a valid inventory amount (0 or positive number).");
-            return false;
-            }
-
-            int filmId = selectedFilm.getFilmId();
-            int storeId = SessionData.getInstance().getLoggedInStaff().getStoreId();
-
-            if (inventoryAmount > currentInventorySize) {
-                return addInventory(filmId, storeId, inventoryAmount - currentInventorySize);
-            } else if (inventoryAmount < currentInventorySize) {
-                return reduceInventory(filmId, storeId, currentInventorySize - inventoryAmount);
-            } else {
-                // No change in inventory amount
-                return true;
-            }
-        } catch (NumberFormatException e) {
-            GeneralUtils.showAlert(AlertType.WARNING, "Warning", "Invalid Inventory Amount", "Please enter a valid inventory amount (0 or positive number).");
-            return false;
+    private boolean handleInventory(int filmId, int storeId, int inventoryChange, FilmUpdate filmUpdate) {
+        if (inventoryChange > 0) {
+            return addInventory(filmId, storeId, inventoryChange);
+        } else if (inventoryChange < 0) {
+            return reduceInventory(filmId, storeId, -inventoryChange, filmUpdate);
+        } else {
+            // No change in inventory amount
+            return true;
         }
     }
 
@@ -600,44 +679,48 @@ public class AdminFilmManagementController {
 
     /**
      * Method for reducing the amount of inventory items for the selected film.
-     * If the desired amount is not available, an alert will be shown.
-     * The method will check if the inventory items are currently rented out and not allow the reduction in that case.
-     * Staff gets feedback about the amount of successfully deleted inventory items (f. ex. if 2 out of desired 3 were deleted,
-     * the staff will be informed).
+     * Only copies that aren't rented out or booked are removed, all in one go (see InventoryManager.removeFreeCopies).
+     * If none of the copies are free, the update fails and the staff is told why once it has been rolled back.
+     * The removed items are recorded in the FilmUpdate, the staff gets feedback about them after the commit (see showRemovedInventory).
      * @param filmId
      * @param storeId
      * @param amount
+     * @param filmUpdate
      * @return true if the inventory was successfully reduced, false otherwise
      */
-    private boolean reduceInventory(int filmId, int storeId, int amount) {
+    private boolean reduceInventory(int filmId, int storeId, int amount, FilmUpdate filmUpdate) {
         System.out.println("Decreasing inventory...");
-        LocalDateTime now = LocalDateTime.now();
-        List<Inventory> availableInventory = inventoryManager.checkForAvailableInventory(filmId, storeId, now, now);
+        List<Integer> removedCopies = inventoryManager.removeFreeCopies(filmId, storeId, amount);
 
-        if (availableInventory.isEmpty()) {
-            GeneralUtils.showAlert(AlertType.WARNING, "Warning", "Unable to reduce the amount of inventory", "Inventory items are currently rented out. Please wait until they are returned.");
+        if (removedCopies == null) {
+            filmUpdate.fail(AlertType.ERROR, "Failed to delete inventory items.", "Please try again later.");
             return false;
         }
-
-        int deletedItems = 0;
-        for (Inventory inventory : availableInventory) {
-            if (deletedItems >= amount) {
-            break;
-            }
-            if (rentalManager.removeRentalForInventory(inventory.getInventoryId()) && 
-            inventoryManager.deleteAvailableInventory(inventory.getInventoryId())) {
-            deletedItems++;
-            } else {
-            GeneralUtils.showAlert(AlertType.ERROR, "Error", "Failed to delete inventory item " + inventory.getInventoryId() + ".", "Some inventory items might be currently rented out. Please wait until they are returned.");
-            }
+        if (removedCopies.isEmpty()) {
+            filmUpdate.fail(AlertType.WARNING, "Unable to reduce the amount of inventory", "Inventory items are currently rented out. Please wait until they are returned.");
+            return false;
         }
 
-        if (deletedItems > 0) {
-            GeneralUtils.showAlert(AlertType.INFORMATION, "Success", "Successfully deleted " + deletedItems + " inventory items.", "");
-            return true;
+        System.out.println("Deleted inventory items: " + removedCopies);
+        filmUpdate.copiesToRemove = amount;
+        filmUpdate.removedCopies = removedCopies;
+        return true;
+    }
+
+    /**
+     * Gives the staff feedback about the amount of successfully deleted inventory items (f. ex. if 2 out of desired 3 were deleted,
+     * the staff will be informed). Called after the update has been committed.
+     * @param filmUpdate
+     */
+    private void showRemovedInventory(FilmUpdate filmUpdate) {
+        List<Integer> removedCopies = filmUpdate.getRemovedCopies();
+        if (removedCopies.isEmpty()) {
+            return;
+        }
+        if (removedCopies.size() < filmUpdate.getCopiesToRemove()) {
+            GeneralUtils.showAlert(AlertType.WARNING, "Warning", "Unable to delete the desired number of inventory items. Deleted " + removedCopies.size() + " items.", "Some inventory items are currently rented out. Please wait until they are returned.");
         } else {
-            GeneralUtils.showAlert(AlertType.WARNING, "Warning", "Unable to delete the desired number of inventory items. Deleted " + deletedItems + " items.", "");
-            return false;
+            GeneralUtils.showAlert(AlertType.INFORMATION, "Success", "Successfully deleted " + removedCopies.size() + " inventory items.", "");
         }
     }
 
@@ -3,8 +3,12 @@ package com.oap2024team7.team7mediastreamingapp.controllers.admin;
 
 import com.oap2024team7.team7mediastreamingapp.utils.GeneralUtils;
 import com.oap2024team7.team7mediastreamingapp.models.Film;
+import com.oap2024team7.team7mediastreamingapp.models.FilmAvailability;
+import com.oap2024team7.team7mediastreamingapp.models.FilmPage;
 import com.oap2024team7.team7mediastreamingapp.services.CategoryManager;
+import com.oap2024team7.team7mediastreamingapp.services.DataAccessExecutor;
 import com.oap2024team7.team7mediastreamingapp.services.FilmManager;
+import com.oap2024team7.team7mediastreamingapp.services.InventoryManager;
 import com.oap2024team7.team7mediastreamingapp.models.Category;
 import com.oap2024team7.team7mediastreamingapp.utils.SessionData;
 import com.oap2024team7.team7mediastreamingapp.models.Staff;
@@ -12,9 +16,15 @@ import com.oap2024team7.team7mediastreamingapp.customcells.AdminFilmCell;
 import com.oap2024team7.team7mediastreamingapp.utils.StageUtils;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.lang.System;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListCell;
@@ -85,7 +95,13 @@ public class AdminPageController {
     // Local variables
     private ToggleGroup sortToggleGroup;
     private FilmManager filmManager;
-    private int offset = 0;
+    // Cursors the visited pages start after (null for the first page), the last one is the current page
+    private List<FilmPage.Cursor> pageStartCursors = new ArrayList<>(Collections.singletonList(null));
+    private FilmPage currentFilmPage;
+    // Availability badges of the films shown, by film ID; only used on the JavaFX Application Thread
+    private final Map<Integer, FilmAvailability> filmAvailability = new HashMap<>();
+    private InventoryManager inventoryManager = new InventoryManager();
+    private DataAccessExecutor.Scope filmLoads;
     private final int limit = 20; // Load 20 films per page
     private CategoryManager categoryManager = new CategoryManager();
     private Staff loggedInStaff;
@@ -125,6 +141,10 @@ public class AdminPageController {
         
         filmManager = new FilmManager();
 
+        // Films and their availability badges are loaded in the background; loads still running when the admin leaves the screen are cancelled
+        filmLoads = DataAccessExecutor.getInstance().newScope();
+        StageUtils.onScreenLeft(filmListView, filmLoads::cancelAll);
+
         // Initialize the ToggleGroup in the controller
         sortToggleGroup = new ToggleGroup();
         
@@ -183,66 +203,142 @@ public class AdminPageController {
         switchToLogin();
     }
 
-    // Load films based on the current filters
+    // Reload the current page of films
     private void loadFilms() {
+        loadFilms(pageStartCursors);
+    }
+
+    /**
+     * Loads films based on the current filters in the background, replacing a load that is still running.
+     * The pagination buttons are disabled until the new page is shown, so the admin can't skip a page while it loads.
+     * @param cursors Start cursors of the pages up to the page to load; they replace pageStartCursors once the page is shown
+     */
+    private void loadFilms(List<FilmPage.Cursor> cursors) {
         int staffsStoreId = loggedInStaff.getStoreId();
 
         // Get sort criteria
         String sortBy = sortByTitle.isSelected() ? "title" : "release_year";
 
-        List<Film> films = filmManager.loadFilms(
-            selectedCategory != null ? selectedCategory.getCategoryId() : null,
-            selectedRating,
-            selectedMaxLength,
-            selectedStartYear,
-            selectedEndYear,
-            offset,
-            limit,
-            staffsStoreId,
-            sortBy
-        );
+        Integer categoryId = selectedCategory != null ? selectedCategory.getCategoryId() : null;
+        Film.Rating rating = selectedRating;
+        Integer maxLength = selectedMaxLength;
+        Integer startYear = selectedStartYear;
+        Integer endYear = selectedEndYear;
+        FilmPage.Cursor after = cursors.get(cursors.size() - 1);
+
+        nextButton.setDisable(true);
+        prevButton.setDisable(true);
+        filmLoads.cancelAll();
+        filmLoads.submit(() -> filmManager.getFilmPage(categoryId, rating, maxLength, startYear, endYear, after, limit, staffsStoreId, sortBy))
+            .whenCompleteAsync((page, error) -> showLoadedPage(cursors, page, error, staffsStoreId), Platform::runLater);
+    }
+
+    /**
+     * Shows a loaded page, or an error if the page couldn't be loaded. Runs on the JavaFX Application Thread.
+     * The page number only changes once the page is shown, so a failed load keeps the current page.
+     * @param cursors Start cursors of the pages up to the loaded page
+     * @param page
+     * @param error The error the load failed with, null if it didn't fail
+     * @param storeId
+     */
+    private void showLoadedPage(List<FilmPage.Cursor> cursors, FilmPage page, Throwable error, int storeId) {
+        if (DataAccessExecutor.isCancellation(error)) {
+            return; // Replaced by a newer load, or the admin left the screen
+        }
+        if (error != null) {
+            error.printStackTrace();
+        }
+        if (page == null || error != null) {
+            GeneralUtils.showAlert(AlertType.ERROR, "Error", "Unable to load films", "An error occurred while loading the films.");
+            // Re-enable the pagination buttons of the page that is still shown
+            if (currentFilmPage != null) {
+                nextButton.setDisable(!currentFilmPage.hasNext());
+                prevButton.setDisable(pageStartCursors.size() == 1);
+            }
+            return;
+        }
+        pageStartCursors = cursors;
+        currentFilmPage = page;
     
         // Clear the film list view and populate with filtered results
         filmListView.getItems().clear();
-        filmListView.getItems().addAll(films);
+        filmListView.getItems().addAll(page.getFilms());
+        filmAvailability.clear();
+        loadAvailability(page, storeId);
     
-        // Check if there are more films to load for pagination
-        if (films.size() < limit || filmManager.getAllFilms(offset + limit, limit, staffsStoreId, sortBy).isEmpty()) {
-            nextButton.setDisable(true);
-        } else {
-            nextButton.setDisable(false);
-        }
+        // The page query fetches one film more than it shows, so we already know if there is a next page
+        nextButton.setDisable(!page.hasNext());
     
         // Disable the previous button if on the first page
-        prevButton.setDisable(offset == 0);
+        prevButton.setDisable(pageStartCursors.size() == 1);
+        updateCurrentPageLabel();
+    }
+
+    /**
+     * Loads the availability badges of all films on a page in one lookup, in the background,
+     * and redraws the list when they arrive. Runs on the JavaFX Application Thread.
+     * @param page
+     * @param storeId
+     */
+    private void loadAvailability(FilmPage page, int storeId) {
+        List<Integer> filmIds = new ArrayList<>();
+        for (Film film : page.getFilms()) {
+            filmIds.add(film.getFilmId());
+        }
+        filmLoads.submit(() -> inventoryManager.getAvailabilityForFilms(filmIds, storeId))
+            .whenCompleteAsync((availability, error) -> {
+                if (error != null && !DataAccessExecutor.isCancellation(error)) {
+                    error.printStackTrace();
+                }
+                if (error != null || currentFilmPage != page) {
+                    return; // The films are shown without badges, or another page is shown by now
+                }
+                filmAvailability.putAll(availability);
+                filmListView.refresh();
+            }, Platform::runLater);
+    }
 
+    /**
+     * Gets the availability of a film on the current page in the staff member's store, for the AdminFilmCell badge.
+     * @param filmId
+     * @return FilmAvailability object, or null if it isn't known
+     */
+    public FilmAvailability getFilmAvailability(int filmId) {
+        return filmAvailability.get(filmId);
     }
 
     // Pagination methods
     private void nextPage() {
-        offset += limit;
-        loadFilms();
-        updateCurrentPageLabel();
+        if (currentFilmPage == null || !currentFilmPage.hasNext()) {
+            return;
+        }
+        List<FilmPage.Cursor> cursors = new ArrayList<>(pageStartCursors);
+        cursors.add(currentFilmPage.getNextCursor());
+        loadFilms(cursors);
     }
 
     private void previousPage() {
-        if (offset > 0) {
-            offset -= limit;
-            loadFilms();
-            updateCurrentPageLabel();
+        if (pageStartCursors.size() > 1) {
+            loadFilms(new ArrayList<>(pageStartCursors.subList(0, pageStartCursors.size() - 1)));
         }
     }
 
     // Update the current page label based on pagination
     private void updateCurrentPageLabel() {
-        int currentPage = (offset / limit) + 1;
+        int currentPage = pageStartCursors.size();
         currentPageLabel.setText("Page: " + currentPage);
     }
 
+    // Cursors to go back to the first page, e.g. when the filters or the sort order change
+    private static List<FilmPage.Cursor> firstPageCursors() {
+        return new ArrayList<>(Collections.singletonList(null));
+    }
+
     // Sort films based on the selected option
     @FXML    
     private void sortFilms() {
-        loadFilms();
+        // The cursors of the visited pages belong to the old sort order
+        loadFilms(firstPageCursors());
     }
 
     /**
@@ -347,14 +443,8 @@ public class AdminPageController {
         selectedStartYear = startYearField.getText().isEmpty() ? null : Integer.parseInt(startYearField.getText());
         selectedEndYear = endYearField.getText().isEmpty() ? null : Integer.parseInt(endYearField.getText());
     
-        // Reset offset when applying filters
-        offset = 0;
-    
-        // Load films with the current filters applied
-        loadFilms();
-
-        // Update page label
-        updateCurrentPageLabel();
+        // Load the first page of films with the current filters applied
+        loadFilms(firstPageCursors());
     }
     
     //Clear all filters and reload the films
@@ -365,18 +455,9 @@ public class AdminPageController {
         maxLengthField.clear();
         startYearField.clear();
         endYearField.clear();
-    
-        // Reset offset when clearing filters
-        offset = 0;
 
-        // Set filters to null
+        // Set filters to null and load the first page of films with no filters applied
         applyFilters();
-    
-        // Load films with no filters applied
-        loadFilms();
-
-        // Update page label
-        updateCurrentPageLabel();
     }
 
     // Method to handle checkbox selection
@@ -397,9 +478,10 @@ public class AdminPageController {
     }
 
     /**
-     * Deletes the selected films from the database.
+     * Deletes the selected films from the database in the background, then shows the outcome for every film.
      * If a film is currently rented, it cannot be deleted.
      * If a film is deleted, it is removed from the list view.
+     * The deletes aren't part of filmLoads, so leaving the screen doesn't skip them.
      */
     @FXML
     private void deleteSelectedFilms() {
@@ -409,25 +491,50 @@ public class AdminPageController {
         }
 
         List<Film> filmsToDelete = new ArrayList<>(selectedFilms);
-        for (Film film : filmsToDelete) {
-            try {
-                boolean deleted = filmManager.deleteFilm(film);
-                if (!deleted) {
-                    GeneralUtils.showAlert(AlertType.ERROR, "Error", "Could not delete film", "The film '" + film.getTitle() + "' is currently rented.");
-                } else {
-                    selectedFilms.remove(film);
-                    GeneralUtils.showAlert(AlertType.INFORMATION, "Success", "Film deleted", "The film '" + film.getTitle() + "' has been deleted.");
+        deleteButton.setDisable(true);
+        deleteFilms(filmsToDelete).whenCompleteAsync((outcomes, error) -> {
+            deleteButton.setDisable(false);
+            if (error != null) {
+                error.printStackTrace();
+                GeneralUtils.showAlert(AlertType.ERROR, "Error", "An error occurred", "An error occurred while trying to delete the films.");
+            } else {
+                for (Map.Entry<Film, Boolean> outcome : outcomes.entrySet()) {
+                    Film film = outcome.getKey();
+                    if (outcome.getValue() == null) {
+                        GeneralUtils.showAlert(AlertType.ERROR, "Error", "An error occurred", "An error occurred while trying to delete the film '" + film.getTitle() + "'.");
+                    } else if (!outcome.getValue()) {
+                        GeneralUtils.showAlert(AlertType.ERROR, "Error", "Could not delete film", "The film '" + film.getTitle() + "' is currently rented.");
+                    } else {
+                        GeneralUtils.showAlert(AlertType.INFORMATION, "Success", "Film deleted", "The film '" + film.getTitle() + "' has been deleted.");
+                    }
                 }
-            } catch (Exception e) {
-                GeneralUtils.showAlert(AlertType.ERROR, "Error", "An error occurred", "An error occurred while trying to delete the film '" + film.getTitle() + "'.");
-                e.printStackTrace();
             }
-        }
-    
-        // Refresh the film list
-        loadFilms();
-        selectedFilms.clear(); // Clear selection after deletion
-        updateDeleteButtonVisibility(); // Update delete button visibility
+
+            // Refresh the film list
+            loadFilms();
+            selectedFilms.clear(); // Clear selection after deletion
+            updateDeleteButtonVisibility(); // Update delete button visibility
+        }, Platform::runLater);
+    }
+
+    /**
+     * Deletes films one by one in the background.
+     * @param films
+     * @return Future with the outcome by film: true if deleted, false if rented, null if an error occurred
+     */
+    private CompletableFuture<Map<Film, Boolean>> deleteFilms(List<Film> films) {
+        return DataAccessExecutor.getInstance().submit(() -> {
+            Map<Film, Boolean> outcomes = new LinkedHashMap<>();
+            for (Film film : films) {
+                try {
+                    outcomes.put(film, filmManager.deleteFilm(film));
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    outcomes.put(film, null);
+                }
+            }
+            return outcomes;
+        });
     }
 
     /**
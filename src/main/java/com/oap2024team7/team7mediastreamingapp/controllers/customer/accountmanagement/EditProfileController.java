@@ -103,6 +103,12 @@ public class EditProfileController {
             // If the update was successful, show a success message
             GeneralUtils.showAlert(AlertType.INFORMATION, "Success!", "Profile Updated", "The profile has been updated successfully.");
 
+            // Recompute the allowed ratings if the current profile's birth date has changed
+            Profile currentProfile = SessionData.getInstance().getCurrentProfile();
+            if (currentProfile != null && currentProfile.getProfileId() == profileToEdit.getProfileId()) {
+                SessionData.getInstance().setCurrentProfile(profileToEdit);
+            }
+
             // Reload the user data in the primary controller, in case age restrictions have changed or profile name has been updated
             primaryController.reloadUserData();
 
@@ -7,15 +7,19 @@ import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
 import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
 
 import com.itextpdf.text.Document;
 import com.oap2024team7.team7mediastreamingapp.models.Film;
 import com.oap2024team7.team7mediastreamingapp.utils.SessionData;
 import com.oap2024team7.team7mediastreamingapp.models.Rental;
+import com.oap2024team7.team7mediastreamingapp.services.DataAccessExecutor;
 import com.oap2024team7.team7mediastreamingapp.services.PaymentManager;
 import com.oap2024team7.team7mediastreamingapp.services.RentalManager;
+import com.oap2024team7.team7mediastreamingapp.services.ReservationManager;
 import com.oap2024team7.team7mediastreamingapp.models.Payment;
 import com.oap2024team7.team7mediastreamingapp.utils.GeneralUtils;
+import com.oap2024team7.team7mediastreamingapp.utils.StageUtils;
 
 import com.itextpdf.text.Paragraph;
 import com.itextpdf.text.pdf.PdfWriter;
@@ -46,6 +50,7 @@ public class CreditCardPaymentController {
     private Payment newPayment;
     private RentalManager rentalManager;
     private PaymentManager paymentManager;
+    private boolean paymentInProgress = false;
 
     @FXML
     private void initialize() {
@@ -60,6 +65,9 @@ public class CreditCardPaymentController {
         filmTitleLabel.setText("Film title: " + selectedFilm.getTitle());
         amountLabel.setText("Amount: " + amount);
 
+        // Give the held inventory item back if the window is closed without paying
+        StageUtils.onScreenLeft(filmTitleLabel, this::releaseUnconfirmedHold);
+
         // Add listeners to text fields to restrict input
         cardNumberTF.textProperty().addListener((obs, oldText, newText) -> {
             if (!newText.matches("\\d{0,16}")) {
@@ -94,61 +102,113 @@ public class CreditCardPaymentController {
 
     /**
      * Processes the payment by adding the rental and payment to the database.
+     * The database writes and the writing of the receipt run in the background, so the window stays responsive;
+     * the payment can't be submitted again while it is being processed.
      */
     private void processPayment() {
+        if (paymentInProgress) {
+            return; // Already being processed
+        }
+        paymentInProgress = true;
+
         Rental newRental = SessionData.getInstance().getNewRental(); 
+        Film selectedFilm = SessionData.getInstance().getSelectedFilm();
         newPayment.setPaymentDate(LocalDateTime.now());
 
         Stage stage = (Stage) filmTitleLabel.getScene().getWindow();
 
-        // Try adding rental to the database
-        int rentalId = rentalManager.addRentalToDatabase(newRental);
+        DataAccessExecutor.getInstance().submit(() -> storeRentalAndPayment(newRental))
+            .whenCompleteAsync((errorMessage, error) -> {
+                if (error != null) {
+                    error.printStackTrace();
+                }
+                if (error != null || errorMessage != null) {
+                    paymentInProgress = false;
+                    GeneralUtils.showAlert(Alert.AlertType.ERROR, "Error", errorMessage != null ? errorMessage : "An error occurred while processing the payment.", "Please try again.");
+                    return;
+                }
 
-        if (rentalId < 0) {
-            // Handle rental failure
-            Platform.runLater(() -> {
-                GeneralUtils.showAlert(Alert.AlertType.ERROR, "Error", "An error occurred while trying to rent the film.", "Please try again.");
-            });
-            return;
-        } else {
-            // Set the rental ID in the payment object
-            newRental.setRentalId(rentalId);
-            newPayment.setRentalId(rentalId);
-
-            // Try adding payment to the database
-            int paymentId = paymentManager.addPaymentToDatabase(newPayment);
-            if (paymentId < 0) {
-                // Handle payment failure
-                Platform.runLater(() -> {
-                    GeneralUtils.showAlert(Alert.AlertType.ERROR, "Error", "An error occurred while processing the payment.", "Please try again.");
-                });
-
-                // Rollback rental if payment fails
-                rentalManager.removeRentalFromDatabase(rentalId);
-                return;
-            } else {
-                // Set the payment ID in newPayment object
-                newPayment.setPaymentId(paymentId);
-
-                generateReceipt(SessionData.getInstance().getSelectedFilm(), newRental, newPayment, stage);
+                // The file chooser has to be shown on the UI thread, the PDF is written in the background
+                File receiptFile = chooseReceiptFile(newRental, stage);
+                CompletableFuture<Void> receipt = receiptFile == null
+                    ? CompletableFuture.completedFuture(null)
+                    : DataAccessExecutor.getInstance().submit(() -> {
+                        generateReceipt(selectedFilm, newRental, newPayment, receiptFile);
+                        return null;
+                    });
 
                 // If both rental and payment are successful, show success message
-                Platform.runLater(() -> {
+                receipt.whenCompleteAsync((result, receiptError) -> {
+                    if (receiptError != null) {
+                        receiptError.printStackTrace();
+                    }
                     GeneralUtils.showAlert(Alert.AlertType.INFORMATION, "Success", "Payment successful!", "Your rental has been processed.");
-                });
-                stage.close();
+                    stage.close();
+                }, Platform::runLater);
+            }, Platform::runLater);
+    }
+
+    /**
+     * Releases the hold of the rental when the window is closed before the payment was made,
+     * so the inventory item doesn't stay held until the hold expires.
+     * A hold that is being confirmed has already been taken from the session by storeRentalAndPayment.
+     */
+    private void releaseUnconfirmedHold() {
+        ReservationManager.Hold hold = SessionData.getInstance().getRentalHold();
+        if (hold != null && !paymentInProgress) {
+            SessionData.getInstance().setRentalHold(null);
+            ReservationManager.getInstance().release(hold);
+        }
+    }
+
+    /**
+     * Adds the rental and the payment to the database. Runs in the background.
+     * @param newRental
+     * @return null if both were added, otherwise the error message to show
+     */
+    private String storeRentalAndPayment(Rental newRental) {
+        // Try adding rental to the database, on the inventory item held for it (or another free one if that was taken)
+        ReservationManager.Hold hold = SessionData.getInstance().getRentalHold();
+        int rentalId;
+        if (hold != null) {
+            SessionData.getInstance().setRentalHold(null);
+            Rental rental = ReservationManager.getInstance().confirm(hold, newRental.getStaffId());
+            rentalId = rental != null ? rental.getRentalId() : -1;
+            if (rental != null) {
+                newRental.setInventoryId(rental.getInventoryId());
             }
+        } else {
+            rentalId = rentalManager.addRentalToDatabase(newRental);
         }
+        if (rentalId < 0) {
+            // Handle rental failure
+            return "An error occurred while trying to rent the film.";
+        }
+
+        // Set the rental ID in the payment object
+        newRental.setRentalId(rentalId);
+        newPayment.setRentalId(rentalId);
+
+        // Try adding payment to the database
+        int paymentId = paymentManager.addPaymentToDatabase(newPayment);
+        if (paymentId < 0) {
+            // Rollback rental if payment fails
+            rentalManager.removeRentalFromDatabase(rentalId);
+            return "An error occurred while processing the payment.";
+        }
+
+        // Set the payment ID in newPayment object
+        newPayment.setPaymentId(paymentId);
+        return null;
     }
 
     /**
-     * Generates a PDF receipt for the rental and payment.
-     * @param selectedFilm
+     * Lets the user choose where to save the receipt. Runs on the UI thread.
      * @param newRental
-     * @param newPayment
      * @param stage
+     * @return The chosen file, or null if no file was chosen
      */
-    private void generateReceipt(Film selectedFilm, Rental newRental, Payment newPayment, Stage stage) {
+    private File chooseReceiptFile(Rental newRental, Stage stage) {
          // Open file chooser to select directory
         FileChooser fileChooser = new FileChooser();
         fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("PDF Files", "*.pdf"));
@@ -160,7 +220,20 @@ public class CreditCardPaymentController {
         
         // Get the directory path from the user
         File selectedFile = fileChooser.showSaveDialog(stage);
+        if (selectedFile == null) {
+            System.out.println("No file selected.");
+        }
+        return selectedFile;
+    }
 
+    /**
+     * Generates a PDF receipt for the rental and payment. Runs in the background.
+     * @param selectedFilm
+     * @param newRental
+     * @param newPayment
+     * @param selectedFile
+     */
+    private void generateReceipt(Film selectedFilm, Rental newRental, Payment newPayment, File selectedFile) {
         // If a file was chosen, proceed with creating and saving the PDF
         if (selectedFile != null) {
             try {
@@ -205,8 +278,6 @@ public class CreditCardPaymentController {
             } catch (Exception e) {
                 e.printStackTrace();
             }
-        } else {
-            System.out.println("No file selected.");
         }
     }
     
@@ -1,6 +1,8 @@
 package com.oap2024team7.team7mediastreamingapp.controllers.customer.contentmanagement;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
@@ -8,19 +10,18 @@ import com.oap2024team7.team7mediastreamingapp.models.Actor;
 import com.oap2024team7.team7mediastreamingapp.models.Customer;
 import com.oap2024team7.team7mediastreamingapp.models.Customer.AccountType;
 import com.oap2024team7.team7mediastreamingapp.models.Film;
+import com.oap2024team7.team7mediastreamingapp.models.FilmDetailsView;
 import com.oap2024team7.team7mediastreamingapp.models.Profile;
-import com.oap2024team7.team7mediastreamingapp.services.ActorManager;
 import com.oap2024team7.team7mediastreamingapp.services.FilmManager;
-import com.oap2024team7.team7mediastreamingapp.services.ProfileManager;
-import com.oap2024team7.team7mediastreamingapp.services.RentalManager;
+import com.oap2024team7.team7mediastreamingapp.services.DataAccessExecutor;
+import com.oap2024team7.team7mediastreamingapp.services.FilmDetailsManager;
 import com.oap2024team7.team7mediastreamingapp.utils.SessionData;
 import com.oap2024team7.team7mediastreamingapp.utils.StageUtils;
 import com.oap2024team7.team7mediastreamingapp.utils.GeneralUtils;
 import com.oap2024team7.team7mediastreamingapp.services.ReviewManager;
 import com.oap2024team7.team7mediastreamingapp.models.Review;
-import com.oap2024team7.team7mediastreamingapp.services.InventoryManager;
-import com.oap2024team7.team7mediastreamingapp.models.Inventory;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 import javafx.scene.control.Button;
@@ -77,8 +78,9 @@ public class FilmDetailsController {
     private Film selectedFilm;
     private Stage stage;
     private ReviewManager reviewManager;
-    private InventoryManager inventoryManager;
-    private RentalManager rentalManager = new RentalManager();
+    private FilmDetailsManager filmDetailsManager = new FilmDetailsManager();
+    private FilmDetailsView filmDetails;
+    private DataAccessExecutor.Scope detailLoads = DataAccessExecutor.getInstance().newScope();
    
     /**
      * The stage for the Film Details window.
@@ -92,6 +94,8 @@ public class FilmDetailsController {
             public void handle(WindowEvent event) {
                 // Clear the selected film from SessionData
                 SessionData.getInstance().setSelectedFilm(null);
+                // Don't show details that are still loading
+                detailLoads.cancelAll();
             }
         });
     }
@@ -101,11 +105,27 @@ public class FilmDetailsController {
         // Retrieve the selected film from the session data
         selectedFilm = SessionData.getInstance().getSelectedFilm();
         reviewManager = new ReviewManager();
-        inventoryManager = new InventoryManager();
     
         if (selectedFilm != null) {
-            // Now that the film is set, update the labels with the film's details
-            updateFilmDetails();
+            // The rent and stream buttons are enabled once the rental status and availability are known
+            rentButton.setDisable(true);
+            streamButton.setDisable(true);
+
+            // Load the reviews, rental status and availability of the film in one go, in the background
+            Customer loggedInCustomer = SessionData.getInstance().getLoggedInCustomer();
+            Profile currentProfile = SessionData.getInstance().getCurrentProfile();
+            String loadKey = "filmDetails:" + selectedFilm.getFilmId() + ":" + (currentProfile != null ? currentProfile.getProfileId() : 0);
+            detailLoads.submit(loadKey, () -> filmDetailsManager.loadFilmDetails(selectedFilm, loggedInCustomer, currentProfile))
+                .whenCompleteAsync((loadedDetails, error) -> {
+                    if (DataAccessExecutor.isCancellation(error)) {
+                        return; // The window was closed
+                    }
+                    if (error != null) {
+                        error.printStackTrace();
+                    }
+                    showFilmDetails(error == null ? loadedDetails : null);
+                }, Platform::runLater);
+            StageUtils.onScreenLeft(titleLabel, detailLoads::cancelAll);
     
             // Update the status label based on whether the film is already in the list
             if (SessionData.getInstance().getSavedFilms().contains(selectedFilm)) {
@@ -114,9 +134,6 @@ public class FilmDetailsController {
                 statusLabel.setText("");
             }
 
-            // Set Rent/Stream button visibility based on account type
-            setRentStreamButtonVisibility();
-
             // Set visibility of rating and review buttons based on film attributes
             setRatingAndReviewButtonVisibility();
 
@@ -141,6 +158,26 @@ public class FilmDetailsController {
         }
     }
 
+    /**
+     * Shows the loaded details of the film. Runs on the JavaFX Application Thread.
+     * @param loadedDetails
+     */
+    private void showFilmDetails(FilmDetailsView loadedDetails) {
+        if (loadedDetails == null) {
+            GeneralUtils.showAlert(AlertType.ERROR, "Error", "Film details not loaded", "Unable to load the details of the selected film.");
+            return;
+        }
+        filmDetails = loadedDetails;
+
+        // Now that the details are loaded, update the labels with the film's details
+        updateFilmDetails();
+
+        // Set Rent/Stream button visibility based on account type
+        rentButton.setDisable(false);
+        streamButton.setDisable(false);
+        setRentStreamButtonVisibility();
+    }
+
     // This method updates the labels with the details of the selected film.
     private void updateFilmDetails() {
         // Update the labels based on the film's details
@@ -158,8 +195,8 @@ public class FilmDetailsController {
         // Display the PG rating
         pgRatingLabel.setText("PG rating: " + selectedFilm.getRating().toString());
 
-        // Fetch actors from the database and set them to the film object
-        List<Actor> actors = ActorManager.getInstance().getActorsForFilm(selectedFilm.getFilmId());
+        // The film already comes with its actors
+        List<Actor> actors = selectedFilm.getActors() != null ? selectedFilm.getActors() : new ArrayList<>();
         StringBuilder actorsText = new StringBuilder("Actors: ");
         for (Actor actor : actors) {
             actorsText.append(actor.getFirstName()).append(" ").append(actor.getLastName()).append(", ");
@@ -170,14 +207,14 @@ public class FilmDetailsController {
             actorsText.setLength(actorsText.length() - 2);
         }
         actorsLabel.setText(actorsText.toString());
-        updateAverageScore();
+        avgScoreLabel.setText("Average score: " + filmDetails.getAverageScore());
 
         // Check if the current profile has already liked or disliked the film
         Profile currentProfile = SessionData.getInstance().getCurrentProfile();
         if (currentProfile != null) {
-            Review review = reviewManager.getReview(selectedFilm.getFilmId(), currentProfile.getProfileId());
+            Review review = filmDetails.getCurrentProfileReview();
             if (review != null) {
-            boolean isLiked = reviewManager.isReviewLiked(review);
+            boolean isLiked = review.isLiked();
             if (isLiked) {
                 likeButton.setStyle("-fx-opacity: 1;");
                 dislikeButton.setStyle("-fx-opacity: 0.5;");
@@ -208,12 +245,9 @@ public class FilmDetailsController {
 
         if (loggedInCustomer != null) {
             AccountType accountType = loggedInCustomer.getAccountType();
-            LocalDateTime now = LocalDateTime.now();
 
             // Check if the customer already has an active rental for the selected film
-            boolean hasActiveRental = rentalManager.customerHasActiveRental(
-                loggedInCustomer.getCustomerId(), selectedFilm.getFilmId(), now, now.plusDays(1)
-            );
+            boolean hasActiveRental = filmDetails.hasActiveRental();
 
             if (hasActiveRental) {
                 // Customer already has an active rental; disable both buttons and update status label
@@ -222,17 +256,13 @@ public class FilmDetailsController {
                 statusLabel.setText("You already have an active rental for this film.");
             } else {
                 // Customer does not have an active rental; proceed with checking general availability
-                List<Inventory> availableInventories = inventoryManager.checkForAvailableInventory(
-                    selectedFilm.getFilmId(), loggedInCustomer.getStoreId(), now, now.plusDays(1)
-                );
-
-                if (availableInventories.isEmpty()) {
+                if (filmDetails.getAvailableCopies() == 0) {
                     // No inventory available, disable both buttons
                     rentButton.setDisable(true);
                     streamButton.setDisable(true);
 
                     // Get the next availability date
-                    LocalDateTime nextAvailableDate = inventoryManager.getNextAvailableDate(selectedFilm.getFilmId(), loggedInCustomer.getStoreId());
+                    LocalDateTime nextAvailableDate = filmDetails.getNextAvailableDate();
 
                     if (nextAvailableDate != null) {
                         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("d MMM yyyy 'at' h:mm a");
@@ -304,14 +334,24 @@ public class FilmDetailsController {
                     // Add film to session
                     SessionData.getInstance().addFilmToSavedList(selectedFilm);
                     System.out.println("Film added to SessionData saved films.");
-    
-                    // Add film to the database under the current profile
-                    FilmManager.addFilmToMyList(currentProfile.getProfileId(), selectedFilm.getFilmId());
-                    System.out.println("Film added to My List in the database.");
-    
-                    // Update status label and disable the save button
-                    statusLabel.setText("Film added to your list.");
                     saveToListButton.setDisable(true);
+    
+                    // Add film to the database under the current profile, in the background
+                    int profileId = currentProfile.getProfileId();
+                    int filmId = selectedFilm.getFilmId();
+                    DataAccessExecutor.getInstance().submit(() -> {
+                        FilmManager.addFilmToMyList(profileId, filmId);
+                        return null;
+                    }).whenCompleteAsync((result, error) -> {
+                        if (error != null) {
+                            error.printStackTrace();
+                            statusLabel.setText("Unable to save the film to your list.");
+                            return;
+                        }
+                        System.out.println("Film added to My List in the database.");
+                        // Update status label
+                        statusLabel.setText("Film added to your list.");
+                    }, Platform::runLater);
                 } else {
                     // Film is already in the list, hide or disable the button
                     statusLabel.setText("Film is already in your list.");
@@ -346,13 +386,17 @@ public class FilmDetailsController {
      */
     private void likeFilm() {
         Review newLike = new Review(selectedFilm.getFilmId(), SessionData.getInstance().getCurrentProfile().getProfileId(), true);
-        int reviewId = reviewManager.addLikeDislike(newLike);
-        if (reviewId != -1) {
-            updateAverageScore();
-        } else {
-            System.out.println("Error: Unable to like film.");
-            GeneralUtils.showAlert(AlertType.ERROR, "Error", "Like Failed", "Unable to like the film. Please try again later.");
-        }        
+        addLikeDislike(newLike).whenCompleteAsync((avgScore, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+            }
+            if (avgScore != null) {
+                updateAverageScore(avgScore);
+            } else {
+                System.out.println("Error: Unable to like film.");
+                GeneralUtils.showAlert(AlertType.ERROR, "Error", "Like Failed", "Unable to like the film. Please try again later.");
+            }
+        }, Platform::runLater);
     }
 
     /**
@@ -361,23 +405,42 @@ public class FilmDetailsController {
     private void dislikeFilm() {
         System.out.println("Disliking film: " + selectedFilm.getTitle());
         Review newDislike = new Review(selectedFilm.getFilmId(), SessionData.getInstance().getCurrentProfile().getProfileId(), false);
-        int reviewId = reviewManager.addLikeDislike(newDislike);
-    
-        if (reviewId != -1) {
-            updateAverageScore();
-        } else {
-            System.out.println("Error: Unable to dislike film.");
-            GeneralUtils.showAlert(AlertType.ERROR, "Error", "Dislike Failed", "Unable to dislike the film. Please try again later.");
-        }
-    }    
+        addLikeDislike(newDislike).whenCompleteAsync((avgScore, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+            }
+            if (avgScore != null) {
+                updateAverageScore(avgScore);
+            } else {
+                System.out.println("Error: Unable to dislike film.");
+                GeneralUtils.showAlert(AlertType.ERROR, "Error", "Dislike Failed", "Unable to dislike the film. Please try again later.");
+            }
+        }, Platform::runLater);
+    }
 
     /**
-     * Method to update and show the average score for the selected film.
-     * This method is called after a like or dislike is added, and at the start of the controller.
+     * Adds a like or dislike in the background and then reads the new average score of the film.
+     * Not part of detailLoads, so closing the window doesn't skip it.
+     * @param likeDislike
+     * @return Future with the average score, or null if the like or dislike couldn't be added
      */
-    private void updateAverageScore() {
-        System.out.println("Updating average score for film: " + selectedFilm.getTitle());
-        double avgScore = reviewManager.getAverageReviewScore(selectedFilm.getFilmId());
+    private CompletableFuture<Double> addLikeDislike(Review likeDislike) {
+        int filmId = selectedFilm.getFilmId();
+        return DataAccessExecutor.getInstance().submit(() -> {
+            if (reviewManager.addLikeDislike(likeDislike) == -1) {
+                return null;
+            }
+            System.out.println("Updating average score for film: " + filmId);
+            return reviewManager.getAverageReviewScore(filmId);
+        });
+    }
+
+    /**
+     * Method to show the average score for the selected film. Runs on the JavaFX Application Thread.
+     * This method is called after a like or dislike is added.
+     * @param avgScore The score read by addLikeDislike, 6.00 if it couldn't be read
+     */
+    private void updateAverageScore(double avgScore) {
         if (avgScore != 6.00) {
             avgScoreLabel.setText("Average score: " + avgScore);
         } else {
@@ -388,22 +451,23 @@ public class FilmDetailsController {
 
     /**
      * Display all reviews for the selected film.
+     * The reviews are loaded together with the names of the profiles that wrote them.
      */
     @FXML
     private void displayAllReviews() {
-        int filmId = selectedFilm.getFilmId();
-
-        // Get all reviews for the selected film from the database
-        List<Review> reviews = reviewManager.getReviewsByFilmId(filmId);
+        if (filmDetails == null) {
+            return; // Still loading
+        }
+        List<FilmDetailsView.AuthoredReview> reviews = filmDetails.getReviews();
 
         // Clear the existing text
         reviewsText.setText("");
 
         // Format and display each review
         StringBuilder reviewsTextBuilder = new StringBuilder();
-        for (Review review : reviews) {
-            int profileId = review.getProfileId();
-            String profileName = ProfileManager.getProfileById(profileId).getProfileName();
+        for (FilmDetailsView.AuthoredReview authoredReview : reviews) {
+            Review review = authoredReview.getReview();
+            String profileName = authoredReview.getProfileName();
             String reviewDate = review.getReviewDate().toString();
             String reviewText = review.getReview();
 
@@ -3,9 +3,11 @@ package com.oap2024team7.team7mediastreamingapp.controllers.customer.contentmana
 import com.oap2024team7.team7mediastreamingapp.models.Film;
 import com.oap2024team7.team7mediastreamingapp.utils.SessionData;
 import com.oap2024team7.team7mediastreamingapp.models.Profile;
+import com.oap2024team7.team7mediastreamingapp.services.DataAccessExecutor;
 import com.oap2024team7.team7mediastreamingapp.services.FilmManager;
 import com.oap2024team7.team7mediastreamingapp.utils.StageUtils;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -37,7 +39,8 @@ public class MyListController {
     @FXML
     private TableColumn<Film, Film.Rating> ratingColumn;
 
-    private ObservableList<Film> filmList;
+    private ObservableList<Film> filmList = FXCollections.observableArrayList();
+    private DataAccessExecutor.Scope listLoads = DataAccessExecutor.getInstance().newScope();
 
     @FXML
     public void initialize() {
@@ -47,14 +50,15 @@ public class MyListController {
         titleColumn.setCellValueFactory(new PropertyValueFactory<>("title"));
         releaseYearColumn.setCellValueFactory(new PropertyValueFactory<>("releaseYear"));
         ratingColumn.setCellValueFactory(new PropertyValueFactory<>("rating"));
+        myListTable.setItems(filmList);
 
-        loadFilmsFromDatabase();
+        // Stop loading when the user leaves the page
+        StageUtils.onScreenLeft(myListTable, listLoads::cancelAll);
 
-        // Refresh table to ensure data is displayed correctly
-        myListTable.refresh();
+        loadFilmsFromDatabase();
     }
 
-    // Load films directly from the database
+    // Load films directly from the database, in the background
     private void loadFilmsFromDatabase() {
         Profile currentProfile = SessionData.getInstance().getCurrentProfile();
         if (currentProfile == null) {
@@ -63,10 +67,20 @@ public class MyListController {
         }
 
         int profileId = currentProfile.getProfileId();
-        filmList = FXCollections.observableArrayList(FilmManager.getFilmsFromMyList(profileId));
-
-        myListTable.setItems(filmList);
-        System.out.println("Number of films loaded from database: " + filmList.size());
+        listLoads.submit("myList:" + profileId, () -> FilmManager.getFilmsFromMyList(profileId))
+            .whenCompleteAsync((films, error) -> {
+                if (DataAccessExecutor.isCancellation(error)) {
+                    return; // The user left the page
+                }
+                if (error != null) {
+                    error.printStackTrace();
+                    return;
+                }
+                filmList.setAll(films);
+                // Refresh table to ensure data is displayed correctly
+                myListTable.refresh();
+                System.out.println("Number of films loaded from database: " + filmList.size());
+            }, Platform::runLater);
     }
 
     // Handle removing a film from the list
@@ -77,7 +91,9 @@ public class MyListController {
             Profile currentProfile = SessionData.getInstance().getCurrentProfile();
             if (currentProfile != null) {
                 System.out.println("Removing film: " + selectedFilm.getTitle() + " for profile ID: " + currentProfile.getProfileId());
-                FilmManager.removeFilmFromMyList(currentProfile.getProfileId(), selectedFilm.getFilmId());
+                int profileId = currentProfile.getProfileId();
+                int filmId = selectedFilm.getFilmId();
+                writeInBackground(() -> FilmManager.removeFilmFromMyList(profileId, filmId));
                 SessionData.getInstance().removeFilmFromSavedList(selectedFilm);
                 filmList.remove(selectedFilm); // Update the TableView
                 myListTable.refresh(); // Refresh table after removal
@@ -87,13 +103,27 @@ public class MyListController {
         }
     }
 
+    // Change My List in the database in the background; the table is updated right away
+    private static void writeInBackground(Runnable write) {
+        DataAccessExecutor.getInstance().submit(() -> {
+            write.run();
+            return null;
+        }).whenComplete((result, error) -> {
+            if (error != null) {
+                error.printStackTrace();
+            }
+        });
+    }
+
     // Handle adding a film to the list (Assuming there's a way to select a film to add)
     @FXML
     private void handleAddToList(Film film) {
         Profile currentProfile = SessionData.getInstance().getCurrentProfile();
         if (currentProfile != null && !filmList.contains(film)) {
             System.out.println("Adding film: " + film.getTitle() + " to profile ID: " + currentProfile.getProfileId());
-            FilmManager.addFilmToMyList(currentProfile.getProfileId(), film.getFilmId());
+            int profileId = currentProfile.getProfileId();
+            int filmId = film.getFilmId();
+            writeInBackground(() -> FilmManager.addFilmToMyList(profileId, filmId));
             SessionData.getInstance().addFilmToSavedList(film);
             filmList.add(film); // Update the TableView
             myListTable.refresh(); // Refresh table after adding a film
@@ -148,7 +178,6 @@ public class MyListController {
     @FXML
     private void handleRefresh() {
         System.out.println("Refreshing the My Saved Films list...");
-        loadFilmsFromDatabase();
-        myListTable.refresh(); // Refresh the TableView after reloading the data
+        loadFilmsFromDatabase(); // The TableView is refreshed when the data is reloaded
     }
 }
@@ -3,8 +3,12 @@ package com.oap2024team7.team7mediastreamingapp.controllers.customer.contentmana
 
 import com.oap2024team7.team7mediastreamingapp.utils.GeneralUtils;
 import com.oap2024team7.team7mediastreamingapp.models.Film;
+import com.oap2024team7.team7mediastreamingapp.models.FilmAvailability;
+import com.oap2024team7.team7mediastreamingapp.models.FilmPage;
 import com.oap2024team7.team7mediastreamingapp.services.CategoryManager;
+import com.oap2024team7.team7mediastreamingapp.services.DataAccessExecutor;
 import com.oap2024team7.team7mediastreamingapp.services.FilmManager;
+import com.oap2024team7.team7mediastreamingapp.services.InventoryManager;
 import com.oap2024team7.team7mediastreamingapp.models.Category;
 import com.oap2024team7.team7mediastreamingapp.models.Customer;
 import com.oap2024team7.team7mediastreamingapp.utils.SessionData;
@@ -14,8 +18,15 @@ import com.oap2024team7.team7mediastreamingapp.customcells.CustomerFilmCell;
 import com.oap2024team7.team7mediastreamingapp.customcells.RatingCell;
 import com.oap2024team7.team7mediastreamingapp.utils.StageUtils;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 import javafx.scene.control.MenuButton;
@@ -91,7 +102,14 @@ public class PrimaryController {
     // Local variables
     private ToggleGroup sortToggleGroup;
     private FilmManager filmManager;
-    private int offset = 0;
+    // Cursors the visited pages start after (null for the first page), the last one is the current page
+    private List<FilmPage.Cursor> pageStartCursors = new ArrayList<>(Collections.singletonList(null));
+    private FilmPage currentFilmPage;
+    // Availability badges of the films shown, by film ID; only used on the JavaFX Application Thread
+    private final Map<Integer, FilmAvailability> filmAvailability = new HashMap<>();
+    private final InventoryManager inventoryManager = new InventoryManager();
+    private String searchQuery; // Active search, null while browsing the filtered films
+    private DataAccessExecutor.Scope filmLoads;
     private final int limit = 20; // Load 20 films per page
     private CategoryManager categoryManager = new CategoryManager();
     private Customer loggedInCustomer;
@@ -141,6 +159,10 @@ public class PrimaryController {
         /* INITIALIZE FILM LV */
         filmManager = new FilmManager();
 
+        // Films are loaded in the background; loads still running when the user leaves the screen are cancelled
+        filmLoads = DataAccessExecutor.getInstance().newScope();
+        StageUtils.onScreenLeft(filmListView, filmLoads::cancelAll);
+
         // Initialize the ToggleGroup in the controller
         sortToggleGroup = new ToggleGroup();
         sortByTitle.setToggleGroup(sortToggleGroup);
@@ -151,7 +173,7 @@ public class PrimaryController {
         loadFilms();
 
         // Indicate how to present films in the LV (show only some information from Film class)
-        filmListView.setCellFactory(lv -> new CustomerFilmCell());
+        filmListView.setCellFactory(lv -> new CustomerFilmCell(filmAvailability::get));
 
         // Handle next and previous page
         nextButton.setOnAction(event -> nextPage());
@@ -177,18 +199,31 @@ public class PrimaryController {
         String query = searchField.getText().trim();
 
         if (query.isEmpty()) {
-            loadFilms(); // Reload all films if search is empty
+            // Reload all films if search is empty
+            searchQuery = null;
+            loadFilms(firstPageCursors());
             return;
         }
 
-        List<Film> searchResults = filmManager.searchFilms(query);
-
-        if (searchResults == null || searchResults.isEmpty()) {
-            GeneralUtils.showAlert(AlertType.INFORMATION, "No Results", "Search Results", "No movies found matching your search.");
-        } else {
-            filmListView.getItems().clear();
-            filmListView.getItems().addAll(searchResults);
-        }
+        int customersStoreId = loggedInCustomer.getStoreId();
+        startFilmLoad(() -> filmManager.searchFilms(query, null, limit, customersStoreId))
+            .whenCompleteAsync((searchResults, error) -> {
+                if (DataAccessExecutor.isCancellation(error)) {
+                    return; // Replaced by a newer load, or the user left the screen
+                }
+                if (error != null) {
+                    showLoadedPage(pageStartCursors, null, error);
+                } else if (searchResults == null || searchResults.getFilms().isEmpty()) {
+                    GeneralUtils.showAlert(AlertType.INFORMATION, "No Results", "Search Results", "No movies found matching your search.");
+                    restoreCurrentPage();
+                } else {
+                    // The search results are paged like the film list until the search is cleared
+                    searchQuery = query;
+                    pageStartCursors = firstPageCursors();
+                    showFilmPage(searchResults);
+                    updateCurrentPageLabel();
+                }
+            }, Platform::runLater);
     }
 
 
@@ -278,12 +313,30 @@ public class PrimaryController {
     }
 
     /**
-     * Loads films into the LV based on the selected filters, sort criteria, customer's storeId and pagination.
+     * Reloads the current page of films.
      */
     private void loadFilms() {
+        loadFilms(pageStartCursors);
+    }
+
+    /**
+     * Loads films into the LV based on the selected filters, sort criteria, customer's storeId and pagination.
+     * While a search is active, the current page of the search results is loaded instead.
+     * @param cursors Start cursors of the pages up to the page to load; they replace pageStartCursors once the page is shown
+     */
+    private void loadFilms(List<FilmPage.Cursor> cursors) {
 
         int customersStoreId = loggedInCustomer.getStoreId();
 
+        FilmPage.Cursor after = cursors.get(cursors.size() - 1);
+
+        if (searchQuery != null) {
+            String query = searchQuery;
+            startFilmLoad(() -> filmManager.searchFilms(query, after, limit, customersStoreId))
+                .whenCompleteAsync((page, error) -> showLoadedPage(cursors, page, error), Platform::runLater);
+            return;
+        }
+
         // Get sort criteria
         String sortBy = sortByTitle.isSelected() ? "title" : "release_year";
 
@@ -295,45 +348,125 @@ public class PrimaryController {
         // For rating: If selectedRating is null, treat it as no filter for the rating
         Film.Rating rating = selectedRating == Film.Rating.NONE ? null : selectedRating;
 
-        List<Film> films = filmManager.loadFilms(
+        Integer maxLength = selectedMaxLength;
+        Integer startYear = selectedStartYear;
+        Integer endYear = selectedEndYear;
+        startFilmLoad(() -> filmManager.getFilmPage(
             categoryId,
             rating,
-            selectedMaxLength,
-            selectedStartYear,
-            selectedEndYear,
-            offset,
+            maxLength,
+            startYear,
+            endYear,
+            after,
             limit,
             customersStoreId,
             sortBy
-        );
+        )).whenCompleteAsync((page, error) -> showLoadedPage(cursors, page, error), Platform::runLater);
+    }
+
+    /**
+     * Starts loading films in the background, replacing a load that is still running.
+     * The pagination buttons are disabled until the new page is shown, so the user can't skip a page while it loads.
+     * @param load The manager call that fetches the page
+     * @return Future with the page
+     */
+    private CompletableFuture<FilmPage> startFilmLoad(Callable<FilmPage> load) {
+        nextButton.setDisable(true);
+        prevButton.setDisable(true);
+        filmLoads.cancelAll();
+        return filmLoads.submit(load);
+    }
+
+    /**
+     * Shows a loaded page, or an error if the page couldn't be loaded. Runs on the JavaFX Application Thread.
+     * The page number only changes once the page is shown, so a failed load keeps the current page.
+     * @param cursors Start cursors of the pages up to the loaded page
+     * @param page
+     * @param error The error the load failed with, null if it didn't fail
+     */
+    private void showLoadedPage(List<FilmPage.Cursor> cursors, FilmPage page, Throwable error) {
+        if (DataAccessExecutor.isCancellation(error)) {
+            return; // Replaced by a newer load, or the user left the screen
+        }
+        if (error != null) {
+            error.printStackTrace();
+        }
+        if (page == null || error != null) {
+            GeneralUtils.showAlert(AlertType.ERROR, "Error", "Unable to load films", "An error occurred while loading the films.");
+            restoreCurrentPage();
+            return;
+        }
+        pageStartCursors = cursors;
+        showFilmPage(page);
+        updateCurrentPageLabel();
+    }
+
+    // Re-enable the pagination buttons of the page that is still shown
+    private void restoreCurrentPage() {
+        if (currentFilmPage != null) {
+            showFilmPage(currentFilmPage);
+        }
+    }
+
+    /**
+     * Shows a page of films in the LV and updates the pagination buttons.
+     * @param page
+     */
+    private void showFilmPage(FilmPage page) {
+        currentFilmPage = page;
     
         // Clear the film list view and populate with filtered results
         filmListView.getItems().clear();
-        filmListView.getItems().addAll(films);
+        filmListView.getItems().addAll(page.getFilms());
+
+        // Only keep the badges of the films that are shown, they are loaded again for every page
+        filmAvailability.clear();
+        loadAvailability(page);
     
-        // Check if there are more films to load for pagination
-        if (films.size() < limit || filmManager.getAllFilms(offset + limit, limit, customersStoreId, sortBy).isEmpty()) {
-            nextButton.setDisable(true);
-        } else {
-            nextButton.setDisable(false);
-        }
+        // The page query fetches one film more than it shows, so we already know if there is a next page
+        nextButton.setDisable(!page.hasNext());
     
         // Disable the previous button if on the first page
-        prevButton.setDisable(offset == 0);
+        prevButton.setDisable(pageStartCursors.size() == 1);
+    }
+
+    /**
+     * Loads the availability badges of all films on a page in one lookup, in the background,
+     * and redraws the list when they arrive. Runs on the JavaFX Application Thread.
+     * @param page
+     */
+    private void loadAvailability(FilmPage page) {
+        List<Integer> filmIds = new ArrayList<>();
+        for (Film film : page.getFilms()) {
+            filmIds.add(film.getFilmId());
+        }
+        int customersStoreId = loggedInCustomer.getStoreId();
+        filmLoads.submit(() -> inventoryManager.getAvailabilityForFilms(filmIds, customersStoreId))
+            .whenCompleteAsync((availability, error) -> {
+                if (error != null && !DataAccessExecutor.isCancellation(error)) {
+                    error.printStackTrace();
+                }
+                if (error != null || currentFilmPage != page) {
+                    return; // The films are shown without badges, or another page is shown by now
+                }
+                filmAvailability.putAll(availability);
+                filmListView.refresh();
+            }, Platform::runLater);
     }
 
     // Pagination methods
     private void nextPage() {
-        offset += limit;
-        loadFilms();
-        updateCurrentPageLabel();
+        if (currentFilmPage == null || !currentFilmPage.hasNext()) {
+            return;
+        }
+        List<FilmPage.Cursor> cursors = new ArrayList<>(pageStartCursors);
+        cursors.add(currentFilmPage.getNextCursor());
+        loadFilms(cursors);
     }
 
     private void previousPage() {
-        if (offset > 0) {
-            offset -= limit;
-            loadFilms();
-            updateCurrentPageLabel();
+        if (pageStartCursors.size() > 1) {
+            loadFilms(new ArrayList<>(pageStartCursors.subList(0, pageStartCursors.size() - 1)));
         }
     }
 
@@ -341,16 +474,23 @@ public class PrimaryController {
      * Updates the current page label with the current page number.
      */
     private void updateCurrentPageLabel() {
-        int currentPage = (offset / limit) + 1;
+        int currentPage = pageStartCursors.size();
         currentPageLabel.setText("Page: " + currentPage);
     }
 
+    // Cursors to go back to the first page, e.g. when the filters or the sort order change
+    private static List<FilmPage.Cursor> firstPageCursors() {
+        return new ArrayList<>(Collections.singletonList(null));
+    }
+
     /**
      * Sorts the films based on the selected criteria.
      */
     @FXML    
     private void sortFilms() {
-        loadFilms();
+        // The cursors of the visited pages belong to the old sort order, and search results are ranked instead of sorted
+        searchQuery = null;
+        loadFilms(firstPageCursors());
     }
 
     /**
@@ -447,14 +587,11 @@ public class PrimaryController {
         selectedStartYear = startYearField.getText().isEmpty() ? null : Integer.parseInt(startYearField.getText());
         selectedEndYear = endYearField.getText().isEmpty() ? null : Integer.parseInt(endYearField.getText());
     
-        // Reset offset when applying filters
-        offset = 0;
+        // Start from the first page of the filtered films when applying filters
+        searchQuery = null;
     
         // Load films with the current filters applied
-        loadFilms();
-
-        // Update page label
-        updateCurrentPageLabel();
+        loadFilms(firstPageCursors());
     }
     
     /**
@@ -467,18 +604,9 @@ public class PrimaryController {
         maxLengthField.clear();
         startYearField.clear();
         endYearField.clear();
-    
-        // Reset offset when clearing filters
-        offset = 0;
 
-        // Set filters to null
+        // Set filters to null and load the first page of films with no filters applied
         applyFilters();
-    
-        // Load films with no filters applied
-        loadFilms();
-
-        // Update page label
-        updateCurrentPageLabel();
     }
 
     /**
@@ -1,13 +1,15 @@
 // Last Modified: 30.09.2024
 package com.oap2024team7.team7mediastreamingapp.controllers.customer.contentmanagement;
 
+import com.oap2024team7.team7mediastreamingapp.models.AvailabilityTimeline;
 import com.oap2024team7.team7mediastreamingapp.models.Film;
 import com.oap2024team7.team7mediastreamingapp.utils.GeneralUtils;
 import com.oap2024team7.team7mediastreamingapp.utils.SessionData;
 import com.oap2024team7.team7mediastreamingapp.utils.StageUtils;
+import com.oap2024team7.team7mediastreamingapp.services.DataAccessExecutor;
 import com.oap2024team7.team7mediastreamingapp.services.InventoryManager;
-import com.oap2024team7.team7mediastreamingapp.models.Inventory;
 import com.oap2024team7.team7mediastreamingapp.services.DiscountManager;
+import com.oap2024team7.team7mediastreamingapp.services.ReservationManager;
 import com.oap2024team7.team7mediastreamingapp.models.Discount;
 import com.oap2024team7.team7mediastreamingapp.models.Rental;
 import com.oap2024team7.team7mediastreamingapp.models.Payment;
@@ -24,7 +26,7 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 
 import java.time.LocalDateTime;
-import java.util.List;
+import java.time.format.DateTimeFormatter;
 
 /**
  * Controller class for the rent film view
@@ -40,6 +42,8 @@ public class RentFilmController {
     @FXML
     private Label rentalRateLabel;
     @FXML
+    private Label availabilityLabel;
+    @FXML
     private TextField rentalDaysTF;
     @FXML   
     private Label totalCostLabel;
@@ -55,7 +59,13 @@ public class RentFilmController {
     private static final String NO_INVENTORY_MESSAGE = "No available inventory for the selected film within this period of time.";
     private static final String INVALID_INPUT_MESSAGE = "Please enter a valid number of days.";
 
+    private static final DateTimeFormatter AVAILABILITY_FORMATTER = DateTimeFormatter.ofPattern("d MMM yyyy 'at' h:mm a");
+
     private double rentalRate;
+    private final InventoryManager inventoryManager = new InventoryManager();
+    // Availability lookups run in the background; only the latest one updates the label
+    private final DataAccessExecutor.Scope availabilityLoads = DataAccessExecutor.getInstance().newScope();
+    private boolean reservationInProgress = false;
 
     /**
      * This method initializes the view with the selected film's details
@@ -89,6 +99,10 @@ public class RentFilmController {
             rentalRateLabel.setText(rentalRateLabel.getText() + " (Discounted)");
         }
 
+        // Show the availability up front, before the customer picks the number of days
+        StageUtils.onScreenLeft(availabilityLabel, availabilityLoads::cancelAll);
+        showAvailability();
+
         // Initialize the PauseTransition with a 1-second delay, giving user time to write correct input
         pause = new PauseTransition(Duration.seconds(1));
         pause.setOnFinished(event -> updateTotalCost());
@@ -99,6 +113,63 @@ public class RentFilmController {
         });        
     }
 
+    /**
+     * This method shows how many copies are available now and when the film is fully booked
+     * within the max rental duration, using the free/busy timeline of the film in the customer's store.
+     * The timeline is loaded in the background and shown when it arrives
+     */
+    private void showAvailability() {
+        int storeId = SessionData.getInstance().getLoggedInCustomer().getStoreId();
+        int filmId = selectedFilm.getFilmId();
+        int days = selectedFilm.getRentalDuration();
+        availabilityLoads.cancelAll();
+        availabilityLoads.submit(() -> inventoryManager.getAvailabilityTimeline(filmId, storeId, days))
+            .whenCompleteAsync((timeline, error) -> {
+                if (DataAccessExecutor.isCancellation(error)) {
+                    return; // Replaced by a newer lookup, or the window was closed
+                }
+                if (error != null) {
+                    error.printStackTrace();
+                }
+                showTimeline(error == null ? timeline : null);
+            }, Platform::runLater);
+    }
+
+    /**
+     * This method shows a loaded availability timeline in the availability label. Runs on the JavaFX Application Thread
+     * @param timeline The timeline, or null if it couldn't be loaded
+     */
+    private void showTimeline(AvailabilityTimeline timeline) {
+        availabilityLabel.setStyle("");
+        if (timeline == null) {
+            availabilityLabel.setText("");
+            return;
+        }
+        if (timeline.getTotalCopies() == 0) {
+            availabilityLabel.setText("No inventory available.");
+            availabilityLabel.setStyle("-fx-text-fill: red;");
+            return;
+        }
+
+        int availableNow = timeline.getSegments().isEmpty() ? timeline.getTotalCopies() : timeline.getSegments().get(0).getFreeCopies();
+        if (availableNow == 0) {
+            LocalDateTime firstFree = timeline.getFirstFreeMoment();
+            if (firstFree != null) {
+                availabilityLabel.setText("All copies are rented out until " + firstFree.format(AVAILABILITY_FORMATTER) + ".");
+            } else {
+                availabilityLabel.setText("All copies are rented out for the next " + selectedFilm.getRentalDuration() + " days.");
+            }
+            availabilityLabel.setStyle("-fx-text-fill: red;");
+        } else {
+            String text = "Available now: " + availableNow + " of " + timeline.getTotalCopies() + " copies";
+            LocalDateTime fullyBooked = timeline.getFirstFullyBookedMoment();
+            if (fullyBooked != null) {
+                text += " (fully booked from " + fullyBooked.format(AVAILABILITY_FORMATTER) + ")";
+            }
+            availabilityLabel.setText(text);
+        }
+    }
+
     /**
      * This method updates the total cost of the rental based on the number of days entered
      */
@@ -115,6 +186,28 @@ public class RentFilmController {
             }
             totalCost = rentalDays * rentalRate;
             totalCostLabel.setText(String.format("Total cost: $%.2f", totalCost));
+
+            // Tell the customer right away if no copy is free for the whole period, checked in the background
+            int filmId = selectedFilm.getFilmId();
+            int storeId = SessionData.getInstance().getLoggedInCustomer().getStoreId();
+            availabilityLoads.cancelAll();
+            availabilityLoads.submit(() -> {
+                LocalDateTime now = LocalDateTime.now();
+                return inventoryManager.checkForAvailableInventory(filmId, storeId, now, now.plusDays(rentalDays)).isEmpty();
+            }).whenCompleteAsync((noneAvailable, error) -> {
+                if (DataAccessExecutor.isCancellation(error)) {
+                    return; // Replaced by a newer lookup, or the window was closed
+                }
+                if (error != null) {
+                    error.printStackTrace();
+                }
+                if (error == null && noneAvailable) {
+                    availabilityLabel.setText("No copy is available for " + rentalDays + " days from now.");
+                    availabilityLabel.setStyle("-fx-text-fill: red;");
+                } else {
+                    showAvailability();
+                }
+            }, Platform::runLater);
         } catch (NumberFormatException e) {
             Platform.runLater(() -> {
                 GeneralUtils.showAlert(AlertType.ERROR, ERROR_TITLE, INVALID_INPUT_MESSAGE, "You need to enter a numerical value.");
@@ -124,27 +217,55 @@ public class RentFilmController {
     }
 
     /**
-     * This method tries to rent the selected film for the specified number of days
+     * This method tries to rent the selected film for the specified number of days.
+     * The inventory item is reserved in the background; the payment window opens once it is held.
      */
     @FXML
     private void tryToRent() {
         try {
             if (totalCost > 0) {
+            if (reservationInProgress) {
+                return; // Already reserving a copy
+            }
             rentalStartDate = LocalDateTime.now();
             rentalEndDate = rentalStartDate.plusDays(Integer.parseInt(rentalDaysTF.getText()));
 
-            // Check for available inventory, and get inventoryId of the first available inventory item
-            InventoryManager inventoryManager = new InventoryManager();
-            List<Inventory> availableInventories = inventoryManager.checkForAvailableInventory(selectedFilm.getFilmId(), SessionData.getInstance().getLoggedInCustomer().getStoreId(), rentalStartDate, rentalEndDate);
-                if (!availableInventories.isEmpty()) {
-                    int inventoryId = availableInventories.get(0).getInventoryId();
-                    int customerId = SessionData.getInstance().getLoggedInCustomer().getCustomerId();
-                    int storeId = SessionData.getInstance().getLoggedInCustomer().getStoreId();
-
-                    Rental newRental = new Rental(inventoryId, customerId, storeId, rentalStartDate, rentalEndDate);
+            // Hold a free inventory item while the customer pays, so nobody else gets the same one
+            int customerId = SessionData.getInstance().getLoggedInCustomer().getCustomerId();
+            int storeId = SessionData.getInstance().getLoggedInCustomer().getStoreId();
+            int filmId = selectedFilm.getFilmId();
+            LocalDateTime startDate = rentalStartDate;
+            LocalDateTime endDate = rentalEndDate;
+            double cost = totalCost;
+            ReservationManager reservationManager = ReservationManager.getInstance();
+            ReservationManager.Hold previousHold = SessionData.getInstance().getRentalHold();
+            if (previousHold != null) {
+                reservationManager.release(previousHold);
+                SessionData.getInstance().setRentalHold(null);
+            }
+            reservationInProgress = true;
+            DataAccessExecutor.getInstance().submit(() -> reservationManager.reserve(filmId, storeId, customerId, startDate, endDate))
+                .whenCompleteAsync((hold, error) -> {
+                    reservationInProgress = false;
+                    if (error != null) {
+                        error.printStackTrace();
+                        GeneralUtils.showAlert(Alert.AlertType.ERROR, ERROR_TITLE, ERROR_MESSAGE, "Please try again.");
+                        return;
+                    }
+                    if (hold == null) {
+                        GeneralUtils.showAlert(Alert.AlertType.ERROR, ERROR_TITLE, NO_INVENTORY_MESSAGE, "Please try again later.");
+                        return;
+                    }
+                    if (selectedFilmLabel.getScene() == null || !selectedFilmLabel.getScene().getWindow().isShowing()) {
+                        // The customer left the screen while the copy was being reserved
+                        reservationManager.release(hold);
+                        return;
+                    }
+                    Rental newRental = new Rental(hold.getInventoryId(), customerId, storeId, startDate, endDate);
                     SessionData.getInstance().setNewRental(newRental);
+                    SessionData.getInstance().setRentalHold(hold);
 
-                    Payment newPayment = new Payment(customerId, storeId, totalCost);
+                    Payment newPayment = new Payment(customerId, storeId, cost);
                     SessionData.getInstance().setNewPayment(newPayment);
 
                     StageUtils.showPopup(
@@ -152,11 +273,7 @@ public class RentFilmController {
                         "payment", 
                         "Streamify - Payment Information", 
                         Modality.WINDOW_MODAL);
-                } else {
-                    Platform.runLater(() -> {
-                        GeneralUtils.showAlert(Alert.AlertType.ERROR, ERROR_TITLE, NO_INVENTORY_MESSAGE, "Please try again later.");
-                    });
-                }                
+                }, Platform::runLater);
             } else {
                 Platform.runLater(() -> {
                     GeneralUtils.showAlert(Alert.AlertType.ERROR, ERROR_TITLE, NO_INVENTORY_MESSAGE, "Please try again later.");
@@ -1,20 +1,98 @@
 package com.oap2024team7.team7mediastreamingapp.customcells;
 
+import java.util.List;
+
 import com.oap2024team7.team7mediastreamingapp.models.Actor;
+import com.oap2024team7.team7mediastreamingapp.services.ActorDirectory;
+import com.oap2024team7.team7mediastreamingapp.services.DataAccessExecutor;
+import com.oap2024team7.team7mediastreamingapp.utils.GeneralUtils;
+
+import javafx.application.Platform;
+import javafx.scene.control.Alert.AlertType;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.ListCell;
+import javafx.util.StringConverter;
 
 /**
  * Custom ListCell for displaying Actor objects in a ComboBox.
+ * enableSearch() turns the ComboBox into a search field that shows the best matching actors as the user types.
  * @author Agata (Agy) Olaussen (@agyCoding)
  */
 public class ActorComboBoxCell extends ListCell<Actor> {
+    // Number of actors shown in the drop-down while searching
+    private static final int SEARCH_LIMIT = 20;
+
     @Override
     protected void updateItem(Actor actor, boolean empty) {
         super.updateItem(actor, empty);
         if (empty || actor == null) {
             setText(null);
         } else {
-            setText(actor.getFirstName() + " " + actor.getLastName());
+            setText(displayName(actor));
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Makes the ComboBox editable and fills its drop-down with the actors from the ActorDirectory that match the typed text,
+     * instead of loading all actors into it. The directory is loaded in the background; until then the drop-down stays empty.
+     * @param comboBox The actor ComboBox of an admin screen
+     */
+    public static void enableSearch(ComboBox<Actor> comboBox) {
+        comboBox.setEditable(true);
+        comboBox.setCellFactory(lv -> new ActorComboBoxCell());
+        comboBox.setConverter(new StringConverter<Actor>() {
+            @Override
+            public String toString(Actor actor) {
+                return actor == null ? "" : displayName(actor);
+            }
+
+            // Typed text is committed as the shown actor with that name, or nothing
+            @Override
+            public Actor fromString(String text) {
+                for (Actor actor : comboBox.getItems()) {
+                    if (displayName(actor).equalsIgnoreCase(text.trim())) {
+                        return actor;
+                    }
+                }
+                return null;
+            }
+        });
+
+        comboBox.getEditor().textProperty().addListener((obs, oldText, newText) -> {
+            Actor selected = comboBox.getValue();
+            if (selected != null && displayName(selected).equals(newText)) {
+                return; // The text was set by choosing an actor
+            }
+            // Changing the items can reset the editor, so the text is put back after the update
+            Platform.runLater(() -> {
+                String typed = comboBox.getEditor().getText();
+                int caret = comboBox.getEditor().getCaretPosition();
+                List<Actor> matches = ActorDirectory.getInstance().search(typed, SEARCH_LIMIT);
+                comboBox.getItems().setAll(matches);
+                if (!typed.equals(comboBox.getEditor().getText())) {
+                    comboBox.getEditor().setText(typed);
+                    comboBox.getEditor().positionCaret(caret);
+                }
+                if (!matches.isEmpty() && comboBox.getEditor().isFocused()) {
+                    comboBox.show();
+                }
+            });
+        });
+
+        DataAccessExecutor.getInstance().submit(() -> ActorDirectory.getInstance().ensureLoaded())
+            .whenCompleteAsync((loaded, error) -> {
+                if (error != null) {
+                    error.printStackTrace();
+                }
+                if (error != null || !loaded) {
+                    GeneralUtils.showAlert(AlertType.ERROR, "Error", "Unable to load actors", "An error occurred while trying to load the actors");
+                    return;
+                }
+                comboBox.getItems().setAll(ActorDirectory.getInstance().search(comboBox.getEditor().getText(), SEARCH_LIMIT));
+            }, Platform::runLater);
+    }
+
+    private static String displayName(Actor actor) {
+        return actor.getFirstName() + " " + actor.getLastName();
+    }
+}
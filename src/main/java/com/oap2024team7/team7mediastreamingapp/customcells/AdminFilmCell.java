@@ -16,13 +16,14 @@ public class AdminFilmCell extends ListCell<Film> {
     private HBox hbox = new HBox();
     private CheckBox checkBox = new CheckBox();
     private Text filmItem = new Text();
+    private AvailabilityBadge badge = new AvailabilityBadge();
     private Film film;
-    @SuppressWarnings("unused")
     private AdminPageController controller;
     
     public AdminFilmCell(AdminPageController controller) {
         this.controller = controller;
-        hbox.getChildren().addAll(checkBox, filmItem);
+        hbox.getChildren().addAll(checkBox, filmItem, badge);
+        hbox.setSpacing(10);
 
         // Add listener to checkbox
         checkBox.setOnAction(event -> {
@@ -46,6 +47,7 @@ public class AdminFilmCell extends ListCell<Film> {
         } else {
             this.film = film;
             filmItem.setText(film.getTitle() + " (" + film.getReleaseYear() + ")");
+            badge.show(controller.getFilmAvailability(film.getFilmId()), true);
             setGraphic(hbox);
         }
     }
@@ -0,0 +1,44 @@
+package com.oap2024team7.team7mediastreamingapp.customcells;
+
+import com.oap2024team7.team7mediastreamingapp.models.FilmAvailability;
+
+import java.time.format.DateTimeFormatter;
+
+import javafx.scene.control.Label;
+
+/**
+ * Availability badge shown next to a film in the film lists (see CustomerFilmCell and AdminFilmCell).
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+public class AvailabilityBadge extends Label {
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("d MMM");
+
+    /**
+     * Shows the availability of a film, or nothing while it isn't known yet.
+     * @param availability
+     * @param showCopies true to show how many copies are free (for staff), false for a short text (for customers)
+     */
+    public void show(FilmAvailability availability, boolean showCopies) {
+        if (availability == null) {
+            setText(null);
+            setVisible(false);
+            return;
+        }
+        setVisible(true);
+        if (availability.getTotalCopies() == 0) {
+            setText("Not in stock");
+            setStyle("-fx-text-fill: gray;");
+        } else if (availability.isAvailableNow()) {
+            setText(showCopies
+                ? availability.getAvailableCopies() + "/" + availability.getTotalCopies() + " available"
+                : "Available now");
+            setStyle("-fx-text-fill: green;");
+        } else if (availability.getNextAvailableDate() != null) {
+            setText("Available from " + availability.getNextAvailableDate().format(DATE_FORMATTER));
+            setStyle("-fx-text-fill: red;");
+        } else {
+            setText("Rented out");
+            setStyle("-fx-text-fill: red;");
+        }
+    }
+}
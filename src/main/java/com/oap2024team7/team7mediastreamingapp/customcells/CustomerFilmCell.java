@@ -1,22 +1,48 @@
 package com.oap2024team7.team7mediastreamingapp.customcells;
 
 import com.oap2024team7.team7mediastreamingapp.models.Film;
+import com.oap2024team7.team7mediastreamingapp.models.FilmAvailability;
 
+import java.util.function.Function;
+
+import javafx.scene.control.ContentDisplay;
 import javafx.scene.control.ListCell;
 
 /**
- * Custom ListCell for displaying Film objects with title and release year only
+ * Custom ListCell for displaying Film objects with title and release year only,
+ * followed by an availability badge if the availability of the film is known
  * @author  Agata (Agy) Olaussen (@agyCoding)
  */
 public class CustomerFilmCell extends ListCell<Film> {
+    private final Function<Integer, FilmAvailability> availabilityLookup;
+    private final AvailabilityBadge badge = new AvailabilityBadge();
+
+    public CustomerFilmCell() {
+        this(null);
+    }
+
+    /**
+     * @param availabilityLookup Gives the availability of a film by film ID, or null if it isn't known yet
+     */
+    public CustomerFilmCell(Function<Integer, FilmAvailability> availabilityLookup) {
+        this.availabilityLookup = availabilityLookup;
+        setContentDisplay(ContentDisplay.RIGHT);
+        setGraphicTextGap(10);
+    }
+
     @Override
     protected void updateItem(Film film, boolean empty) {
         super.updateItem(film, empty);
         if (empty || film == null) {
             setText(null);
+            setGraphic(null);
         } else {
             // Display the title and release year in the ListView
             setText(film.getTitle() + " (" + film.getReleaseYear() + ")");
+            if (availabilityLookup != null) {
+                badge.show(availabilityLookup.apply(film.getFilmId()), false);
+                setGraphic(badge);
+            }
         }
     }
 }
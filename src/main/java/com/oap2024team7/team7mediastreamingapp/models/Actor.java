@@ -41,4 +41,21 @@ public class Actor {
     public void setLastName(String lastName) {
         this.lastName = lastName;
     }
+
+    // Actors are the same if they have the same ID, e.g. one from a film and one picked in the actor search
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Actor)) {
+            return false;
+        }
+        return actorId == ((Actor) other).actorId;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(actorId);
+    }
 }
@@ -0,0 +1,112 @@
+package com.oap2024team7.team7mediastreamingapp.models;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class for the AvailabilityTimeline object.
+ * Free/busy timeline of one film in one store over a period: consecutive segments with the number of copies
+ * that are free during each of them. Neighbouring segments always have different numbers of free copies.
+ * The counts are per moment; whether one copy stays free for a whole rental period is checked with
+ * InventoryManager.checkForAvailableInventory.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+
+public class AvailabilityTimeline {
+    private final int filmId;
+    private final int storeId;
+    private final int totalCopies;
+    private final List<Segment> segments;
+
+    public AvailabilityTimeline(int filmId, int storeId, int totalCopies, List<Segment> segments) {
+        this.filmId = filmId;
+        this.storeId = storeId;
+        this.totalCopies = totalCopies;
+        this.segments = Collections.unmodifiableList(segments);
+    }
+
+    public int getFilmId() {
+        return filmId;
+    }
+
+    public int getStoreId() {
+        return storeId;
+    }
+
+    public int getTotalCopies() {
+        return totalCopies;
+    }
+
+    // Segments in time order, covering the whole period
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    /**
+     * Gets the number of free copies at a moment of the period.
+     * @param moment
+     * @return Number of free copies, or 0 if the moment is outside the period
+     */
+    public int getFreeCopiesAt(LocalDateTime moment) {
+        for (Segment segment : segments) {
+            if (!moment.isBefore(segment.getStart()) && moment.isBefore(segment.getEnd())) {
+                return segment.getFreeCopies();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the first moment of the period when a copy is free.
+     * @return The start of the first segment with a free copy, or null if every copy is busy for the whole period
+     */
+    public LocalDateTime getFirstFreeMoment() {
+        for (Segment segment : segments) {
+            if (segment.getFreeCopies() > 0) {
+                return segment.getStart();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the first moment of the period when every copy is busy.
+     * @return The start of the first fully booked segment, or null if a copy is free at every moment
+     */
+    public LocalDateTime getFirstFullyBookedMoment() {
+        for (Segment segment : segments) {
+            if (segment.getFreeCopies() == 0) {
+                return segment.getStart();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Part of the period [start, end) during which the number of free copies doesn't change.
+     */
+    public static class Segment {
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final int freeCopies;
+
+        public Segment(LocalDateTime start, LocalDateTime end, int freeCopies) {
+            this.start = start;
+            this.end = end;
+            this.freeCopies = freeCopies;
+        }
+
+        public LocalDateTime getStart() {
+            return start;
+        }
+
+        public LocalDateTime getEnd() {
+            return end;
+        }
+
+        public int getFreeCopies() {
+            return freeCopies;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.oap2024team7.team7mediastreamingapp.models;
 
 import java.util.Set;
 import java.util.List;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Collections;
 
@@ -104,6 +105,24 @@ public class Film {
     public Film() {
     }
 
+    // Copy constructor, the special features and actors lists are copied so the copy can be changed on its own
+    public Film(Film other) {
+        this.filmId = other.filmId;
+        this.title = other.title;
+        this.description = other.description;
+        this.releaseYear = other.releaseYear;
+        this.language = other.language;
+        this.rentalDuration = other.rentalDuration;
+        this.length = other.length;
+        this.rating = other.rating;
+        this.specialFeatures = other.specialFeatures != null ? new HashSet<>(other.specialFeatures) : null;
+        this.rentalRate = other.rentalRate;
+        this.actors = other.actors != null ? new ArrayList<>(other.actors) : null;
+        this.isStreamable = other.isStreamable;
+        this.isRatable = other.isRatable;
+        this.isReviewable = other.isReviewable;
+    }
+
     public int getFilmId() {
         return filmId;
     }
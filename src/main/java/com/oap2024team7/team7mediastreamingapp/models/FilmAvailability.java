@@ -0,0 +1,51 @@
+package com.oap2024team7.team7mediastreamingapp.models;
+
+import java.time.LocalDateTime;
+
+/**
+ * Class for the FilmAvailability object.
+ * Availability of one film in one store at a moment: how many copies are free, and if none is,
+ * when the next one will be. Used for the availability badges of the film lists.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+
+public class FilmAvailability {
+    private final int filmId;
+    private final int storeId;
+    private final int availableCopies;
+    private final int totalCopies;
+    private final LocalDateTime nextAvailableDate;
+
+    public FilmAvailability(int filmId, int storeId, int availableCopies, int totalCopies, LocalDateTime nextAvailableDate) {
+        this.filmId = filmId;
+        this.storeId = storeId;
+        this.availableCopies = availableCopies;
+        this.totalCopies = totalCopies;
+        this.nextAvailableDate = nextAvailableDate;
+    }
+
+    public int getFilmId() {
+        return filmId;
+    }
+
+    public int getStoreId() {
+        return storeId;
+    }
+
+    public int getAvailableCopies() {
+        return availableCopies;
+    }
+
+    public int getTotalCopies() {
+        return totalCopies;
+    }
+
+    // The moment the first copy becomes free if none is free now, otherwise null (also if the store has no copies)
+    public LocalDateTime getNextAvailableDate() {
+        return nextAvailableDate;
+    }
+
+    public boolean isAvailableNow() {
+        return availableCopies > 0;
+    }
+}
@@ -0,0 +1,87 @@
+package com.oap2024team7.team7mediastreamingapp.models;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class for the FilmDetailsView object.
+ * Immutable view model with everything the Film Details screen shows for a film: the film itself,
+ * the reviews with their authors' profile names, the average score, the current profile's like/dislike
+ * and the customer's rental and availability status.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+
+public class FilmDetailsView {
+    private final Film film;
+    private final List<AuthoredReview> reviews;
+    private final double averageScore;
+    private final Review currentProfileReview;
+    private final boolean hasActiveRental;
+    private final int availableCopies;
+    private final LocalDateTime nextAvailableDate;
+
+    public FilmDetailsView(Film film, List<AuthoredReview> reviews, double averageScore, Review currentProfileReview, boolean hasActiveRental, int availableCopies, LocalDateTime nextAvailableDate) {
+        this.film = film;
+        this.reviews = Collections.unmodifiableList(reviews);
+        this.averageScore = averageScore;
+        this.currentProfileReview = currentProfileReview;
+        this.hasActiveRental = hasActiveRental;
+        this.availableCopies = availableCopies;
+        this.nextAvailableDate = nextAvailableDate;
+    }
+
+    public Film getFilm() {
+        return film;
+    }
+
+    // Written reviews only, likes/dislikes without text are left out
+    public List<AuthoredReview> getReviews() {
+        return reviews;
+    }
+
+    // Average score where a like counts as 5 and a dislike as 0, or 0.00 if there are no reviews
+    public double getAverageScore() {
+        return averageScore;
+    }
+
+    // The current profile's review of the film, or null if there is none
+    public Review getCurrentProfileReview() {
+        return currentProfileReview;
+    }
+
+    public boolean hasActiveRental() {
+        return hasActiveRental;
+    }
+
+    // Copies in the customer's store that are free for the next 24 hours
+    public int getAvailableCopies() {
+        return availableCopies;
+    }
+
+    // First moment a copy in the customer's store is actually free (AvailabilityEngine.getNextFreeInstant), or null if the store has no copies
+    public LocalDateTime getNextAvailableDate() {
+        return nextAvailableDate;
+    }
+
+    /**
+     * A review together with the name of the profile that wrote it.
+     */
+    public static class AuthoredReview {
+        private final Review review;
+        private final String profileName;
+
+        public AuthoredReview(Review review, String profileName) {
+            this.review = review;
+            this.profileName = profileName;
+        }
+
+        public Review getReview() {
+            return review;
+        }
+
+        public String getProfileName() {
+            return profileName;
+        }
+    }
+}
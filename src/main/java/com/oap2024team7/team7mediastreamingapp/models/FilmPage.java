@@ -0,0 +1,59 @@
+package com.oap2024team7.team7mediastreamingapp.models;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class for the FilmPage object.
+ * Represents one page of films in the film list, together with the cursor that points to the next page.
+ * Pages are fetched by seeking past the last (sort value, film ID) of the previous page instead of using OFFSET,
+ * so every page costs the same no matter how far the user has browsed.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+
+public class FilmPage {
+    private final List<Film> films;
+    private final Cursor nextCursor;
+    private final boolean hasNext;
+
+    public FilmPage(List<Film> films, Cursor nextCursor, boolean hasNext) {
+        this.films = Collections.unmodifiableList(films);
+        this.nextCursor = nextCursor;
+        this.hasNext = hasNext;
+    }
+
+    public List<Film> getFilms() {
+        return films;
+    }
+
+    // Cursor for fetching the page after this one, or null if this is the last page
+    public Cursor getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    /**
+     * Position in the sorted film list: the value of the sort column and the film ID of the last film on a page.
+     * The film ID breaks ties between films with the same title or release year.
+     */
+    public static class Cursor {
+        private final Object sortValue;
+        private final int filmId;
+
+        public Cursor(Object sortValue, int filmId) {
+            this.sortValue = sortValue;
+            this.filmId = filmId;
+        }
+
+        public Object getSortValue() {
+            return sortValue;
+        }
+
+        public int getFilmId() {
+            return filmId;
+        }
+    }
+}
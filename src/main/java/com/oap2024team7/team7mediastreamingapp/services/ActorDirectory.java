@@ -0,0 +1,235 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import com.oap2024team7.team7mediastreamingapp.models.Actor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Class for the Actor Directory.
+ * Keeps all actors in memory for the actor pickers of the admin screens, which search it as the user types.
+ * The actors are stored in parallel arrays sorted by "first last" name, with a second order by "last first" name,
+ * so a name prefix is found with two binary searches; names that only contain the text are found with one scan.
+ * A search returns at most the requested number of actors: first-name prefix matches, then last-name prefix matches,
+ * then the other matches, each in name order.
+ * The directory is loaded in the background by ensureLoaded() and updated in place when an actor is added through ActorManager.
+ * Searches run on the JavaFX Application Thread as the user types, so they only read the loaded actors and never wait for the database.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+public class ActorDirectory {
+    private static ActorDirectory instance;
+
+    private final Object lock = new Object();
+    private volatile Snapshot snapshot;
+
+    private ActorDirectory() {
+    }
+
+    public static synchronized ActorDirectory getInstance() {
+        if (instance == null) {
+            instance = new ActorDirectory();
+        }
+        return instance;
+    }
+
+    /**
+     * Loads the actors if they haven't been loaded yet. Called in the background when an admin screen opens,
+     * so the first search doesn't wait for the database.
+     * @return true if the directory is loaded
+     */
+    public boolean ensureLoaded() {
+        return getSnapshot() != null;
+    }
+
+    /**
+     * Searches the actors whose first name, last name or full name starts with or contains the text (case-insensitive).
+     * @param text What the user typed so far; empty for the first actors in name order
+     * @param limit Maximum number of actors returned
+     * @return List of actors, best matches first; empty if the actors haven't been loaded (yet)
+     */
+    public List<Actor> search(String text, int limit) {
+        List<Actor> results = new ArrayList<>();
+        Snapshot current = snapshot;
+        if (current == null || limit <= 0) {
+            return results;
+        }
+        String query = normalize(text);
+        int size = current.ids.length;
+        BitSet added = new BitSet(size);
+
+        // 1. "first last" starts with the text
+        int from = current.lowerBound(current.nameKeys, null, query);
+        for (int i = from; i < size && results.size() < limit && current.nameKeys[i].startsWith(query); i++) {
+            added.set(i);
+            results.add(current.actorAt(i));
+        }
+        // 2. "last first" starts with the text
+        from = current.lowerBound(current.lastNameKeys, current.lastNameOrder, query);
+        for (int j = from; j < size && results.size() < limit; j++) {
+            int i = current.lastNameOrder[j];
+            if (!current.lastNameKeys[i].startsWith(query)) {
+                break;
+            }
+            if (!added.get(i)) {
+                added.set(i);
+                results.add(current.actorAt(i));
+            }
+        }
+        // 3. The text is somewhere else in the name
+        for (int i = 0; i < size && results.size() < limit; i++) {
+            if (!added.get(i) && current.nameKeys[i].contains(query)) {
+                results.add(current.actorAt(i));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Adds a new actor without reloading the directory. Does nothing if the directory hasn't been loaded yet,
+     * the actor is then part of the first load.
+     * @param actor Actor that was just added to the database
+     */
+    public void add(Actor actor) {
+        synchronized (lock) {
+            Snapshot current = snapshot;
+            if (current != null) {
+                snapshot = current.with(actor);
+            }
+        }
+    }
+
+    /**
+     * Drops the loaded actors, so the next ensureLoaded() loads them again, e.g. after actors were changed outside the app.
+     */
+    public void invalidate() {
+        synchronized (lock) {
+            snapshot = null;
+        }
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (lock) {
+            if (snapshot == null) {
+                List<Actor> actors = ActorManager.getInstance().getAllActors();
+                if (actors == null || actors.isEmpty()) {
+                    // Nothing to search, or the load failed; try again on the next ensureLoaded()
+                    return null;
+                }
+                snapshot = Snapshot.of(actors);
+            }
+            return snapshot;
+        }
+    }
+
+    // Lower case with single spaces, as the names are compared
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The actors as parallel arrays sorted by "first last" name. Never changed once published.
+     */
+    private static class Snapshot {
+        private final int[] ids;
+        private final String[] firstNames;
+        private final String[] lastNames;
+        // Normalized "first last" names, sorted
+        private final String[] nameKeys;
+        // Normalized "last first" names (in the same slots as the other arrays) and the slots in that order
+        private final String[] lastNameKeys;
+        private final int[] lastNameOrder;
+
+        private Snapshot(int[] ids, String[] firstNames, String[] lastNames) {
+            this.ids = ids;
+            this.firstNames = firstNames;
+            this.lastNames = lastNames;
+            int size = ids.length;
+            nameKeys = new String[size];
+            lastNameKeys = new String[size];
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                nameKeys[i] = normalize(firstNames[i] + " " + lastNames[i]);
+                lastNameKeys[i] = normalize(lastNames[i] + " " + firstNames[i]);
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparing((Integer slot) -> lastNameKeys[slot]));
+            lastNameOrder = new int[size];
+            for (int i = 0; i < size; i++) {
+                lastNameOrder[i] = order[i];
+            }
+        }
+
+        private static Snapshot of(List<Actor> actors) {
+            List<Actor> sorted = new ArrayList<>(actors);
+            sorted.sort(Comparator.comparing((Actor actor) -> normalize(actor.getFirstName() + " " + actor.getLastName()))
+                .thenComparingInt(Actor::getActorId));
+            int size = sorted.size();
+            int[] ids = new int[size];
+            String[] firstNames = new String[size];
+            String[] lastNames = new String[size];
+            for (int i = 0; i < size; i++) {
+                Actor actor = sorted.get(i);
+                ids[i] = actor.getActorId();
+                firstNames[i] = actor.getFirstName();
+                lastNames[i] = actor.getLastName();
+            }
+            return new Snapshot(ids, firstNames, lastNames);
+        }
+
+        /**
+         * Copy with one more actor, inserted at its place in name order.
+         */
+        private Snapshot with(Actor actor) {
+            String key = normalize(actor.getFirstName() + " " + actor.getLastName());
+            int slot = lowerBound(nameKeys, null, key);
+            int size = ids.length;
+            int[] newIds = new int[size + 1];
+            String[] newFirstNames = new String[size + 1];
+            String[] newLastNames = new String[size + 1];
+            System.arraycopy(ids, 0, newIds, 0, slot);
+            System.arraycopy(firstNames, 0, newFirstNames, 0, slot);
+            System.arraycopy(lastNames, 0, newLastNames, 0, slot);
+            newIds[slot] = actor.getActorId();
+            newFirstNames[slot] = actor.getFirstName();
+            newLastNames[slot] = actor.getLastName();
+            System.arraycopy(ids, slot, newIds, slot + 1, size - slot);
+            System.arraycopy(firstNames, slot, newFirstNames, slot + 1, size - slot);
+            System.arraycopy(lastNames, slot, newLastNames, slot + 1, size - slot);
+            return new Snapshot(newIds, newFirstNames, newLastNames);
+        }
+
+        /**
+         * Binary search for the first position whose key is not smaller than the text.
+         * @param keys Keys by slot
+         * @param order Slots in key order, or null if the slots themselves are in key order
+         * @param text
+         * @return Position in the order
+         */
+        private int lowerBound(String[] keys, int[] order, String text) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                String key = keys[order == null ? mid : order[mid]];
+                if (key.compareTo(text) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private Actor actorAt(int slot) {
+            return new Actor(ids[slot], firstNames[slot], lastNames[slot]);
+        }
+    }
+}
@@ -8,7 +8,14 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Class for the Actor Manager.
@@ -19,6 +26,9 @@ import java.util.List;
 public class ActorManager {
     // Singleton instance
     private static ActorManager instance;
+    private static final BatchWriter filmActorWriter = new BatchWriter("film_actor", "film_id", "actor_id");
+    // Same chunk size as the batched inserts, well below the placeholder limits of MySQL and H2
+    private static final int FILM_IDS_PER_QUERY = BatchWriter.DEFAULT_CHUNK_SIZE;
 
     // Private constructor to prevent instantiation
     private ActorManager() {
@@ -37,23 +47,55 @@ public class ActorManager {
      * @return List of all actors sorted by first name and then last name
      */
     public List<Actor> getAllActors() {
-        List<Actor> actors = new ArrayList<>();
         String query = "SELECT actor_id, first_name, last_name FROM actor ORDER BY first_name, last_name";
+        try {
+            return ResiliencePolicy.getInstance().read("allActors", () -> {
+                List<Actor> actors = new ArrayList<>();
+                try (Connection conn = DatabaseManager.getReadConnection();
+                     PreparedStatement stmt = conn.prepareStatement(query);
+                     ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Actor actor = new Actor(
+                            rs.getInt("actor_id"),
+                            rs.getString("first_name"),
+                            rs.getString("last_name")
+                        );
+                        actors.add(actor);
+                    }
+                }
+                return actors;
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Adds a new actor to the database and to the ActorDirectory.
+     * @param firstName
+     * @param lastName
+     * @return The new Actor object, or null if the actor could not be added
+     */
+    public Actor addActor(String firstName, String lastName) {
+        String insertQuery = "INSERT INTO actor (first_name, last_name) VALUES (?, ?)";
         try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(query);
-             ResultSet rs = stmt.executeQuery()) {
-            while (rs.next()) {
-                Actor actor = new Actor(
-                    rs.getInt("actor_id"),
-                    rs.getString("first_name"),
-                    rs.getString("last_name")
-                );
-                actors.add(actor);
+             PreparedStatement stmt = conn.prepareStatement(insertQuery, PreparedStatement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, firstName);
+            stmt.setString(2, lastName);
+            stmt.executeUpdate();
+            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                if (!generatedKeys.next()) {
+                    throw new SQLException("Creating actor failed, no ID obtained.");
+                }
+                Actor actor = new Actor(generatedKeys.getInt(1), firstName, lastName);
+                ActorDirectory.getInstance().add(actor);
+                return actor;
             }
         } catch (SQLException e) {
             e.printStackTrace();
+            return null;
         }
-        return actors;
     }
 
     /**
@@ -85,37 +127,126 @@ public class ActorManager {
         return actors;
     }
     
+    /**
+     * Get the actors for a list of films in one query.
+     * Used when a whole page of films is loaded, instead of calling getActorsForFilm once per film.
+     * Long lists, e.g. when the film catalog loads all films, are split into queries of FILM_IDS_PER_QUERY films,
+     * so the number of placeholders stays below the limit of the driver.
+     * @param conn The connection to run the query on
+     * @param filmIds The IDs of the films
+     * @return Map from film ID to the actors of that film (films without actors map to an empty list)
+     * @throws SQLException
+     */
+    public Map<Integer, List<Actor>> getActorsForFilms(Connection conn, Collection<Integer> filmIds) throws SQLException {
+        Map<Integer, List<Actor>> actorsByFilm = new HashMap<>();
+        for (Integer filmId : filmIds) {
+            actorsByFilm.put(filmId, new ArrayList<>());
+        }
+
+        List<Integer> ids = new ArrayList<>(actorsByFilm.keySet());
+        for (int from = 0; from < ids.size(); from += FILM_IDS_PER_QUERY) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + FILM_IDS_PER_QUERY, ids.size()));
+            StringBuilder query = new StringBuilder("SELECT fa.film_id, a.actor_id, a.first_name, a.last_name " +
+                           "FROM film_actor fa " +
+                           "JOIN actor a ON a.actor_id = fa.actor_id " +
+                           "WHERE fa.film_id IN (");
+            for (int i = 0; i < chunk.size(); i++) {
+                query.append(i == 0 ? "?" : ", ?");
+            }
+            query.append(")");
+
+            try (PreparedStatement stmt = conn.prepareStatement(query.toString())) {
+                int paramIndex = 1;
+                for (Integer filmId : chunk) {
+                    stmt.setInt(paramIndex++, filmId);
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Actor actor = new Actor(
+                            rs.getInt("actor_id"),
+                            rs.getString("first_name"),
+                            rs.getString("last_name")
+                        );
+                        actorsByFilm.get(rs.getInt("film_id")).add(actor);
+                    }
+                }
+            }
+        }
+        return actorsByFilm;
+    }
+    
     /**
      * Set actors for a specific film.
+     * Only the difference to the current assignment is written: one DELETE for the actors that were removed
+     * and one multi-row INSERT for the ones that were added. Unchanged rows are left alone.
+     * The change is published as a FilmChangeEvent once it is committed.
      * @param actors List of actors to be set for the film
      * @param filmId The ID of the film
      * @return boolean indicating success or failure
      */
     public boolean setActorsForFilm(List<Actor> actors, int filmId) {
-        String deleteQuery = "DELETE FROM film_actor WHERE film_id = ?";
-        String insertQuery = "INSERT INTO film_actor (film_id, actor_id) VALUES (?, ?)";
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement deleteStmt = conn.prepareStatement(deleteQuery);
-             PreparedStatement insertStmt = conn.prepareStatement(insertQuery)) {
-            
+        // Lock the film's rows, so two admins saving the same film don't compute their changes from the same state
+        String selectQuery = "SELECT actor_id FROM film_actor WHERE film_id = ? FOR UPDATE";
+        try (Connection conn = DatabaseManager.getConnection()) {
             // Start transaction
             conn.setAutoCommit(false);
-            
-            // Delete existing actors for the film
-            deleteStmt.setInt(1, filmId);
-            deleteStmt.executeUpdate();
-            
-            // Insert new actors for the film
-            for (Actor actor : actors) {
-                insertStmt.setInt(1, filmId);
-                insertStmt.setInt(2, actor.getActorId());
-                insertStmt.addBatch();
+            try {
+                Set<Integer> currentIds = new HashSet<>();
+                try (PreparedStatement selectStmt = conn.prepareStatement(selectQuery)) {
+                    selectStmt.setInt(1, filmId);
+                    try (ResultSet rs = selectStmt.executeQuery()) {
+                        while (rs.next()) {
+                            currentIds.add(rs.getInt("actor_id"));
+                        }
+                    }
+                }
+
+                // The actors to keep, without duplicates, in the order they were given
+                Map<Integer, Actor> wanted = new LinkedHashMap<>();
+                for (Actor actor : actors) {
+                    wanted.put(actor.getActorId(), actor);
+                }
+                List<Actor> added = new ArrayList<>();
+                for (Actor actor : wanted.values()) {
+                    if (!currentIds.contains(actor.getActorId())) {
+                        added.add(actor);
+                    }
+                }
+                List<Integer> removedIds = new ArrayList<>();
+                for (Integer actorId : currentIds) {
+                    if (!wanted.containsKey(actorId)) {
+                        removedIds.add(actorId);
+                    }
+                }
+                Collections.sort(removedIds);
+
+                if (!removedIds.isEmpty()) {
+                    StringBuilder deleteQuery = new StringBuilder("DELETE FROM film_actor WHERE film_id = ? AND actor_id IN (");
+                    for (int i = 0; i < removedIds.size(); i++) {
+                        deleteQuery.append(i == 0 ? "?" : ", ?");
+                    }
+                    deleteQuery.append(")");
+                    try (PreparedStatement deleteStmt = conn.prepareStatement(deleteQuery.toString())) {
+                        int paramIndex = 1;
+                        deleteStmt.setInt(paramIndex++, filmId);
+                        for (Integer actorId : removedIds) {
+                            deleteStmt.setInt(paramIndex++, actorId);
+                        }
+                        deleteStmt.executeUpdate();
+                    }
+                }
+                if (!added.isEmpty()) {
+                    filmActorWriter.insert(conn, added, actor -> new Object[] { filmId, actor.getActorId() }, false);
+                }
+
+                // Commit transaction
+                conn.commit();
+                FilmChangeNotifier.getInstance().publish(new FilmChangeEvent(filmId, added, removedIds));
+                return true;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
             }
-            insertStmt.executeBatch();
-            
-            // Commit transaction
-            conn.commit();
-            return true;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
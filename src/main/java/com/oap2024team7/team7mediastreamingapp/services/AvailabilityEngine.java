@@ -0,0 +1,524 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import com.oap2024team7.team7mediastreamingapp.models.AvailabilityTimeline;
+import com.oap2024team7.team7mediastreamingapp.models.FilmAvailability;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class for the Availability Engine.
+ * Answers "which copies of a film are free in a store during [start, end)" and "when is the next copy free"
+ * from memory, instead of joining inventory against rental for every check.
+ * For every (film, store) pair it keeps the inventory copies, and for every copy its booked rental windows
+ * in an IntervalTree, so a check costs one tree lookup per copy. Free/busy timelines over a period are built
+ * with one sweep over the booked windows (see getTimelines()).
+ * A pair is loaded from the database on first use. Rentals added or removed through RentalManager update the trees
+ * once they are committed; inventory changes drop the pair, so it is loaded again.
+ * Rentals made by other instances of the app are only seen after a pair expires, which happens after PAIR_TTL_SECONDS.
+ * Rentals without a return date are ignored, as they were by the SQL checks.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+public class AvailabilityEngine {
+    private static final long PAIR_TTL_SECONDS = 30;
+    private static final long PAIR_TTL_NANOS = TimeUnit.SECONDS.toNanos(PAIR_TTL_SECONDS);
+
+    private static AvailabilityEngine instance;
+
+    // All maps are guarded by lock
+    private final Object lock = new Object();
+    private final Map<Long, Pair> pairs = new HashMap<>();
+    private final Map<Integer, Pair> pairsByInventoryId = new HashMap<>();
+    private final Map<Integer, Booking> bookingsByRentalId = new HashMap<>();
+    // Counts the changes applied, so a pair loaded while a change was committed is known to be stale
+    private long generation;
+
+    private AvailabilityEngine() {
+    }
+
+    public static synchronized AvailabilityEngine getInstance() {
+        if (instance == null) {
+            instance = new AvailabilityEngine();
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the copies of a film in a store that have no rental overlapping [start, end).
+     * If end isn't after start, the copies that are free at the instant start are returned.
+     * @param filmId
+     * @param storeId
+     * @param start
+     * @param end
+     * @return Inventory IDs of the free copies, in ascending order
+     * @throws SQLException if the pair had to be loaded and that failed
+     */
+    public List<Integer> getFreeCopies(int filmId, int storeId, LocalDateTime start, LocalDateTime end) throws SQLException {
+        long from = toMillis(start);
+        long to = Math.max(toMillis(end), from + 1);
+        Pair pair = getPair(filmId, storeId);
+        List<Integer> freeCopies = new ArrayList<>();
+        synchronized (lock) {
+            for (Map.Entry<Integer, IntervalTree> copy : pair.copies.entrySet()) {
+                if (!copy.getValue().overlaps(from, to)) {
+                    freeCopies.add(copy.getKey());
+                }
+            }
+        }
+        return freeCopies;
+    }
+
+    /**
+     * Counts the copies of a film in a store that are free during [start, end).
+     * @see #getFreeCopies(int, int, LocalDateTime, LocalDateTime)
+     */
+    public int countFreeCopies(int filmId, int storeId, LocalDateTime start, LocalDateTime end) throws SQLException {
+        return getFreeCopies(filmId, storeId, start, end).size();
+    }
+
+    /**
+     * Gets the first instant at or after the given one when at least one copy of the film is free in the store.
+     * @param filmId
+     * @param storeId
+     * @param from
+     * @return The next free instant (from itself if a copy is free right then), or null if the store has no copies
+     * @throws SQLException if the pair had to be loaded and that failed
+     */
+    public LocalDateTime getNextFreeInstant(int filmId, int storeId, LocalDateTime from) throws SQLException {
+        long fromMillis = toMillis(from);
+        Pair pair = getPair(filmId, storeId);
+        long earliest = Long.MAX_VALUE;
+        synchronized (lock) {
+            for (IntervalTree windows : pair.copies.values()) {
+                earliest = Math.min(earliest, windows.firstFreeFrom(fromMillis));
+                if (earliest == fromMillis) {
+                    break;
+                }
+            }
+        }
+        if (earliest == Long.MAX_VALUE) {
+            return null;
+        }
+        return earliest == fromMillis ? from : new Timestamp(earliest).toLocalDateTime();
+    }
+
+    /**
+     * Gets the availability of some films in one store at a moment: the free copies and, for films without one,
+     * the next free instant. The missing pairs are loaded together, and all films are answered under one lock.
+     * @param filmIds
+     * @param storeId
+     * @param at
+     * @return Availability by film ID, one for every requested film
+     * @throws SQLException if pairs had to be loaded and that failed
+     */
+    public Map<Integer, FilmAvailability> getAvailability(Collection<Integer> filmIds, int storeId, LocalDateTime at) throws SQLException {
+        long atMillis = toMillis(at);
+        Map<Integer, Pair> loaded = getPairs(filmIds, storeId);
+        Map<Integer, FilmAvailability> availability = new HashMap<>();
+        synchronized (lock) {
+            for (Pair pair : loaded.values()) {
+                int freeCopies = 0;
+                long nextFree = Long.MAX_VALUE;
+                for (IntervalTree windows : pair.copies.values()) {
+                    long copyFree = windows.firstFreeFrom(atMillis);
+                    if (copyFree == atMillis) {
+                        freeCopies++;
+                    }
+                    nextFree = Math.min(nextFree, copyFree);
+                }
+                LocalDateTime nextAvailable = freeCopies == 0 && nextFree != Long.MAX_VALUE
+                    ? new Timestamp(nextFree).toLocalDateTime()
+                    : null;
+                availability.put(pair.filmId, new FilmAvailability(pair.filmId, storeId, freeCopies, pair.copies.size(), nextAvailable));
+            }
+        }
+        return availability;
+    }
+
+    /**
+     * Computes the free/busy timelines of some films in one store over [from, to).
+     * The missing pairs are loaded together, and each timeline is one sweep over the booked windows of the film's copies.
+     * @param filmIds
+     * @param storeId
+     * @param from
+     * @param to
+     * @return Timelines by film ID, one for every requested film
+     * @throws SQLException if pairs had to be loaded and that failed
+     */
+    public Map<Integer, AvailabilityTimeline> getTimelines(Collection<Integer> filmIds, int storeId, LocalDateTime from, LocalDateTime to) throws SQLException {
+        Map<Integer, Pair> loaded = getPairs(filmIds, storeId);
+        Map<Integer, AvailabilityTimeline> timelines = new HashMap<>();
+        synchronized (lock) {
+            for (Pair pair : loaded.values()) {
+                timelines.put(pair.filmId, sweep(pair, storeId, from, to));
+            }
+        }
+        return timelines;
+    }
+
+    /**
+     * Books a rental window on its copy once the rental is committed. Copies that aren't loaded are skipped,
+     * they see the rental when they are loaded.
+     * @param rentalId
+     * @param inventoryId
+     * @param start
+     * @param end Return date of the rental, or null if it has none
+     */
+    void rentalAdded(int rentalId, int inventoryId, LocalDateTime start, LocalDateTime end) {
+        if (end == null) {
+            return;
+        }
+        Booking booking = new Booking(inventoryId, toMillis(start), toMillis(end));
+        TransactionManager.afterCommit(() -> {
+            synchronized (lock) {
+                generation++;
+                Pair pair = pairsByInventoryId.get(inventoryId);
+                if (pair == null) {
+                    return;
+                }
+                IntervalTree windows = pair.copies.get(inventoryId);
+                windows.insert(booking.start, booking.end, rentalId);
+                bookingsByRentalId.put(rentalId, booking);
+            }
+        });
+    }
+
+    /**
+     * Frees the window of a rental once its removal is committed.
+     * @param rentalId
+     */
+    void rentalRemoved(int rentalId) {
+        TransactionManager.afterCommit(() -> {
+            synchronized (lock) {
+                generation++;
+                Booking booking = bookingsByRentalId.remove(rentalId);
+                if (booking == null) {
+                    return;
+                }
+                Pair pair = pairsByInventoryId.get(booking.inventoryId);
+                if (pair != null) {
+                    pair.copies.get(booking.inventoryId).remove(booking.start, booking.end, rentalId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Frees all windows of a copy once the removal of its rentals is committed.
+     * @param inventoryId
+     */
+    void rentalsRemovedForCopy(int inventoryId) {
+        TransactionManager.afterCommit(() -> {
+            synchronized (lock) {
+                generation++;
+                Pair pair = pairsByInventoryId.get(inventoryId);
+                if (pair != null) {
+                    pair.copies.put(inventoryId, new IntervalTree());
+                }
+                bookingsByRentalId.values().removeIf(booking -> booking.inventoryId == inventoryId);
+            }
+        });
+    }
+
+    /**
+     * Drops all pairs of a film once the change is committed, e.g. after copies were added or deleted,
+     * so they are loaded again on the next check.
+     * @param filmId
+     */
+    void inventoryChanged(int filmId) {
+        TransactionManager.afterCommit(() -> {
+            synchronized (lock) {
+                generation++;
+                Iterator<Pair> iterator = pairs.values().iterator();
+                while (iterator.hasNext()) {
+                    Pair pair = iterator.next();
+                    if (pair.filmId == filmId) {
+                        iterator.remove();
+                        forget(pair);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Drops everything, so every pair is loaded again on its next check.
+     */
+    public void invalidate() {
+        synchronized (lock) {
+            generation++;
+            pairs.clear();
+            pairsByInventoryId.clear();
+            bookingsByRentalId.clear();
+        }
+    }
+
+    /**
+     * Builds the timeline of a pair. Called with the lock held.
+     * The windows of every copy are clipped to the period and merged, so each copy is counted busy at most once;
+     * then the start and end times of all busy runs are sorted and walked once, emitting a segment whenever
+     * the number of busy copies changes.
+     */
+    private static AvailabilityTimeline sweep(Pair pair, int storeId, LocalDateTime from, LocalDateTime to) {
+        long fromMillis = toMillis(from);
+        long toMillis = toMillis(to);
+        List<long[]> runs = new ArrayList<>();
+        List<IntervalTree.Node> windows = new ArrayList<>();
+        for (IntervalTree copyWindows : pair.copies.values()) {
+            windows.clear();
+            copyWindows.collectOverlapping(fromMillis, toMillis, windows);
+            long[] run = null;
+            for (IntervalTree.Node window : windows) {
+                long start = Math.max(window.getStart(), fromMillis);
+                long end = Math.min(window.getEnd(), toMillis);
+                if (run != null && start <= run[1]) {
+                    run[1] = Math.max(run[1], end);
+                } else {
+                    run = new long[] { start, end };
+                    runs.add(run);
+                }
+            }
+        }
+
+        long[] busyFrom = new long[runs.size()];
+        long[] busyUntil = new long[runs.size()];
+        for (int i = 0; i < runs.size(); i++) {
+            busyFrom[i] = runs.get(i)[0];
+            busyUntil[i] = runs.get(i)[1];
+        }
+        Arrays.sort(busyFrom);
+        Arrays.sort(busyUntil);
+
+        int totalCopies = pair.copies.size();
+        List<AvailabilityTimeline.Segment> segments = new ArrayList<>();
+        long segmentStart = fromMillis;
+        int busy = 0;
+        int i = 0;
+        int j = 0;
+        while (i < busyFrom.length || j < busyUntil.length) {
+            long time = i < busyFrom.length ? Math.min(busyFrom[i], busyUntil[j]) : busyUntil[j];
+            if (time > segmentStart) {
+                addSegment(segments, segmentStart, time, totalCopies - busy, fromMillis, from, toMillis, to);
+                segmentStart = time;
+            }
+            while (i < busyFrom.length && busyFrom[i] == time) {
+                busy++;
+                i++;
+            }
+            while (j < busyUntil.length && busyUntil[j] == time) {
+                busy--;
+                j++;
+            }
+        }
+        if (segmentStart < toMillis) {
+            addSegment(segments, segmentStart, toMillis, totalCopies - busy, fromMillis, from, toMillis, to);
+        }
+        return new AvailabilityTimeline(pair.filmId, storeId, totalCopies, segments);
+    }
+
+    // Adds a segment, or extends the previous one if it has the same number of free copies
+    private static void addSegment(List<AvailabilityTimeline.Segment> segments, long start, long end, int freeCopies,
+                                   long fromMillis, LocalDateTime from, long toMillis, LocalDateTime to) {
+        LocalDateTime segmentStart = start == fromMillis ? from : new Timestamp(start).toLocalDateTime();
+        LocalDateTime segmentEnd = end == toMillis ? to : new Timestamp(end).toLocalDateTime();
+        if (!segments.isEmpty()) {
+            AvailabilityTimeline.Segment previous = segments.get(segments.size() - 1);
+            if (previous.getFreeCopies() == freeCopies) {
+                segments.set(segments.size() - 1, new AvailabilityTimeline.Segment(previous.getStart(), segmentEnd, freeCopies));
+                return;
+            }
+        }
+        segments.add(new AvailabilityTimeline.Segment(segmentStart, segmentEnd, freeCopies));
+    }
+
+    private Pair getPair(int filmId, int storeId) throws SQLException {
+        return getPairs(Collections.singletonList(filmId), storeId).get(filmId);
+    }
+
+    /**
+     * Gets the loaded pairs of some films in one store. The missing or expired ones are loaded together
+     * (outside the lock), with one query for the copies and one for the rentals.
+     * @return Pairs by film ID, one for every requested film
+     */
+    private Map<Integer, Pair> getPairs(Collection<Integer> filmIds, int storeId) throws SQLException {
+        Map<Integer, Pair> result = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        long loadedGeneration;
+        synchronized (lock) {
+            long now = System.nanoTime();
+            for (Integer filmId : filmIds) {
+                Pair pair = pairs.get(key(filmId, storeId));
+                if (pair != null && now - pair.loadedAt < PAIR_TTL_NANOS) {
+                    result.put(filmId, pair);
+                } else if (!result.containsKey(filmId) && !missing.contains(filmId)) {
+                    missing.add(filmId);
+                }
+            }
+            if (missing.isEmpty()) {
+                return result;
+            }
+            loadedGeneration = generation;
+        }
+
+        Map<Integer, Pair> loaded = ResiliencePolicy.getInstance().read(null, () -> {
+            try (Connection conn = DatabaseManager.getConnection()) {
+                return load(conn, missing, storeId);
+            }
+        });
+
+        synchronized (lock) {
+            boolean stale = generation != loadedGeneration;
+            for (Pair pair : loaded.values()) {
+                Pair previous = pairs.put(key(pair.filmId, storeId), pair);
+                if (previous != null) {
+                    forget(previous);
+                }
+                for (Integer inventoryId : pair.copies.keySet()) {
+                    pairsByInventoryId.put(inventoryId, pair);
+                }
+                bookingsByRentalId.putAll(pair.bookings);
+                pair.bookings.clear();
+                if (stale) {
+                    // A rental change was committed while loading and may be missing; this check uses the pair,
+                    // the next one loads it again
+                    pair.loadedAt = System.nanoTime() - PAIR_TTL_NANOS;
+                }
+                result.put(pair.filmId, pair);
+            }
+        }
+        return result;
+    }
+
+    private static long key(int filmId, int storeId) {
+        return ((long) filmId << 32) | (storeId & 0xffffffffL);
+    }
+
+    // Removes the index entries of a pair that is no longer in use. Called with the lock held.
+    private void forget(Pair pair) {
+        for (Integer inventoryId : pair.copies.keySet()) {
+            if (pairsByInventoryId.get(inventoryId) == pair) {
+                pairsByInventoryId.remove(inventoryId);
+            }
+        }
+        bookingsByRentalId.values().removeIf(booking -> pair.copies.containsKey(booking.inventoryId));
+    }
+
+    /**
+     * Loads the copies of some films in one store and the rentals that haven't ended yet.
+     * @return Pairs by film ID, one for every requested film (without copies if the store has none)
+     */
+    private static Map<Integer, Pair> load(Connection conn, List<Integer> filmIds, int storeId) throws SQLException {
+        Map<Integer, Pair> loaded = new HashMap<>();
+        for (Integer filmId : filmIds) {
+            loaded.put(filmId, new Pair(filmId));
+        }
+        String filmIn = "i.film_id IN (" + placeholders(filmIds.size()) + ")";
+
+        Map<Integer, Pair> pairByInventoryId = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT i.inventory_id, i.film_id FROM inventory i WHERE " + filmIn + " AND i.store_id = ?")) {
+            int paramIndex = setIds(stmt, filmIds);
+            stmt.setInt(paramIndex, storeId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Pair pair = loaded.get(rs.getInt("film_id"));
+                    int inventoryId = rs.getInt("inventory_id");
+                    pair.copies.put(inventoryId, new IntervalTree());
+                    pairByInventoryId.put(inventoryId, pair);
+                }
+            }
+        }
+
+        // Windows that already ended can't affect checks from now on
+        String rentalQuery = "SELECT r.rental_id, r.inventory_id, r.rental_date, r.return_date " +
+                             "FROM rental r " +
+                             "JOIN inventory i ON r.inventory_id = i.inventory_id " +
+                             "WHERE " + filmIn + " AND i.store_id = ? " +
+                             "AND r.return_date IS NOT NULL AND r.return_date > ?";
+        try (PreparedStatement stmt = conn.prepareStatement(rentalQuery)) {
+            int paramIndex = setIds(stmt, filmIds);
+            stmt.setInt(paramIndex++, storeId);
+            stmt.setTimestamp(paramIndex, new Timestamp(System.currentTimeMillis()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int rentalId = rs.getInt("rental_id");
+                    int inventoryId = rs.getInt("inventory_id");
+                    Pair pair = pairByInventoryId.get(inventoryId);
+                    Booking booking = new Booking(inventoryId, rs.getTimestamp("rental_date").getTime(), rs.getTimestamp("return_date").getTime());
+                    pair.copies.get(inventoryId).insert(booking.start, booking.end, rentalId);
+                    pair.bookings.put(rentalId, booking);
+                }
+            }
+        }
+        long loadedAt = System.nanoTime();
+        for (Pair pair : loaded.values()) {
+            pair.loadedAt = loadedAt;
+        }
+        return loaded;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        return placeholders.toString();
+    }
+
+    // Binds the IDs from the first parameter on and returns the index of the next parameter
+    private static int setIds(PreparedStatement stmt, Collection<Integer> ids) throws SQLException {
+        int paramIndex = 1;
+        for (Integer id : ids) {
+            stmt.setInt(paramIndex++, id);
+        }
+        return paramIndex;
+    }
+
+    // Same conversion as Timestamp.valueOf(), so the times match the ones written through JDBC
+    private static long toMillis(LocalDateTime dateTime) {
+        return Timestamp.valueOf(dateTime).getTime();
+    }
+
+    /**
+     * The copies of a film in a store and the booked windows of each copy, by inventory ID.
+     */
+    private static class Pair {
+        private final int filmId;
+        private final Map<Integer, IntervalTree> copies = new TreeMap<>();
+        // Bookings read by load(), handed over to bookingsByRentalId when the pair is installed
+        private final Map<Integer, Booking> bookings = new HashMap<>();
+        private long loadedAt;
+
+        private Pair(int filmId) {
+            this.filmId = filmId;
+        }
+    }
+
+    /**
+     * A rental window on a copy, kept so the window can be found again when the rental is removed.
+     */
+    private static class Booking {
+        private final int inventoryId;
+        private final long start;
+        private final long end;
+
+        private Booking(int inventoryId, long start, long end) {
+            this.inventoryId = inventoryId;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
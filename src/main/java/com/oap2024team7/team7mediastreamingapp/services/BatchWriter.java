@@ -0,0 +1,176 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class for the Batch Writer.
+ * Inserts many rows into one table with multi-row INSERT statements ("INSERT INTO t (a, b) VALUES (?, ?), (?, ?), ..."),
+ * so a bulk insert costs one round trip per chunk of rows instead of one per row.
+ * The generated keys of all rows in a chunk are read back at once, and the time taken by every chunk is recorded.
+ * Full chunks always use the same SQL string, so their statement is prepared only once per connection.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+
+public class BatchWriter {
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    private final String tableName;
+    private final String[] columns;
+    private final int chunkSize;
+
+    /**
+     * Maps a row to the values of its columns, in the order the columns were given to the BatchWriter.
+     */
+    public interface RowMapper<T> {
+        Object[] toValues(T row);
+    }
+
+    /**
+     * Creates a batch writer with the default chunk size.
+     * @param tableName Table to insert into
+     * @param columns Columns to set for every row
+     */
+    public BatchWriter(String tableName, String... columns) {
+        this(DEFAULT_CHUNK_SIZE, tableName, columns);
+    }
+
+    /**
+     * Creates a batch writer.
+     * @param chunkSize Maximum number of rows per INSERT statement
+     * @param tableName Table to insert into
+     * @param columns Columns to set for every row
+     */
+    public BatchWriter(int chunkSize, String tableName, String... columns) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("At least one column is needed");
+        }
+        this.chunkSize = chunkSize;
+        this.tableName = tableName;
+        this.columns = columns.clone();
+    }
+
+    /**
+     * Inserts the rows on the given connection. The caller decides about the transaction;
+     * if a chunk fails, the chunks before it have already been sent.
+     * @param conn Connection to use
+     * @param rows Rows to insert
+     * @param mapper Maps each row to its column values
+     * @param returnGeneratedKeys true to read back the generated keys of the inserted rows
+     * @return Result object with the number of inserted rows, the generated keys and the chunk timings
+     * @throws SQLException if a chunk couldn't be inserted
+     */
+    public <T> Result insert(Connection conn, List<T> rows, RowMapper<T> mapper, boolean returnGeneratedKeys) throws SQLException {
+        List<Integer> generatedKeys = new ArrayList<>();
+        List<Long> chunkNanos = new ArrayList<>();
+        int rowsInserted = 0;
+
+        for (int from = 0; from < rows.size(); from += chunkSize) {
+            List<T> chunk = rows.subList(from, Math.min(from + chunkSize, rows.size()));
+            long start = System.nanoTime();
+
+            String sql = buildInsert(chunk.size());
+            try (PreparedStatement stmt = returnGeneratedKeys
+                    ? conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                    : conn.prepareStatement(sql)) {
+                int parameterIndex = 1;
+                for (T row : chunk) {
+                    Object[] values = mapper.toValues(row);
+                    if (values.length != columns.length) {
+                        throw new SQLException("Expected " + columns.length + " values for " + tableName + " but got " + values.length);
+                    }
+                    for (Object value : values) {
+                        stmt.setObject(parameterIndex++, value);
+                    }
+                }
+
+                int affectedRows = stmt.executeUpdate();
+                if (affectedRows != chunk.size()) {
+                    throw new SQLException("Inserting into " + tableName + " failed, " + affectedRows + " of " + chunk.size() + " rows affected.");
+                }
+                rowsInserted += affectedRows;
+
+                if (returnGeneratedKeys) {
+                    int keysRead = 0;
+                    try (ResultSet keys = stmt.getGeneratedKeys()) {
+                        while (keys.next()) {
+                            generatedKeys.add(keys.getInt(1));
+                            keysRead++;
+                        }
+                    }
+                    if (keysRead != chunk.size()) {
+                        throw new SQLException("Inserting into " + tableName + " failed, " + keysRead + " of " + chunk.size() + " IDs obtained.");
+                    }
+                }
+            }
+            chunkNanos.add(System.nanoTime() - start);
+        }
+
+        return new Result(rowsInserted, generatedKeys, chunkNanos);
+    }
+
+    // INSERT INTO table (c1, c2) VALUES (?, ?), (?, ?), ... with one group of placeholders per row
+    private String buildInsert(int rowCount) {
+        StringBuilder placeholders = new StringBuilder("(");
+        for (int i = 0; i < columns.length; i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        placeholders.append(')');
+
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableName)
+            .append(" (").append(String.join(", ", columns)).append(") VALUES ");
+        for (int row = 0; row < rowCount; row++) {
+            if (row > 0) {
+                sql.append(", ");
+            }
+            sql.append(placeholders);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * Outcome of a batch insert.
+     */
+    public static class Result {
+        private final int rowsInserted;
+        private final List<Integer> generatedKeys;
+        private final List<Long> chunkNanos;
+
+        private Result(int rowsInserted, List<Integer> generatedKeys, List<Long> chunkNanos) {
+            this.rowsInserted = rowsInserted;
+            this.generatedKeys = Collections.unmodifiableList(generatedKeys);
+            this.chunkNanos = Collections.unmodifiableList(chunkNanos);
+        }
+
+        public int getRowsInserted() {
+            return rowsInserted;
+        }
+
+        // Generated keys in the order of the rows, empty if they weren't requested
+        public List<Integer> getGeneratedKeys() {
+            return generatedKeys;
+        }
+
+        // Time taken by each chunk (one round trip each), in nanoseconds
+        public List<Long> getChunkNanos() {
+            return chunkNanos;
+        }
+
+        public long getTotalNanos() {
+            long total = 0;
+            for (long nanos : chunkNanos) {
+                total += nanos;
+            }
+            return total;
+        }
+    }
+}
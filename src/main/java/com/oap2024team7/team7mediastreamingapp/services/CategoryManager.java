@@ -22,17 +22,9 @@ public class CategoryManager {
      * @return List of all categories
      */
     public List<Category> getAllCategories() {
-        // Get all categories from the database
-        String getQuery = "SELECT * FROM category";
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(getQuery)) {
-            ResultSet rs = stmt.executeQuery();
-            List<Category> categories = new ArrayList<>();
-            while (rs.next()) {
-                Category category = new Category(rs.getInt("category_id"), rs.getString("name"));
-                categories.add(category);
-            }
-            return categories;
+        // Served from the ReferenceDataCache; a copy, so callers can't change the cached list
+        try {
+            return new ArrayList<>(ReferenceDataCache.getInstance().getCategories());
         } catch (SQLException e) {
             e.printStackTrace();
             return null;
@@ -41,18 +33,15 @@ public class CategoryManager {
 
     public Category getCategoryByFilmId(int filmId) {
         // Get the category of a film from the database
-        String getQuery = "SELECT c.* FROM category c " +
-                   "JOIN film_category fc ON c.category_id = fc.category_id " +
-                   "WHERE fc.film_id = ?";
+        // Only the ID is read, the Category object comes from the ReferenceDataCache
+        String getQuery = "SELECT category_id FROM film_category WHERE film_id = ?";
 
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(getQuery)) {
             stmt.setInt(1, filmId);
             ResultSet rs = stmt.executeQuery();
             if (rs.next()) {
-                int category_id = rs.getInt("category_id");
-                String name = rs.getString("name");
-                return new Category(category_id, name);
+                return ReferenceDataCache.getInstance().getCategory(conn, rs.getInt("category_id"));
             } else {
                 return null;
             }
@@ -75,7 +64,11 @@ public class CategoryManager {
             stmt.setInt(1, category.getCategoryId());
             stmt.setInt(2, film.getFilmId());
             int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0;
+            if (rowsAffected > 0) {
+                FilmCatalog.getInstance().reloadFilm(film.getFilmId());
+                return true;
+            }
+            return false;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
@@ -0,0 +1,543 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class for the Connection Pool.
+ * This class keeps a bounded set of physical JDBC connections open and lends them out to the managers,
+ * so that a page of films doesn't cost a new TCP connection and MySQL login per query.
+ * Connections are validated when borrowed, evicted when idle or too old, and a housekeeping thread
+ * reports connections that have been borrowed for too long together with the stack trace of the borrower.
+ * Each connection also keeps a StatementCache, so repeated SQL strings are only prepared once per connection.
+ * Every statement handed out gets the query timeout of the current call (see ResiliencePolicy).
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+public class ConnectionPool {
+    private final String url;
+    private final Properties connectionProperties;
+    private final int maxSize;
+    private final int minIdle;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long maxLifetimeMillis;
+    private final long leakDetectionThresholdMillis;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    // Idle connections, most recently returned first (LIFO keeps the warm connections warm)
+    private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> borrowedConnections = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    // One permit per borrowed connection, so no more than maxSize connections are ever in use
+    private final Semaphore permits;
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean shutdown = false;
+
+    // Pool metrics
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong connectionsDestroyed = new AtomicLong();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong borrowWaitNanos = new AtomicLong();
+    private final AtomicLong borrowTimeouts = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong leaksDetected = new AtomicLong();
+    private final StatementCache.Counters statementCacheCounters = new StatementCache.Counters();
+
+    /**
+     * Creates a new connection pool.
+     * @param url JDBC URL of the database
+     * @param connectionProperties Properties passed to the driver (user, password and driver settings)
+     * @param maxSize Maximum number of connections (idle and borrowed) the pool will ever hold
+     * @param minIdle Number of idle connections kept open even when the pool is quiet
+     * @param borrowTimeoutMillis How long a caller waits for a free connection before getting an SQLException
+     * @param idleTimeoutMillis How long a connection may stay idle before it is closed
+     * @param maxLifetimeMillis How long a physical connection may live before it is replaced
+     * @param leakDetectionThresholdMillis How long a connection may be borrowed before it is reported as a leak
+     * @param statementCacheSize Number of prepared statements cached per connection (0 disables the cache)
+     */
+    public ConnectionPool(String url, Properties connectionProperties, int maxSize, int minIdle,
+                          long borrowTimeoutMillis, long idleTimeoutMillis, long maxLifetimeMillis,
+                          long leakDetectionThresholdMillis, int statementCacheSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.url = url;
+        this.connectionProperties = connectionProperties;
+        this.maxSize = maxSize;
+        this.minIdle = Math.min(minIdle, maxSize);
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxLifetimeMillis = maxLifetimeMillis;
+        this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+        this.validationTimeoutSeconds = 2;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, Math.min(idleTimeoutMillis, leakDetectionThresholdMillis) / 2);
+        housekeeper.scheduleWithFixedDelay(this::houseKeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool.
+     * The returned connection must be closed by the caller, which hands it back to the pool.
+     * @return Connection object
+     * @throws SQLException if no connection could be obtained within the borrow timeout
+     */
+    public Connection getConnection() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool has been shut down");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                borrowTimeouts.incrementAndGet();
+                throw new SQLTransientConnectionException("Timed out after " + borrowTimeoutMillis + " ms waiting for a database connection "
+                    + "(" + borrowedConnections.size() + " of " + maxSize + " in use)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pooled = takeValidIdleConnection();
+            if (pooled == null) {
+                pooled = createConnection();
+            }
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.borrowTrace = new Throwable("Connection borrowed by thread " + Thread.currentThread().getName());
+            pooled.leakReported = false;
+            borrowedConnections.add(pooled);
+            borrowCount.incrementAndGet();
+            borrowWaitNanos.addAndGet(System.nanoTime() - start);
+            return pooled.newHandle();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns where a connection handed out by a pool was borrowed. The trace is captured for leak detection anyway,
+     * so QueryMetrics uses it to find the borrowing method instead of capturing the stack a second time.
+     * @param connection
+     * @return The trace of the borrow, or null if the connection isn't a pool connection
+     */
+    static Throwable getBorrowTrace(Connection connection) {
+        if (Proxy.isProxyClass(connection.getClass())) {
+            InvocationHandler handler = Proxy.getInvocationHandler(connection);
+            if (handler instanceof Handle) {
+                return ((Handle) handler).pooled.borrowTrace;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Takes idle connections until a valid one is found.
+     * Connections that are too old or fail validation are closed on the way.
+     * @return A valid idle connection, or null if none are left
+     */
+    private PooledConnection takeValidIdleConnection() {
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            if (isExpired(pooled, System.currentTimeMillis())) {
+                destroy(pooled);
+                continue;
+            }
+            try {
+                if (pooled.physical.isValid(validationTimeoutSeconds)) {
+                    return pooled;
+                }
+            } catch (SQLException e) {
+                // Treated the same way as an invalid connection
+            }
+            validationFailures.incrementAndGet();
+            destroy(pooled);
+        }
+        return null;
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        Connection physical = DriverManager.getConnection(url, connectionProperties);
+        connectionsCreated.incrementAndGet();
+        return new PooledConnection(physical);
+    }
+
+    /**
+     * Hands a connection back to the pool (called when a borrowed connection is closed).
+     * Any open transaction is rolled back and auto-commit is restored, so the next borrower gets a clean connection.
+     * @param pooled The connection that is returned
+     */
+    private void release(PooledConnection pooled) {
+        borrowedConnections.remove(pooled);
+        try {
+            pooled.closeOpenStatements();
+            if (pooled.statementCache != null) {
+                pooled.statementCache.closeAbandoned();
+            }
+            if (shutdown || pooled.physical.isClosed() || isExpired(pooled, System.currentTimeMillis())) {
+                destroy(pooled);
+                return;
+            }
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            pooled.physical.clearWarnings();
+            pooled.lastUsedAt = System.currentTimeMillis();
+            idleConnections.offerFirst(pooled);
+        } catch (SQLException e) {
+            // A connection that can't be reset can't be reused either
+            destroy(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean isExpired(PooledConnection pooled, long now) {
+        return now - pooled.createdAt >= maxLifetimeMillis;
+    }
+
+    private void destroy(PooledConnection pooled) {
+        if (pooled.statementCache != null) {
+            pooled.statementCache.closeAll();
+        }
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            // Nothing more can be done with a connection that fails to close
+        }
+        connectionsDestroyed.incrementAndGet();
+    }
+
+    /**
+     * Periodic maintenance: closes idle and expired connections, keeps minIdle connections open
+     * and reports connections that have been borrowed for longer than the leak detection threshold.
+     */
+    private void houseKeep() {
+        long now = System.currentTimeMillis();
+        try {
+            int idleCount = idleConnections.size();
+            Iterator<PooledConnection> iterator = idleConnections.descendingIterator();
+            while (iterator.hasNext()) {
+                PooledConnection pooled = iterator.next();
+                boolean idleTooLong = now - pooled.lastUsedAt >= idleTimeoutMillis && idleCount > minIdle;
+                if ((idleTooLong || isExpired(pooled, now)) && idleConnections.remove(pooled)) {
+                    destroy(pooled);
+                    idleCount--;
+                }
+            }
+
+            while (!shutdown && idleConnections.size() < minIdle
+                    && idleConnections.size() + borrowedConnections.size() < maxSize) {
+                try {
+                    idleConnections.offerLast(createConnection());
+                } catch (SQLException e) {
+                    System.err.println("Unable to open idle database connection: " + e.getMessage());
+                    break;
+                }
+            }
+
+            for (PooledConnection pooled : borrowedConnections) {
+                if (!pooled.leakReported && now - pooled.borrowedAt >= leakDetectionThresholdMillis) {
+                    pooled.leakReported = true;
+                    leaksDetected.incrementAndGet();
+                    System.err.println("Possible connection leak: connection has been borrowed for "
+                        + (now - pooled.borrowedAt) + " ms. Borrowed at:");
+                    pooled.borrowTrace.printStackTrace();
+                }
+            }
+        } catch (RuntimeException e) {
+            // Never let an exception kill the housekeeping thread
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Closes all idle connections and stops the housekeeping thread.
+     * Borrowed connections are closed when they are handed back.
+     */
+    public void shutdown() {
+        shutdown = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            destroy(pooled);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the pool metrics.
+     * @return Stats object
+     */
+    public Stats getStats() {
+        return new Stats(maxSize, idleConnections.size(), borrowedConnections.size(), permits.getQueueLength(),
+            connectionsCreated.get(), connectionsDestroyed.get(), borrowCount.get(), borrowWaitNanos.get(),
+            borrowTimeouts.get(), validationFailures.get(), leaksDetected.get(),
+            statementCacheCounters.hits.get(), statementCacheCounters.misses.get(), statementCacheCounters.evictions.get());
+    }
+
+    /**
+     * A physical connection owned by the pool, together with the bookkeeping needed for eviction and leak detection.
+     */
+    private class PooledConnection {
+        private final Connection physical;
+        private final long createdAt;
+        private volatile long lastUsedAt;
+        private volatile long borrowedAt;
+        private volatile Throwable borrowTrace;
+        private volatile boolean leakReported;
+        // Statements opened by the current borrower, closed when the connection is returned
+        private final List<Statement> openStatements = new ArrayList<>();
+        private final StatementCache statementCache;
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.createdAt = System.currentTimeMillis();
+            this.lastUsedAt = createdAt;
+            this.statementCache = statementCacheSize > 0 ? new StatementCache(statementCacheSize, statementCacheCounters) : null;
+        }
+
+        /**
+         * Creates the proxy handed to the borrower. Each borrow gets its own handle,
+         * so a handle that has been closed can't touch the connection after someone else borrowed it.
+         */
+        private Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                new Handle(this));
+        }
+
+        private synchronized void trackStatement(Statement statement) {
+            openStatements.add(statement);
+        }
+
+        private synchronized void closeOpenStatements() {
+            for (Statement statement : openStatements) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    // The statement is discarded either way
+                }
+            }
+            openStatements.clear();
+        }
+    }
+
+    /**
+     * Invocation handler for borrowed connections.
+     * close() hands the connection back to the pool instead of closing the physical connection.
+     */
+    private class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private volatile boolean closed = false;
+
+        private Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + (closed ? ", closed" : "") + "]";
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+
+            if ("prepareStatement".equals(name) && pooled.statementCache != null) {
+                PreparedStatement cached = prepareCached(method, args);
+                if (cached != null) {
+                    // A cached statement still has the timeout of its previous borrower
+                    cached.setQueryTimeout(ResiliencePolicy.currentQueryTimeoutSeconds());
+                    return cached;
+                }
+            }
+
+            try {
+                Object result = method.invoke(pooled.physical, args);
+                if (result instanceof Statement) {
+                    pooled.trackStatement((Statement) result);
+                    ((Statement) result).setQueryTimeout(ResiliencePolicy.currentQueryTimeoutSeconds());
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * Serves prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys) from the statement cache.
+         * @return The cached statement, or null if this variant of prepareStatement isn't cached
+         */
+        private PreparedStatement prepareCached(Method method, Object[] args) throws SQLException {
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            if (parameterTypes.length == 1) {
+                return pooled.statementCache.prepare(pooled.physical, (String) args[0], null);
+            }
+            if (parameterTypes.length == 2 && parameterTypes[1] == int.class) {
+                return pooled.statementCache.prepare(pooled.physical, (String) args[0], (Integer) args[1]);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Snapshot of the pool metrics.
+     */
+    public static class Stats {
+        private final int maxSize;
+        private final int idle;
+        private final int active;
+        private final int waiting;
+        private final long created;
+        private final long destroyed;
+        private final long borrows;
+        private final long totalBorrowWaitNanos;
+        private final long borrowTimeouts;
+        private final long validationFailures;
+        private final long leaksDetected;
+        private final long statementCacheHits;
+        private final long statementCacheMisses;
+        private final long statementCacheEvictions;
+
+        public Stats(int maxSize, int idle, int active, int waiting, long created, long destroyed, long borrows,
+                     long totalBorrowWaitNanos, long borrowTimeouts, long validationFailures, long leaksDetected,
+                     long statementCacheHits, long statementCacheMisses, long statementCacheEvictions) {
+            this.maxSize = maxSize;
+            this.idle = idle;
+            this.active = active;
+            this.waiting = waiting;
+            this.created = created;
+            this.destroyed = destroyed;
+            this.borrows = borrows;
+            this.totalBorrowWaitNanos = totalBorrowWaitNanos;
+            this.borrowTimeouts = borrowTimeouts;
+            this.validationFailures = validationFailures;
+            this.leaksDetected = leaksDetected;
+            this.statementCacheHits = statementCacheHits;
+            this.statementCacheMisses = statementCacheMisses;
+            this.statementCacheEvictions = statementCacheEvictions;
+        }
+
+        public int getMaxSize() {
+            return maxSize;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getWaiting() {
+            return waiting;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+
+        public long getDestroyed() {
+            return destroyed;
+        }
+
+        public long getBorrows() {
+            return borrows;
+        }
+
+        public double getAverageBorrowWaitMillis() {
+            return borrows == 0 ? 0 : totalBorrowWaitNanos / 1_000_000.0 / borrows;
+        }
+
+        public long getBorrowTimeouts() {
+            return borrowTimeouts;
+        }
+
+        public long getValidationFailures() {
+            return validationFailures;
+        }
+
+        public long getLeaksDetected() {
+            return leaksDetected;
+        }
+
+        public long getStatementCacheHits() {
+            return statementCacheHits;
+        }
+
+        public long getStatementCacheMisses() {
+            return statementCacheMisses;
+        }
+
+        public long getStatementCacheEvictions() {
+            return statementCacheEvictions;
+        }
+
+        public double getStatementCacheHitRatio() {
+            long lookups = statementCacheHits + statementCacheMisses;
+            return lookups == 0 ? 0 : (double) statementCacheHits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("active=%d, idle=%d, waiting=%d, max=%d, created=%d, destroyed=%d, borrows=%d, "
+                + "avgWait=%.3f ms, timeouts=%d, validationFailures=%d, leaks=%d, "
+                + "statementCacheHits=%d, statementCacheMisses=%d, statementCacheEvictions=%d",
+                active, idle, waiting, maxSize, created, destroyed, borrows, getAverageBorrowWaitMillis(),
+                borrowTimeouts, validationFailures, leaksDetected,
+                statementCacheHits, statementCacheMisses, statementCacheEvictions);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class for the Data Access Executor.
+ * Runs manager calls (database queries, file writing) off the JavaFX Application Thread, so a slow query
+ * doesn't freeze the UI. Results are returned as CompletableFutures; controllers hand them back to the
+ * UI thread with whenCompleteAsync(..., Platform::runLater), so a task that fails reaches the UI as well.
+ * At most as many tasks run at once as the connection pool has connections. On a Java runtime with virtual threads
+ * every task gets its own virtual thread, otherwise a small pool of daemon threads is used.
+ * Tasks submitted with the same key while one is still running share its result instead of running twice,
+ * and a Scope cancels all of its tasks at once when the user leaves a screen.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+public class DataAccessExecutor {
+    // Same as the maximum size of the connection pool, more tasks would only wait for a connection
+    private static final int MAX_CONCURRENT_TASKS = 10;
+
+    private static DataAccessExecutor instance;
+
+    private final ExecutorService executor;
+    // Limits the virtual threads; null when the thread pool itself is bounded
+    private final Semaphore permits;
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private DataAccessExecutor() {
+        ExecutorService virtualThreads = newVirtualThreadExecutor();
+        if (virtualThreads != null) {
+            executor = virtualThreads;
+            permits = new Semaphore(MAX_CONCURRENT_TASKS);
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                MAX_CONCURRENT_TASKS, MAX_CONCURRENT_TASKS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "data-access-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+            permits = null;
+        }
+    }
+
+    public static synchronized DataAccessExecutor getInstance() {
+        if (instance == null) {
+            instance = new DataAccessExecutor();
+        }
+        return instance;
+    }
+
+    /**
+     * Creates an executor with one virtual thread per task, if the runtime supports virtual threads (Java 21+).
+     * Looked up by reflection because the application is compiled for Java 8.
+     * @return ExecutorService, or null if virtual threads aren't available
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) java.util.concurrent.Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor")
+                .invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Runs a task in the background.
+     * @param task The manager call to run
+     * @return Future with the result of the task; cancelling it skips the task if it hasn't started yet
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        // The controller method that submitted the task, named in N+1 query warnings
+        String actionName = QueryMetrics.getInstance().findCaller();
+        Future<?> running = executor.submit(() -> {
+            if (result.isDone()) {
+                return; // Cancelled before it started
+            }
+            try {
+                if (permits != null) {
+                    permits.acquire();
+                }
+                QueryMetrics.Action action = QueryMetrics.getInstance().startAction(actionName);
+                try {
+                    result.complete(task.call());
+                } finally {
+                    action.close();
+                    if (permits != null) {
+                        permits.release();
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Interrupted while waiting for a permit or inside the task, e.g. by shutdownNow()
+                Thread.currentThread().interrupt();
+                result.completeExceptionally(e);
+            } catch (Throwable t) {
+                // Reported by the controller that submitted the task
+                result.completeExceptionally(t);
+            }
+        });
+        // A task that is already running isn't interrupted, interrupting JDBC I/O can break the pooled connection
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                running.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Runs a task in the background, unless a task with the same key is still running;
+     * then the result of that task is shared.
+     * @param key Identifies the load, e.g. "myList:" + profileId
+     * @param task The manager call to run
+     * @return Future with the result; cancelling it doesn't affect the other callers waiting for the same key
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> submit(String key, Callable<T> task) {
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        CompletableFuture<Object> shared = inFlight.putIfAbsent(key, created);
+        if (shared == null) {
+            shared = created;
+            submit((Callable<Object>) task).whenComplete((value, error) -> {
+                inFlight.remove(key, created);
+                if (error != null) {
+                    created.completeExceptionally(error);
+                } else {
+                    created.complete(value);
+                }
+            });
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        shared.whenComplete((value, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete((T) value);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Creates a scope for the tasks of one screen.
+     * @return New Scope object
+     */
+    public Scope newScope() {
+        return new Scope();
+    }
+
+    /**
+     * Stops accepting tasks; tasks that are already running are finished.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Checks if a task failed only because it was cancelled, e.g. by Scope.cancelAll(), so there is nothing to report.
+     * @param error The error a future completed with, may be null
+     * @return true if the task was cancelled
+     */
+    public static boolean isCancellation(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error instanceof CancellationException;
+    }
+
+    /**
+     * Group of tasks that belong together, e.g. the loads of one screen, and can be cancelled together.
+     */
+    public class Scope {
+        private final Set<CompletableFuture<?>> futures = ConcurrentHashMap.newKeySet();
+
+        private Scope() {
+        }
+
+        /**
+         * Runs a task in the background as part of this scope.
+         * @see DataAccessExecutor#submit(Callable)
+         */
+        public <T> CompletableFuture<T> submit(Callable<T> task) {
+            return track(DataAccessExecutor.this.submit(task));
+        }
+
+        /**
+         * Runs a task in the background as part of this scope, sharing the result of a running task with the same key.
+         * @see DataAccessExecutor#submit(String, Callable)
+         */
+        public <T> CompletableFuture<T> submit(String key, Callable<T> task) {
+            return track(DataAccessExecutor.this.submit(key, task));
+        }
+
+        /**
+         * Cancels all unfinished tasks of this scope, so their results are never handed to the UI.
+         * Used when the user navigates away, or when a newer load replaces an older one.
+         */
+        public void cancelAll() {
+            for (CompletableFuture<?> future : futures) {
+                future.cancel(false);
+            }
+            futures.clear();
+        }
+
+        private <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+            futures.add(future);
+            future.whenComplete((value, error) -> futures.remove(future));
+            return future;
+        }
+    }
+}
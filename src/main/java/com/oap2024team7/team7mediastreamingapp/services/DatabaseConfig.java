@@ -0,0 +1,194 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Class for the Database Config.
+ * Holds the JDBC URL and credentials the connection pool connects with.
+ * Each setting is read from, in order of precedence:
+ * 1. a system property, e.g. -Ddb.url=jdbc:mysql://dbhost:3306/sakila
+ * 2. an environment variable, e.g. STREAMIFY_DB_URL
+ * 3. a properties file: the file named by -Ddb.config, or database.properties on the classpath
+ * 4. the defaults, which are the local MySQL sakila database used during development.
+ * A read replica is used when db.replica.url is set; db.replica.username and db.replica.password default to
+ * the credentials of the primary database (see DatabaseManager.getReadConnection()).
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+
+public class DatabaseConfig {
+    public static final String URL_KEY = "db.url";
+    public static final String USERNAME_KEY = "db.username";
+    public static final String PASSWORD_KEY = "db.password";
+    public static final String REPLICA_URL_KEY = "db.replica.url";
+    public static final String REPLICA_USERNAME_KEY = "db.replica.username";
+    public static final String REPLICA_PASSWORD_KEY = "db.replica.password";
+    private static final String CONFIG_FILE_KEY = "db.config";
+    private static final String CONFIG_RESOURCE = "/database.properties";
+
+    private static final String DEFAULT_URL = "jdbc:mysql://localhost:3306/sakila";
+    private static final String DEFAULT_USERNAME = "student";
+    private static final String DEFAULT_PASSWORD = "student";
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final DatabaseConfig replica;
+
+    public DatabaseConfig(String url, String username, String password) {
+        this(url, username, password, null);
+    }
+
+    /**
+     * Creates a configuration with a read replica.
+     * @param url
+     * @param username
+     * @param password
+     * @param replica Configuration of the read replica, or null to read from the primary database only
+     * @throws IllegalArgumentException if the URL is an H2 URL without the settings the managers need (see EmbeddedDatabase.url())
+     */
+    public DatabaseConfig(String url, String username, String password, DatabaseConfig replica) {
+        if (url.startsWith("jdbc:h2:")) {
+            EmbeddedDatabase.checkUrl(url);
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.replica = replica;
+    }
+
+    /**
+     * Reads the configuration from the system properties, the environment and the properties file.
+     * @return DatabaseConfig object
+     */
+    public static DatabaseConfig load() {
+        Properties fileProperties = readPropertiesFile();
+        String username = setting(USERNAME_KEY, fileProperties, DEFAULT_USERNAME);
+        String password = setting(PASSWORD_KEY, fileProperties, DEFAULT_PASSWORD);
+
+        DatabaseConfig replica = null;
+        String replicaUrl = setting(REPLICA_URL_KEY, fileProperties, null);
+        if (replicaUrl != null && !replicaUrl.isEmpty()) {
+            replica = new DatabaseConfig(
+                replicaUrl,
+                setting(REPLICA_USERNAME_KEY, fileProperties, username),
+                setting(REPLICA_PASSWORD_KEY, fileProperties, password)
+            );
+        }
+        return new DatabaseConfig(setting(URL_KEY, fileProperties, DEFAULT_URL), username, password, replica);
+    }
+
+    /**
+     * Configuration for the embedded in-memory database (see EmbeddedDatabase).
+     * @return DatabaseConfig object
+     */
+    public static DatabaseConfig embedded() {
+        return new DatabaseConfig(EmbeddedDatabase.DEFAULT_URL, "sa", "");
+    }
+
+    /**
+     * Reads any other database setting from the same sources as the URL and credentials,
+     * e.g. db.metrics.enabled or STREAMIFY_DB_METRICS_ENABLED.
+     * @param key
+     * @param defaultValue
+     * @return The value of the setting, or the default value if it isn't set
+     */
+    public static String getSetting(String key, String defaultValue) {
+        return setting(key, readPropertiesFile(), defaultValue);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * Configuration of the read replica.
+     * @return DatabaseConfig object, or null if no replica is configured
+     */
+    public DatabaseConfig getReplica() {
+        return replica;
+    }
+
+    // True if the URL points to the embedded H2 engine; such URLs are checked for the required settings when the config is created
+    public boolean isEmbedded() {
+        return url.startsWith("jdbc:h2:");
+    }
+
+    /**
+     * Class name of the JDBC driver for the URL.
+     * @return Class name, or null to let DriverManager find the driver
+     */
+    public String getDriverClassName() {
+        if (url.startsWith("jdbc:mysql:")) {
+            return "com.mysql.cj.jdbc.Driver";
+        }
+        if (isEmbedded()) {
+            return "org.h2.Driver";
+        }
+        return null;
+    }
+
+    /**
+     * Properties passed to the driver when connecting: the credentials, plus the MySQL driver settings
+     * the pool relies on when connecting to MySQL.
+     * @return Properties object
+     */
+    public Properties getConnectionProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("user", username);
+        properties.setProperty("password", password);
+        if (url.startsWith("jdbc:mysql:")) {
+            // Prepare statements on the server, so MySQL parses each cached statement only once.
+            // Statements are cached by the pool (StatementCache), so the driver's own cache stays off.
+            properties.setProperty("useServerPrepStmts", "true");
+            properties.setProperty("cachePrepStmts", "false");
+            // Let the driver send addBatch()/executeBatch() inserts as multi-row INSERTs (see also BatchWriter)
+            properties.setProperty("rewriteBatchedStatements", "true");
+        }
+        return properties;
+    }
+
+    @Override
+    public String toString() {
+        // Leave the password out, the config ends up in log messages
+        return "DatabaseConfig[url=" + url + ", username=" + username
+            + (replica != null ? ", replica=" + replica.getUrl() : "") + "]";
+    }
+
+    // db.url -> STREAMIFY_DB_URL
+    private static String setting(String key, Properties fileProperties, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = System.getenv("STREAMIFY_" + key.toUpperCase().replace('.', '_'));
+        }
+        if (value == null) {
+            value = fileProperties.getProperty(key);
+        }
+        return value != null ? value : defaultValue;
+    }
+
+    private static Properties readPropertiesFile() {
+        Properties properties = new Properties();
+        String configFile = System.getProperty(CONFIG_FILE_KEY);
+        try (InputStream in = configFile != null
+                ? new FileInputStream(configFile)
+                : DatabaseConfig.class.getResourceAsStream(CONFIG_RESOURCE)) {
+            if (in != null) {
+                properties.load(in);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return properties;
+    }
+}
@@ -1,41 +1,112 @@
 package com.oap2024team7.team7mediastreamingapp.services;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
-
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * Class for the Database Manager.
- * This class is responsible for managing the database connection and schema.
- * @author Agata (Agy) Olaussen (@agyCoding) and Saman Shaheen @saman091 (createProfileImageTable, addColumnIfNotExists amd createTableIfNotExists methods)
+ * This class is responsible for managing the database connections: the connection pool and the optional read replica.
+ * The schema is kept up to date by SchemaMigrator, which getConnection() waits for.
+ * @author Agata (Agy) Olaussen (@agyCoding)
  */
 
 public class DatabaseManager {
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/sakila";
-    private static final String DB_USERNAME = "student";
-    private static final String DB_PASSWORD = "student";
+    // Connection pool settings
+    private static final int POOL_MAX_SIZE = 10;
+    private static final int POOL_MIN_IDLE = 2;
+    private static final long POOL_BORROW_TIMEOUT_MS = 10_000;
+    private static final long POOL_IDLE_TIMEOUT_MS = 5 * 60_000;
+    private static final long POOL_MAX_LIFETIME_MS = 30 * 60_000;
+    private static final long POOL_LEAK_DETECTION_MS = 60_000;
+    private static final int STATEMENT_CACHE_SIZE = 64;
+    // Read replica settings, see ReplicaRouter
+    private static final String REPLICA_MAX_LAG_SECONDS = "5";
+    private static final String REPLICA_STICKY_SECONDS = "10";
+
+    private static volatile ConnectionPool pool;
+    // Set together with the pool when a read replica is configured
+    private static volatile ReplicaRouter replicaRouter;
+    // Set by configure(), otherwise read with DatabaseConfig.load() when the pool is created
+    private static DatabaseConfig config;
+
+    /**
+     * Sets the database to connect to, instead of the one from DatabaseConfig.load().
+     * Must be called before the first connection is requested.
+     * @param databaseConfig
+     * @throws IllegalStateException if the connection pool has already been created
+     */
+    public static void configure(DatabaseConfig databaseConfig) {
+        synchronized (DatabaseManager.class) {
+            if (pool != null) {
+                throw new IllegalStateException("The connection pool is already connected to " + config);
+            }
+            config = databaseConfig;
+        }
+    }
 
     /**
-     * Establishes a connection to the database.
+     * Borrows a connection from the connection pool.
+     * Closing the connection hands it back to the pool, so callers keep using try-with-resources as before.
+     * If a transaction is active on the current thread (see TransactionManager), the transaction's connection
+     * is returned instead, so the caller's statements become part of that transaction.
+     * The connection reports its statements to QueryMetrics.
      * @return Connection object
      * @throws SQLException
      */
     public static Connection getConnection() throws SQLException {
-        try {
-            Class.forName("com.mysql.cj.jdbc.Driver");
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
-            throw new SQLException("MySQL JDBC driver not found", e);
+        Connection transactional = TransactionManager.joinCurrentTransaction();
+        if (transactional != null) {
+            return QueryMetrics.getInstance().instrument(transactional);
         }
+        return QueryMetrics.getInstance().instrument(borrowConnection());
+    }
 
+    /**
+     * Gets a connection for read-only queries, e.g. browsing, searching and reading reviews.
+     * If a read replica is configured (db.replica.url), the connection goes to the replica, unless the replica
+     * lags behind or data was written recently (see recordWrite()); otherwise it is the same as getConnection().
+     * Never write with this connection.
+     * @return Connection object
+     * @throws SQLException
+     */
+    public static Connection getReadConnection() throws SQLException {
+        Connection transactional = TransactionManager.joinCurrentTransaction();
+        if (transactional != null) {
+            return QueryMetrics.getInstance().instrument(transactional);
+        }
+        getPool();
+        ReplicaRouter router = replicaRouter;
+        if (router != null) {
+            SchemaMigrator.awaitMigrations();
+            Connection replica = router.getConnection();
+            if (replica != null) {
+                return QueryMetrics.getInstance().instrument(replica);
+            }
+        }
+        return QueryMetrics.getInstance().instrument(borrowConnection());
+    }
+
+    /**
+     * Records that data the user will read back right away (a rental, a review) was written,
+     * so getReadConnection() reads from the primary database for a while.
+     */
+    public static void recordWrite() {
+        ReplicaRouter router = replicaRouter;
+        if (router != null) {
+            router.recordWrite();
+        }
+    }
+
+    /**
+     * Borrows a connection from the connection pool, also while a transaction is active.
+     * @return Connection object
+     * @throws SQLException
+     */
+    static Connection borrowConnection() throws SQLException {
+        // The schema has to be up to date before the managers query it
+        SchemaMigrator.awaitMigrations();
         try {
-            Connection connection = DriverManager.getConnection(DB_URL, DB_USERNAME, DB_PASSWORD);
-            return connection;
+            return getPool().getConnection();
         } catch (SQLException e) {
             System.err.println("SQLException: " + e.getMessage());
             System.err.println("SQLState: " + e.getSQLState());
@@ -44,161 +115,107 @@ public class DatabaseManager {
         }
     }
 
-      /**
-     * Updates the database schema by adding a new column 'account_type' to the 'customer' table
-     * and creating a new 'profile' table.
+    /**
+     * Returns the connection pool, creating it on first use.
+     * @return ConnectionPool object
+     * @throws SQLException if the JDBC driver is missing or the embedded database can't be created
      */
-    public static void updateDatabaseSchema() {
-        String alterCustomerTable = "ALTER TABLE customer ADD account_type ENUM('FREE', 'PREMIUM') DEFAULT 'FREE';";
-
-        // Create the Profile table
-        String createProfileTable = "CREATE TABLE IF NOT EXISTS profile (" +
-            "profile_id INT AUTO_INCREMENT PRIMARY KEY, " +
-            "customer_id SMALLINT UNSIGNED NOT NULL, " +
-            "main_profile BOOLEAN DEFAULT FALSE, " +
-            "profile_name VARCHAR(255) NOT NULL, " +
-            "profile_picture VARCHAR(255), " +
-            "birth_date DATE, " +
-            "hashed_password VARCHAR(255)," +
-            "FOREIGN KEY (customer_id) REFERENCES customer(customer_id) ON DELETE CASCADE" +
-            ");";
-        
-        // Create My List table to store user's saved films
-        String createMyListTable = "CREATE TABLE IF NOT EXISTS my_list (" +
-            "list_id INT AUTO_INCREMENT PRIMARY KEY, " +
-            "profile_id INT NOT NULL, " +
-            "film_id SMALLINT UNSIGNED NOT NULL, " +
-            "FOREIGN KEY (profile_id) REFERENCES profile(profile_id) ON DELETE CASCADE, " +
-            "FOREIGN KEY (film_id) REFERENCES film(film_id) ON DELETE CASCADE " +
-            ");";
-
-        // Create new table to store discount information
-        String createDiscountTable = "CREATE TABLE IF NOT EXISTS film_discount (" +
-            "discount_id INT AUTO_INCREMENT PRIMARY KEY, " +
-            "film_id SMALLINT UNSIGNED NOT NULL, " +
-            "discount_percentage DECIMAL(4, 2) NOT NULL, " +
-            "start_date DATE NOT NULL, " +
-            "expiry_date DATE NOT NULL, " +
-            "FOREIGN KEY (film_id) REFERENCES film(film_id) ON DELETE CASCADE" +
-            ");";
-            
-        String createProfileImageTable = "CREATE TABLE IF NOT EXISTS profile_image (" +
-            "id INT AUTO_INCREMENT PRIMARY KEY, " +
-            "profile_id INT NOT NULL, " +
-            "image LONGBLOB, " +
-            "FOREIGN KEY (profile_id) REFERENCES profile(profile_id) ON DELETE CASCADE" +
-            ");";
-
-        // Create new table for storing likes, dislikes and reviews for a film
-        String createFilmReviewTable = "CREATE TABLE IF NOT EXISTS film_review (" +
-            "review_id INT AUTO_INCREMENT PRIMARY KEY, " +
-            "film_id SMALLINT UNSIGNED NOT NULL, " +
-            "profile_id INT NOT NULL, " +
-            "liked BOOLEAN DEFAULT NULL, " +
-            "review TEXT, " +
-            "review_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
-            "FOREIGN KEY (film_id) REFERENCES film(film_id) ON DELETE CASCADE, " +
-            "FOREIGN KEY (profile_id) REFERENCES profile(profile_id) ON DELETE CASCADE" +
-            ");";
-
-        try (Connection conn = DatabaseManager.getConnection();
-             Statement stmt = conn.createStatement()) {
-            // Check if the account_type column exists in the customer table
-            String checkColumnQuery = "SELECT column_name FROM information_schema.columns WHERE table_name = 'customer' AND column_name = 'account_type'";
-            ResultSet rs = stmt.executeQuery(checkColumnQuery);
-            if (!rs.next()) { // Column doesn't exist
-            stmt.executeUpdate(alterCustomerTable);
-            System.out.println("Column 'account_type' added to customer table.");
-            } else {
-            System.out.println("Column 'account_type' already exists in customer table.");
-            }
-
-            // Check if the necessary columns exist in the film table
-            String checkFilmColumnQuery = "SELECT column_name FROM information_schema.columns WHERE table_name = 'film' AND column_name IN ('is_streamable', 'is_reviewable', 'is_ratable')";
-            rs = stmt.executeQuery(checkFilmColumnQuery);
-
-            Set<String> existingColumns = new HashSet<>();
-            while (rs.next()) {
-                existingColumns.add(rs.getString("column_name"));
-            }
-
-            // SQL statements to add needed columns to the film table
-            String alterFilmTable = "ALTER TABLE film ADD is_streamable BOOLEAN DEFAULT FALSE;";
-            String alterFilmTableReviewable = "ALTER TABLE film ADD is_reviewable BOOLEAN DEFAULT TRUE;";
-            String alterFilmTableRatable = "ALTER TABLE film ADD is_ratable BOOLEAN DEFAULT TRUE;";
-
-            // Check each column and add missing ones
-            if (!existingColumns.contains("is_streamable")) {
-                stmt.executeUpdate(alterFilmTable);
-                System.out.println("Column 'is_streamable' added to the film table.");
-            }
-            if (!existingColumns.contains("is_reviewable")) {
-                stmt.executeUpdate(alterFilmTableReviewable);
-                System.out.println("Column 'is_reviewable' added to the film table.");
-            }
-            if (!existingColumns.contains("is_ratable")) {
-                stmt.executeUpdate(alterFilmTableRatable);
-                System.out.println("Column 'is_ratable' added to the film table.");
+    private static ConnectionPool getPool() throws SQLException {
+        ConnectionPool current = pool;
+        if (current == null) {
+            synchronized (DatabaseManager.class) {
+                current = pool;
+                if (current == null) {
+                    if (config == null) {
+                        config = DatabaseConfig.load();
+                    }
+                    loadDriver(config);
+                    if (config.getReplica() != null) {
+                        replicaRouter = createReplicaRouter(config.getReplica());
+                    }
+
+                    current = new ConnectionPool(config.getUrl(), config.getConnectionProperties(), POOL_MAX_SIZE, POOL_MIN_IDLE,
+                        POOL_BORROW_TIMEOUT_MS, POOL_IDLE_TIMEOUT_MS, POOL_MAX_LIFETIME_MS, POOL_LEAK_DETECTION_MS,
+                        STATEMENT_CACHE_SIZE);
+                    if (config.isEmbedded()) {
+                        // Create the schema before anyone else can borrow a connection
+                        try (Connection conn = current.getConnection()) {
+                            EmbeddedDatabase.bootstrap(conn);
+                        } catch (SQLException e) {
+                            current.shutdown();
+                            if (replicaRouter != null) {
+                                replicaRouter.shutdown();
+                                replicaRouter = null;
+                            }
+                            throw e;
+                        }
+                    }
+                    System.out.println("Connecting to " + config);
+                    pool = current;
+                }
             }
+        }
+        return current;
+    }
 
-            // If all required columns exist, print the confirmation
-            if (existingColumns.contains("is_streamable") && existingColumns.contains("is_reviewable") && existingColumns.contains("is_ratable")) {
-                System.out.println("Columns 'is_streamable', 'is_reviewable', and 'is_ratable' already exist in the film table.");
+    private static void loadDriver(DatabaseConfig databaseConfig) throws SQLException {
+        String driverClassName = databaseConfig.getDriverClassName();
+        if (driverClassName != null) {
+            try {
+                Class.forName(driverClassName);
+            } catch (ClassNotFoundException e) {
+                e.printStackTrace();
+                throw new SQLException("JDBC driver " + driverClassName + " not found", e);
             }
-
-            // Create the Profile table if it doesn't exist
-            stmt.executeUpdate(createProfileTable);
-            System.out.println("Table 'profile' created (if it didn't already exist).");
-
-            // Create My List table if it doesn't exist
-            stmt.executeUpdate(createMyListTable);
-            System.out.println("Table 'my_list' created (if it didn't already exist).");
-
-            // Create Discount table if it doesn't exist
-            stmt.executeUpdate(createDiscountTable);
-            System.out.println("Table 'film_discount' created (if it didn't already exist).");
-
-            // Create Film Review table if it doesn't exist
-            stmt.executeUpdate(createFilmReviewTable);
-            System.out.println("Table 'film_review' created (if it didn't already exist).");
-
-        } catch (SQLException e) {
-            e.printStackTrace();
         }
     }
 
+    /**
+     * Creates the connection pool of the read replica. No connection is made until the first read.
+     * @param replica Configuration of the replica
+     * @return ReplicaRouter object
+     * @throws SQLException if the JDBC driver is missing
+     */
+    private static ReplicaRouter createReplicaRouter(DatabaseConfig replica) throws SQLException {
+        loadDriver(replica);
+        ConnectionPool replicaPool = new ConnectionPool(replica.getUrl(), replica.getConnectionProperties(), POOL_MAX_SIZE, POOL_MIN_IDLE,
+            POOL_BORROW_TIMEOUT_MS, POOL_IDLE_TIMEOUT_MS, POOL_MAX_LIFETIME_MS, POOL_LEAK_DETECTION_MS,
+            STATEMENT_CACHE_SIZE);
+        return new ReplicaRouter(replicaPool, replica.getUrl(),
+            Long.parseLong(DatabaseConfig.getSetting("db.replica.maxLagSeconds", REPLICA_MAX_LAG_SECONDS)),
+            Long.parseLong(DatabaseConfig.getSetting("db.replica.stickySeconds", REPLICA_STICKY_SECONDS)));
+    }
 
     /**
-     * Adds a column to a table if it does not exist.
-     * @param stmt Statement object
-     * @param tableName Name of the table
-     * @param columnName Name of the column
-     * @param alterQuery SQL query to add the column
-     * @throws SQLException
+     * Returns the router for read-only queries, e.g. to see how many reads went to the replica.
+     * @return ReplicaRouter object, or null if no replica is configured or no connection has been requested yet
      */
-    private static void addColumnIfNotExists(Statement stmt, String tableName, String columnName, String alterQuery) throws SQLException {
-        String checkColumnQuery = String.format(
-            "SELECT column_name FROM information_schema.columns WHERE table_name = '%s' AND column_name = '%s'",
-            tableName, columnName);
-        try (ResultSet rs = stmt.executeQuery(checkColumnQuery)) {
-            if (!rs.next()) {
-                stmt.executeUpdate(alterQuery);
-                System.out.printf("Column '%s' added to table '%s'.%n", columnName, tableName);
-            } else {
-                System.out.printf("Column '%s' already exists in table '%s'.%n", columnName, tableName);
-            }
-        }
+    public static ReplicaRouter getReplicaRouter() {
+        return replicaRouter;
     }
 
     /**
-     * Creates a table if it does not exist.
-     * @param stmt Statement object
-     * @param tableName Name of the table
-     * @param createQuery SQL query to create the table
-     * @throws SQLException
+     * Returns the current metrics of the connection pool.
+     * @return Stats object, or null if no connection has been requested yet
      */
-    private static void createTableIfNotExists(Statement stmt, String tableName, String createQuery) throws SQLException {
-        stmt.executeUpdate(createQuery);
-        System.out.printf("Table '%s' created (if it didn't already exist).%n", tableName);
+    public static ConnectionPool.Stats getPoolStats() {
+        ConnectionPool current = pool;
+        return current == null ? null : current.getStats();
+    }
+
+    /**
+     * Closes all pooled connections. Called when the application is stopped.
+     */
+    public static void shutdown() {
+        synchronized (DatabaseManager.class) {
+            if (pool != null) {
+                pool.shutdown();
+                pool = null;
+            }
+            if (replicaRouter != null) {
+                replicaRouter.shutdown();
+                replicaRouter = null;
+            }
+        }
     }
 }
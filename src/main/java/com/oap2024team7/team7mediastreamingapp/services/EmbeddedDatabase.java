@@ -0,0 +1,163 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class for the Embedded Database.
+ * Bootstraps an in-memory H2 database in MySQL compatibility mode with the sakila schema, the tables the app
+ * adds to it (migration 1 of SchemaMigrator) and a small set of reference data,
+ * so the managers can run unchanged without a MySQL server, e.g. for benchmarks and load tests.
+ * Start the app with -Ddb.url set to DEFAULT_URL (or call EmbeddedDatabase.start() before the first query)
+ * to use it; the staff member "admin" with password "admin" can log in.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+
+public class EmbeddedDatabase {
+    // MySQL mode with lower-case names, so the information_schema lookups of the managers work as on MySQL
+    static final String[] REQUIRED_SETTINGS = { "MODE=MySQL", "DATABASE_TO_LOWER=TRUE", "CASE_INSENSITIVE_IDENTIFIERS=TRUE" };
+    // Keeps an in-memory database alive while the pool has no open connection, e.g. after idle eviction
+    static final String IN_MEMORY_SETTING = "DB_CLOSE_DELAY=-1";
+    public static final String DEFAULT_URL = url("sakila");
+    private static final String SCHEMA_SCRIPT = "/db/sakila-schema.sql";
+    private static final String SEED_SCRIPT = "/db/sakila-seed.sql";
+
+    private EmbeddedDatabase() {
+    }
+
+    /**
+     * URL of an in-memory embedded database with all the settings the managers need.
+     * Databases with different names are independent of each other, e.g. a primary database and its replica.
+     * @param name Name of the database
+     * @return JDBC URL such as DEFAULT_URL
+     */
+    public static String url(String name) {
+        return "jdbc:h2:mem:" + name + ";" + String.join(";", REQUIRED_SETTINGS) + ";" + IN_MEMORY_SETTING;
+    }
+
+    /**
+     * Checks that an H2 URL has the settings the managers need (see url()).
+     * @param url
+     * @throws IllegalArgumentException if a setting is missing or set to another value
+     */
+    static void checkUrl(String url) {
+        Map<String, String> settings = new HashMap<>();
+        String[] parts = url.split(";");
+        for (int i = 1; i < parts.length; i++) {
+            int equals = parts[i].indexOf('=');
+            if (equals > 0) {
+                settings.put(parts[i].substring(0, equals).trim().toUpperCase(), parts[i].substring(equals + 1).trim());
+            }
+        }
+
+        List<String> required = new ArrayList<>(Arrays.asList(REQUIRED_SETTINGS));
+        if (url.startsWith("jdbc:h2:mem:")) {
+            required.add(IN_MEMORY_SETTING);
+        }
+        List<String> missing = new ArrayList<>();
+        for (String setting : required) {
+            int equals = setting.indexOf('=');
+            String value = settings.get(setting.substring(0, equals));
+            if (value == null || !value.equalsIgnoreCase(setting.substring(equals + 1))) {
+                missing.add(setting);
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("The embedded database URL " + url + " needs " + String.join(";", missing)
+                + ", e.g. " + DEFAULT_URL);
+        }
+    }
+
+    /**
+     * Points the connection pool to a new embedded database. Must be called before the first query.
+     */
+    public static void start() {
+        DatabaseManager.configure(DatabaseConfig.embedded());
+    }
+
+    /**
+     * Creates the schema and the reference data, unless the database already has them.
+     * Called by DatabaseManager when the pool connects to an embedded database.
+     * @param conn Connection to the embedded database
+     * @throws SQLException if a script fails
+     */
+    static void bootstrap(Connection conn) throws SQLException {
+        // MySQL's spatial function, used by AddressManager; H2 stores the WKB as it is
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE ALIAS IF NOT EXISTS ST_GeomFromWKB FOR \"" + EmbeddedDatabase.class.getName() + ".geomFromWkb\"");
+        }
+        if (tableExists(conn, "film")) {
+            return;
+        }
+        runScript(conn, SCHEMA_SCRIPT);
+        runScript(conn, SEED_SCRIPT);
+        System.out.println("Embedded database created from " + SCHEMA_SCRIPT + " and " + SEED_SCRIPT + ".");
+    }
+
+    /**
+     * Implementation of ST_GeomFromWKB for H2.
+     * @param wkb Geometry as WKB
+     * @return The same WKB
+     */
+    public static byte[] geomFromWkb(byte[] wkb) {
+        return wkb;
+    }
+
+    private static boolean tableExists(Connection conn, String tableName) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+        try (ResultSet rs = metaData.getTables(null, null, tableName, new String[] { "TABLE" })) {
+            return rs.next();
+        }
+    }
+
+    /**
+     * Runs the statements of a script on the classpath. Statements end with a semicolon at the end of a line,
+     * lines starting with -- are comments.
+     * @param conn
+     * @param resource
+     * @throws SQLException
+     */
+    private static void runScript(Connection conn, String resource) throws SQLException {
+        List<String> statements = new ArrayList<>();
+        try (InputStream in = EmbeddedDatabase.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new SQLException("Script " + resource + " not found on the classpath");
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            StringBuilder statement = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                    continue;
+                }
+                statement.append(line).append('\n');
+                if (trimmed.endsWith(";")) {
+                    statements.add(statement.substring(0, statement.lastIndexOf(";")));
+                    statement.setLength(0);
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("Unable to read script " + resource, e);
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : statements) {
+                stmt.execute(sql);
+            }
+        }
+    }
+}
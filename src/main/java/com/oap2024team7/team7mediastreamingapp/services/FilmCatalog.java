@@ -0,0 +1,820 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.oap2024team7.team7mediastreamingapp.models.Actor;
+import com.oap2024team7.team7mediastreamingapp.models.Film;
+import com.oap2024team7.team7mediastreamingapp.models.FilmPage;
+
+/**
+ * Class for the Film Catalog.
+ * Keeps all films, their categories and the stores that have them in memory, so browsing, filtering and sorting
+ * the film lists doesn't go to the database on every click.
+ * The catalog is loaded on first use and then refreshed incrementally in the background using the last_update columns
+ * of the film, film_actor, actor, film_category and inventory tables. Changes made through the admin screens
+ * are applied right away by the managers that make them, either by reloading the film or, for actor changes,
+ * through a FilmChangeEvent that updates the cached film and its search index entry in place.
+ * The catalog also keeps the full text search index of the films up to date.
+ * Films handed out by the catalog are copies, so callers can change them without affecting the catalog.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+public class FilmCatalog {
+    private static final long REFRESH_INTERVAL_SECONDS = 30;
+    // Loading the whole catalog takes longer than the usual read timeout
+    private static final int LOAD_TIMEOUT_SECONDS = 60;
+    private static final Timestamp NO_ROWS = new Timestamp(0);
+    private static final int FILM_IDS_PER_QUERY = BatchWriter.DEFAULT_CHUNK_SIZE;
+    // Up to this many changed films a refresh patches the snapshot film by film, above it a new snapshot is cheaper
+    private static final int MAX_PATCHED_FILMS = 32;
+
+    private static FilmCatalog instance;
+
+    // Film entries by film ID, guarded by lock; every change publishes a new snapshot
+    private final Object lock = new Object();
+    private Map<Integer, Entry> entries;
+    private Timestamp watermark;
+    private volatile Snapshot snapshot;
+    private final FilmSearchIndex searchIndex = new FilmSearchIndex();
+    private ScheduledExecutorService refresher;
+
+    private FilmCatalog() {
+    }
+
+    public static synchronized FilmCatalog getInstance() {
+        if (instance == null) {
+            instance = new FilmCatalog();
+            FilmChangeNotifier.getInstance().addListener(instance::applyChange);
+        }
+        return instance;
+    }
+
+    /**
+     * Fetches one page of films from the catalog that match the filters (null filters are ignored).
+     * Works like FilmManager.getFilmPage: the page starts after the given cursor and the films are sorted by
+     * the sort column and then by film ID.
+     * @param categoryId
+     * @param rating
+     * @param maxLength
+     * @param startYear
+     * @param endYear
+     * @param allowedRatings Ratings the films are limited to, or null for no limit
+     * @param after Cursor of the previous page, or null for the first page
+     * @param limit Number of films per page
+     * @param storeId
+     * @param sortBy "title" or "release_year"
+     * @return FilmPage object, or null if the catalog couldn't be loaded
+     */
+    public FilmPage getFilmPage(Integer categoryId, Film.Rating rating, Integer maxLength, Integer startYear, Integer endYear, Set<Film.Rating> allowedRatings, FilmPage.Cursor after, int limit, int storeId, String sortBy) {
+        Snapshot current = ensureLoaded();
+        if (current == null) {
+            return null;
+        }
+
+        boolean byTitle;
+        if ("title".equals(sortBy)) {
+            byTitle = true;
+        } else if ("release_year".equals(sortBy)) {
+            byTitle = false;
+        } else {
+            throw new IllegalArgumentException("Invalid sort column: " + sortBy);
+        }
+        // Intersect the bit sets of the filters, then read the page from the presorted order
+        BitSet matches = current.filterIndex.match(storeId, categoryId, rating, allowedRatings, maxLength, startYear, endYear);
+        int startPosition = current.firstPositionAfter(byTitle ? current.titleOrder : current.yearOrder, byTitle, after);
+        int[] slots = current.filterIndex.select(matches, byTitle, startPosition, limit + 1);
+
+        boolean hasNext = slots.length > limit;
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < slots.length && i < limit; i++) {
+            films.add(new Film(current.films[slots[i]]));
+        }
+
+        FilmPage.Cursor nextCursor = null;
+        if (hasNext && !films.isEmpty()) {
+            Film last = films.get(films.size() - 1);
+            Object sortValue = byTitle ? last.getTitle() : (Object) last.getReleaseYear();
+            nextCursor = new FilmPage.Cursor(sortValue, last.getFilmId());
+        }
+        return new FilmPage(films, nextCursor, hasNext);
+    }
+
+    /**
+     * Searches the titles, descriptions, actor names and categories of the films in a store.
+     * The results are ranked by relevance; the cursor holds the score and film ID of the last hit of the previous page.
+     * @param query The text typed by the user
+     * @param allowedRatings Ratings the films are limited to, or null for no limit
+     * @param after Cursor of the previous page, or null for the first page
+     * @param limit Number of films per page
+     * @param storeId
+     * @return FilmPage object, or null if the catalog couldn't be loaded
+     */
+    public FilmPage search(String query, Set<Film.Rating> allowedRatings, FilmPage.Cursor after, int limit, int storeId) {
+        Snapshot current = ensureLoaded();
+        if (current == null) {
+            return null;
+        }
+        BitSet matches = current.filterIndex.match(storeId, null, null, allowedRatings, null, null, null);
+
+        Double afterScore = after != null ? ((Number) after.getSortValue()).doubleValue() : null;
+        int afterFilmId = after != null ? after.getFilmId() : 0;
+        List<FilmSearchIndex.Hit> hits = searchIndex.search(query, filmId -> {
+            Integer slot = current.slotByFilmId.get(filmId);
+            return slot != null && matches.get(slot);
+        }, afterScore, afterFilmId, limit + 1);
+
+        boolean hasNext = hits.size() > limit;
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < hits.size() && i < limit; i++) {
+            films.add(new Film(current.films[current.slotByFilmId.get(hits.get(i).filmId)]));
+        }
+        FilmPage.Cursor nextCursor = null;
+        if (hasNext) {
+            FilmSearchIndex.Hit last = hits.get(limit - 1);
+            nextCursor = new FilmPage.Cursor(last.score, last.filmId);
+        }
+        return new FilmPage(films, nextCursor, hasNext);
+    }
+
+    /**
+     * Reloads one film from the database, e.g. after it was added or updated or its actors, category or inventory changed.
+     * Does nothing if the catalog hasn't been loaded yet.
+     * Inside a transaction the film is reloaded once the transaction has been committed.
+     * @param filmId
+     */
+    public void reloadFilm(int filmId) {
+        TransactionManager.afterCommit(() -> reloadCommittedFilm(filmId));
+    }
+
+    private void reloadCommittedFilm(int filmId) {
+        synchronized (lock) {
+            if (entries == null) {
+                return;
+            }
+            try (Connection conn = DatabaseManager.getConnection()) {
+                Map<Integer, Entry> loaded = loadEntries(conn, Collections.singletonList(filmId));
+                Entry entry = loaded.get(filmId);
+                if (entry != null) {
+                    putEntry(entry);
+                } else {
+                    removeEntry(filmId);
+                }
+                publishFilm(filmId);
+            } catch (SQLException e) {
+                // The background refresh picks the change up later
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Applies a committed change to the cached film and re-indexes only that film, without going to the database.
+     * Films the catalog doesn't have yet are loaded instead.
+     * @param event
+     */
+    private void applyChange(FilmChangeEvent event) {
+        int filmId = event.getFilmId();
+        synchronized (lock) {
+            if (entries == null) {
+                return;
+            }
+            Entry entry = entries.get(filmId);
+            if (entry == null) {
+                reloadCommittedFilm(filmId);
+                return;
+            }
+            Film film = new Film(entry.film);
+            List<Actor> actors = new ArrayList<>();
+            if (film.getActors() != null) {
+                for (Actor actor : film.getActors()) {
+                    if (!event.getRemovedActorIds().contains(actor.getActorId())) {
+                        actors.add(actor);
+                    }
+                }
+            }
+            for (Actor actor : event.getAddedActors()) {
+                if (!actors.contains(actor)) {
+                    actors.add(actor);
+                }
+            }
+            film.setActors(actors);
+            putEntry(new Entry(film, entry.categoryIds, entry.categoryNames, entry.storeIds, entry.hasLength, entry.hasYear));
+            publishFilm(filmId);
+        }
+    }
+
+    /**
+     * Removes a deleted film from the catalog.
+     * Inside a transaction the film is removed once the transaction has been committed.
+     * @param filmId
+     */
+    public void removeFilm(int filmId) {
+        TransactionManager.afterCommit(() -> {
+            synchronized (lock) {
+                if (entries != null && entries.containsKey(filmId)) {
+                    removeEntry(filmId);
+                    publishFilm(filmId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Applies the changes made to the database since the last refresh.
+     * Changed rows are found with the last_update columns. Deleted rows don't leave a timestamp behind,
+     * so the row counts are compared too, and the whole catalog is reloaded if they don't match.
+     */
+    public void refresh() {
+        synchronized (lock) {
+            if (entries == null) {
+                return;
+            }
+            try (Connection conn = DatabaseManager.getConnection()) {
+                // Read the new watermark first, so changes made while refreshing are picked up again next time
+                Watermark current = readWatermark(conn);
+                if (current.filmCount != entries.size()
+                    || current.actorRows != countActorRows()
+                    || current.categoryRows != countCategoryRows()
+                    || current.storePairs != countStorePairs()) {
+                    replaceEntries(loadEntries(conn, null));
+                    publish();
+                } else {
+                    List<Integer> changedFilmIds = getChangedFilmIds(conn, watermark);
+                    if (changedFilmIds.isEmpty()) {
+                        watermark = current.lastUpdate;
+                        return;
+                    }
+                    Map<Integer, Entry> loaded = loadEntries(conn, changedFilmIds);
+                    for (Integer filmId : changedFilmIds) {
+                        Entry entry = loaded.get(filmId);
+                        if (entry != null) {
+                            putEntry(entry);
+                        } else {
+                            removeEntry(filmId);
+                        }
+                    }
+                    if (changedFilmIds.size() <= MAX_PATCHED_FILMS) {
+                        for (Integer filmId : changedFilmIds) {
+                            publishFilm(filmId);
+                        }
+                    } else {
+                        publish();
+                    }
+                }
+                watermark = current.lastUpdate;
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Stops the background refresh.
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            if (refresher != null) {
+                refresher.shutdownNow();
+                refresher = null;
+            }
+        }
+    }
+
+    /**
+     * Loads the whole catalog if it hasn't been loaded yet and starts the background refresh.
+     * @return The current snapshot, or null if the catalog couldn't be loaded
+     */
+    private Snapshot ensureLoaded() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (lock) {
+            if (snapshot == null) {
+                // The first load may come from the read replica, the refreshes read the primary database
+                // and pick up whatever the replica was still missing
+                try {
+                    // Retried after a transient error; the catalog itself is what keeps the films while the database is down
+                    ResiliencePolicy.getInstance().read(null, LOAD_TIMEOUT_SECONDS, () -> {
+                        try (Connection conn = DatabaseManager.getReadConnection()) {
+                            Timestamp loadedFrom = readWatermark(conn).lastUpdate;
+                            replaceEntries(loadEntries(conn, null));
+                            watermark = loadedFrom;
+                            publish();
+                        }
+                        return null;
+                    });
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                    entries = null;
+                    return null;
+                }
+                startRefresher();
+            }
+            return snapshot;
+        }
+    }
+
+    private void startRefresher() {
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "film-catalog-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refresh, REFRESH_INTERVAL_SECONDS, REFRESH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Builds a new snapshot from the entries and makes it visible to readers. Called with the lock held.
+     */
+    private void publish() {
+        snapshot = new Snapshot(entries.values());
+    }
+
+    /**
+     * Makes the change of one film visible to readers by patching the current snapshot, which is much cheaper
+     * than building a new one: the admin screens change one film at a time. Called with the lock held.
+     * @param filmId The film whose entry was put or removed
+     */
+    private void publishFilm(int filmId) {
+        Entry entry = entries.get(filmId);
+        snapshot = entry != null ? snapshot.withEntry(entry) : snapshot.withoutFilm(filmId);
+    }
+
+    /**
+     * Adds or replaces an entry and updates the search index. Called with the lock held.
+     */
+    private void putEntry(Entry entry) {
+        entries.put(entry.film.getFilmId(), entry);
+        indexEntry(entry);
+    }
+
+    /**
+     * Removes an entry and its search index postings. Called with the lock held.
+     */
+    private void removeEntry(int filmId) {
+        entries.remove(filmId);
+        searchIndex.removeFilm(filmId);
+    }
+
+    /**
+     * Replaces all entries and rebuilds the search index. Called with the lock held.
+     */
+    private void replaceEntries(Map<Integer, Entry> loaded) {
+        entries = loaded;
+        searchIndex.clear();
+        for (Entry entry : loaded.values()) {
+            indexEntry(entry);
+        }
+    }
+
+    private void indexEntry(Entry entry) {
+        Film film = entry.film;
+        List<String> actorNames = new ArrayList<>();
+        if (film.getActors() != null) {
+            for (Actor actor : film.getActors()) {
+                actorNames.add(actor.getFirstName() + " " + actor.getLastName());
+            }
+        }
+        searchIndex.indexFilm(film.getFilmId(), film.getTitle(), film.getDescription(), actorNames, entry.categoryNames);
+    }
+
+    private int countActorRows() {
+        int count = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.film.getActors() != null) {
+                count += entry.film.getActors().size();
+            }
+        }
+        return count;
+    }
+
+    private int countCategoryRows() {
+        int count = 0;
+        for (Entry entry : entries.values()) {
+            count += entry.categoryIds.length;
+        }
+        return count;
+    }
+
+    private int countStorePairs() {
+        int count = 0;
+        for (Entry entry : entries.values()) {
+            count += entry.storeIds.length;
+        }
+        return count;
+    }
+
+    /**
+     * Loads films together with their category and store IDs.
+     * Long lists of films, e.g. after a bulk change, are loaded in chunks of FILM_IDS_PER_QUERY films,
+     * so the number of placeholders stays below the limit of the driver.
+     * @param conn
+     * @param filmIds The films to load, or null to load all films
+     * @return Entries by film ID; films that don't exist anymore are missing
+     * @throws SQLException
+     */
+    private Map<Integer, Entry> loadEntries(Connection conn, Collection<Integer> filmIds) throws SQLException {
+        if (filmIds != null && filmIds.size() > FILM_IDS_PER_QUERY) {
+            List<Integer> ids = new ArrayList<>(filmIds);
+            Map<Integer, Entry> loaded = new HashMap<>();
+            for (int from = 0; from < ids.size(); from += FILM_IDS_PER_QUERY) {
+                loaded.putAll(loadEntries(conn, ids.subList(from, Math.min(from + FILM_IDS_PER_QUERY, ids.size()))));
+            }
+            return loaded;
+        }
+
+        String where = filmIds == null ? "" : " WHERE film_id IN (" + placeholders(filmIds.size()) + ")";
+
+        List<Film> films;
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT * FROM film" + where)) {
+            setIds(stmt, filmIds);
+            try (ResultSet rs = stmt.executeQuery()) {
+                films = new FilmManager().hydrateFilms(conn, rs);
+            }
+        }
+
+        // The films read a missing length or release year as 0, the filters have to leave such films out like SQL does
+        Set<Integer> withoutLength = new HashSet<>();
+        Set<Integer> withoutYear = new HashSet<>();
+        String missingQuery = "SELECT film_id, length IS NULL AS no_length, release_year IS NULL AS no_year FROM film " +
+            "WHERE (length IS NULL OR release_year IS NULL)" + where.replace(" WHERE", " AND");
+        try (PreparedStatement stmt = conn.prepareStatement(missingQuery)) {
+            setIds(stmt, filmIds);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    if (rs.getBoolean("no_length")) {
+                        withoutLength.add(rs.getInt("film_id"));
+                    }
+                    if (rs.getBoolean("no_year")) {
+                        withoutYear.add(rs.getInt("film_id"));
+                    }
+                }
+            }
+        }
+
+        Map<Integer, List<Integer>> categoryIds = new HashMap<>();
+        Map<Integer, List<String>> categoryNames = new HashMap<>();
+        String categoryQuery = "SELECT fc.film_id, fc.category_id, c.name FROM film_category fc " +
+            "JOIN category c ON c.category_id = fc.category_id" + where.replace("film_id", "fc.film_id");
+        try (PreparedStatement stmt = conn.prepareStatement(categoryQuery)) {
+            setIds(stmt, filmIds);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    categoryIds.computeIfAbsent(rs.getInt("film_id"), id -> new ArrayList<>()).add(rs.getInt("category_id"));
+                    categoryNames.computeIfAbsent(rs.getInt("film_id"), id -> new ArrayList<>()).add(rs.getString("name"));
+                }
+            }
+        }
+
+        Map<Integer, List<Integer>> storeIds = new HashMap<>();
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT DISTINCT film_id, store_id FROM inventory" + where)) {
+            setIds(stmt, filmIds);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    storeIds.computeIfAbsent(rs.getInt("film_id"), id -> new ArrayList<>()).add(rs.getInt("store_id"));
+                }
+            }
+        }
+
+        Map<Integer, Entry> loaded = new HashMap<>();
+        for (Film film : films) {
+            List<String> names = categoryNames.get(film.getFilmId());
+            loaded.put(film.getFilmId(), new Entry(film,
+                toArray(categoryIds.get(film.getFilmId())),
+                names != null ? names : Collections.<String>emptyList(),
+                toArray(storeIds.get(film.getFilmId())),
+                !withoutLength.contains(film.getFilmId()),
+                !withoutYear.contains(film.getFilmId())));
+        }
+        return loaded;
+    }
+
+    /**
+     * Reads the newest last_update of the catalog tables and the row counts used to notice deleted rows.
+     */
+    private Watermark readWatermark(Connection conn) throws SQLException {
+        String query = "SELECT " +
+            "(SELECT MAX(last_update) FROM film), " +
+            "(SELECT MAX(last_update) FROM film_actor), " +
+            "(SELECT MAX(last_update) FROM actor), " +
+            "(SELECT MAX(last_update) FROM film_category), " +
+            "(SELECT MAX(last_update) FROM inventory), " +
+            "(SELECT COUNT(*) FROM film), " +
+            "(SELECT COUNT(*) FROM film_actor), " +
+            "(SELECT COUNT(*) FROM film_category), " +
+            "(SELECT COUNT(*) FROM (SELECT DISTINCT film_id, store_id FROM inventory) store_pairs)";
+        try (PreparedStatement stmt = conn.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            Timestamp lastUpdate = NO_ROWS;
+            for (int column = 1; column <= 5; column++) {
+                Timestamp tableLastUpdate = rs.getTimestamp(column);
+                if (tableLastUpdate != null && tableLastUpdate.after(lastUpdate)) {
+                    lastUpdate = tableLastUpdate;
+                }
+            }
+            return new Watermark(lastUpdate, rs.getInt(6), rs.getInt(7), rs.getInt(8), rs.getInt(9));
+        }
+    }
+
+    /**
+     * Finds the films whose own row, actors, categories or inventory changed since the given time.
+     * Rows changed in the same second as the watermark are included, reloading them twice is harmless.
+     */
+    private List<Integer> getChangedFilmIds(Connection conn, Timestamp since) throws SQLException {
+        String query = "SELECT film_id FROM film WHERE last_update >= ? " +
+            "UNION SELECT film_id FROM film_actor WHERE last_update >= ? " +
+            "UNION SELECT fa.film_id FROM film_actor fa JOIN actor a ON a.actor_id = fa.actor_id WHERE a.last_update >= ? " +
+            "UNION SELECT film_id FROM film_category WHERE last_update >= ? " +
+            "UNION SELECT film_id FROM inventory WHERE last_update >= ?";
+        List<Integer> filmIds = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement(query)) {
+            for (int i = 1; i <= 5; i++) {
+                stmt.setTimestamp(i, since);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    filmIds.add(rs.getInt(1));
+                }
+            }
+        }
+        return filmIds;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static void setIds(PreparedStatement stmt, Collection<Integer> ids) throws SQLException {
+        if (ids == null) {
+            return;
+        }
+        int paramIndex = 1;
+        for (Integer id : ids) {
+            stmt.setInt(paramIndex++, id);
+        }
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        if (values == null) {
+            return new int[0];
+        }
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * A film with its categories and the IDs of the stores that have it in inventory.
+     * hasLength and hasYear are false if the column is NULL, the film then holds 0.
+     */
+    private static class Entry {
+        private final Film film;
+        private final int[] categoryIds;
+        private final List<String> categoryNames;
+        private final int[] storeIds;
+        private final boolean hasLength;
+        private final boolean hasYear;
+
+        private Entry(Film film, int[] categoryIds, List<String> categoryNames, int[] storeIds, boolean hasLength, boolean hasYear) {
+            this.film = film;
+            this.categoryIds = categoryIds;
+            this.categoryNames = categoryNames;
+            this.storeIds = storeIds;
+            this.hasLength = hasLength;
+            this.hasYear = hasYear;
+        }
+
+        private FilmFilterIndex.Row filterRow() {
+            return new FilmFilterIndex.Row(storeIds, categoryIds, film.getRating(),
+                hasLength ? film.getLength() : null, hasYear ? film.getReleaseYear() : null);
+        }
+    }
+
+    /**
+     * Newest last_update of the catalog tables and the row counts at the same moment.
+     */
+    private static class Watermark {
+        private final Timestamp lastUpdate;
+        private final int filmCount;
+        private final int actorRows;
+        private final int categoryRows;
+        private final int storePairs;
+
+        private Watermark(Timestamp lastUpdate, int filmCount, int actorRows, int categoryRows, int storePairs) {
+            this.lastUpdate = lastUpdate;
+            this.filmCount = filmCount;
+            this.actorRows = actorRows;
+            this.categoryRows = categoryRows;
+            this.storePairs = storePairs;
+        }
+    }
+
+    /**
+     * Immutable view of the catalog that readers use without locking.
+     * Every film has a slot; the filters are answered by the bit sets of the filter index, and the sort orders are slot arrays.
+     * A change to one film gives a new snapshot that only patches the slot of the film: it is moved to its new
+     * position in the sort orders and in the bit sets of its old and new values, nothing is sorted again.
+     * The slot of a removed film stays free until another film is added.
+     */
+    private static class Snapshot {
+        // Films by slot, null for a free slot
+        private final Film[] films;
+        private final Map<Integer, Integer> slotByFilmId;
+        private final int[] titleOrder;
+        private final int[] yearOrder;
+        private final FilmFilterIndex filterIndex;
+
+        private Snapshot(Collection<Entry> entries) {
+            Entry[] sorted = entries.toArray(new Entry[0]);
+            Arrays.sort(sorted, Comparator.comparingInt(entry -> entry.film.getFilmId()));
+
+            films = new Film[sorted.length];
+            slotByFilmId = new HashMap<>();
+            FilmFilterIndex.Row[] rows = new FilmFilterIndex.Row[sorted.length];
+            for (int slot = 0; slot < sorted.length; slot++) {
+                films[slot] = sorted[slot].film;
+                slotByFilmId.put(films[slot].getFilmId(), slot);
+                rows[slot] = sorted[slot].filterRow();
+            }
+            titleOrder = sortedSlots(true);
+            yearOrder = sortedSlots(false);
+            filterIndex = new FilmFilterIndex(rows, titleOrder, yearOrder);
+        }
+
+        private Snapshot(Film[] films, Map<Integer, Integer> slotByFilmId, int[] titleOrder, int[] yearOrder, FilmFilterIndex filterIndex) {
+            this.films = films;
+            this.slotByFilmId = slotByFilmId;
+            this.titleOrder = titleOrder;
+            this.yearOrder = yearOrder;
+            this.filterIndex = filterIndex;
+        }
+
+        /**
+         * Returns a snapshot where the film of the entry is added or replaced.
+         */
+        private Snapshot withEntry(Entry entry) {
+            int filmId = entry.film.getFilmId();
+            Integer existingSlot = slotByFilmId.get(filmId);
+            int slot = existingSlot != null ? existingSlot : freeSlot();
+
+            Film[] changedFilms = Arrays.copyOf(films, Math.max(films.length, slot + 1));
+            changedFilms[slot] = entry.film;
+            Map<Integer, Integer> changedSlots = slotByFilmId;
+            if (existingSlot == null) {
+                changedSlots = new HashMap<>(slotByFilmId);
+                changedSlots.put(filmId, slot);
+            }
+            int[] changedTitleOrder = moveSlot(titleOrder, changedFilms, slot, true);
+            int[] changedYearOrder = moveSlot(yearOrder, changedFilms, slot, false);
+            return new Snapshot(changedFilms, changedSlots, changedTitleOrder, changedYearOrder,
+                filterIndex.withRow(slot, entry.filterRow(), changedTitleOrder, changedYearOrder));
+        }
+
+        /**
+         * Returns a snapshot without the film, or this snapshot if it doesn't have the film.
+         */
+        private Snapshot withoutFilm(int filmId) {
+            Integer slot = slotByFilmId.get(filmId);
+            if (slot == null) {
+                return this;
+            }
+            Film[] changedFilms = films.clone();
+            changedFilms[slot] = null;
+            Map<Integer, Integer> changedSlots = new HashMap<>(slotByFilmId);
+            changedSlots.remove(filmId);
+            int[] changedTitleOrder = moveSlot(titleOrder, changedFilms, slot, true);
+            int[] changedYearOrder = moveSlot(yearOrder, changedFilms, slot, false);
+            return new Snapshot(changedFilms, changedSlots, changedTitleOrder, changedYearOrder,
+                filterIndex.withRow(slot, null, changedTitleOrder, changedYearOrder));
+        }
+
+        private int freeSlot() {
+            for (int slot = 0; slot < films.length; slot++) {
+                if (films[slot] == null) {
+                    return slot;
+                }
+            }
+            return films.length;
+        }
+
+        /**
+         * Moves a slot from the position of its film in this snapshot to the position of its film in the changed films.
+         * The other slots keep their order, so the slot is found and inserted with a binary search.
+         * @param order Slots in sort order
+         * @param changedFilms Films by slot after the change, null at the slot if the film was removed
+         * @param slot
+         * @param byTitle
+         * @return The changed order; the same order if the slot keeps its position
+         */
+        private int[] moveSlot(int[] order, Film[] changedFilms, int slot, boolean byTitle) {
+            Film before = slot < films.length ? films[slot] : null;
+            Film after = changedFilms[slot];
+            if (before != null && after != null && compare(before, sortValue(after, byTitle), after.getFilmId(), byTitle) == 0) {
+                return order;
+            }
+
+            int[] remaining = order;
+            if (before != null) {
+                int position = positionOf(order, films, before, byTitle);
+                remaining = new int[order.length - 1];
+                System.arraycopy(order, 0, remaining, 0, position);
+                System.arraycopy(order, position + 1, remaining, position, remaining.length - position);
+            }
+            if (after == null) {
+                return remaining;
+            }
+            int position = positionOf(remaining, changedFilms, after, byTitle);
+            int[] moved = new int[remaining.length + 1];
+            System.arraycopy(remaining, 0, moved, 0, position);
+            moved[position] = slot;
+            System.arraycopy(remaining, position, moved, position + 1, remaining.length - position);
+            return moved;
+        }
+
+        /**
+         * Binary search for the first position in the sort order that doesn't come before the film.
+         */
+        private static int positionOf(int[] order, Film[] films, Film film, boolean byTitle) {
+            Object sortValue = sortValue(film, byTitle);
+            int low = 0;
+            int high = order.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compare(films[order[middle]], sortValue, film.getFilmId(), byTitle) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        private int[] sortedSlots(boolean byTitle) {
+            Integer[] slots = new Integer[films.length];
+            for (int slot = 0; slot < slots.length; slot++) {
+                slots[slot] = slot;
+            }
+            Arrays.sort(slots, (a, b) -> compare(films[a], sortValue(films[b], byTitle), films[b].getFilmId(), byTitle));
+            int[] order = new int[slots.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = slots[i];
+            }
+            return order;
+        }
+
+        /**
+         * Binary search for the first position in the sort order that comes after the cursor.
+         */
+        private int firstPositionAfter(int[] order, boolean byTitle, FilmPage.Cursor after) {
+            if (after == null) {
+                return 0;
+            }
+            int low = 0;
+            int high = order.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compare(films[order[middle]], after.getSortValue(), after.getFilmId(), byTitle) <= 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Compares a film to a (sort value, film ID) position, titles are compared ignoring case like MySQL does.
+         */
+        private static int compare(Film film, Object sortValue, int filmId, boolean byTitle) {
+            int result = byTitle
+                ? String.CASE_INSENSITIVE_ORDER.compare(film.getTitle(), (String) sortValue)
+                : Integer.compare(film.getReleaseYear(), ((Number) sortValue).intValue());
+            return result != 0 ? result : Integer.compare(film.getFilmId(), filmId);
+        }
+
+        private static Object sortValue(Film film, boolean byTitle) {
+            return byTitle ? film.getTitle() : (Object) film.getReleaseYear();
+        }
+    }
+}
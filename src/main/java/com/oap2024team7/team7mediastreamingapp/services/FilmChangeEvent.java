@@ -0,0 +1,49 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import com.oap2024team7.team7mediastreamingapp.models.Actor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class for the Film Change Event.
+ * Describes what changed about one film, so listeners (see FilmChangeNotifier) can update their copy of the film
+ * instead of reloading it. For now the event carries the actors that were added to and removed from the film.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+public class FilmChangeEvent {
+    private final int filmId;
+    private final List<Actor> addedActors;
+    private final List<Integer> removedActorIds;
+
+    public FilmChangeEvent(int filmId, List<Actor> addedActors, List<Integer> removedActorIds) {
+        this.filmId = filmId;
+        this.addedActors = Collections.unmodifiableList(new ArrayList<>(addedActors));
+        this.removedActorIds = Collections.unmodifiableList(new ArrayList<>(removedActorIds));
+    }
+
+    public int getFilmId() {
+        return filmId;
+    }
+
+    // Actors that are now assigned to the film and weren't before
+    public List<Actor> getAddedActors() {
+        return addedActors;
+    }
+
+    // IDs of the actors that are no longer assigned to the film
+    public List<Integer> getRemovedActorIds() {
+        return removedActorIds;
+    }
+
+    public boolean isEmpty() {
+        return addedActors.isEmpty() && removedActorIds.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "FilmChangeEvent{filmId=" + filmId + ", addedActors=" + addedActors.size()
+            + ", removedActorIds=" + removedActorIds + "}";
+    }
+}
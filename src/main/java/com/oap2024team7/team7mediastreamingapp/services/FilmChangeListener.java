@@ -0,0 +1,10 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+/**
+ * Listener for changes made to films, registered with FilmChangeNotifier.
+ * Called after the change has been committed, on the thread that made it, so it should return quickly.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+public interface FilmChangeListener {
+    void filmChanged(FilmChangeEvent event);
+}
@@ -0,0 +1,55 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Class for the Film Change Notifier.
+ * The managers publish a FilmChangeEvent here when they change a film, and caches such as the FilmCatalog
+ * (and with it the search index) apply the change to their own copy of the film.
+ * Inside a transaction the listeners are called once the transaction has been committed, and not at all if it is rolled back.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+public class FilmChangeNotifier {
+    private static FilmChangeNotifier instance;
+
+    private final List<FilmChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private FilmChangeNotifier() {
+    }
+
+    public static synchronized FilmChangeNotifier getInstance() {
+        if (instance == null) {
+            instance = new FilmChangeNotifier();
+        }
+        return instance;
+    }
+
+    public void addListener(FilmChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(FilmChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Hands the event to every listener once the change is committed. Events without changes are dropped.
+     * A listener that fails doesn't keep the others from being called.
+     * @param event
+     */
+    public void publish(FilmChangeEvent event) {
+        if (event.isEmpty()) {
+            return;
+        }
+        TransactionManager.afterCommit(() -> {
+            for (FilmChangeListener listener : listeners) {
+                try {
+                    listener.filmChanged(event);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,122 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.oap2024team7.team7mediastreamingapp.models.Customer;
+import com.oap2024team7.team7mediastreamingapp.models.Film;
+import com.oap2024team7.team7mediastreamingapp.models.FilmDetailsView;
+import com.oap2024team7.team7mediastreamingapp.models.Profile;
+import com.oap2024team7.team7mediastreamingapp.models.Review;
+
+/**
+ * Class for the Film Details Manager.
+ * This class is responsible for loading everything the Film Details screen needs in one go:
+ * one query for the reviews (with the profile names of their authors) and one query for the customer's
+ * rental status, both on the same connection; the free copies and the next available date come from the AvailabilityEngine.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+
+public class FilmDetailsManager {
+    /**
+     * Loads the details view of a film.
+     * The average score and the current profile's review are taken from the same rows as the review list,
+     * the active rental is one query, and the free copies and next available date are looked up in the AvailabilityEngine.
+     * @param film The film to show, including its actors
+     * @param customer The logged-in customer, or null to skip the rental and availability status
+     * @param profile The current profile, or null if no profile is selected
+     * @return FilmDetailsView object, or null if the details couldn't be loaded
+     */
+    public FilmDetailsView loadFilmDetails(Film film, Customer customer, Profile profile) {
+        String reviewsQuery = "SELECT r.review_id, r.film_id, r.profile_id, r.review, r.liked, r.review_date, p.profile_name " +
+            "FROM film_review r " +
+            "LEFT JOIN profile p ON p.profile_id = r.profile_id " +
+            "WHERE r.film_id = ?";
+        // Same check as RentalManager.customerHasActiveRental; the free copies come from the AvailabilityEngine
+        String activeRentalQuery = "SELECT COUNT(*) AS active_rentals FROM rental r JOIN inventory i ON r.inventory_id = i.inventory_id " +
+            "WHERE r.customer_id = ? AND i.film_id = ? AND r.rental_date <= ? AND r.return_date >= ?";
+
+        int filmId = film.getFilmId();
+        List<FilmDetailsView.AuthoredReview> reviews = new ArrayList<>();
+        Review currentProfileReview = null;
+        int totalScore = 0;
+        int reviewCount = 0;
+        boolean hasActiveRental = false;
+        int availableCopies = 0;
+        LocalDateTime nextAvailableDate = null;
+
+        try (Connection conn = DatabaseManager.getConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement(reviewsQuery)) {
+                stmt.setInt(1, filmId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Timestamp reviewDate = rs.getTimestamp("review_date");
+                        Review review = new Review(
+                            rs.getInt("review_id"),
+                            rs.getInt("film_id"),
+                            rs.getInt("profile_id"),
+                            rs.getBoolean("liked"),
+                            rs.getString("review"),
+                            reviewDate != null ? reviewDate.toLocalDateTime().toLocalDate() : null
+                        );
+
+                        // Each like is worth 5 and each dislike 0, like ReviewManager.getAverageReviewScore
+                        totalScore += review.isLiked() ? 5 : 0;
+                        reviewCount++;
+
+                        if (profile != null && review.getProfileId() == profile.getProfileId()) {
+                            currentProfileReview = review;
+                        }
+                        if (review.getReview() != null) {
+                            reviews.add(new FilmDetailsView.AuthoredReview(review, rs.getString("profile_name")));
+                        }
+                    }
+                }
+            }
+
+            if (customer != null) {
+                LocalDateTime now = LocalDateTime.now();
+                Timestamp start = Timestamp.valueOf(now);
+                Timestamp end = Timestamp.valueOf(now.plusDays(1));
+                try (PreparedStatement stmt = conn.prepareStatement(activeRentalQuery)) {
+                    stmt.setInt(1, customer.getCustomerId());
+                    stmt.setInt(2, filmId);
+                    stmt.setTimestamp(3, end);
+                    stmt.setTimestamp(4, start);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next()) {
+                            hasActiveRental = rs.getInt("active_rentals") > 0;
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        if (customer != null) {
+            // After the connection is returned, in case the engine has to load the film's copies
+            try {
+                LocalDateTime now = LocalDateTime.now();
+                AvailabilityEngine availability = AvailabilityEngine.getInstance();
+                availableCopies = availability.countFreeCopies(filmId, customer.getStoreId(), now, now.plusDays(1));
+                if (availableCopies == 0) {
+                    nextAvailableDate = availability.getNextFreeInstant(filmId, customer.getStoreId(), now);
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+
+        double averageScore = reviewCount == 0 ? 0.00 : Math.round((double) totalScore / reviewCount * 100.0) / 100.0;
+        return new FilmDetailsView(film, reviews, averageScore, currentProfileReview, hasActiveRental, availableCopies, nextAvailableDate);
+    }
+}
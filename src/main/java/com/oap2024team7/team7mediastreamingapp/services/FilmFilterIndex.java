@@ -0,0 +1,381 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.oap2024team7.team7mediastreamingapp.models.Film;
+
+/**
+ * Class for the Film Filter Index.
+ * Bitmap index over the films of a catalog snapshot: every film has a slot, and there is a bit set of slots
+ * per store, category, rating, release year and length bucket of 10 minutes.
+ * Films without a length or release year are in none of the length buckets or years, so the range filters leave them
+ * out like the WHERE clause of FilmManager.getFilmPage does with NULL columns.
+ * The filters of the film list are answered by intersecting these bit sets, and the page is then read
+ * from the presorted title or release year order, so no filter combination needs a query.
+ * The index is immutable. The film catalog builds a new one when it loads or reloads many films; a change to a single
+ * film is applied with withRow, which shares every bit set the film isn't in with the previous index.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+class FilmFilterIndex {
+    private static final int LENGTH_BUCKET_SIZE = 10;
+
+    private final int size;
+    private final Row[] rows;
+    private final Map<Integer, BitSet> byStore;
+    private final Map<Integer, BitSet> byCategory;
+    private final Map<Film.Rating, BitSet> byRating;
+    private final TreeMap<Integer, BitSet> byYear;
+    // Films with a length in the bucket, and films with a length below the bucket
+    private final BitSet[] inLengthBucket;
+    private final BitSet[] belowLengthBucket;
+    // Slots in sort order, and the position of every slot in that order
+    private final int[] titleOrder;
+    private final int[] titlePositions;
+    private final int[] yearOrder;
+    private final int[] yearPositions;
+
+    /**
+     * Builds the index.
+     * @param rows Filter values by slot, null for a free slot
+     * @param titleOrder Slots sorted by title and film ID
+     * @param yearOrder Slots sorted by release year and film ID
+     */
+    FilmFilterIndex(Row[] rows, int[] titleOrder, int[] yearOrder) {
+        size = rows.length;
+        this.rows = rows;
+        byStore = new HashMap<>();
+        byCategory = new HashMap<>();
+        byRating = new EnumMap<>(Film.Rating.class);
+        byYear = new TreeMap<>();
+        int maxBucket = 0;
+        for (int slot = 0; slot < size; slot++) {
+            Row row = rows[slot];
+            if (row == null) {
+                continue;
+            }
+            for (int storeId : row.storeIds) {
+                bitSet(byStore, storeId).set(slot);
+            }
+            for (int categoryId : row.categoryIds) {
+                bitSet(byCategory, categoryId).set(slot);
+            }
+            if (row.rating != null) {
+                bitSet(byRating, row.rating).set(slot);
+            }
+            if (row.releaseYear != null) {
+                bitSet(byYear, row.releaseYear).set(slot);
+            }
+            if (row.length != null) {
+                maxBucket = Math.max(maxBucket, lengthBucket(row.length));
+            }
+        }
+
+        inLengthBucket = new BitSet[maxBucket + 1];
+        belowLengthBucket = new BitSet[maxBucket + 2];
+        for (int bucket = 0; bucket < inLengthBucket.length; bucket++) {
+            inLengthBucket[bucket] = new BitSet(size);
+        }
+        for (int slot = 0; slot < size; slot++) {
+            if (rows[slot] != null && rows[slot].length != null) {
+                inLengthBucket[lengthBucket(rows[slot].length)].set(slot);
+            }
+        }
+        belowLengthBucket[0] = new BitSet(size);
+        for (int bucket = 1; bucket < belowLengthBucket.length; bucket++) {
+            belowLengthBucket[bucket] = (BitSet) belowLengthBucket[bucket - 1].clone();
+            belowLengthBucket[bucket].or(inLengthBucket[bucket - 1]);
+        }
+
+        this.titleOrder = titleOrder;
+        this.titlePositions = positions(titleOrder, size);
+        this.yearOrder = yearOrder;
+        this.yearPositions = positions(yearOrder, size);
+    }
+
+    /**
+     * Copies the index with one slot changed. Only the bit sets the old and new values of the slot are in
+     * are cloned, the others are shared with the previous index.
+     */
+    private FilmFilterIndex(FilmFilterIndex previous, int slot, Row row, int[] titleOrder, int[] yearOrder) {
+        size = Math.max(previous.size, slot + 1);
+        rows = Arrays.copyOf(previous.rows, size);
+        byStore = new HashMap<>(previous.byStore);
+        byCategory = new HashMap<>(previous.byCategory);
+        byRating = new EnumMap<>(previous.byRating);
+        byYear = new TreeMap<>(previous.byYear);
+
+        // New buckets start out empty, so the films below them are all films with a length
+        int buckets = previous.inLengthBucket.length;
+        if (row != null && row.length != null) {
+            buckets = Math.max(buckets, lengthBucket(row.length) + 1);
+        }
+        inLengthBucket = Arrays.copyOf(previous.inLengthBucket, buckets);
+        belowLengthBucket = Arrays.copyOf(previous.belowLengthBucket, buckets + 1);
+        for (int bucket = previous.inLengthBucket.length; bucket < buckets; bucket++) {
+            inLengthBucket[bucket] = new BitSet(size);
+            belowLengthBucket[bucket + 1] = belowLengthBucket[bucket];
+        }
+
+        Set<BitSet> copied = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (rows[slot] != null) {
+            setSlot(rows[slot], slot, false, copied);
+        }
+        rows[slot] = row;
+        if (row != null) {
+            setSlot(row, slot, true, copied);
+        }
+
+        this.titleOrder = titleOrder;
+        this.titlePositions = positions(titleOrder, size);
+        this.yearOrder = yearOrder;
+        this.yearPositions = positions(yearOrder, size);
+    }
+
+    /**
+     * Returns an index where one slot has new filter values, used when a single film changes.
+     * Costs a copy of the slot arrays and of the bit sets of the film instead of a rebuild of the whole index.
+     * @param slot The slot of the film, may be past the last slot of this index
+     * @param row New filter values of the slot, or null to free the slot
+     * @param titleOrder Slots sorted by title and film ID, with the change applied
+     * @param yearOrder Slots sorted by release year and film ID, with the change applied
+     * @return The changed index; this index if nothing the index keeps has changed
+     */
+    FilmFilterIndex withRow(int slot, Row row, int[] titleOrder, int[] yearOrder) {
+        Row current = slot < size ? rows[slot] : null;
+        if (Objects.equals(current, row) && titleOrder == this.titleOrder && yearOrder == this.yearOrder) {
+            return this;
+        }
+        return new FilmFilterIndex(this, slot, row, titleOrder, yearOrder);
+    }
+
+    /**
+     * Finds the films that match all given filters (null filters are ignored), with the same meaning as the
+     * WHERE clause of FilmManager.getFilmPage.
+     * @param storeId
+     * @param categoryId
+     * @param rating
+     * @param allowedRatings Ratings the films are limited to, or null for no limit
+     * @param maxLength
+     * @param startYear
+     * @param endYear
+     * @return New bit set with the slots of the matching films
+     */
+    BitSet match(int storeId, Integer categoryId, Film.Rating rating, Set<Film.Rating> allowedRatings, Integer maxLength, Integer startYear, Integer endYear) {
+        BitSet store = byStore.get(storeId);
+        if (store == null) {
+            return new BitSet();
+        }
+        BitSet matches = (BitSet) store.clone();
+
+        if (categoryId != null) {
+            andWith(matches, byCategory.get(categoryId));
+        }
+        if (rating != null && rating != Film.Rating.NONE) {
+            andWith(matches, byRating.get(rating));
+        }
+        if (allowedRatings != null) {
+            BitSet allowed = new BitSet(size);
+            for (Film.Rating allowedRating : allowedRatings) {
+                BitSet ratingSlots = byRating.get(allowedRating);
+                if (ratingSlots != null) {
+                    allowed.or(ratingSlots);
+                }
+            }
+            matches.and(allowed);
+        }
+        if (maxLength != null) {
+            matches.and(lengthAtMost(maxLength));
+        }
+        if (startYear != null || endYear != null) {
+            BitSet years = new BitSet(size);
+            for (BitSet yearSlots : byYear.subMap(
+                    startYear != null ? startYear : Integer.MIN_VALUE, true,
+                    endYear != null ? endYear : Integer.MAX_VALUE, true).values()) {
+                years.or(yearSlots);
+            }
+            matches.and(years);
+        }
+        return matches;
+    }
+
+    /**
+     * Reads matching films in sort order.
+     * @param matches Slots of the matching films
+     * @param byTitle True for the title order, false for the release year order
+     * @param startPosition First position in the sort order to read from
+     * @param count Maximum number of films to read
+     * @return Slots of the films, in sort order
+     */
+    int[] select(BitSet matches, boolean byTitle, int startPosition, int count) {
+        int[] order = byTitle ? titleOrder : yearOrder;
+        int remaining = order.length - startPosition;
+        if (remaining <= 0 || count <= 0) {
+            return new int[0];
+        }
+
+        int matchCount = matches.cardinality();
+        if (matchCount < remaining / 8) {
+            // Few matches: sort the positions of the matches instead of walking the whole order
+            int[] positions = byTitle ? titlePositions : yearPositions;
+            int[] matchPositions = new int[matchCount];
+            int found = 0;
+            for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+                if (positions[slot] >= startPosition) {
+                    matchPositions[found++] = positions[slot];
+                }
+            }
+            Arrays.sort(matchPositions, 0, found);
+            int[] slots = new int[Math.min(found, count)];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = order[matchPositions[i]];
+            }
+            return slots;
+        }
+
+        int[] slots = new int[Math.min(matchCount, count)];
+        int found = 0;
+        for (int position = startPosition; position < order.length && found < slots.length; position++) {
+            if (matches.get(order[position])) {
+                slots[found++] = order[position];
+            }
+        }
+        return found == slots.length ? slots : Arrays.copyOf(slots, found);
+    }
+
+    private BitSet lengthAtMost(int maxLength) {
+        if (maxLength < 0) {
+            return new BitSet();
+        }
+        int bucket = lengthBucket(maxLength);
+        if (bucket >= inLengthBucket.length) {
+            return belowLengthBucket[inLengthBucket.length];
+        }
+        // Whole buckets below the limit, plus the films of the limit's own bucket that are short enough
+        BitSet atMost = (BitSet) belowLengthBucket[bucket].clone();
+        BitSet boundary = inLengthBucket[bucket];
+        for (int slot = boundary.nextSetBit(0); slot >= 0; slot = boundary.nextSetBit(slot + 1)) {
+            if (rows[slot].length <= maxLength) {
+                atMost.set(slot);
+            }
+        }
+        return atMost;
+    }
+
+    private static int lengthBucket(int length) {
+        return Math.max(length, 0) / LENGTH_BUCKET_SIZE;
+    }
+
+    private static void andWith(BitSet matches, BitSet other) {
+        if (other == null) {
+            matches.clear();
+        } else {
+            matches.and(other);
+        }
+    }
+
+    private <K> BitSet bitSet(Map<K, BitSet> index, K key) {
+        return index.computeIfAbsent(key, k -> new BitSet(size));
+    }
+
+    /**
+     * Sets or clears a slot in all bit sets of its filter values. Bit sets that are still shared with the
+     * previous index are cloned first; the clones are kept in copied, so every bit set is cloned at most once.
+     */
+    private void setSlot(Row row, int slot, boolean value, Set<BitSet> copied) {
+        for (int storeId : row.storeIds) {
+            writable(byStore, storeId, copied).set(slot, value);
+        }
+        for (int categoryId : row.categoryIds) {
+            writable(byCategory, categoryId, copied).set(slot, value);
+        }
+        if (row.rating != null) {
+            writable(byRating, row.rating, copied).set(slot, value);
+        }
+        if (row.releaseYear != null) {
+            writable(byYear, row.releaseYear, copied).set(slot, value);
+        }
+        if (row.length != null) {
+            int bucket = lengthBucket(row.length);
+            inLengthBucket[bucket] = writable(inLengthBucket[bucket], copied);
+            inLengthBucket[bucket].set(slot, value);
+            for (int above = bucket + 1; above < belowLengthBucket.length; above++) {
+                belowLengthBucket[above] = writable(belowLengthBucket[above], copied);
+                belowLengthBucket[above].set(slot, value);
+            }
+        }
+    }
+
+    private <K> BitSet writable(Map<K, BitSet> index, K key, Set<BitSet> copied) {
+        BitSet bits = index.get(key);
+        BitSet writable = bits != null ? writable(bits, copied) : new BitSet(size);
+        if (writable != bits) {
+            copied.add(writable);
+            index.put(key, writable);
+        }
+        return writable;
+    }
+
+    private static BitSet writable(BitSet bits, Set<BitSet> copied) {
+        if (copied.contains(bits)) {
+            return bits;
+        }
+        BitSet copy = (BitSet) bits.clone();
+        copied.add(copy);
+        return copy;
+    }
+
+    private static int[] positions(int[] order, int size) {
+        int[] positions = new int[size];
+        for (int position = 0; position < order.length; position++) {
+            positions[order[position]] = position;
+        }
+        return positions;
+    }
+
+    /**
+     * The values of one film the index filters on.
+     * length and releaseYear are null if the column is NULL, the film is then left out of the range filters.
+     */
+    static class Row {
+        private final int[] storeIds;
+        private final int[] categoryIds;
+        private final Film.Rating rating;
+        private final Integer length;
+        private final Integer releaseYear;
+
+        Row(int[] storeIds, int[] categoryIds, Film.Rating rating, Integer length, Integer releaseYear) {
+            this.storeIds = storeIds;
+            this.categoryIds = categoryIds;
+            this.rating = rating;
+            this.length = length;
+            this.releaseYear = releaseYear;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Row)) {
+                return false;
+            }
+            Row other = (Row) o;
+            return Arrays.equals(storeIds, other.storeIds) && Arrays.equals(categoryIds, other.categoryIds)
+                && rating == other.rating && Objects.equals(length, other.length) && Objects.equals(releaseYear, other.releaseYear);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(Arrays.hashCode(storeIds), Arrays.hashCode(categoryIds), rating, length, releaseYear);
+        }
+    }
+}
@@ -3,16 +3,15 @@ package com.oap2024team7.team7mediastreamingapp.services;
 import java.util.List;
 import java.util.Set;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.Map;
 
 import com.oap2024team7.team7mediastreamingapp.models.Actor;
 import com.oap2024team7.team7mediastreamingapp.models.Film;
+import com.oap2024team7.team7mediastreamingapp.models.FilmPage;
 import com.oap2024team7.team7mediastreamingapp.models.Language;
 import com.oap2024team7.team7mediastreamingapp.utils.GeneralUtils;
 import com.oap2024team7.team7mediastreamingapp.utils.SessionData;
-import com.oap2024team7.team7mediastreamingapp.models.Profile;
-import com.oap2024team7.team7mediastreamingapp.models.Staff;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -27,6 +26,7 @@ import java.sql.SQLException;
 
 public class FilmManager {
     // private static Connection connection;
+    private static final BatchWriter filmActorWriter = new BatchWriter("film_actor", "film_id", "actor_id");
 
     /**
      * Helper method to map the database rating to the Film.Rating enum that's without the hyphen
@@ -57,7 +57,6 @@ public class FilmManager {
      */
     public int addFilm(Film film) {
         String insertFilmQuery = "INSERT INTO film (title, description, release_year, language_id, rental_duration, rental_rate, length, rating, special_features, is_streamable, is_ratable, is_reviewable) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        String insertFilmActorQuery = "INSERT INTO film_actor (film_id, actor_id) VALUES (?, ?)";
 
         try (Connection conn = DatabaseManager.getConnection()) {
             conn.setAutoCommit(false); // Start transaction
@@ -88,15 +87,11 @@ public class FilmManager {
                         // Only try to insert actors if the list is not null and not empty
                         List<Actor> actors = film.getActors();
                         if (actors != null && !actors.isEmpty()) {
-                            try (PreparedStatement actorStmt = conn.prepareStatement(insertFilmActorQuery)) {
-                                for (Actor actor : actors) {
-                                    actorStmt.setInt(1, filmId);
-                                    actorStmt.setInt(2, actor.getActorId());
-                                    actorStmt.executeUpdate();
-                                }
-                            }
+                            // All actors in one multi-row INSERT
+                            filmActorWriter.insert(conn, actors, actor -> new Object[] { filmId, actor.getActorId() }, false);
                         }
                         conn.commit();
+                        FilmCatalog.getInstance().reloadFilm(filmId);
                         return filmId;
                     }
                 }
@@ -139,7 +134,11 @@ public class FilmManager {
             stmt.setInt(13, film.getFilmId()); 
             
             int rowsAffected = stmt.executeUpdate();
-            return rowsAffected > 0;
+            if (rowsAffected > 0) {
+                FilmCatalog.getInstance().reloadFilm(film.getFilmId());
+                return true;
+            }
+            return false;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
@@ -187,121 +186,53 @@ public class FilmManager {
     
         try (Connection conn = DatabaseManager.getConnection()) {
             conn.setAutoCommit(false); // Start a transaction
-    
-            try (PreparedStatement pstmt = conn.prepareStatement(deleteInventoryQuery)) {
-                pstmt.setInt(1, filmId);
-                pstmt.executeUpdate();
-            }
-    
-            try (PreparedStatement pstmt = conn.prepareStatement(deleteFilmCategoryQuery)) {
-                pstmt.setInt(1, filmId);
-                pstmt.executeUpdate();
-            }
-    
-            try (PreparedStatement pstmt = conn.prepareStatement(deleteFilmActorQuery)) {
-                pstmt.setInt(1, filmId);
-                pstmt.executeUpdate();
-            }
-    
-            try (PreparedStatement pstmt = conn.prepareStatement(deleteFilmTextQuery)) {
-                pstmt.setInt(1, filmId);
-                pstmt.executeUpdate();
-            }
-    
-            try (PreparedStatement pstmt = conn.prepareStatement(deleteRentalQuery)) {
-                pstmt.setInt(1, filmId);
-                pstmt.executeUpdate();
-            }
 
-            // Call this last to avoid foreign key constraint issues
-            try (PreparedStatement pstmt = conn.prepareStatement(deleteFilmQuery)) {
-                pstmt.setInt(1, filmId);
-                pstmt.executeUpdate();
+            try {
+                try (PreparedStatement pstmt = conn.prepareStatement(deleteInventoryQuery)) {
+                    pstmt.setInt(1, filmId);
+                    pstmt.executeUpdate();
+                }
+
+                try (PreparedStatement pstmt = conn.prepareStatement(deleteFilmCategoryQuery)) {
+                    pstmt.setInt(1, filmId);
+                    pstmt.executeUpdate();
+                }
+
+                try (PreparedStatement pstmt = conn.prepareStatement(deleteFilmActorQuery)) {
+                    pstmt.setInt(1, filmId);
+                    pstmt.executeUpdate();
+                }
+
+                try (PreparedStatement pstmt = conn.prepareStatement(deleteFilmTextQuery)) {
+                    pstmt.setInt(1, filmId);
+                    pstmt.executeUpdate();
+                }
+
+                try (PreparedStatement pstmt = conn.prepareStatement(deleteRentalQuery)) {
+                    pstmt.setInt(1, filmId);
+                    pstmt.executeUpdate();
+                }
+
+                // Call this last to avoid foreign key constraint issues
+                try (PreparedStatement pstmt = conn.prepareStatement(deleteFilmQuery)) {
+                    pstmt.setInt(1, filmId);
+                    pstmt.executeUpdate();
+                }
+
+                conn.commit(); // Commit the transaction
+            } catch (SQLException e) {
+                conn.rollback(); // Rollback in case of error
+                throw e;
             }
-             
-            conn.commit(); // Commit the transaction
         } catch (SQLException e) {
             e.printStackTrace();
-            try (Connection conn = DatabaseManager.getConnection()) {
-                conn.rollback(); // Rollback in case of error
-            } catch (SQLException rollbackEx) {
-                rollbackEx.printStackTrace();
-            }
             return false;
         }
         
+        FilmCatalog.getInstance().removeFilm(filmId);
         return true; // Film deleted successfully
     }
 
-    /**
-     * Fetches films from the database based on the offset and limit.
-     * @param offset
-     * @param limit
-     * @return List of films
-     */
-    public List<Film> getAllFilms(int offset, int limit, int storeId, String sortBy) {
-        String getQuery = "SELECT DISTINCT f.* FROM film f " +
-        "JOIN inventory i ON f.film_id = i.film_id " +
-        "WHERE i.store_id = ? " +
-        "ORDER BY f." + sortBy + " " +
-        "LIMIT ? OFFSET ?";
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(getQuery)) {
-            stmt.setInt(1, storeId);
-            stmt.setInt(2, limit);
-            stmt.setInt(3, offset);
-
-            ResultSet rs = stmt.executeQuery();
-            List<Film> films = new ArrayList<>();
-
-            // Get the birth date of the current profile
-            Profile currentProfile = SessionData.getInstance().getCurrentProfile();
-
-            while (rs.next()) {
-                // Fetch the language object
-                LanguageManager languageManager = new LanguageManager();
-                Language language = languageManager.getLanguageById(conn, rs.getInt("language_id"));
-
-                // Fetch special features
-                GeneralUtils utils = new GeneralUtils();
-                Set<String> specialFeatures = utils.convertToSet(rs.getString("special_features"));                
-
-                // Fetch the actors for this film
-                List<Actor> actors = ActorManager.getInstance().getActorsForFilm(rs.getInt("film_id"));
-
-                Film film = new Film(
-                    rs.getInt("film_id"),
-                    rs.getString("title"),
-                    rs.getString("description"),
-                    rs.getInt("release_year"),
-                    language,  // Pass the Language object instead of language_id
-                    rs.getInt("rental_duration"),
-                    rs.getInt("length"),
-                    Film.Rating.valueOf(rs.getString("rating").replace("-", "")),
-                    specialFeatures,
-                    rs.getDouble("rental_rate"),
-                    actors,
-                    rs.getBoolean("is_streamable"),
-                    rs.getBoolean("is_ratable"),
-                    rs.getBoolean("is_reviewable")
-                );
-                // The method is reused between primary controller and admin page
-                // Admins don't have profiles so we don't need to check if the film is watchable
-                // Check which user is not null in the Session data and filter the films accordingly
-                Staff currentStaff = SessionData.getInstance().getLoggedInStaff();
-                if (currentStaff != null) {
-                    films.add(film);
-                } else if (ProfileManager.canWatchFilm(film, currentProfile)) {
-                    films.add(film);
-                }
-            }
-            return films;
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return null;
-        }
-    }
-
     /**
      * Fetches a detailed information about a film from the database based on the film ID.
      * @param filmId
@@ -309,220 +240,311 @@ public class FilmManager {
      */
     public Film getFilmById(int filmId) {
         String getQuery = "SELECT * FROM film WHERE film_id = ?";
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(getQuery)) {
-            stmt.setInt(1, filmId);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                // Fetch the language object
-                LanguageManager languageManager = new LanguageManager();
-                Language language = languageManager.getLanguageById(conn, rs.getInt("language_id"));
-    
-                // Convert special_features from String to Set<String>
-                String specialFeaturesString = rs.getString("special_features");
-                Set<String> specialFeatures = new HashSet<>();
-                if (specialFeaturesString != null && !specialFeaturesString.isEmpty()) {
-                    specialFeatures.addAll(Arrays.asList(specialFeaturesString.split(",")));
+        try {
+            return ResiliencePolicy.getInstance().read(cacheKey("film", filmId), () -> {
+                try (Connection conn = DatabaseManager.getConnection();
+                     PreparedStatement stmt = conn.prepareStatement(getQuery)) {
+                    stmt.setInt(1, filmId);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        List<Film> films = hydrateFilms(conn, rs);
+                        return films.isEmpty() ? null : films.get(0);
+                    }
                 }
-    
-                // Fetch the actors for this film
-                List<Actor> actors = ActorManager.getInstance().getActorsForFilm(rs.getInt("film_id"));
-    
-                return new Film(
-                    rs.getInt("film_id"),
-                    rs.getString("title"),
-                    rs.getString("description"),
-                    rs.getInt("release_year"),
-                    language,  // Pass the Language object instead of language_id
-                    rs.getInt("rental_duration"),
-                    rs.getInt("length"),
-                    Film.Rating.valueOf(rs.getString("rating").replace("-", "")),
-                    specialFeatures,
-                    rs.getDouble("rental_rate"),
-                    actors,
-                    rs.getBoolean("is_streamable"),
-                    rs.getBoolean("is_ratable"),
-                    rs.getBoolean("is_reviewable")
-                );
-            } else {
-                return null;
-            }
+            });
         } catch (SQLException e) {
             e.printStackTrace();
             return null;
         }
     }
     /**
-     * Searches for films based on a query string.
-     * @param query The text to search for in the title or description.
-     * @return A list of films that match the search query.
+     * Searches for films in the store based on a query string, limited to the films the current profile may watch.
+     * The search runs on the full text index of the film catalog and ranks the films by relevance.
+     * If the catalog couldn't be loaded, the title and description are matched with LIKE instead and sorted by title.
+     * @param query The text to search for in the title, description, actor names or category.
+     * @param after Cursor of the previous page, or null for the first page
+     * @param limit Number of films per page
+     * @param storeId
+     * @return FilmPage object with the films that match the search query, or null if the search failed
      */
-    public List<Film> searchFilms(String query) {
-        List<Film> films = new ArrayList<>();
-        String sql = "SELECT * FROM film WHERE title LIKE ? OR description LIKE ?";
-        try (Connection conn = DatabaseManager.getConnection();
-            PreparedStatement stmt = conn.prepareStatement(sql)) {
+    public FilmPage searchFilms(String query, FilmPage.Cursor after, int limit, int storeId) {
+        Set<Film.Rating> allowedRatings = getAllowedRatingsForSession();
+        if (allowedRatings != null && allowedRatings.isEmpty()) {
+            return new FilmPage(new ArrayList<>(), null, false);
+        }
+
+        FilmPage rankedPage = FilmCatalog.getInstance().search(query, allowedRatings, after, limit, storeId);
+        if (rankedPage != null) {
+            return rankedPage;
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT f.* FROM film f " +
+        "WHERE (f.title LIKE ? OR f.description LIKE ?) " +
+        "AND EXISTS (SELECT 1 FROM inventory i WHERE i.film_id = f.film_id AND i.store_id = ?)");
+        if (allowedRatings != null) {
+            sql.append(" AND f.rating IN (").append(String.join(", ", Collections.nCopies(allowedRatings.size(), "?"))).append(")");
+        }
+        // A cursor from the ranked search can't be continued here, such a search starts over from the first page
+        boolean seek = after != null && after.getSortValue() instanceof String;
+        if (seek) {
+            sql.append(" AND (f.title > ? OR (f.title = ? AND f.film_id > ?))");
+        }
+        sql.append(" ORDER BY f.title, f.film_id LIMIT ?");
+
+        try {
+            return ResiliencePolicy.getInstance().read(cacheKey("search", query, allowedRatings, after, limit, storeId), () -> {
+                try (Connection conn = DatabaseManager.getReadConnection();
+                    PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
             
-            // Use wildcards for partial matching
-            String searchPattern = "%" + query + "%";
-            stmt.setString(1, searchPattern);
-            stmt.setString(2, searchPattern);
-
-            ResultSet rs = stmt.executeQuery();
-            while (rs.next()) {
-                // Fetch the language object
-                LanguageManager languageManager = new LanguageManager();
-                Language language = languageManager.getLanguageById(conn, rs.getInt("language_id"));
-
-                // Convert special_features from String to Set<String>
-                Set<String> specialFeatures = new HashSet<>();
-                String specialFeaturesString = rs.getString("special_features");
-                if (specialFeaturesString != null && !specialFeaturesString.isEmpty()) {
-                    specialFeatures.addAll(Arrays.asList(specialFeaturesString.split(",")));
-                }
+                    // Use wildcards for partial matching
+                    String searchPattern = "%" + query + "%";
+                    int paramIndex = 1;
+                    stmt.setString(paramIndex++, searchPattern);
+                    stmt.setString(paramIndex++, searchPattern);
+                    stmt.setInt(paramIndex++, storeId);
+                    if (allowedRatings != null) {
+                        for (Film.Rating allowedRating : allowedRatings) {
+                            stmt.setString(paramIndex++, mapRating(allowedRating));
+                        }
+                    }
+                    if (seek) {
+                        stmt.setString(paramIndex++, (String) after.getSortValue());
+                        stmt.setString(paramIndex++, (String) after.getSortValue());
+                        stmt.setInt(paramIndex++, after.getFilmId());
+                    }
+                    stmt.setInt(paramIndex++, limit + 1);
 
-                // Fetch the actors for this film
-                List<Actor> actors = ActorManager.getInstance().getActorsForFilm(rs.getInt("film_id"));
-
-                Film film = new Film(
-                    rs.getInt("film_id"),
-                    rs.getString("title"),
-                    rs.getString("description"),
-                    rs.getInt("release_year"),
-                    language,
-                    rs.getInt("rental_duration"),
-                    rs.getInt("length"),
-                    Film.Rating.valueOf(rs.getString("rating").replace("-", "")),
-                    specialFeatures,
-                    rs.getDouble("rental_rate"),
-                    actors,
-                    rs.getBoolean("is_streamable"),
-                    rs.getBoolean("is_ratable"),
-                    rs.getBoolean("is_reviewable")
-                );
-
-                films.add(film);
-            }
+                    List<Film> films;
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        films = hydrateFilms(conn, rs);
+                    }
+                    boolean hasNext = films.size() > limit;
+                    FilmPage.Cursor nextCursor = null;
+                    if (hasNext) {
+                        films.remove(limit);
+                        Film last = films.get(films.size() - 1);
+                        nextCursor = new FilmPage.Cursor(last.getTitle(), last.getFilmId());
+                    }
+                    return new FilmPage(films, nextCursor, hasNext);
+                }
+            });
         } catch (SQLException e) {
             e.printStackTrace();
+            return null;
         }
-        return films;
     }
 
     /**
-     * Fetches all films from the database that match the search query (based on filters set by the user)
+     * Fetches one page of films from the store that match the filters set by the user (null filters are ignored).
+     * Instead of LIMIT/OFFSET the query seeks past the (sort value, film ID) of the last film of the previous page,
+     * so a deep page costs the same as the first one. One extra row is fetched to find out if there is a next page.
      * Using Integer instead of int to allow for null values
      * @param categoryId
      * @param rating
      * @param maxLength
      * @param startYear
      * @param endYear
-     * @param offset
-     * @param limit
-     * @return List of films
+     * @param after Cursor of the previous page, or null for the first page
+     * @param limit Number of films per page
+     * @param storeId
+     * @param sortBy "title" or "release_year"
+     * @return FilmPage object, or null if the films couldn't be fetched
      */
-    public List<Film> filterFilms(Integer categoryId, Film.Rating rating, Integer maxLength, Integer startYear, Integer endYear, int offset, int limit, int storeId, String sortBy) {
-        StringBuilder filterQuery = new StringBuilder("SELECT DISTINCT f.* FROM film f " +
-        "JOIN film_category fc ON f.film_id = fc.film_id " +
-        "JOIN inventory i ON f.film_id = i.film_id " +
-        "WHERE 1=1");
+    public FilmPage getFilmPage(Integer categoryId, Film.Rating rating, Integer maxLength, Integer startYear, Integer endYear, FilmPage.Cursor after, int limit, int storeId, String sortBy) {
+        // The sort column is put into the SQL text, so only the known columns are allowed
+        String sortColumn;
+        if ("title".equals(sortBy)) {
+            sortColumn = "f.title";
+        } else if ("release_year".equals(sortBy)) {
+            sortColumn = "COALESCE(f.release_year, 0)"; // Matches the 0 a missing year is read as
+        } else {
+            throw new IllegalArgumentException("Invalid sort column: " + sortBy);
+        }
+
+        // Only the films the current profile is allowed to watch are fetched, so every page comes back full
+        Set<Film.Rating> allowedRatings = getAllowedRatingsForSession();
+        if (allowedRatings != null && allowedRatings.isEmpty()) {
+            return new FilmPage(new ArrayList<>(), null, false);
+        }
+
+        // Pages are served from the in-memory catalog, the query below is only used if the catalog couldn't be loaded
+        FilmPage cachedPage = FilmCatalog.getInstance().getFilmPage(categoryId, rating, maxLength, startYear, endYear, allowedRatings, after, limit, storeId, sortBy);
+        if (cachedPage != null) {
+            return cachedPage;
+        }
+
+        // EXISTS instead of JOIN + DISTINCT, so MySQL can walk the films in sort order and stop after limit + 1 rows
+        StringBuilder pageQuery = new StringBuilder("SELECT f.* FROM film f " +
+        "WHERE EXISTS (SELECT 1 FROM inventory i WHERE i.film_id = f.film_id AND i.store_id = ?)");
 
         if (categoryId != null) {
-            filterQuery.append(" AND fc.category_id = ?");
+            pageQuery.append(" AND EXISTS (SELECT 1 FROM film_category fc WHERE fc.film_id = f.film_id AND fc.category_id = ?)");
         }
-        if (rating != null) {
-            filterQuery.append(" AND f.rating = ?");
+        if (rating != null && rating != Film.Rating.NONE) {
+            pageQuery.append(" AND f.rating = ?");
+        }
+        if (allowedRatings != null) {
+            pageQuery.append(" AND f.rating IN (").append(String.join(", ", Collections.nCopies(allowedRatings.size(), "?"))).append(")");
         }
         if (maxLength != null) {
-            filterQuery.append(" AND f.length <= ?");
+            pageQuery.append(" AND f.length <= ?");
         }
         if (startYear != null) {
-            filterQuery.append(" AND f.release_year >= ?");
+            pageQuery.append(" AND f.release_year >= ?");
         }
         if (endYear != null) {
-            filterQuery.append(" AND f.release_year <= ?");
+            pageQuery.append(" AND f.release_year <= ?");
         }
-        filterQuery.append(" AND i.store_id = ? ORDER BY f.").append(sortBy);
-        filterQuery.append(" LIMIT ? OFFSET ?");
-
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(filterQuery.toString())) {
-
-            int paramIndex = 1;
-
-            if (categoryId != null) {
-                stmt.setInt(paramIndex++, categoryId);
-            }
-            if (rating != null) {
-                stmt.setString(paramIndex++, mapRating(rating));
-            }
-            if (maxLength != null) {
-                stmt.setInt(paramIndex++, maxLength);
-            }
-            if (startYear != null) {
-                stmt.setInt(paramIndex++, startYear);
-            }
-            if (endYear != null) {
-                stmt.setInt(paramIndex++, endYear);
-            }
-            stmt.setInt(paramIndex++, storeId);
-            stmt.setInt(paramIndex++, limit);
-            stmt.setInt(paramIndex++, offset);
+        if (after != null) {
+            pageQuery.append(" AND (").append(sortColumn).append(" > ? OR (")
+                .append(sortColumn).append(" = ? AND f.film_id > ?))");
+        }
+        pageQuery.append(" ORDER BY ").append(sortColumn).append(", f.film_id LIMIT ?");
 
-            ResultSet rs = stmt.executeQuery();
-            List<Film> filteredFilms = new ArrayList<>();
+        try {
+            return ResiliencePolicy.getInstance().read(cacheKey("filmPage", categoryId, rating, maxLength, startYear, endYear, allowedRatings, after, limit, storeId, sortBy), () -> {
+                try (Connection conn = DatabaseManager.getReadConnection();
+                     PreparedStatement stmt = conn.prepareStatement(pageQuery.toString())) {
 
-            Profile currentProfile = SessionData.getInstance().getCurrentProfile();
+                    int paramIndex = 1;
 
-            while (rs.next()) {
-                // Fetch the language object
-                LanguageManager languageManager = new LanguageManager();
-                Language language = languageManager.getLanguageById(conn, rs.getInt("language_id"));
+                    stmt.setInt(paramIndex++, storeId);
+                    if (categoryId != null) {
+                        stmt.setInt(paramIndex++, categoryId);
+                    }
+                    if (rating != null && rating != Film.Rating.NONE) {
+                        stmt.setString(paramIndex++, mapRating(rating));
+                    }
+                    if (allowedRatings != null) {
+                        for (Film.Rating allowedRating : allowedRatings) {
+                            stmt.setString(paramIndex++, mapRating(allowedRating));
+                        }
+                    }
+                    if (maxLength != null) {
+                        stmt.setInt(paramIndex++, maxLength);
+                    }
+                    if (startYear != null) {
+                        stmt.setInt(paramIndex++, startYear);
+                    }
+                    if (endYear != null) {
+                        stmt.setInt(paramIndex++, endYear);
+                    }
+                    if (after != null) {
+                        stmt.setObject(paramIndex++, after.getSortValue());
+                        stmt.setObject(paramIndex++, after.getSortValue());
+                        stmt.setInt(paramIndex++, after.getFilmId());
+                    }
+                    stmt.setInt(paramIndex++, limit + 1);
 
-                // Convert special_features from String to Set<String>
-                String specialFeaturesString = rs.getString("special_features");
-                Set<String> specialFeatures = new HashSet<>();
-                if (specialFeaturesString != null && !specialFeaturesString.isEmpty()) {
-                    specialFeatures.addAll(Arrays.asList(specialFeaturesString.split(",")));
-                }
+                    List<Film> films;
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        films = hydrateFilms(conn, rs);
+                    }
 
-                // Fetch the actors for this film
-                List<Actor> actors = ActorManager.getInstance().getActorsForFilm(rs.getInt("film_id"));
-
-                Film film = new Film(
-                    rs.getInt("film_id"),
-                    rs.getString("title"),
-                    rs.getString("description"),
-                    rs.getInt("release_year"),
-                    language,  // Pass the Language object instead of language_id
-                    rs.getInt("rental_duration"),
-                    rs.getInt("length"),
-                    Film.Rating.valueOf(rs.getString("rating").replace("-", "")),
-                    specialFeatures,
-                    rs.getDouble("rental_rate"),
-                    actors,
-                    rs.getBoolean("is_streamable"),
-                    rs.getBoolean("is_ratable"),
-                    rs.getBoolean("is_reviewable")
-                );
-
-                // The method is reused between primary controller and admin page
-                // Admins don't have profiles so we don't need to check if the film is watchable
-                // Check which user is not null in the Session data and filter the films accordingly
-                Staff currentStaff = SessionData.getInstance().getLoggedInStaff();
-                if (currentStaff != null) {
-                    filteredFilms.add(film);
-                } else if (ProfileManager.canWatchFilm(film, currentProfile)) {
-                    filteredFilms.add(film);
+                    boolean hasNext = films.size() > limit;
+                    if (hasNext) {
+                        films.remove(limit);
+                    }
+                    FilmPage.Cursor nextCursor = null;
+                    if (hasNext && !films.isEmpty()) {
+                        Film last = films.get(films.size() - 1);
+                        Object sortValue = "title".equals(sortBy) ? last.getTitle() : (Object) last.getReleaseYear();
+                        nextCursor = new FilmPage.Cursor(sortValue, last.getFilmId());
+                    }
+                    return new FilmPage(films, nextCursor, hasNext);
                 }
-            }
-            return filteredFilms;
+            });
         } catch (SQLException e) {
             e.printStackTrace();
             return null;
         }
     }
 
+    /**
+     * Builds the key the last good result of a read is kept under (see ResiliencePolicy).
+     * @param parts Name of the read and its parameters
+     * @return Key such as "filmPage:3:PG:null:..."
+     */
+    private static String cacheKey(Object... parts) {
+        StringBuilder key = new StringBuilder();
+        for (Object part : parts) {
+            if (key.length() > 0) {
+                key.append(':');
+            }
+            if (part instanceof FilmPage.Cursor) {
+                FilmPage.Cursor cursor = (FilmPage.Cursor) part;
+                key.append(cursor.getSortValue()).append('/').append(cursor.getFilmId());
+            } else {
+                key.append(part);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Gets the ratings the films in the lists are limited to.
+     * The method is reused between primary controller and admin page.
+     * Admins don't have profiles so their lists aren't limited.
+     * @return Set of allowed ratings from the current profile, or null if all films can be shown
+     */
+    private Set<Film.Rating> getAllowedRatingsForSession() {
+        SessionData sessionData = SessionData.getInstance();
+        if (sessionData.getLoggedInStaff() != null) {
+            return null;
+        }
+        return sessionData.getAllowedRatings();
+    }
+
+    /**
+     * Turns the film rows of a result set into Film objects.
+     * All rows are read first, then the actors of all films are fetched with one query
+     * and the languages are taken from the language cache, so a page of films costs two queries
+     * on one connection instead of two queries (and a new connection) per film.
+     * @param conn The connection the result set belongs to
+     * @param rs Result set with film rows (all columns of the film table)
+     * @return List of films, in the order of the result set
+     * @throws SQLException
+     */
+    List<Film> hydrateFilms(Connection conn, ResultSet rs) throws SQLException {
+        LanguageManager languageManager = new LanguageManager();
+        GeneralUtils utils = new GeneralUtils();
+        List<Film> films = new ArrayList<>();
+        List<Integer> filmIds = new ArrayList<>();
+
+        while (rs.next()) {
+            // Fetch the language object
+            Language language = languageManager.getLanguageById(conn, rs.getInt("language_id"));
+
+            // Convert special_features from String to Set<String>
+            Set<String> specialFeatures = utils.convertToSet(rs.getString("special_features"));
+
+            Film film = new Film(
+                rs.getInt("film_id"),
+                rs.getString("title"),
+                rs.getString("description"),
+                rs.getInt("release_year"),
+                language,  // Pass the Language object instead of language_id
+                rs.getInt("rental_duration"),
+                rs.getInt("length"),
+                Film.Rating.valueOf(rs.getString("rating").replace("-", "")),
+                specialFeatures,
+                rs.getDouble("rental_rate"),
+                null, // Actors are fetched for all films at once below
+                rs.getBoolean("is_streamable"),
+                rs.getBoolean("is_ratable"),
+                rs.getBoolean("is_reviewable")
+            );
+            films.add(film);
+            filmIds.add(film.getFilmId());
+        }
+
+        // Fetch the actors for all films in one query
+        Map<Integer, List<Actor>> actorsByFilm = ActorManager.getInstance().getActorsForFilms(conn, filmIds);
+        for (Film film : films) {
+            film.setActors(actorsByFilm.get(film.getFilmId()));
+        }
+        return films;
+    }
+
     // METHODS FOR MY LIST FUNCTIONALITY
     /**
      * Adds a film to the My List table for a given profile.
@@ -535,25 +557,21 @@ public class FilmManager {
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(insertQuery)) {
             conn.setAutoCommit(false); // Start a transaction
-    
-            stmt.setInt(1, profileId);
-            stmt.setInt(2, filmId);
-            stmt.executeUpdate();
-    
-            conn.commit(); // Commit the transaction
-    
+
+            try {
+                stmt.setInt(1, profileId);
+                stmt.setInt(2, filmId);
+                stmt.executeUpdate();
+
+                conn.commit(); // Commit the transaction
+            } catch (SQLException e) {
+                conn.rollback(); // Rollback if there's an issue
+                throw e;
+            }
+
             System.out.println("Film added to My List.");
         } catch (SQLException e) {
             e.printStackTrace();
-            try {
-                Connection conn = DatabaseManager.getConnection();
-                if (conn != null) {
-                    conn.rollback(); // Rollback if there's an issue
-                    System.err.println("Transaction rolled back due to an error.");
-                }
-            } catch (SQLException rollbackEx) {
-                rollbackEx.printStackTrace();
-            }
         }
     }
     
@@ -570,24 +588,20 @@ public class FilmManager {
              PreparedStatement stmt = conn.prepareStatement(deleteQuery)) {
             conn.setAutoCommit(false); // Start a transaction
 
-            stmt.setInt(1, profileId);
-            stmt.setInt(2, filmId);
-            stmt.executeUpdate();
+            try {
+                stmt.setInt(1, profileId);
+                stmt.setInt(2, filmId);
+                stmt.executeUpdate();
 
-            conn.commit(); // Commit the transaction
+                conn.commit(); // Commit the transaction
+            } catch (SQLException e) {
+                conn.rollback(); // Rollback if there's an issue
+                throw e;
+            }
 
             System.out.println("Film removed from My List.");
         } catch (SQLException e) {
             e.printStackTrace();
-            try {
-                Connection conn = DatabaseManager.getConnection();
-                if (conn != null) {
-                    conn.rollback(); // Rollback if there's an issue
-                    System.err.println("Transaction rolled back due to an error.");
-                }
-            } catch (SQLException rollbackEx) {
-                rollbackEx.printStackTrace();
-            }
         }
     }
 
@@ -598,23 +612,16 @@ public class FilmManager {
      */
     public static List<Film> getFilmsFromMyList(int profileId) {
         List<Film> films = new ArrayList<>();
-        String selectQuery = "SELECT ml.film_id " +
+        String selectQuery = "SELECT f.* " +
             "FROM my_list ml " +
+            "JOIN film f ON f.film_id = ml.film_id " +
             "WHERE ml.profile_id = ?";
 
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement stmt = conn.prepareStatement(selectQuery)) {
             stmt.setInt(1, profileId);
-            ResultSet rs = stmt.executeQuery();
-
-            while (rs.next()) {
-                int filmId = rs.getInt("film_id");
-
-                FilmManager filmManager = new FilmManager();
-                Film film = filmManager.getFilmById(filmId);
-                if (film != null) {
-                    films.add(film);
-                }
+            try (ResultSet rs = stmt.executeQuery()) {
+                films = new FilmManager().hydrateFilms(conn, rs);
             }
             System.out.println("Number of films retrieved for profile ID " + profileId + ": " + films.size());
         } catch (SQLException e) {
@@ -625,34 +632,5 @@ public class FilmManager {
         }
         return films;
     }
-    
-    // METHODS FOR HIGHER-LEVEL LOGIC RELATED TO DISPLAYING FILMS
-
-    /**
-     * Helper method for getting a list films based on filters, storeId and order, or all films if no filters are applied.
-     */
-    public List<Film> loadFilms(
-        Integer categoryId,
-        Film.Rating rating,
-        Integer maxLength,
-        Integer startYear,
-        Integer endYear,
-        int offset,
-        int limit,
-        int storeId,
-        String sortBy) {
-            List<Film> films;
-
-            // Determine if filters are applied and set sorting order
-            boolean hasFilters = categoryId != null || rating != null || maxLength != null || startYear != null || endYear != null;
-            
-            if (hasFilters) {
-                films = filterFilms(categoryId, rating, maxLength, startYear, endYear, offset, limit, storeId, sortBy);
-            } else {
-                films = getAllFilms(offset, limit, storeId, sortBy);
-            }
-            
-            return films;
-    }
 
 }
@@ -0,0 +1,283 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Class for the Film Search Index.
+ * An inverted index over the title, description, actor names and category names of the films,
+ * kept up to date by the film catalog whenever a film is loaded, changed or removed.
+ * Every word of the query has to match (the last word also matches as a prefix, so results show up while typing),
+ * and the matches are ranked with BM25. Title words count more than description words.
+ * A search only visits the postings of the query words, so it doesn't get slower as the catalog grows
+ * the way a LIKE '%query%' scan does.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+class FilmSearchIndex {
+    // BM25 parameters
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // How often a word counts in each field
+    static final int TITLE_WEIGHT = 3;
+    static final int ACTOR_WEIGHT = 2;
+    static final int CATEGORY_WEIGHT = 2;
+    static final int DESCRIPTION_WEIGHT = 1;
+    // A prefix that matches more words than this only uses the most common ones
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Word -> (film ID -> weighted term frequency), sorted so prefixes are a sub map
+    private final TreeMap<String, Map<Integer, Integer>> postings = new TreeMap<>();
+    // Film ID -> its words, so a film can be removed without scanning all postings
+    private final Map<Integer, Map<String, Integer>> filmTerms = new HashMap<>();
+    private final Map<Integer, Integer> filmLengths = new HashMap<>();
+    private long totalLength = 0;
+
+    /**
+     * Adds a film to the index, replacing the previous version if it was indexed before.
+     * @param filmId
+     * @param title
+     * @param description
+     * @param actorNames
+     * @param categoryNames
+     */
+    void indexFilm(int filmId, String title, String description, List<String> actorNames, List<String> categoryNames) {
+        Map<String, Integer> terms = new HashMap<>();
+        addTerms(terms, title, TITLE_WEIGHT);
+        addTerms(terms, description, DESCRIPTION_WEIGHT);
+        for (String actorName : actorNames) {
+            addTerms(terms, actorName, ACTOR_WEIGHT);
+        }
+        for (String categoryName : categoryNames) {
+            addTerms(terms, categoryName, CATEGORY_WEIGHT);
+        }
+        int length = 0;
+        for (int frequency : terms.values()) {
+            length += frequency;
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(filmId);
+            for (Map.Entry<String, Integer> term : terms.entrySet()) {
+                postings.computeIfAbsent(term.getKey(), word -> new HashMap<>()).put(filmId, term.getValue());
+            }
+            filmTerms.put(filmId, terms);
+            filmLengths.put(filmId, length);
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a film from the index.
+     * @param filmId
+     */
+    void removeFilm(int filmId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all films from the index.
+     */
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            filmTerms.clear();
+            filmLengths.clear();
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(int filmId) {
+        Map<String, Integer> terms = filmTerms.remove(filmId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms.keySet()) {
+            Map<Integer, Integer> films = postings.get(term);
+            if (films != null) {
+                films.remove(filmId);
+                if (films.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        totalLength -= filmLengths.remove(filmId);
+    }
+
+    /**
+     * Finds the best matching films for a query.
+     * Hits are ordered by score (best first) and then by film ID, and the search can continue after a previous hit.
+     * @param query The text typed by the user
+     * @param filter Film IDs that may be returned (e.g. films in the store the user is allowed to watch)
+     * @param afterScore Score of the last hit of the previous page, or null for the first page
+     * @param afterFilmId Film ID of the last hit of the previous page
+     * @param count Maximum number of hits to return
+     * @return List of hits, best first
+     */
+    List<Hit> search(String query, IntPredicate filter, Double afterScore, int afterFilmId, int count) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty() || count <= 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (filmLengths.isEmpty()) {
+                return new ArrayList<>();
+            }
+            double averageLength = (double) totalLength / filmLengths.size();
+
+            // Every word of the query must match; the scores of the words are added up
+            Map<Integer, Double> scores = null;
+            for (int i = 0; i < words.size(); i++) {
+                boolean isLastWord = i == words.size() - 1;
+                Map<Integer, Double> wordScores = scoreWord(words.get(i), isLastWord, averageLength, scores);
+                if (wordScores.isEmpty()) {
+                    return new ArrayList<>();
+                }
+                scores = wordScores;
+            }
+
+            // Keep the best hits that come after the previous page in a min-heap of the page size
+            PriorityQueue<Hit> best = new PriorityQueue<>(count + 1, Collections.reverseOrder());
+            for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+                Hit hit = new Hit(entry.getKey(), entry.getValue());
+                if (afterScore != null && hit.compareTo(afterScore, afterFilmId) <= 0) {
+                    continue;
+                }
+                if (!filter.test(hit.filmId)) {
+                    continue;
+                }
+                best.add(hit);
+                if (best.size() > count) {
+                    best.poll();
+                }
+            }
+            List<Hit> hits = new ArrayList<>(best);
+            Collections.sort(hits);
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scores the films that contain a word (or, for the last word, a word starting with it).
+     * @param candidates Films matched by the previous words with their scores so far, or null for the first word
+     * @return Film ID -> score including the previous words, only for films that also contain this word
+     */
+    private Map<Integer, Double> scoreWord(String word, boolean asPrefix, double averageLength, Map<Integer, Double> candidates) {
+        List<String> expansions = new ArrayList<>();
+        if (postings.containsKey(word)) {
+            expansions.add(word);
+        }
+        if (asPrefix) {
+            NavigableMap<String, Map<Integer, Integer>> prefixed = postings.subMap(word, false, word + Character.MAX_VALUE, false);
+            List<String> prefixedWords = new ArrayList<>(prefixed.keySet());
+            if (prefixedWords.size() > MAX_PREFIX_EXPANSIONS) {
+                prefixedWords.sort((a, b) -> Integer.compare(postings.get(b).size(), postings.get(a).size()));
+                prefixedWords = prefixedWords.subList(0, MAX_PREFIX_EXPANSIONS);
+            }
+            expansions.addAll(prefixedWords);
+        }
+
+        int filmCount = filmLengths.size();
+        Map<Integer, Double> wordScores = new HashMap<>();
+        for (String expansion : expansions) {
+            Map<Integer, Integer> films = postings.get(expansion);
+            double idf = Math.log(1 + (filmCount - films.size() + 0.5) / (films.size() + 0.5));
+            for (Map.Entry<Integer, Integer> posting : films.entrySet()) {
+                int filmId = posting.getKey();
+                if (candidates != null && !candidates.containsKey(filmId)) {
+                    continue;
+                }
+                double frequency = posting.getValue();
+                double lengthNorm = 1 - B + B * filmLengths.get(filmId) / averageLength;
+                double score = idf * frequency * (K1 + 1) / (frequency + K1 * lengthNorm);
+                // A film matching several expansions of a prefix keeps its best one
+                wordScores.merge(filmId, score, Math::max);
+            }
+        }
+        if (candidates != null) {
+            for (Map.Entry<Integer, Double> entry : wordScores.entrySet()) {
+                entry.setValue(entry.getValue() + candidates.get(entry.getKey()));
+            }
+        }
+        return wordScores;
+    }
+
+    private static void addTerms(Map<String, Integer> terms, String text, int weight) {
+        for (String word : tokenize(text)) {
+            terms.merge(word, weight, Integer::sum);
+        }
+    }
+
+    /**
+     * Splits text into lower case words of letters and digits.
+     * @param text
+     * @return List of words, empty if the text is null or has no words
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (word.length() > 0) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    /**
+     * A matching film and its score. Hits sort best first, ties by film ID.
+     */
+    static class Hit implements Comparable<Hit> {
+        final int filmId;
+        final double score;
+
+        Hit(int filmId, double score) {
+            this.filmId = filmId;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Hit other) {
+            return compareTo(other.score, other.filmId);
+        }
+
+        // Negative if this hit comes before the given (score, film ID) position
+        int compareTo(double otherScore, int otherFilmId) {
+            int result = Double.compare(otherScore, score);
+            return result != 0 ? result : Integer.compare(filmId, otherFilmId);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Class for the Instrumented Connection.
+ * Wraps a connection, its statements and their result sets to report to QueryMetrics how long each statement
+ * takes, how many rows are read from it, and how long the connection is held by the manager method that borrowed it.
+ * Everything else is passed on to the wrapped objects unchanged.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+class InstrumentedConnection implements InvocationHandler {
+    private final Connection target;
+    private final QueryMetrics metrics;
+    private final String caller;
+    private final long borrowedAt = System.nanoTime();
+    private boolean closed;
+
+    private InstrumentedConnection(Connection target, QueryMetrics metrics, String caller) {
+        this.target = target;
+        this.metrics = metrics;
+        this.caller = caller;
+    }
+
+    /**
+     * Wraps a connection.
+     * @param target The pooled or transactional connection
+     * @param metrics Where the measurements go
+     * @param caller Manager method the connection was handed to, e.g. "FilmManager.getFilmPage"
+     * @return Connection proxy
+     */
+    static Connection wrap(Connection target, QueryMetrics metrics, String caller) {
+        return (Connection) Proxy.newProxyInstance(
+            InstrumentedConnection.class.getClassLoader(),
+            new Class<?>[] { Connection.class },
+            new InstrumentedConnection(target, metrics, caller));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if (name.equals("close") && !closed) {
+            closed = true;
+            metrics.recordConnectionHold(caller, System.nanoTime() - borrowedAt);
+        }
+
+        Object result = invokeTarget(target, method, args);
+        if (result instanceof Statement) {
+            // prepareStatement/prepareCall get the SQL up front, createStatement gets it with every execute call
+            String sql = name.startsWith("prepare") ? (String) args[0] : null;
+            return wrapStatement((Statement) result, sql);
+        }
+        return result;
+    }
+
+    private Statement wrapStatement(Statement statement, String sql) {
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+            : statement instanceof PreparedStatement ? PreparedStatement.class
+            : Statement.class;
+        return (Statement) Proxy.newProxyInstance(
+            InstrumentedConnection.class.getClassLoader(),
+            new Class<?>[] { type },
+            new StatementHandler(statement, sql));
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Times the execute calls of a statement and counts the rows of its result sets.
+     */
+    private class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String preparedSql;
+        private QueryMetrics.StatementStats lastExecuted;
+
+        private StatementHandler(Statement target, String preparedSql) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (!name.startsWith("execute") && !name.equals("getResultSet")) {
+                return invokeTarget(target, method, args);
+            }
+            if (name.equals("getResultSet")) {
+                return wrapResultSet(invokeTarget(target, method, args));
+            }
+
+            String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : preparedSql;
+            if (sql == null) {
+                // executeBatch of a plain Statement, the batched SQL isn't known here
+                sql = "<batch>";
+            }
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = invokeTarget(target, method, args);
+            } finally {
+                lastExecuted = metrics.recordExecution(sql, caller, System.nanoTime() - start);
+            }
+            return wrapResultSet(result);
+        }
+
+        private Object wrapResultSet(Object result) {
+            if (!(result instanceof ResultSet) || lastExecuted == null) {
+                return result;
+            }
+            QueryMetrics.StatementStats stats = lastExecuted;
+            ResultSet resultSet = (ResultSet) result;
+            return Proxy.newProxyInstance(
+                InstrumentedConnection.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class },
+                (proxy, method, args) -> {
+                    Object value = invokeTarget(resultSet, method, args);
+                    if (method.getName().equals("next") && Boolean.TRUE.equals(value)) {
+                        stats.addRowFetched();
+                    }
+                    return value;
+                });
+        }
+    }
+}
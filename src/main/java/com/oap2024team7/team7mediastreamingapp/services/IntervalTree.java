@@ -0,0 +1,257 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import java.util.List;
+
+/**
+ * Interval tree of half-open time windows [start, end), each with an ID (e.g. a rental ID).
+ * An AVL tree ordered by start (then end and ID), where every node also keeps the largest end in its subtree,
+ * so finding a window that overlaps a given one takes O(log n). Used by AvailabilityEngine, one tree per inventory copy.
+ * Not thread-safe; the AvailabilityEngine guards its trees with its own lock.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+class IntervalTree {
+    private Node root;
+    private int size;
+
+    /**
+     * A window in the tree.
+     */
+    static class Node {
+        private final long start;
+        private final long end;
+        private final int id;
+        private long maxEnd;
+        private int height = 1;
+        private Node left;
+        private Node right;
+
+        private Node(long start, long end, int id) {
+            this.start = start;
+            this.end = end;
+            this.id = id;
+            this.maxEnd = end;
+        }
+
+        long getStart() {
+            return start;
+        }
+
+        long getEnd() {
+            return end;
+        }
+
+        int getId() {
+            return id;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Adds a window. Empty windows (end <= start) can't overlap anything and are ignored.
+     * @param start
+     * @param end
+     * @param id
+     */
+    void insert(long start, long end, int id) {
+        if (end <= start) {
+            return;
+        }
+        root = insert(root, new Node(start, end, id));
+    }
+
+    /**
+     * Removes a window that was added with the same start, end and ID.
+     * @return true if the window was in the tree
+     */
+    boolean remove(long start, long end, int id) {
+        int before = size;
+        root = remove(root, start, end, id);
+        return size < before;
+    }
+
+    /**
+     * Finds a window that overlaps [start, end).
+     * @return One of the overlapping windows, or null if there is none
+     */
+    Node findOverlap(long start, long end) {
+        Node node = root;
+        while (node != null) {
+            if (node.start < end && node.end > start) {
+                return node;
+            }
+            // If the left subtree reaches past start and has no overlap, its windows start at or after end,
+            // and so does everything to the right
+            if (node.left != null && node.left.maxEnd > start) {
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return null;
+    }
+
+    boolean overlaps(long start, long end) {
+        return findOverlap(start, end) != null;
+    }
+
+    /**
+     * Collects all windows that overlap [start, end), in start order.
+     * Subtrees whose windows all end before start, or start at or after end, are skipped.
+     * @param start
+     * @param end
+     * @param result List the windows are added to
+     */
+    void collectOverlapping(long start, long end, List<Node> result) {
+        collectOverlapping(root, start, end, result);
+    }
+
+    /**
+     * Finds the first instant at or after the given one that no window covers.
+     * Back-to-back windows are followed until a gap is found.
+     * @param from
+     * @return The first free instant
+     */
+    long firstFreeFrom(long from) {
+        long instant = from;
+        Node covering = findOverlap(instant, instant + 1);
+        while (covering != null) {
+            instant = covering.end;
+            covering = findOverlap(instant, instant + 1);
+        }
+        return instant;
+    }
+
+    private static void collectOverlapping(Node node, long start, long end, List<Node> result) {
+        if (node == null || node.maxEnd <= start) {
+            return;
+        }
+        collectOverlapping(node.left, start, end, result);
+        if (node.start >= end) {
+            return; // This window and everything to its right starts too late
+        }
+        if (node.end > start) {
+            result.add(node);
+        }
+        collectOverlapping(node.right, start, end, result);
+    }
+
+    private Node insert(Node node, Node added) {
+        if (node == null) {
+            size++;
+            return added;
+        }
+        if (compare(added.start, added.end, added.id, node) < 0) {
+            node.left = insert(node.left, added);
+        } else {
+            node.right = insert(node.right, added);
+        }
+        return rebalance(node);
+    }
+
+    private Node remove(Node node, long start, long end, int id) {
+        if (node == null) {
+            return null;
+        }
+        int comparison = compare(start, end, id, node);
+        if (comparison < 0) {
+            node.left = remove(node.left, start, end, id);
+        } else if (comparison > 0) {
+            node.right = remove(node.right, start, end, id);
+        } else {
+            size--;
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            // Replace the node with the smallest window of its right subtree
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = removeSmallest(node.right);
+            successor.left = node.left;
+            return rebalance(successor);
+        }
+        return rebalance(node);
+    }
+
+    private Node removeSmallest(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = removeSmallest(node.left);
+        return rebalance(node);
+    }
+
+    private static int compare(long start, long end, int id, Node node) {
+        if (start != node.start) {
+            return start < node.start ? -1 : 1;
+        }
+        if (end != node.end) {
+            return end < node.end ? -1 : 1;
+        }
+        return Integer.compare(id, node.id);
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    // Recomputes the height and the largest end of a node from its children
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        long maxEnd = node.end;
+        if (node.left != null) {
+            maxEnd = Math.max(maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            maxEnd = Math.max(maxEnd, node.right.maxEnd);
+        }
+        node.maxEnd = maxEnd;
+    }
+
+    private static Node rebalance(Node node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+}
@@ -1,16 +1,22 @@
 package com.oap2024team7.team7mediastreamingapp.services;
 
+import com.oap2024team7.team7mediastreamingapp.models.AvailabilityTimeline;
 import com.oap2024team7.team7mediastreamingapp.models.Inventory;
 import com.oap2024team7.team7mediastreamingapp.models.Film;
+import com.oap2024team7.team7mediastreamingapp.models.FilmAvailability;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.time.LocalDateTime;
-import java.sql.Timestamp;
 
 /**
  * InventoryManager class
@@ -20,6 +26,7 @@ import java.sql.Timestamp;
  */
 
 public class InventoryManager {
+    private static final BatchWriter inventoryWriter = new BatchWriter("inventory", "film_id", "store_id");
 
     /**
      * Checks for inventory for a given film and store.
@@ -55,73 +62,85 @@ public class InventoryManager {
 
     /**
      * Checks for available inventory for a given film, store, and date range.
+     * Answered from memory by the AvailabilityEngine; a copy is available if none of its rentals overlaps [startDate, endDate).
      * @param filmId The ID of the film to check inventory for
      * @param storeId The ID of the store to check inventory for
      * @param startDate The start date of the rental period
+     * @param endDate The end date of the rental period (the same as startDate to check a single moment)
      * @return A list of available Inventory objects
      */
     public List<Inventory> checkForAvailableInventory(int filmId, int storeId, LocalDateTime startDate, LocalDateTime endDate) {
-        String sql = "SELECT i.inventory_id " +
-                     "FROM inventory i " +
-                     "LEFT JOIN rental r ON i.inventory_id = r.inventory_id " +
-                     "AND (r.rental_date <= ? AND r.return_date >= ?) " +  // Check for overlapping rentals
-                     "WHERE i.film_id = ? AND i.store_id = ? " +
-                     "AND (r.inventory_id IS NULL)";  // Include only inventories without active rentals
-        
         List<Inventory> availableInventories = new ArrayList<>();
-    
-        try (Connection connection = DatabaseManager.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(sql)) {
-    
-            stmt.setTimestamp(1, Timestamp.valueOf(endDate));  // End date for overlapping check
-            stmt.setTimestamp(2, Timestamp.valueOf(startDate));  // Start date for overlapping check
-            stmt.setInt(3, filmId);
-            stmt.setInt(4, storeId);
-    
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    Inventory inventory = new Inventory();
-                    inventory.setInventoryId(rs.getInt("inventory_id"));
-                    availableInventories.add(inventory);
-                }
+        try {
+            for (Integer inventoryId : AvailabilityEngine.getInstance().getFreeCopies(filmId, storeId, startDate, endDate)) {
+                availableInventories.add(new Inventory(inventoryId, filmId, storeId));
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
-    
         return availableInventories;
-    }    
+    }
 
     /**
      * Gets the next available date for an inventory item for a given film and store.
      * @param filmId
      * @param storeId
-     * @return The next available date as a LocalDateTime object
+     * @return The first moment from now on when a copy is free (now if one is free already),
+     * or null if the store has no copies or an exception occurs
      */
     public LocalDateTime getNextAvailableDate(int filmId, int storeId) {
-        String sql = "SELECT MIN(return_date) " +
-                     "FROM rental r " +
-                     "JOIN inventory i ON r.inventory_id = i.inventory_id " +
-                     "WHERE i.film_id = ? AND i.store_id = ? " +
-                     "AND r.return_date IS NOT NULL " +
-                     "AND r.return_date > NOW()";
-    
-        try (Connection connection = DatabaseManager.getConnection();
-             PreparedStatement stmt = connection.prepareStatement(sql)) {
-    
-            stmt.setInt(1, filmId);
-            stmt.setInt(2, storeId);
-    
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    Timestamp nextAvailableDate = rs.getTimestamp(1);
-                    return nextAvailableDate.toLocalDateTime();
-                }
-            }
+        try {
+            return AvailabilityEngine.getInstance().getNextFreeInstant(filmId, storeId, LocalDateTime.now());
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Gets the availability right now of a page of films in a store, for the availability badges of the film lists.
+     * All films are answered with one lookup in the AvailabilityEngine (and at most one batched load of the films
+     * it doesn't have yet), instead of one query per film.
+     * @param filmIds
+     * @param storeId
+     * @return Map from film ID to its availability, or an empty map if an exception occurs
+     */
+    public Map<Integer, FilmAvailability> getAvailabilityForFilms(Collection<Integer> filmIds, int storeId) {
+        try {
+            return AvailabilityEngine.getInstance().getAvailability(filmIds, storeId, LocalDateTime.now());
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new HashMap<>();
+        }
+    }
+
+    /**
+     * Gets the free/busy timeline of a film in a store for the next days.
+     * @param filmId
+     * @param storeId
+     * @param days Number of days from now the timeline covers
+     * @return AvailabilityTimeline object, or null if an exception occurs
+     */
+    public AvailabilityTimeline getAvailabilityTimeline(int filmId, int storeId, int days) {
+        return getAvailabilityTimelines(Collections.singletonList(filmId), storeId, days).get(filmId);
+    }
+
+    /**
+     * Gets the free/busy timelines of several films in a store for the next days, e.g. for a page of the film list.
+     * All films are loaded together, and each timeline is computed with one sweep over the film's rentals.
+     * @param filmIds
+     * @param storeId
+     * @param days Number of days from now the timelines cover
+     * @return Map from film ID to its timeline, or an empty map if an exception occurs
+     */
+    public Map<Integer, AvailabilityTimeline> getAvailabilityTimelines(Collection<Integer> filmIds, int storeId, int days) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            return AvailabilityEngine.getInstance().getTimelines(filmIds, storeId, now, now.plusDays(days));
         } catch (SQLException e) {
             e.printStackTrace();
+            return new HashMap<>();
         }
-        return null; // Return null if no result is found or an exception occurs
     }
 
     /**
@@ -130,21 +149,104 @@ public class InventoryManager {
      * @return true if the inventory was deleted successfully, false otherwise
      */
     public boolean deleteAvailableInventory(int inventoryId) {
+        String filmQuery = "SELECT film_id FROM inventory WHERE inventory_id = ?";
         String sql = "DELETE FROM inventory WHERE inventory_id = ?";
     
         try (Connection connection = DatabaseManager.getConnection();
+             PreparedStatement filmStmt = connection.prepareStatement(filmQuery);
              PreparedStatement stmt = connection.prepareStatement(sql)) {
     
+            // Remember the film, so the film catalog can be updated if this was the store's last copy
+            int filmId = -1;
+            filmStmt.setInt(1, inventoryId);
+            try (ResultSet rs = filmStmt.executeQuery()) {
+                if (rs.next()) {
+                    filmId = rs.getInt("film_id");
+                }
+            }
+
             stmt.setInt(1, inventoryId);
             int affectedRows = stmt.executeUpdate();
     
-            return affectedRows > 0;
+            if (affectedRows > 0) {
+                FilmCatalog.getInstance().reloadFilm(filmId);
+                AvailabilityEngine.getInstance().inventoryChanged(filmId);
+                return true;
+            }
+            return false;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
         }
     }
 
+    /**
+     * Removes up to a number of free copies of a film from a store, in one transaction.
+     * A copy is free if it has no rental that hasn't ended yet, so copies that are rented out or booked for later
+     * are kept. The copies are picked and locked with one query, and their past rentals and the copies themselves
+     * are deleted with one statement each, instead of several statements and connections per copy.
+     * @param filmId
+     * @param storeId
+     * @param count Number of copies to remove
+     * @return The IDs of the copies that were removed (fewer than count if not enough copies were free),
+     * or null if the copies couldn't be removed
+     */
+    public List<Integer> removeFreeCopies(int filmId, int storeId, int count) {
+        if (count <= 0) {
+            return new ArrayList<>();
+        }
+        String selectQuery = "SELECT i.inventory_id FROM inventory i " +
+                             "WHERE i.film_id = ? AND i.store_id = ? " +
+                             "AND NOT EXISTS (SELECT 1 FROM rental r WHERE r.inventory_id = i.inventory_id AND r.return_date > ?) " +
+                             "ORDER BY i.inventory_id LIMIT ? FOR UPDATE";
+
+        List<Integer> removedCopies;
+        try {
+            removedCopies = TransactionManager.execute(TransactionManager.Propagation.REQUIRED, () -> {
+                try (Connection connection = DatabaseManager.getConnection()) {
+                    List<Integer> copies = new ArrayList<>();
+                    try (PreparedStatement stmt = connection.prepareStatement(selectQuery)) {
+                        stmt.setInt(1, filmId);
+                        stmt.setInt(2, storeId);
+                        stmt.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
+                        stmt.setInt(4, count);
+                        try (ResultSet rs = stmt.executeQuery()) {
+                            while (rs.next()) {
+                                copies.add(rs.getInt("inventory_id"));
+                            }
+                        }
+                    }
+                    if (copies.isEmpty()) {
+                        return copies;
+                    }
+
+                    String idList = " WHERE inventory_id IN (" + placeholders(copies.size()) + ")";
+                    try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM rental" + idList)) {
+                        setIds(stmt, copies);
+                        stmt.executeUpdate();
+                    }
+                    try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM inventory" + idList)) {
+                        setIds(stmt, copies);
+                        int affectedRows = stmt.executeUpdate();
+                        if (affectedRows != copies.size()) {
+                            throw new SQLException("Removing inventory failed, " + affectedRows + " of " + copies.size() + " copies deleted.");
+                        }
+                    }
+                    return copies;
+                }
+            });
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        if (!removedCopies.isEmpty()) {
+            FilmCatalog.getInstance().reloadFilm(filmId);
+            AvailabilityEngine.getInstance().inventoryChanged(filmId);
+        }
+        return removedCopies;
+    }
+
     /**
      * Adds inventory for a film to the database.
      * @param filmId The ID of the film to add inventory for
@@ -153,30 +255,36 @@ public class InventoryManager {
      * @return true if the inventory was added successfully, false otherwise
      */
     public boolean addInventoryForFilm(int filmId, int storeId, int quantity) {
-        String insertQuery = "INSERT INTO inventory (film_id, store_id) VALUES (?, ?)";
-
-        try (Connection connection = DatabaseManager.getConnection();
-            PreparedStatement stmt = connection.prepareStatement(insertQuery, PreparedStatement.RETURN_GENERATED_KEYS)) {
-
-        for (int i = 0; i < quantity; i++) {
-            stmt.setInt(1, filmId);
-            stmt.setInt(2, storeId);
-            int affectedRows = stmt.executeUpdate();
-
-            if (affectedRows == 0) {
-            throw new SQLException("Creating inventory failed, no rows affected.");
-            }
+        // One multi-row INSERT per chunk instead of one INSERT per copy
+        List<Integer> copies = Collections.nCopies(quantity, filmId);
 
-            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-            if (!generatedKeys.next()) {
+        try (Connection connection = DatabaseManager.getConnection()) {
+            BatchWriter.Result result = inventoryWriter.insert(connection, copies,
+                copyFilmId -> new Object[] { copyFilmId, storeId }, true);
+            if (result.getGeneratedKeys().size() != quantity) {
                 throw new SQLException("Creating inventory failed, no ID obtained.");
             }
-            }
-        }
         } catch (SQLException e) {
-        e.printStackTrace();
-        return false;
+            e.printStackTrace();
+            return false;
         }
+        FilmCatalog.getInstance().reloadFilm(filmId);
+        AvailabilityEngine.getInstance().inventoryChanged(filmId);
         return true;
     }
-}    
\ No newline at end of file
+
+    private static String placeholders(int count) {
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+        }
+        return placeholders.toString();
+    }
+
+    private static void setIds(PreparedStatement stmt, List<Integer> ids) throws SQLException {
+        int paramIndex = 1;
+        for (Integer id : ids) {
+            stmt.setInt(paramIndex++, id);
+        }
+    }
+}
@@ -6,8 +6,6 @@ import java.util.ArrayList;
 import java.util.List;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 
 /**
@@ -16,24 +14,17 @@ import java.sql.SQLException;
  * @author Agata (Agy) Olaussen (@agyCoding)
  */
 public class LanguageManager {
-
     /**
-     * Helper method to extract language data and create a Language object
-     * @param conn
+     * Helper method to extract language data and create a Language object.
+     * Languages are served from the ReferenceDataCache, so a page of films costs no language query at all
+     * once the languages have been loaded.
+     * @param conn Connection to load the languages with if they haven't been loaded yet
      * @param languageId
      * @return Language object
      * @throws SQLException
      */
     public Language getLanguageById(Connection conn, int languageId) throws SQLException {
-        String query = "SELECT * FROM language WHERE language_id = ?";
-        try (PreparedStatement stmt = conn.prepareStatement(query)) {
-            stmt.setInt(1, languageId);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return new Language(rs.getInt("language_id"), rs.getString("name"));
-            }
-        }
-        return null;
+        return ReferenceDataCache.getInstance().getLanguage(conn, languageId);
     }
 
 /**
@@ -42,21 +33,12 @@ public class LanguageManager {
  */
 
     public List<Language> getAllLanguages() {
-        List<Language> languages = new ArrayList<>();
-        String query = "SELECT language_id, name FROM language";  // Adjust the table/field names as needed
-    
-        try (Connection connection = DatabaseManager.getConnection();
-             PreparedStatement statement = connection.prepareStatement(query);
-             ResultSet resultSet = statement.executeQuery()) {
-            while (resultSet.next()) {
-                int id = resultSet.getInt("language_id");
-                String name = resultSet.getString("name");
-                languages.add(new Language(id, name));
-            }
+        try {
+            // A copy, the callers may add to or sort their list
+            return new ArrayList<>(ReferenceDataCache.getInstance().getLanguages());
         } catch (SQLException e) {
             e.printStackTrace();
+            return new ArrayList<>();
         }
-    
-        return languages;        
     }
 }
\ No newline at end of file
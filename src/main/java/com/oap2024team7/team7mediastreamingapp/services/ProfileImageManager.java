@@ -1,7 +1,6 @@
 package com.oap2024team7.team7mediastreamingapp.services;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -12,10 +11,6 @@ import java.sql.SQLException;
 
 public class ProfileImageManager {
 
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/sakila";
-    private static final String DB_USER = "student";
-    private static final String DB_PASSWORD = "student";
-
     /**
      * Stores a profile image in the database.
      * If a profile image already exists for the given profileId, it updates the image instead.
@@ -27,7 +22,7 @@ public class ProfileImageManager {
         String insertOrUpdateSQL = 
             "INSERT INTO profile_image (profile_id, image) VALUES (?, ?) " +
             "ON DUPLICATE KEY UPDATE image = VALUES(image)";
-        try (Connection connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        try (Connection connection = DatabaseManager.getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(insertOrUpdateSQL)) {
             preparedStatement.setInt(1, profileId);
             preparedStatement.setBytes(2, imageData);
@@ -46,7 +41,7 @@ public class ProfileImageManager {
      */
     public byte[] retrieveProfileImage(int profileId) {
         String selectSQL = "SELECT image FROM profile_image WHERE profile_id = ?";
-        try (Connection connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        try (Connection connection = DatabaseManager.getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(selectSQL)) {
             preparedStatement.setInt(1, profileId);
             ResultSet resultSet = preparedStatement.executeQuery();
@@ -66,7 +61,7 @@ public class ProfileImageManager {
      */
     public boolean deleteProfileImage(int profileId) {
         String deleteSQL = "DELETE FROM profile_image WHERE profile_id = ?";
-        try (Connection connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        try (Connection connection = DatabaseManager.getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(deleteSQL)) {
             preparedStatement.setInt(1, profileId);
             int rowsDeleted = preparedStatement.executeUpdate();
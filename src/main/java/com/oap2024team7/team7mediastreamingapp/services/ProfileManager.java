@@ -5,7 +5,9 @@ import com.oap2024team7.team7mediastreamingapp.models.Film;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import java.time.Period;
 
 import java.sql.Date;
@@ -234,23 +236,47 @@ public class ProfileManager {
      * @return True if the user can watch the film, false otherwise
      */
     public static boolean canWatchFilm(Film film, Profile profile) {
+        return getAllowedRatings(profile).contains(film.getRating());
+    }
+
+    /**
+     * Get the film ratings a profile user is allowed to watch based on the user's birth date.
+     * The set is computed once when the profile is selected, so the film queries can filter on it in SQL.
+     * @param profile
+     * @return Set of allowed ratings (never contains Rating.NONE)
+     */
+    public static Set<Film.Rating> getAllowedRatings(Profile profile) {
         LocalDate usersBirthDate = profile.getBirthDate();
-        Film.Rating rating = film.getRating();
         int age = Period.between(usersBirthDate, LocalDate.now()).getYears();
 
+        Set<Film.Rating> allowedRatings = EnumSet.noneOf(Film.Rating.class);
+        for (Film.Rating rating : Film.Rating.values()) {
+            if (age >= getMinimumAge(rating)) {
+                allowedRatings.add(rating);
+            }
+        }
+        return allowedRatings;
+    }
+
+    /**
+     * Get the minimum age for a film rating
+     * @param rating
+     * @return The minimum age, or Integer.MAX_VALUE for unknown ratings
+     */
+    private static int getMinimumAge(Film.Rating rating) {
         switch (rating) {
         case G:
-            return true;
+            return 0;
         case PG:
-            return age >= 7;
+            return 7;
         case PG13:
-            return age >= 13;
+            return 13;
         case R:
-            return age >= 17;
+            return 17;
         case NC17:
-            return age >= 18;
+            return 18;
         default:
-            return false; // Unknown rating
+            return Integer.MAX_VALUE; // Unknown rating
         }
     }
 
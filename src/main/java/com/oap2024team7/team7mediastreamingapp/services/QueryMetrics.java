@@ -0,0 +1,488 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import javax.management.ObjectName;
+
+/**
+ * Class for the Query Metrics.
+ * Collects what the database work of the app costs: per normalized SQL statement and calling manager method
+ * the number of executions, a latency histogram and the rows fetched, and per manager method how long it holds
+ * a connection. The data is available through JMX (QueryMetricsMXBean) and printed as a periodic report.
+ * It also detects N+1 queries: when one UI action (a DataAccessExecutor task or a TransactionManager unit of work)
+ * runs the same statement shape more than a threshold number of times, a warning is printed.
+ * Statements are measured by InstrumentedConnection, which DatabaseManager wraps around every connection it hands out.
+ * Settings (see DatabaseConfig.getSetting): db.metrics.enabled (default true), db.metrics.nPlusOneThreshold (default 10),
+ * db.metrics.reportIntervalSeconds (default 300, 0 turns the report off) and db.metrics.callers (default true; false
+ * saves the stack walk that finds the calling manager method, all statements are then reported for an "unknown" caller).
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+
+public class QueryMetrics implements QueryMetricsMXBean {
+    private static final String OBJECT_NAME = "com.oap2024team7.team7mediastreamingapp:type=QueryMetrics";
+    private static final int MAX_NORMALIZED_CACHE_SIZE = 2_000;
+    private static final int MAX_RECENT_WARNINGS = 20;
+    private static final int REPORT_TOP_STATEMENTS = 10;
+    private static final String UNKNOWN_CALLER = "unknown";
+
+    // Literals and lists of placeholders are replaced, so statements that differ only in their values share one entry
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+    private static final Pattern VALUES_LIST = Pattern.compile("(\\(\\s*\\?\\s*\\))(?:\\s*,\\s*\\(\\s*\\?\\s*\\))+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static QueryMetrics instance;
+
+    private final boolean enabled;
+    private final boolean tagCallers;
+    private final int nPlusOneThreshold;
+    private final ConcurrentHashMap<String, String> normalizedSql = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, StatementStats> statementStats = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LatencyHistogram> connectionHoldTimes = new ConcurrentHashMap<>();
+    private final LongAdder nPlusOneWarnings = new LongAdder();
+    private final Deque<String> recentWarnings = new ArrayDeque<>();
+    private final ThreadLocal<Action> currentAction = new ThreadLocal<>();
+
+    private QueryMetrics() {
+        enabled = Boolean.parseBoolean(DatabaseConfig.getSetting("db.metrics.enabled", "true"));
+        tagCallers = Boolean.parseBoolean(DatabaseConfig.getSetting("db.metrics.callers", "true"));
+        nPlusOneThreshold = Integer.parseInt(DatabaseConfig.getSetting("db.metrics.nPlusOneThreshold", "10"));
+        long reportIntervalSeconds = Long.parseLong(DatabaseConfig.getSetting("db.metrics.reportIntervalSeconds", "300"));
+
+        if (!enabled) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (Exception e) {
+            // The metrics still work without JMX
+            e.printStackTrace();
+        }
+        if (reportIntervalSeconds > 0) {
+            ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "query-metrics-report");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reporter.scheduleAtFixedRate(() -> {
+                if (getStatementCount() > 0) {
+                    System.out.println(getReport());
+                }
+            }, reportIntervalSeconds, reportIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    public static synchronized QueryMetrics getInstance() {
+        if (instance == null) {
+            instance = new QueryMetrics();
+        }
+        return instance;
+    }
+
+    /**
+     * Wraps a connection so that its statements are measured. The connection is tagged with the manager method that borrowed it.
+     * @param connection
+     * @return The instrumented connection, or the connection itself if the metrics are turned off
+     */
+    Connection instrument(Connection connection) {
+        if (!enabled) {
+            return connection;
+        }
+        return InstrumentedConnection.wrap(connection, this, findCaller(connection));
+    }
+
+    /**
+     * Name of the method that borrowed a connection. A pool connection brings the trace of its borrow along,
+     * so the stack is only captured again for connections of a transaction.
+     * @param connection
+     * @return Simple class name and method name, or "unknown"
+     */
+    private String findCaller(Connection connection) {
+        if (!tagCallers) {
+            return UNKNOWN_CALLER;
+        }
+        Throwable borrowTrace = ConnectionPool.getBorrowTrace(connection);
+        if (borrowTrace == null) {
+            return findCaller();
+        }
+        return findCaller(borrowTrace.getStackTrace());
+    }
+
+    /**
+     * Starts a UI action: until the returned Action is closed, the statements run on this thread are counted per shape,
+     * and statements that run more often than the N+1 threshold are reported when it is closed.
+     * An action started while another one is running on the thread is part of the outer one.
+     * @param name Name of the action in the warning, e.g. the controller method that started it
+     * @return Action to close when the work is done
+     */
+    public Action startAction(String name) {
+        if (!enabled || currentAction.get() != null) {
+            return Action.NONE;
+        }
+        Action action = new Action(this, name);
+        currentAction.set(action);
+        return action;
+    }
+
+    /**
+     * Name of the method that called into the data access code, e.g. "FilmManager.getFilmPage".
+     * Frames of the database infrastructure (pool, transactions, metrics, executor) are skipped.
+     * @return Simple class name and method name, or "unknown" (also when the metrics or db.metrics.callers are turned off)
+     */
+    String findCaller() {
+        if (!enabled || !tagCallers) {
+            return UNKNOWN_CALLER;
+        }
+        return findCaller(Thread.currentThread().getStackTrace());
+    }
+
+    /**
+     * Finds the first frame of a stack that isn't database infrastructure.
+     * @param stack
+     * @return Simple class name and method name, or "unknown"
+     */
+    private static String findCaller(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            String className = frame.getClassName();
+            if (!className.startsWith("com.oap2024team7.team7mediastreamingapp.") || isInfrastructure(className)) {
+                continue;
+            }
+            String simpleName = className.substring(className.lastIndexOf('.') + 1);
+            int innerClass = simpleName.indexOf('$');
+            if (innerClass > 0) {
+                simpleName = simpleName.substring(0, innerClass);
+            }
+            String method = frame.getMethodName();
+            if (method.startsWith("lambda$")) {
+                // lambda$getFilmPage$3 -> getFilmPage
+                int end = method.indexOf('$', 7);
+                method = end > 7 ? method.substring(7, end) : method;
+            }
+            return simpleName + "." + method;
+        }
+        return UNKNOWN_CALLER;
+    }
+
+    private static boolean isInfrastructure(String className) {
+        String services = "com.oap2024team7.team7mediastreamingapp.services.";
+        return className.startsWith(services + "DatabaseManager")
+            || className.startsWith(services + "ConnectionPool")
+            || className.startsWith(services + "StatementCache")
+            || className.startsWith(services + "TransactionManager")
+            || className.startsWith(services + "DataAccessExecutor")
+            || className.startsWith(services + "ResiliencePolicy")
+            || className.startsWith(services + "ReplicaRouter")
+            || className.startsWith(services + "QueryMetrics")
+            || className.startsWith(services + "InstrumentedConnection");
+    }
+
+    /**
+     * Records one execution of a statement.
+     * @param sql The SQL as given to the driver
+     * @param caller Manager method that borrowed the connection
+     * @param nanos Time the execution took
+     * @return Stats of the statement, to add the fetched rows to
+     */
+    StatementStats recordExecution(String sql, String caller, long nanos) {
+        String shape = normalize(sql);
+        StatementStats stats = statementStats.computeIfAbsent(caller + "\u0000" + shape, k -> new StatementStats(shape, caller));
+        stats.executions.increment();
+        stats.latency.record(nanos);
+
+        Action action = currentAction.get();
+        if (action != null) {
+            action.count(shape, caller);
+        }
+        return stats;
+    }
+
+    void recordConnectionHold(String caller, long nanos) {
+        connectionHoldTimes.computeIfAbsent(caller, k -> new LatencyHistogram()).record(nanos);
+    }
+
+    /**
+     * Normalizes a statement: literals become ?, lists of placeholders become "?, ...", whitespace is collapsed.
+     * @param sql
+     * @return Normalized SQL
+     */
+    String normalize(String sql) {
+        String normalized = normalizedSql.get(sql);
+        if (normalized != null) {
+            return normalized;
+        }
+        normalized = STRING_LITERAL.matcher(sql).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+        normalized = VALUES_LIST.matcher(normalized).replaceAll("$1, ...");
+        normalized = PLACEHOLDER_LIST.matcher(normalized).replaceAll("?, ...");
+        if (normalizedSql.size() >= MAX_NORMALIZED_CACHE_SIZE) {
+            // Statements built with literals would otherwise fill the cache forever
+            normalizedSql.clear();
+        }
+        normalizedSql.put(sql, normalized);
+        return normalized;
+    }
+
+    private void warnNPlusOne(String actionName, String shape, String caller, int executions) {
+        String warning = String.format("Possible N+1 query: action %s ran \"%s\" %d times (from %s)", actionName, shape, executions, caller);
+        System.err.println(warning);
+        nPlusOneWarnings.increment();
+        synchronized (recentWarnings) {
+            recentWarnings.addFirst(warning);
+            while (recentWarnings.size() > MAX_RECENT_WARNINGS) {
+                recentWarnings.removeLast();
+            }
+        }
+    }
+
+    @Override
+    public long getStatementCount() {
+        long count = 0;
+        for (StatementStats stats : statementStats.values()) {
+            count += stats.executions.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Number of executions of the statement shapes that contain the given text, e.g. "FROM film_actor",
+     * to check how many round trips a piece of work costs.
+     * @param sqlFragment Text to look for in the normalized SQL
+     * @return Executions since the start or the last reset()
+     */
+    long getExecutionCount(String sqlFragment) {
+        long count = 0;
+        for (StatementStats stats : statementStats.values()) {
+            if (stats.shape.contains(sqlFragment)) {
+                count += stats.executions.sum();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long getTotalStatementMillis() {
+        long nanos = 0;
+        for (StatementStats stats : statementStats.values()) {
+            nanos += stats.latency.totalNanos();
+        }
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    @Override
+    public long getRowsFetched() {
+        long rows = 0;
+        for (StatementStats stats : statementStats.values()) {
+            rows += stats.rowsFetched.sum();
+        }
+        return rows;
+    }
+
+    @Override
+    public long getConnectionBorrows() {
+        long borrows = 0;
+        for (LatencyHistogram holdTimes : connectionHoldTimes.values()) {
+            borrows += holdTimes.count();
+        }
+        return borrows;
+    }
+
+    @Override
+    public long getNPlusOneWarningCount() {
+        return nPlusOneWarnings.sum();
+    }
+
+    @Override
+    public String[] getTopStatements() {
+        List<StatementStats> sorted = new ArrayList<>(statementStats.values());
+        sorted.sort((a, b) -> Long.compare(b.latency.totalNanos(), a.latency.totalNanos()));
+        String[] lines = new String[sorted.size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = sorted.get(i).toString();
+        }
+        return lines;
+    }
+
+    @Override
+    public String[] getRecentNPlusOneWarnings() {
+        synchronized (recentWarnings) {
+            return recentWarnings.toArray(new String[0]);
+        }
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Query metrics: %d statements, %d ms, %d rows fetched, %d connection borrows, %d N+1 warnings%n",
+            getStatementCount(), getTotalStatementMillis(), getRowsFetched(), getConnectionBorrows(), getNPlusOneWarningCount()));
+
+        String[] top = getTopStatements();
+        report.append("Slowest statements (total time):").append(System.lineSeparator());
+        for (int i = 0; i < Math.min(REPORT_TOP_STATEMENTS, top.length); i++) {
+            report.append("  ").append(top[i]).append(System.lineSeparator());
+        }
+
+        List<Map.Entry<String, LatencyHistogram>> holds = new ArrayList<>(connectionHoldTimes.entrySet());
+        holds.sort((a, b) -> Long.compare(b.getValue().totalNanos(), a.getValue().totalNanos()));
+        report.append("Connection hold time by caller:").append(System.lineSeparator());
+        for (int i = 0; i < Math.min(REPORT_TOP_STATEMENTS, holds.size()); i++) {
+            report.append("  ").append(holds.get(i).getKey()).append(": ").append(holds.get(i).getValue()).append(System.lineSeparator());
+        }
+        return report.toString();
+    }
+
+    @Override
+    public void reset() {
+        statementStats.clear();
+        connectionHoldTimes.clear();
+        nPlusOneWarnings.reset();
+        synchronized (recentWarnings) {
+            recentWarnings.clear();
+        }
+    }
+
+    /**
+     * Metrics of one statement shape run from one manager method.
+     */
+    static class StatementStats {
+        private final String shape;
+        private final String caller;
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder rowsFetched = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private StatementStats(String shape, String caller) {
+            this.shape = shape;
+            this.caller = caller;
+        }
+
+        void addRowFetched() {
+            rowsFetched.increment();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d executions, %d rows, %s | %s", caller, executions.sum(), rowsFetched.sum(), latency, shape);
+        }
+    }
+
+    /**
+     * Histogram of durations with fixed buckets from 100 microseconds to 10 seconds.
+     */
+    static class LatencyHistogram {
+        private static final long[] BUCKET_LIMITS_MICROS = {
+            100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000, 1_000_000, 2_500_000, 10_000_000
+        };
+
+        // The last bucket is for everything above the highest limit
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_LIMITS_MICROS.length + 1);
+        private final LongAdder totalNanos = new LongAdder();
+
+        void record(long nanos) {
+            long micros = nanos / 1_000;
+            int bucket = 0;
+            while (bucket < BUCKET_LIMITS_MICROS.length && micros > BUCKET_LIMITS_MICROS[bucket]) {
+                bucket++;
+            }
+            buckets.incrementAndGet(bucket);
+            totalNanos.add(nanos);
+        }
+
+        long count() {
+            long count = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                count += buckets.get(i);
+            }
+            return count;
+        }
+
+        long totalNanos() {
+            return totalNanos.sum();
+        }
+
+        /**
+         * Upper limit of the bucket the percentile falls in.
+         * @param percentile Between 0 and 100
+         * @return Milliseconds, or -1 for the overflow bucket
+         */
+        double percentileMillis(double percentile) {
+            long count = count();
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(count * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < BUCKET_LIMITS_MICROS.length; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return BUCKET_LIMITS_MICROS[i] / 1_000.0;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public String toString() {
+            long count = count();
+            double averageMillis = count == 0 ? 0 : totalNanos() / 1_000_000.0 / count;
+            return String.format("total %.1f ms, avg %.2f ms, p50 <= %s, p95 <= %s, p99 <= %s",
+                totalNanos() / 1_000_000.0, averageMillis,
+                formatLimit(percentileMillis(50)), formatLimit(percentileMillis(95)), formatLimit(percentileMillis(99)));
+        }
+
+        private static String formatLimit(double millis) {
+            return millis < 0 ? "inf" : millis + " ms";
+        }
+    }
+
+    /**
+     * A UI action whose statements are checked for N+1 queries. Close it when the action is done.
+     */
+    public static class Action implements AutoCloseable {
+        // Returned when the metrics are off or an action is already running on the thread
+        private static final Action NONE = new Action(null, null);
+
+        private final QueryMetrics metrics;
+        private final String name;
+        private final Map<String, Integer> executionsByShape = new HashMap<>();
+        private final Map<String, String> callerByShape = new HashMap<>();
+
+        private Action(QueryMetrics metrics, String name) {
+            this.metrics = metrics;
+            this.name = name;
+        }
+
+        private void count(String shape, String caller) {
+            executionsByShape.merge(shape, 1, Integer::sum);
+            callerByShape.putIfAbsent(shape, caller);
+        }
+
+        @Override
+        public void close() {
+            if (metrics == null) {
+                return;
+            }
+            metrics.currentAction.remove();
+            for (Map.Entry<String, Integer> entry : executionsByShape.entrySet()) {
+                if (entry.getValue() > metrics.nPlusOneThreshold) {
+                    metrics.warnNPlusOne(name, entry.getKey(), callerByShape.get(entry.getKey()), entry.getValue());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+/**
+ * JMX view of the query metrics (see QueryMetrics), registered as
+ * com.oap2024team7.team7mediastreamingapp:type=QueryMetrics.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+public interface QueryMetricsMXBean {
+    long getStatementCount();
+
+    long getTotalStatementMillis();
+
+    long getRowsFetched();
+
+    long getConnectionBorrows();
+
+    long getNPlusOneWarningCount();
+
+    // One line per statement shape and caller, slowest total time first
+    String[] getTopStatements();
+
+    String[] getRecentNPlusOneWarnings();
+
+    String getReport();
+
+    void reset();
+}
@@ -0,0 +1,329 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import com.oap2024team7.team7mediastreamingapp.models.Category;
+import com.oap2024team7.team7mediastreamingapp.models.Language;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class for the Reference Data Cache.
+ * Keeps the languages and categories in memory, so the film lists, the filters and the admin screens
+ * never query them again after the first load. Lookups by ID are served from arrays indexed by the ID.
+ * The same Language and Category objects are handed out every time (and kept across reloads if they didn't change),
+ * so films and combo boxes share them.
+ * A background thread compares the last_update watermark and the row counts of both tables every minute
+ * and reloads them if they changed; invalidate() reloads them right away, e.g. after an admin changed one.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+public class ReferenceDataCache {
+    private static final long REFRESH_INTERVAL_SECONDS = 60;
+    // An unknown ID (e.g. a language added by another application) reloads the tables at most this often
+    private static final long MISS_RELOAD_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private static ReferenceDataCache instance;
+
+    private final Object lock = new Object();
+    private volatile Snapshot snapshot;
+    private volatile long lastMissReload;
+    private ScheduledExecutorService refresher;
+
+    private ReferenceDataCache() {
+    }
+
+    public static synchronized ReferenceDataCache getInstance() {
+        if (instance == null) {
+            instance = new ReferenceDataCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Gets a language by its ID.
+     * @param conn Connection to load the languages with if they haven't been loaded yet, or null to borrow one
+     * @param languageId
+     * @return Language object, or null if there is no such language
+     * @throws SQLException if the languages had to be loaded and that failed
+     */
+    public Language getLanguage(Connection conn, int languageId) throws SQLException {
+        Snapshot current = ensureLoaded(conn);
+        Language language = lookup(current.languagesById, languageId);
+        if (language == null && reloadAfterMiss(conn)) {
+            language = lookup(snapshot.languagesById, languageId);
+        }
+        return language;
+    }
+
+    /**
+     * Gets a category by its ID.
+     * @param conn Connection to load the categories with if they haven't been loaded yet, or null to borrow one
+     * @param categoryId
+     * @return Category object, or null if there is no such category
+     * @throws SQLException if the categories had to be loaded and that failed
+     */
+    public Category getCategory(Connection conn, int categoryId) throws SQLException {
+        Snapshot current = ensureLoaded(conn);
+        Category category = lookup(current.categoriesById, categoryId);
+        if (category == null && reloadAfterMiss(conn)) {
+            category = lookup(snapshot.categoriesById, categoryId);
+        }
+        return category;
+    }
+
+    /**
+     * Gets all languages, ordered by ID.
+     * @return Unmodifiable list of languages
+     * @throws SQLException if the languages had to be loaded and that failed
+     */
+    public List<Language> getLanguages() throws SQLException {
+        return ensureLoaded(null).languages;
+    }
+
+    /**
+     * Gets all categories, ordered by ID.
+     * @return Unmodifiable list of categories
+     * @throws SQLException if the categories had to be loaded and that failed
+     */
+    public List<Category> getCategories() throws SQLException {
+        return ensureLoaded(null).categories;
+    }
+
+    /**
+     * Reloads the languages and categories, e.g. after one of them was added, renamed or removed.
+     */
+    public void invalidate() {
+        synchronized (lock) {
+            if (snapshot == null) {
+                return; // Nothing loaded yet, the first lookup loads the current data
+            }
+            try (Connection conn = DatabaseManager.getConnection()) {
+                snapshot = load(conn, snapshot);
+            } catch (SQLException e) {
+                e.printStackTrace();
+                // Load again on the next lookup instead of serving data that is known to be stale
+                snapshot = null;
+            }
+        }
+    }
+
+    /**
+     * Reloads the tables if their watermark changed since the last load. Runs on the refresh thread.
+     */
+    void refresh() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        try (Connection conn = DatabaseManager.getConnection()) {
+            if (!readWatermark(conn).equals(current.watermark)) {
+                synchronized (lock) {
+                    snapshot = load(conn, snapshot);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Stops the background refresh.
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            if (refresher != null) {
+                refresher.shutdownNow();
+                refresher = null;
+            }
+        }
+    }
+
+    private Snapshot ensureLoaded(Connection conn) throws SQLException {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (lock) {
+            if (snapshot == null) {
+                if (conn != null) {
+                    snapshot = load(conn, null);
+                } else {
+                    snapshot = ResiliencePolicy.getInstance().read(null, () -> {
+                        try (Connection borrowed = DatabaseManager.getConnection()) {
+                            return load(borrowed, null);
+                        }
+                    });
+                }
+                startRefresher();
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Reloads the tables after a lookup of an unknown ID, unless that was done very recently.
+     * @return true if the tables were reloaded
+     */
+    private boolean reloadAfterMiss(Connection conn) throws SQLException {
+        synchronized (lock) {
+            long now = System.nanoTime();
+            if (now - lastMissReload < MISS_RELOAD_INTERVAL_NANOS) {
+                return false;
+            }
+            lastMissReload = now;
+            if (conn != null) {
+                snapshot = load(conn, snapshot);
+            } else {
+                try (Connection borrowed = DatabaseManager.getConnection()) {
+                    snapshot = load(borrowed, snapshot);
+                }
+            }
+            return true;
+        }
+    }
+
+    private void startRefresher() {
+        if (refresher != null) {
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reference-data-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refresh, REFRESH_INTERVAL_SECONDS, REFRESH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static <T> T lookup(T[] byId, int id) {
+        return id >= 0 && id < byId.length ? byId[id] : null;
+    }
+
+    /**
+     * Loads both tables. Objects that didn't change are taken over from the previous snapshot.
+     * @param conn
+     * @param previous The previous snapshot, or null
+     * @return New snapshot
+     * @throws SQLException
+     */
+    private static Snapshot load(Connection conn, Snapshot previous) throws SQLException {
+        // Read the watermark first, so a change made while loading is picked up by the next refresh
+        Watermark watermark = readWatermark(conn);
+
+        List<Language> languages = new ArrayList<>();
+        int maxLanguageId = -1;
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT language_id, name FROM language ORDER BY language_id");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                int id = rs.getInt("language_id");
+                String name = rs.getString("name");
+                Language language = previous != null ? lookup(previous.languagesById, id) : null;
+                if (language == null || !Objects.equals(language.getLanguageName(), name)) {
+                    language = new Language(id, name);
+                }
+                languages.add(language);
+                maxLanguageId = Math.max(maxLanguageId, id);
+            }
+        }
+
+        List<Category> categories = new ArrayList<>();
+        int maxCategoryId = -1;
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT category_id, name FROM category ORDER BY category_id");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                int id = rs.getInt("category_id");
+                String name = rs.getString("name");
+                Category category = previous != null ? lookup(previous.categoriesById, id) : null;
+                if (category == null || !Objects.equals(category.getCategoryName(), name)) {
+                    category = new Category(id, name);
+                }
+                categories.add(category);
+                maxCategoryId = Math.max(maxCategoryId, id);
+            }
+        }
+
+        Language[] languagesById = new Language[maxLanguageId + 1];
+        for (Language language : languages) {
+            languagesById[language.getLanguageId()] = language;
+        }
+        Category[] categoriesById = new Category[maxCategoryId + 1];
+        for (Category category : categories) {
+            categoriesById[category.getCategoryId()] = category;
+        }
+        return new Snapshot(languagesById, Collections.unmodifiableList(languages),
+            categoriesById, Collections.unmodifiableList(categories), watermark);
+    }
+
+    private static Watermark readWatermark(Connection conn) throws SQLException {
+        String query = "SELECT " +
+            "(SELECT MAX(last_update) FROM language), (SELECT COUNT(*) FROM language), " +
+            "(SELECT MAX(last_update) FROM category), (SELECT COUNT(*) FROM category)";
+        try (PreparedStatement stmt = conn.prepareStatement(query);
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return new Watermark(rs.getTimestamp(1), rs.getInt(2), rs.getTimestamp(3), rs.getInt(4));
+        }
+    }
+
+    /**
+     * Immutable view of both tables, replaced as a whole on reload.
+     */
+    private static class Snapshot {
+        private final Language[] languagesById;
+        private final List<Language> languages;
+        private final Category[] categoriesById;
+        private final List<Category> categories;
+        private final Watermark watermark;
+
+        private Snapshot(Language[] languagesById, List<Language> languages, Category[] categoriesById,
+                         List<Category> categories, Watermark watermark) {
+            this.languagesById = languagesById;
+            this.languages = languages;
+            this.categoriesById = categoriesById;
+            this.categories = categories;
+            this.watermark = watermark;
+        }
+    }
+
+    /**
+     * Newest last_update and row count of both tables; the counts notice deleted rows.
+     */
+    private static class Watermark {
+        private final Timestamp languageLastUpdate;
+        private final int languageCount;
+        private final Timestamp categoryLastUpdate;
+        private final int categoryCount;
+
+        private Watermark(Timestamp languageLastUpdate, int languageCount, Timestamp categoryLastUpdate, int categoryCount) {
+            this.languageLastUpdate = languageLastUpdate;
+            this.languageCount = languageCount;
+            this.categoryLastUpdate = categoryLastUpdate;
+            this.categoryCount = categoryCount;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Watermark)) {
+                return false;
+            }
+            Watermark watermark = (Watermark) other;
+            return Objects.equals(languageLastUpdate, watermark.languageLastUpdate)
+                && languageCount == watermark.languageCount
+                && Objects.equals(categoryLastUpdate, watermark.categoryLastUpdate)
+                && categoryCount == watermark.categoryCount;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(languageLastUpdate, languageCount, categoryLastUpdate, categoryCount);
+        }
+    }
+}
@@ -50,38 +50,94 @@ public class RentalManager {
         return false;
     } 
 
+    /**
+     * Thrown when a rental can't be added because its copy is already rented during an overlapping period.
+     */
+    public static class RentalConflictException extends SQLException {
+        private static final long serialVersionUID = 1L;
+
+        public RentalConflictException(String reason) {
+            super(reason);
+        }
+    }
+
     /**
      * Adds a rental to the database.
      * @param  rental The rental to add
      * @return The ID of the rental that was added, or -1 if the rental could not be added
+     * (also if the copy is already rented during the same time, see insertRental)
      */
     public int addRentalToDatabase(Rental rental) {
+        try {
+            return insertRental(rental);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Adds a rental to the database unless its copy is already rented during an overlapping period.
+     * The copy's inventory row is locked (SELECT ... FOR UPDATE) before the overlap check, so two renters
+     * of the same copy are serialized by the database and the second one sees the first one's rental,
+     * also when they use different instances of the app.
+     * @param rental The rental to add
+     * @return The ID of the rental that was added
+     * @throws RentalConflictException if the copy is already rented during the rental period
+     * @throws SQLException if the rental couldn't be added
+     */
+    public int insertRental(Rental rental) throws SQLException {
+        String lockQuery = "SELECT inventory_id FROM inventory WHERE inventory_id = ? FOR UPDATE";
+        String overlapQuery = "SELECT rental_id FROM rental WHERE inventory_id = ? AND rental_date < ? AND return_date > ? LIMIT 1";
         String insertQuery = "INSERT INTO rental (rental_date, inventory_id, customer_id, return_date, staff_id) VALUES (?, ?, ?, ?, ?)";
 
-        try (Connection connection = DatabaseManager.getConnection();
-                PreparedStatement stmt = connection.prepareStatement(insertQuery, PreparedStatement.RETURN_GENERATED_KEYS)) {
-            stmt.setTimestamp(1, Timestamp.valueOf(rental.getRentalDate()));
-            stmt.setInt(2, rental.getInventoryId());
-            stmt.setInt(3, rental.getCustomerId());
-            stmt.setTimestamp(4, Timestamp.valueOf(rental.getReturnDate()));
-            stmt.setInt(5, rental.getStaffId()); 
-            int affectedRows = stmt.executeUpdate();
+        return ResiliencePolicy.getInstance().write(() -> TransactionManager.execute(TransactionManager.Propagation.REQUIRED, () -> {
+            try (Connection connection = DatabaseManager.getConnection()) {
+                try (PreparedStatement stmt = connection.prepareStatement(lockQuery)) {
+                    stmt.setInt(1, rental.getInventoryId());
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (!rs.next()) {
+                            throw new SQLException("Creating rental failed, inventory item " + rental.getInventoryId() + " not found.");
+                        }
+                    }
+                }
 
-            if (affectedRows == 0) {
-                throw new SQLException("Creating rental failed, no rows affected.");
-            }
+                try (PreparedStatement stmt = connection.prepareStatement(overlapQuery)) {
+                    stmt.setInt(1, rental.getInventoryId());
+                    stmt.setTimestamp(2, Timestamp.valueOf(rental.getReturnDate()));
+                    stmt.setTimestamp(3, Timestamp.valueOf(rental.getRentalDate()));
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        if (rs.next()) {
+                            throw new RentalConflictException("Inventory item " + rental.getInventoryId()
+                                + " is already rented during this period (rental " + rs.getInt("rental_id") + ").");
+                        }
+                    }
+                }
+
+                try (PreparedStatement stmt = connection.prepareStatement(insertQuery, PreparedStatement.RETURN_GENERATED_KEYS)) {
+                    stmt.setTimestamp(1, Timestamp.valueOf(rental.getRentalDate()));
+                    stmt.setInt(2, rental.getInventoryId());
+                    stmt.setInt(3, rental.getCustomerId());
+                    stmt.setTimestamp(4, Timestamp.valueOf(rental.getReturnDate()));
+                    stmt.setInt(5, rental.getStaffId()); 
+                    int affectedRows = stmt.executeUpdate();
 
-            try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    return generatedKeys.getInt(1);
-                } else {
-                    throw new SQLException("Creating rental failed, no ID obtained.");
+                    if (affectedRows == 0) {
+                        throw new SQLException("Creating rental failed, no rows affected.");
+                    }
+
+                    try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+                        if (generatedKeys.next()) {
+                            int rentalId = generatedKeys.getInt(1);
+                            AvailabilityEngine.getInstance().rentalAdded(rentalId, rental.getInventoryId(), rental.getRentalDate(), rental.getReturnDate());
+                            return rentalId;
+                        } else {
+                            throw new SQLException("Creating rental failed, no ID obtained.");
+                        }
+                    }
                 }
             }
-        } catch (SQLException e) {
-            e.printStackTrace();
-            return -1;
-        }
+        }));
     }
 
     /**
@@ -96,6 +152,8 @@ public class RentalManager {
                 PreparedStatement stmt = connection.prepareStatement(deleteQuery)) {
             stmt.setInt(1, rentalId);
             stmt.executeUpdate();
+            DatabaseManager.recordWrite();
+            AvailabilityEngine.getInstance().rentalRemoved(rentalId);
             return true;
         } catch (SQLException e) {
             e.printStackTrace();
@@ -132,6 +190,7 @@ public class RentalManager {
                 PreparedStatement stmt = connection.prepareStatement(deleteQuery)) {
             stmt.setInt(1, inventoryId);
             int affectedRows = stmt.executeUpdate();
+            AvailabilityEngine.getInstance().rentalsRemovedForCopy(inventoryId);
 
             return affectedRows > 0;
         } catch (SQLException e) {
@@ -0,0 +1,215 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class for the Replica Router.
+ * Decides whether a read-only query can go to the read replica, and keeps the connection pool of the replica.
+ * Reads go to the primary database instead when:
+ * - a write was recorded recently (see recordWrite()), so the user sees their own rental or review
+ *   even if the replica hasn't caught up yet (read-your-writes);
+ * - the replica is further behind the primary than the allowed lag, or its lag can't be read;
+ * - no connection to the replica can be made.
+ * The lag is checked at most every couple of seconds, on a replica connection that was borrowed anyway.
+ * A database that isn't replicating (SHOW REPLICA STATUS returns no row) has no lag, so two independent
+ * local instances can be used to try out the routing.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+public class ReplicaRouter {
+    private static final long LAG_CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private final ConnectionPool pool;
+    private final String url;
+    private final long maxLagSeconds;
+    private final long stickyNanos;
+
+    private volatile long lastWriteAt;
+    private volatile boolean writeRecorded = false;
+    private volatile long lagCheckedAt;
+    private volatile boolean lagChecked = false;
+    private volatile boolean usable = true;
+    private volatile long lastLagSeconds = 0;
+    private final AtomicBoolean checkingLag = new AtomicBoolean();
+
+    // Routing metrics
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong stickyReads = new AtomicLong();
+    private final AtomicLong fallbackReads = new AtomicLong();
+
+    /**
+     * Creates a new router.
+     * @param pool Connection pool of the replica
+     * @param url JDBC URL of the replica, used in log messages
+     * @param maxLagSeconds How far the replica may be behind the primary, -1 to never check the lag
+     * @param stickySeconds How long reads stay on the primary after a write; should be longer than the usual lag
+     */
+    ReplicaRouter(ConnectionPool pool, String url, long maxLagSeconds, long stickySeconds) {
+        this.pool = pool;
+        this.url = url;
+        this.maxLagSeconds = maxLagSeconds;
+        this.stickyNanos = TimeUnit.SECONDS.toNanos(stickySeconds);
+    }
+
+    /**
+     * Records that data was written to the primary database, so the next reads go to the primary too.
+     * The app has one user per process, so the stickiness applies to the whole process.
+     */
+    void recordWrite() {
+        lastWriteAt = System.nanoTime();
+        writeRecorded = true;
+    }
+
+    /**
+     * Borrows a connection to the replica for a read-only query.
+     * @return Connection object, or null if the query should go to the primary database
+     */
+    Connection getConnection() {
+        if (writeRecorded && System.nanoTime() - lastWriteAt < stickyNanos) {
+            stickyReads.incrementAndGet();
+            return null;
+        }
+        boolean checkDue = !lagChecked || System.nanoTime() - lagCheckedAt > LAG_CHECK_INTERVAL_NANOS;
+        if (!usable && !checkDue) {
+            fallbackReads.incrementAndGet();
+            return null;
+        }
+
+        Connection conn;
+        try {
+            conn = pool.getConnection();
+        } catch (SQLException e) {
+            markUsable(false, "no connection (" + e.getMessage() + ")");
+            fallbackReads.incrementAndGet();
+            return null;
+        }
+        if (checkDue && checkingLag.compareAndSet(false, true)) {
+            try {
+                checkLag(conn);
+            } finally {
+                checkingLag.set(false);
+            }
+        }
+        if (!usable) {
+            closeQuietly(conn);
+            fallbackReads.incrementAndGet();
+            return null;
+        }
+        replicaReads.incrementAndGet();
+        return conn;
+    }
+
+    private void checkLag(Connection conn) {
+        lagCheckedAt = System.nanoTime();
+        lagChecked = true;
+        if (maxLagSeconds < 0) {
+            markUsable(true, null);
+            return;
+        }
+        try {
+            long lag = readLagSeconds(conn);
+            lastLagSeconds = lag;
+            if (lag < 0) {
+                markUsable(false, "replication is stopped");
+            } else if (lag > maxLagSeconds) {
+                markUsable(false, "it is " + lag + " s behind the primary");
+            } else {
+                markUsable(true, null);
+            }
+        } catch (SQLException e) {
+            markUsable(false, "its lag can't be read (" + e.getMessage() + ")");
+        }
+    }
+
+    /**
+     * Reads how far the replica is behind its source.
+     * @param conn Connection to the replica
+     * @return Seconds behind the source, 0 if the database isn't replicating, -1 if replication is stopped
+     * @throws SQLException if neither SHOW REPLICA STATUS (MySQL 8.0.22+) nor SHOW SLAVE STATUS works
+     */
+    private static long readLagSeconds(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SHOW REPLICA STATUS")) {
+                return readLag(rs, "Seconds_Behind_Source");
+            } catch (SQLException e) {
+                // Older MySQL versions
+                try (ResultSet rs = stmt.executeQuery("SHOW SLAVE STATUS")) {
+                    return readLag(rs, "Seconds_Behind_Master");
+                }
+            }
+        }
+    }
+
+    private static long readLag(ResultSet rs, String column) throws SQLException {
+        if (!rs.next()) {
+            return 0;
+        }
+        long lag = rs.getLong(column);
+        return rs.wasNull() ? -1 : lag;
+    }
+
+    // Logs only when the state changes, not on every check
+    private void markUsable(boolean nowUsable, String reason) {
+        if (usable != nowUsable) {
+            if (nowUsable) {
+                System.out.println("Reading from replica " + url + " again.");
+            } else {
+                System.err.println("Reading from the primary database instead of replica " + url + ": " + reason);
+            }
+        }
+        usable = nowUsable;
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Closes the connections to the replica.
+     */
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    public ConnectionPool.Stats getPoolStats() {
+        return pool.getStats();
+    }
+
+    // True if the last check found the replica reachable and close enough to the primary
+    public boolean isUsable() {
+        return usable;
+    }
+
+    public long getLastLagSeconds() {
+        return lastLagSeconds;
+    }
+
+    public long getReplicaReads() {
+        return replicaReads.get();
+    }
+
+    // Reads sent to the primary because of a recent write
+    public long getStickyReads() {
+        return stickyReads.get();
+    }
+
+    // Reads sent to the primary because the replica lagged or was unreachable
+    public long getFallbackReads() {
+        return fallbackReads.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ReplicaRouter[url=" + url + ", usable=" + usable + ", lag=" + lastLagSeconds + " s, replicaReads=" + replicaReads
+            + ", stickyReads=" + stickyReads + ", fallbackReads=" + fallbackReads + "]";
+    }
+}
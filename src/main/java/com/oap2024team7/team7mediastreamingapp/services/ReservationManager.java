@@ -0,0 +1,256 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import com.oap2024team7.team7mediastreamingapp.models.Rental;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class for the Reservation Manager.
+ * Makes sure two customers renting the same film at the same time don't get the same inventory copy.
+ * - reserve() puts a short-lived hold on a free copy when the customer confirms the rental period, so the copy
+ *   isn't given to anyone else while the customer pays. Holds live in memory, guarded by one of STRIPES locks
+ *   picked by the inventory ID, so renters of different copies never wait for each other.
+ * - confirm() writes the rental through RentalManager.insertRental, which locks the copy's inventory row and checks
+ *   for overlapping rentals in the database, so double bookings are refused even across instances of the app.
+ * - If the database refuses the copy (or the hold expired and someone else took it), confirm() moves on to the next
+ *   free copy for the same period, up to MAX_CONFLICT_RETRIES times.
+ * Holds expire after db.reservation.holdSeconds (see DatabaseConfig.getSetting, default 600), which covers the payment step.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+public class ReservationManager {
+    private static final int STRIPES = 64;
+    private static final int MAX_CONFLICT_RETRIES = 5;
+
+    private static ReservationManager instance;
+
+    private final long holdTtlMillis;
+    private final Object[] stripes = new Object[STRIPES];
+    // Live holds by inventory ID; the list of a copy is only read or changed with the copy's stripe lock held
+    private final Map<Integer, List<Hold>> holdsByInventoryId = new ConcurrentHashMap<>();
+    private final AtomicLong nextHoldId = new AtomicLong();
+    private final RentalManager rentalManager = new RentalManager();
+
+    /**
+     * A copy held for a customer and rental period until it is confirmed, released or expired.
+     */
+    public static class Hold {
+        private final long holdId;
+        private final int filmId;
+        private final int storeId;
+        private final int inventoryId;
+        private final int customerId;
+        private final LocalDateTime startDate;
+        private final LocalDateTime endDate;
+        private final long expiresAtMillis;
+
+        private Hold(long holdId, int filmId, int storeId, int inventoryId, int customerId,
+                     LocalDateTime startDate, LocalDateTime endDate, long expiresAtMillis) {
+            this.holdId = holdId;
+            this.filmId = filmId;
+            this.storeId = storeId;
+            this.inventoryId = inventoryId;
+            this.customerId = customerId;
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public long getHoldId() {
+            return holdId;
+        }
+
+        public int getFilmId() {
+            return filmId;
+        }
+
+        public int getStoreId() {
+            return storeId;
+        }
+
+        public int getInventoryId() {
+            return inventoryId;
+        }
+
+        public int getCustomerId() {
+            return customerId;
+        }
+
+        public LocalDateTime getStartDate() {
+            return startDate;
+        }
+
+        public LocalDateTime getEndDate() {
+            return endDate;
+        }
+
+        public boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAtMillis;
+        }
+
+        // Holds on the same copy for overlapping periods can't both be live
+        private boolean overlaps(long start, long end) {
+            return toMillis(startDate) < end && toMillis(endDate) > start;
+        }
+    }
+
+    private ReservationManager() {
+        holdTtlMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(DatabaseConfig.getSetting("db.reservation.holdSeconds", "600")));
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    public static synchronized ReservationManager getInstance() {
+        if (instance == null) {
+            instance = new ReservationManager();
+        }
+        return instance;
+    }
+
+    /**
+     * Holds a free copy of a film in a store for the given period.
+     * The candidates are the copies without a rental in the period (see AvailabilityEngine); the first one without
+     * an overlapping live hold is taken. The search starts at a random candidate, so many customers renting
+     * the same film at once spread over its copies instead of all competing for the first one.
+     * @param filmId
+     * @param storeId
+     * @param customerId
+     * @param startDate
+     * @param endDate
+     * @return Hold object, or null if no copy is free for the whole period
+     */
+    public Hold reserve(int filmId, int storeId, int customerId, LocalDateTime startDate, LocalDateTime endDate) {
+        return reserve(filmId, storeId, customerId, startDate, endDate, new HashSet<>());
+    }
+
+    /**
+     * Checks if a hold still protects its copy.
+     * @param hold
+     * @return true if the hold hasn't expired and hasn't been released or confirmed
+     */
+    public boolean isActive(Hold hold) {
+        synchronized (stripeFor(hold.inventoryId)) {
+            List<Hold> holds = holdsByInventoryId.get(hold.inventoryId);
+            return holds != null && holds.contains(hold) && !hold.isExpired();
+        }
+    }
+
+    /**
+     * Gives up a hold, e.g. when the customer cancels the payment.
+     * @param hold
+     */
+    public void release(Hold hold) {
+        synchronized (stripeFor(hold.inventoryId)) {
+            List<Hold> holds = holdsByInventoryId.get(hold.inventoryId);
+            if (holds != null) {
+                holds.remove(hold);
+                if (holds.isEmpty()) {
+                    holdsByInventoryId.remove(hold.inventoryId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Turns a hold into a rental. If the database refuses the held copy because it has been rented in the meantime,
+     * the next free copy for the same period is held and tried instead.
+     * The hold is released in any case.
+     * @param hold
+     * @param staffId
+     * @return The rental that was added (its copy may differ from the hold's), or null if no copy could be rented
+     */
+    public Rental confirm(Hold hold, int staffId) {
+        Set<Integer> triedCopies = new HashSet<>();
+        Hold current = hold;
+        for (int attempt = 0; attempt <= MAX_CONFLICT_RETRIES && current != null; attempt++) {
+            triedCopies.add(current.inventoryId);
+            Rental rental = new Rental(current.inventoryId, current.customerId, staffId, current.startDate, current.endDate);
+            try {
+                rental.setRentalId(rentalManager.insertRental(rental));
+                release(current);
+                return rental;
+            } catch (RentalManager.RentalConflictException e) {
+                System.err.println("Reservation conflict, trying another copy: " + e.getMessage());
+                Hold next = reserve(current.filmId, current.storeId, current.customerId, current.startDate, current.endDate, triedCopies);
+                release(current);
+                current = next;
+            } catch (SQLException e) {
+                e.printStackTrace();
+                release(current);
+                return null;
+            }
+        }
+        if (current != null) {
+            release(current);
+        }
+        return null;
+    }
+
+    private Hold reserve(int filmId, int storeId, int customerId, LocalDateTime startDate, LocalDateTime endDate, Set<Integer> excluded) {
+        List<Integer> candidates;
+        try {
+            candidates = AvailabilityEngine.getInstance().getFreeCopies(filmId, storeId, startDate, endDate);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+        candidates = new ArrayList<>(candidates);
+        candidates.removeAll(excluded);
+        if (candidates.isEmpty()) {
+            return null;
+        }
+
+        long start = toMillis(startDate);
+        long end = toMillis(endDate);
+        int offset = ThreadLocalRandom.current().nextInt(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            int inventoryId = candidates.get((offset + i) % candidates.size());
+            synchronized (stripeFor(inventoryId)) {
+                List<Hold> holds = holdsByInventoryId.computeIfAbsent(inventoryId, id -> new ArrayList<>());
+                if (!isHeld(holds, start, end)) {
+                    Hold hold = new Hold(nextHoldId.incrementAndGet(), filmId, storeId, inventoryId, customerId,
+                        startDate, endDate, System.currentTimeMillis() + holdTtlMillis);
+                    holds.add(hold);
+                    return hold;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Drops expired holds and checks the live ones for an overlap. Called with the copy's stripe lock held.
+    private static boolean isHeld(List<Hold> holds, long start, long end) {
+        boolean held = false;
+        Iterator<Hold> iterator = holds.iterator();
+        while (iterator.hasNext()) {
+            Hold hold = iterator.next();
+            if (hold.isExpired()) {
+                iterator.remove();
+            } else if (hold.overlaps(start, end)) {
+                held = true;
+            }
+        }
+        return held;
+    }
+
+    private Object stripeFor(int inventoryId) {
+        return stripes[Math.floorMod(inventoryId, STRIPES)];
+    }
+
+    // Same conversion as Timestamp.valueOf(), like the AvailabilityEngine
+    private static long toMillis(LocalDateTime dateTime) {
+        return Timestamp.valueOf(dateTime).getTime();
+    }
+}
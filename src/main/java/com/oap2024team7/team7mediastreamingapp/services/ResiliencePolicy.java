@@ -0,0 +1,391 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ObjectName;
+
+/**
+ * Class for the Resilience Policy.
+ * Wraps the SQL of manager calls with:
+ * - a query timeout for every statement of the call (and a default timeout for all other statements),
+ *   so a slow database can't hang the app indefinitely;
+ * - for idempotent reads, a few retries with jittered exponential backoff after transient errors
+ *   (lost connections, timeouts, deadlocks);
+ * - a circuit breaker that opens after several transient failures in a row. While it is open, calls fail fast
+ *   without waiting for the database, and reads return the last result they had, if there is one.
+ *   After a pause one trial call is let through; if it succeeds the circuit closes again.
+ * Retries and trips are logged and counted, the counters are available through JMX (ResiliencePolicyMXBean).
+ * Settings (see DatabaseConfig.getSetting): db.queryTimeoutSeconds (default 30), db.retry.maxAttempts (default 3),
+ * db.circuit.failureThreshold (default 5) and db.circuit.openSeconds (default 30).
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+public class ResiliencePolicy implements ResiliencePolicyMXBean {
+    private static final String OBJECT_NAME = "com.oap2024team7.team7mediastreamingapp:type=ResiliencePolicy";
+    // Timeouts of the calls that don't give their own
+    public static final int READ_TIMEOUT_SECONDS = 10;
+    public static final int WRITE_TIMEOUT_SECONDS = 15;
+    private static final long BACKOFF_BASE_MILLIS = 100;
+    private static final long BACKOFF_MAX_MILLIS = 2_000;
+    private static final int MAX_CACHED_RESULTS = 256;
+
+    private static ResiliencePolicy instance;
+    // Timeout of the call running on this thread, applied by ConnectionPool to every statement it hands out
+    private static final ThreadLocal<Integer> callTimeoutSeconds = new ThreadLocal<>();
+    private static final int defaultTimeoutSeconds = Integer.parseInt(DatabaseConfig.getSetting("db.queryTimeoutSeconds", "30"));
+
+    private enum CircuitState { CLOSED, OPEN, HALF_OPEN }
+
+    private final int maxAttempts;
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private final Object circuitLock = new Object();
+    private CircuitState circuitState = CircuitState.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAt;
+    // Only one trial call at a time while half open
+    private final AtomicBoolean trialRunning = new AtomicBoolean();
+
+    // Last good result per read, served while the database is unavailable. Access-ordered for LRU eviction.
+    private final Map<String, Object> lastGoodResults = new LinkedHashMap<String, Object>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+            return size() > MAX_CACHED_RESULTS;
+        }
+    };
+
+    // Metrics
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder circuitTrips = new LongAdder();
+    private final LongAdder rejectedCalls = new LongAdder();
+    private final LongAdder fallbacksServed = new LongAdder();
+
+    /**
+     * A call to the database.
+     */
+    public interface SqlCall<T> {
+        T call() throws SQLException;
+    }
+
+    /**
+     * Thrown instead of calling the database while the circuit is open.
+     */
+    public static class CircuitOpenException extends SQLTransientConnectionException {
+        private static final long serialVersionUID = 1L;
+
+        private CircuitOpenException() {
+            super("The database is unavailable, not calling it for now");
+        }
+    }
+
+    private ResiliencePolicy() {
+        maxAttempts = Math.max(1, Integer.parseInt(DatabaseConfig.getSetting("db.retry.maxAttempts", "3")));
+        failureThreshold = Math.max(1, Integer.parseInt(DatabaseConfig.getSetting("db.circuit.failureThreshold", "5")));
+        openNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(DatabaseConfig.getSetting("db.circuit.openSeconds", "30")));
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (Exception e) {
+            // The policy still works without JMX
+            e.printStackTrace();
+        }
+    }
+
+    public static synchronized ResiliencePolicy getInstance() {
+        if (instance == null) {
+            instance = new ResiliencePolicy();
+        }
+        return instance;
+    }
+
+    /**
+     * Query timeout for the statements handed out on the current thread.
+     * @return Seconds, 0 for no timeout
+     */
+    static int currentQueryTimeoutSeconds() {
+        Integer timeout = callTimeoutSeconds.get();
+        return timeout != null ? timeout : defaultTimeoutSeconds;
+    }
+
+    /**
+     * Runs a call with the given query timeout only, without retries or the circuit breaker.
+     * @param timeoutSeconds Query timeout of each statement of the call, 0 for no timeout
+     * @param call
+     * @return The result of the call
+     * @throws SQLException if the call failed
+     */
+    static <T> T withQueryTimeout(int timeoutSeconds, SqlCall<T> call) throws SQLException {
+        Integer outerTimeout = callTimeoutSeconds.get();
+        callTimeoutSeconds.set(timeoutSeconds);
+        try {
+            return call.call();
+        } finally {
+            restoreTimeout(outerTimeout);
+        }
+    }
+
+    private static void restoreTimeout(Integer outerTimeout) {
+        if (outerTimeout != null) {
+            callTimeoutSeconds.set(outerTimeout);
+        } else {
+            callTimeoutSeconds.remove();
+        }
+    }
+
+    /**
+     * Runs an idempotent read with the default read timeout.
+     * @see #read(String, int, SqlCall)
+     */
+    public <T> T read(String cacheKey, SqlCall<T> call) throws SQLException {
+        return read(cacheKey, READ_TIMEOUT_SECONDS, call);
+    }
+
+    /**
+     * Runs an idempotent read: retried after transient errors, and answered from the last good result
+     * when the database is unavailable. The call must open its own connection, so every attempt gets a fresh one.
+     * Inside a transaction the read isn't retried, the transaction's connection can't be replaced.
+     * @param cacheKey Identifies the read and its parameters for the last good result, e.g. "reviews:" + filmId;
+     *                 null to not keep the result
+     * @param timeoutSeconds Query timeout of each statement of the call
+     * @param call The read
+     * @return The result of the call, or the last good result if the database is unavailable
+     * @throws SQLException if the read failed and there is no last good result
+     */
+    public <T> T read(String cacheKey, int timeoutSeconds, SqlCall<T> call) throws SQLException {
+        int attempts = TransactionManager.isActive() ? 1 : maxAttempts;
+        try {
+            T result = run(call, timeoutSeconds, attempts);
+            if (cacheKey != null) {
+                synchronized (lastGoodResults) {
+                    lastGoodResults.put(cacheKey, copyOf(result));
+                }
+            }
+            return result;
+        } catch (SQLException e) {
+            if (cacheKey != null && isTransient(e)) {
+                Object lastGood;
+                synchronized (lastGoodResults) {
+                    lastGood = lastGoodResults.get(cacheKey);
+                }
+                if (lastGood != null) {
+                    fallbacksServed.increment();
+                    System.err.println("Serving the last good result of " + cacheKey + " (" + e.getMessage() + ")");
+                    @SuppressWarnings("unchecked")
+                    T fallback = (T) copyOf(lastGood);
+                    return fallback;
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Runs a write with the default write timeout.
+     * @see #write(int, SqlCall)
+     */
+    public <T> T write(SqlCall<T> call) throws SQLException {
+        return write(WRITE_TIMEOUT_SECONDS, call);
+    }
+
+    /**
+     * Runs a write once: writes aren't retried, a write that timed out may still have been applied.
+     * It fails fast while the circuit is open.
+     * @param timeoutSeconds Query timeout of each statement of the call
+     * @param call The write
+     * @return The result of the call
+     * @throws SQLException if the write failed
+     */
+    public <T> T write(int timeoutSeconds, SqlCall<T> call) throws SQLException {
+        return run(call, timeoutSeconds, 1);
+    }
+
+    private <T> T run(SqlCall<T> call, int timeoutSeconds, int attempts) throws SQLException {
+        calls.increment();
+        boolean trial = acquirePermission();
+        Integer outerTimeout = callTimeoutSeconds.get();
+        callTimeoutSeconds.set(timeoutSeconds);
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    T result = call.call();
+                    recordSuccess(trial);
+                    return result;
+                } catch (SQLException e) {
+                    if (e instanceof SQLTimeoutException) {
+                        timeouts.increment();
+                    }
+                    if (!isTransient(e)) {
+                        // The database answered, e.g. a constraint violation; that says nothing about its health
+                        recordSuccess(trial);
+                        throw e;
+                    }
+                    if (attempt >= attempts || trial) {
+                        recordFailure(trial);
+                        throw e;
+                    }
+                    retries.increment();
+                    long backoff = backoffMillis(attempt);
+                    System.err.println("Retrying database read in " + backoff + " ms after attempt " + attempt + " of " + attempts
+                        + " failed: " + e.getMessage());
+                    try {
+                        Thread.sleep(backoff);
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        recordFailure(trial);
+                        throw e;
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            if (trial) {
+                trialRunning.set(false);
+            }
+            throw e;
+        } finally {
+            restoreTimeout(outerTimeout);
+        }
+    }
+
+    // Full jitter: a random wait up to the exponential backoff, so retrying callers don't hit the database together
+    private static long backoffMillis(int attempt) {
+        long cap = Math.min(BACKOFF_MAX_MILLIS, BACKOFF_BASE_MILLIS << Math.min(attempt - 1, 10));
+        return ThreadLocalRandom.current().nextLong(cap / 2, cap + 1);
+    }
+
+    /**
+     * Checks if a call may go to the database.
+     * @return true if the call is the trial call of a half-open circuit
+     * @throws CircuitOpenException if the circuit is open
+     */
+    private boolean acquirePermission() throws CircuitOpenException {
+        synchronized (circuitLock) {
+            if (circuitState == CircuitState.OPEN && System.nanoTime() - openedAt >= openNanos) {
+                circuitState = CircuitState.HALF_OPEN;
+            }
+            if (circuitState == CircuitState.CLOSED) {
+                return false;
+            }
+            if (circuitState == CircuitState.HALF_OPEN && trialRunning.compareAndSet(false, true)) {
+                return true;
+            }
+        }
+        rejectedCalls.increment();
+        throw new CircuitOpenException();
+    }
+
+    private void recordSuccess(boolean trial) {
+        synchronized (circuitLock) {
+            consecutiveFailures = 0;
+            if (trial) {
+                trialRunning.set(false);
+                circuitState = CircuitState.CLOSED;
+                System.out.println("Database calls succeed again, circuit closed.");
+            }
+        }
+    }
+
+    private void recordFailure(boolean trial) {
+        failures.increment();
+        synchronized (circuitLock) {
+            consecutiveFailures++;
+            if (trial) {
+                trialRunning.set(false);
+            }
+            if (trial || (circuitState == CircuitState.CLOSED && consecutiveFailures >= failureThreshold)) {
+                circuitState = CircuitState.OPEN;
+                openedAt = System.nanoTime();
+                circuitTrips.increment();
+                System.err.println("Circuit opened after " + consecutiveFailures + " failed database calls in a row, "
+                    + "failing fast for " + TimeUnit.NANOSECONDS.toSeconds(openNanos) + " s.");
+            }
+        }
+    }
+
+    /**
+     * Checks if an error is worth retrying: the connection was lost or couldn't be made, the statement timed out,
+     * or the transaction hit a deadlock or lock wait timeout.
+     * @param e
+     * @return true if the error is transient
+     */
+    static boolean isTransient(SQLException e) {
+        if (e instanceof CircuitOpenException) {
+            return true;
+        }
+        if (e instanceof SQLTransientException || e instanceof SQLRecoverableException
+            || e instanceof SQLNonTransientConnectionException) {
+            return true;
+        }
+        String sqlState = e.getSQLState();
+        if (sqlState != null && (sqlState.startsWith("08") || sqlState.equals("40001") || sqlState.equals("HYT00"))) {
+            return true;
+        }
+        // MySQL lock wait timeout and deadlock
+        return e.getErrorCode() == 1205 || e.getErrorCode() == 1213;
+    }
+
+    // Lists are copied, so a caller that changes its result doesn't change the cached one
+    private static Object copyOf(Object result) {
+        if (result instanceof List) {
+            return new ArrayList<>((List<?>) result);
+        }
+        return result;
+    }
+
+    @Override
+    public String getCircuitState() {
+        synchronized (circuitLock) {
+            return circuitState.name();
+        }
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public long getCircuitTrips() {
+        return circuitTrips.sum();
+    }
+
+    @Override
+    public long getRejectedCalls() {
+        return rejectedCalls.sum();
+    }
+
+    @Override
+    public long getFallbacksServed() {
+        return fallbacksServed.sum();
+    }
+}
@@ -0,0 +1,25 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+/**
+ * JMX view of the retry, timeout and circuit breaker counters (see ResiliencePolicy), registered as
+ * com.oap2024team7.team7mediastreamingapp:type=ResiliencePolicy.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+public interface ResiliencePolicyMXBean {
+    // CLOSED, OPEN or HALF_OPEN
+    String getCircuitState();
+
+    long getCalls();
+
+    long getRetries();
+
+    long getTimeouts();
+
+    long getFailures();
+
+    long getCircuitTrips();
+
+    long getRejectedCalls();
+
+    long getFallbacksServed();
+}
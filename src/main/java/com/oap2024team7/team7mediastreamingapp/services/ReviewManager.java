@@ -134,6 +134,8 @@ public class ReviewManager {
             }
         }
 
+        // The film details show the new like right away, so read it back from the primary database
+        DatabaseManager.recordWrite();
         return reviewId;
     }
 
@@ -145,26 +147,30 @@ public class ReviewManager {
      */
     public double getAverageReviewScore(int filmId) {
         String selectQuery = "SELECT liked FROM film_review WHERE film_id = ?";
-        int totalScore = 0;
-        int reviewCount = 0;
 
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(selectQuery)) {
-            stmt.setInt(1, filmId);
-            ResultSet rs = stmt.executeQuery();
-
-            while (rs.next()) {
-                boolean liked = rs.getBoolean("liked");
-                totalScore += liked ? 5 : 0;
-                reviewCount++;
-            }
+        try {
+            return ResiliencePolicy.getInstance().read("averageReviewScore:" + filmId, () -> {
+                int totalScore = 0;
+                int reviewCount = 0;
+                try (Connection conn = DatabaseManager.getReadConnection();
+                     PreparedStatement stmt = conn.prepareStatement(selectQuery)) {
+                    stmt.setInt(1, filmId);
+                    ResultSet rs = stmt.executeQuery();
+
+                    while (rs.next()) {
+                        boolean liked = rs.getBoolean("liked");
+                        totalScore += liked ? 5 : 0;
+                        reviewCount++;
+                    }
+                }
 
-            if (reviewCount == 0) {
-                return 0.00;
-            }
+                if (reviewCount == 0) {
+                    return 0.00;
+                }
 
-            double averageScore = (double) totalScore / reviewCount;
-            return Math.round(averageScore * 100.0) / 100.0;
+                double averageScore = (double) totalScore / reviewCount;
+                return Math.round(averageScore * 100.0) / 100.0;
+            });
         } catch (SQLException e) {
             e.printStackTrace();
             return 6.00; // Return 6.00 if there was an error (unattainable score)
@@ -190,45 +196,42 @@ public class ReviewManager {
              PreparedStatement selectStmt = conn.prepareStatement(selectQuery)) {
             conn.setAutoCommit(false); // Start a transaction
 
-            selectStmt.setInt(1, filmId);
-            selectStmt.setInt(2, profileId);
-            ResultSet rs = selectStmt.executeQuery();
-
-            if (rs.next()) {
-                reviewId = rs.getInt("review_id");
-                try (PreparedStatement updateStmt = conn.prepareStatement(updateQuery)) {
-                    updateStmt.setString(1, reviewText);
-                    updateStmt.setInt(2, filmId);
-                    updateStmt.setInt(3, profileId);
-                    updateStmt.executeUpdate();
-                }
-            } else {
-                try (PreparedStatement insertStmt = conn.prepareStatement(insertQuery, PreparedStatement.RETURN_GENERATED_KEYS)) {
-                    insertStmt.setInt(1, filmId);
-                    insertStmt.setInt(2, profileId);
-                    insertStmt.setString(3, reviewText);
-                    insertStmt.executeUpdate();
-
-                    ResultSet generatedKeys = insertStmt.getGeneratedKeys();
-                    if (generatedKeys.next()) {
-                        reviewId = generatedKeys.getInt(1);
+            try {
+                selectStmt.setInt(1, filmId);
+                selectStmt.setInt(2, profileId);
+                ResultSet rs = selectStmt.executeQuery();
+
+                if (rs.next()) {
+                    reviewId = rs.getInt("review_id");
+                    try (PreparedStatement updateStmt = conn.prepareStatement(updateQuery)) {
+                        updateStmt.setString(1, reviewText);
+                        updateStmt.setInt(2, filmId);
+                        updateStmt.setInt(3, profileId);
+                        updateStmt.executeUpdate();
+                    }
+                } else {
+                    try (PreparedStatement insertStmt = conn.prepareStatement(insertQuery, PreparedStatement.RETURN_GENERATED_KEYS)) {
+                        insertStmt.setInt(1, filmId);
+                        insertStmt.setInt(2, profileId);
+                        insertStmt.setString(3, reviewText);
+                        insertStmt.executeUpdate();
+
+                        ResultSet generatedKeys = insertStmt.getGeneratedKeys();
+                        if (generatedKeys.next()) {
+                            reviewId = generatedKeys.getInt(1);
+                        }
                     }
                 }
-            }
 
-            conn.commit(); // Commit the transaction
+                conn.commit(); // Commit the transaction
+            } catch (SQLException e) {
+                conn.rollback(); // Rollback if there's an issue
+                throw e;
+            }
+            DatabaseManager.recordWrite();
             return reviewId;
         } catch (SQLException e) {
             e.printStackTrace();
-            try {
-                Connection conn = DatabaseManager.getConnection();
-                if (conn != null) {
-                    conn.rollback(); // Rollback if there's an issue
-                    System.err.println("Transaction rolled back due to an error.");
-                }
-            } catch (SQLException rollbackEx) {
-                rollbackEx.printStackTrace();
-            }
             return -1;
         }
     }
@@ -240,29 +243,34 @@ public class ReviewManager {
      */
     public List<Review> getReviewsByFilmId(int filmId) {
         String selectQuery = "SELECT review_id, film_id, profile_id, review, liked, review_date FROM film_review WHERE film_id = ?";
-        List<Review> reviews = new ArrayList<>();
-
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(selectQuery)) {
-            stmt.setInt(1, filmId);
-            ResultSet rs = stmt.executeQuery();
 
-            while (rs.next()) {
-                Review review = new Review(
-                    rs.getInt("review_id"),
-                    rs.getInt("film_id"),
-                    rs.getInt("profile_id"),
-                    rs.getBoolean("liked"),
-                    rs.getString("review"),
-                    rs.getTimestamp("review_date").toLocalDateTime().toLocalDate()
-                );
-                if (review.getReview() != null) {
-                    reviews.add(review);
+        try {
+            return ResiliencePolicy.getInstance().read("reviews:" + filmId, () -> {
+                List<Review> reviews = new ArrayList<>();
+                try (Connection conn = DatabaseManager.getReadConnection();
+                     PreparedStatement stmt = conn.prepareStatement(selectQuery)) {
+                    stmt.setInt(1, filmId);
+                    ResultSet rs = stmt.executeQuery();
+
+                    while (rs.next()) {
+                        Review review = new Review(
+                            rs.getInt("review_id"),
+                            rs.getInt("film_id"),
+                            rs.getInt("profile_id"),
+                            rs.getBoolean("liked"),
+                            rs.getString("review"),
+                            rs.getTimestamp("review_date").toLocalDateTime().toLocalDate()
+                        );
+                        if (review.getReview() != null) {
+                            reviews.add(review);
+                        }
+                    }
                 }
-            }
+                return reviews;
+            });
         } catch (SQLException e) {
             e.printStackTrace();
+            return new ArrayList<>();
         }
-        return reviews;
     }
 }
\ No newline at end of file
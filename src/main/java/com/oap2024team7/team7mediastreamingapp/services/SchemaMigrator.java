@@ -0,0 +1,329 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.CRC32;
+
+/**
+ * Class for the Schema Migrator.
+ * Brings the sakila database up to the schema the app needs with numbered migrations.
+ * Applied migrations are recorded in the schema_migrations table together with a checksum of their steps,
+ * so on a normal start one query shows that there is nothing to do.
+ * MySQL commits every DDL statement on its own, so each step checks if its change is already there;
+ * a migration that failed halfway is simply run again on the next start.
+ * The migrations run on a background thread while the UI starts; DatabaseManager.getConnection() waits for them.
+ * @author Agata (Agy) Olaussen (@agyCoding) and Saman Shaheen @saman091 (the profile_image table of migration 1)
+ */
+
+public class SchemaMigrator {
+    private static final String MIGRATIONS_TABLE = "schema_migrations";
+
+    private static final List<Migration> MIGRATIONS = Collections.unmodifiableList(Arrays.asList(
+        // The changes DatabaseManager used to check on every start
+        new Migration(1, "Streamify tables and columns",
+            addColumnIfMissing("customer", "account_type", "ENUM('FREE', 'PREMIUM') DEFAULT 'FREE'"),
+            addColumnIfMissing("film", "is_streamable", "BOOLEAN DEFAULT FALSE"),
+            addColumnIfMissing("film", "is_reviewable", "BOOLEAN DEFAULT TRUE"),
+            addColumnIfMissing("film", "is_ratable", "BOOLEAN DEFAULT TRUE"),
+            sql("CREATE TABLE IF NOT EXISTS profile (" +
+                "profile_id INT AUTO_INCREMENT PRIMARY KEY, " +
+                "customer_id SMALLINT UNSIGNED NOT NULL, " +
+                "main_profile BOOLEAN DEFAULT FALSE, " +
+                "profile_name VARCHAR(255) NOT NULL, " +
+                "profile_picture VARCHAR(255), " +
+                "birth_date DATE, " +
+                "hashed_password VARCHAR(255)," +
+                "FOREIGN KEY (customer_id) REFERENCES customer(customer_id) ON DELETE CASCADE" +
+                ")"),
+            sql("CREATE TABLE IF NOT EXISTS my_list (" +
+                "list_id INT AUTO_INCREMENT PRIMARY KEY, " +
+                "profile_id INT NOT NULL, " +
+                "film_id SMALLINT UNSIGNED NOT NULL, " +
+                "FOREIGN KEY (profile_id) REFERENCES profile(profile_id) ON DELETE CASCADE, " +
+                "FOREIGN KEY (film_id) REFERENCES film(film_id) ON DELETE CASCADE " +
+                ")"),
+            sql("CREATE TABLE IF NOT EXISTS film_discount (" +
+                "discount_id INT AUTO_INCREMENT PRIMARY KEY, " +
+                "film_id SMALLINT UNSIGNED NOT NULL, " +
+                "discount_percentage DECIMAL(4, 2) NOT NULL, " +
+                "start_date DATE NOT NULL, " +
+                "expiry_date DATE NOT NULL, " +
+                "FOREIGN KEY (film_id) REFERENCES film(film_id) ON DELETE CASCADE" +
+                ")"),
+            sql("CREATE TABLE IF NOT EXISTS profile_image (" +
+                "id INT AUTO_INCREMENT PRIMARY KEY, " +
+                "profile_id INT NOT NULL, " +
+                "image LONGBLOB, " +
+                "FOREIGN KEY (profile_id) REFERENCES profile(profile_id) ON DELETE CASCADE" +
+                ")"),
+            sql("CREATE TABLE IF NOT EXISTS film_review (" +
+                "review_id INT AUTO_INCREMENT PRIMARY KEY, " +
+                "film_id SMALLINT UNSIGNED NOT NULL, " +
+                "profile_id INT NOT NULL, " +
+                "liked BOOLEAN DEFAULT NULL, " +
+                "review TEXT, " +
+                "review_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                "FOREIGN KEY (film_id) REFERENCES film(film_id) ON DELETE CASCADE, " +
+                "FOREIGN KEY (profile_id) REFERENCES profile(profile_id) ON DELETE CASCADE" +
+                ")")
+        ),
+        new Migration(2, "Indexes for my list, reviews, discounts and profile images",
+            // A film can only be saved once per profile; keep the first of any duplicates
+            sql("DELETE FROM my_list WHERE list_id NOT IN (" +
+                "SELECT keep_id FROM (SELECT MIN(list_id) AS keep_id FROM my_list GROUP BY profile_id, film_id) kept)"),
+            createIndexIfMissing("my_list", "uq_my_list_profile_film", true, "profile_id", "film_id"),
+            createIndexIfMissing("film_review", "idx_film_review_film_profile", false, "film_id", "profile_id"),
+            createIndexIfMissing("film_discount", "idx_film_discount_film_expiry", false, "film_id", "expiry_date"),
+            // ProfileImageManager replaces the image with ON DUPLICATE KEY UPDATE, which needs the key to be unique;
+            // keep the newest of any duplicates
+            sql("DELETE FROM profile_image WHERE id NOT IN (" +
+                "SELECT keep_id FROM (SELECT MAX(id) AS keep_id FROM profile_image GROUP BY profile_id) kept)"),
+            createIndexIfMissing("profile_image", "uq_profile_image_profile", true, "profile_id")
+        )
+    ));
+
+    // Counted down when the migrations started by migrateInBackground() are done; null if none were started
+    private static volatile CountDownLatch running;
+    private static volatile Thread migratorThread;
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Starts the migrations on a background thread. Connections handed out by DatabaseManager wait until they are done.
+     */
+    public static synchronized void migrateInBackground() {
+        if (running != null) {
+            return;
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        running = done;
+        Thread thread = new Thread(() -> {
+            try {
+                migrate();
+            } finally {
+                done.countDown();
+            }
+        }, "schema-migrator");
+        thread.setDaemon(true);
+        migratorThread = thread;
+        thread.start();
+    }
+
+    /**
+     * Waits until the migrations started by migrateInBackground() are done.
+     * Returns right away if they are done or weren't started, and on the migrator's own thread.
+     */
+    static void awaitMigrations() {
+        CountDownLatch done = running;
+        if (done == null || done.getCount() == 0 || Thread.currentThread() == migratorThread) {
+            return;
+        }
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Applies the migrations that haven't been applied yet, in order.
+     * @return true if the schema is up to date, false if a migration failed
+     */
+    public static boolean migrate() {
+        try {
+            // Schema changes on a big table can take longer than the usual query timeout
+            ResiliencePolicy.withQueryTimeout(0, () -> {
+                applyPendingMigrations();
+                return null;
+            });
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private static void applyPendingMigrations() throws SQLException {
+        long start = System.nanoTime();
+        try (Connection conn = DatabaseManager.borrowConnection()) {
+            Map<Integer, Long> applied = readAppliedMigrations(conn);
+
+            int appliedNow = 0;
+            for (Migration migration : MIGRATIONS) {
+                Long checksum = applied.get(migration.version);
+                if (checksum != null) {
+                    if (checksum != migration.checksum()) {
+                        System.err.println("Migration " + migration.version + " (" + migration.description + ") was changed after it had been applied.");
+                    }
+                    continue;
+                }
+                for (Step step : migration.steps) {
+                    step.apply(conn);
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO " + MIGRATIONS_TABLE + " (version, description, checksum) VALUES (?, ?, ?)")) {
+                    stmt.setInt(1, migration.version);
+                    stmt.setString(2, migration.description);
+                    stmt.setLong(3, migration.checksum());
+                    stmt.executeUpdate();
+                }
+                System.out.println("Applied migration " + migration.version + ": " + migration.description);
+                appliedNow++;
+            }
+
+            System.out.printf("Schema is up to date (%d migration(s) applied, %.1f ms)%n", appliedNow, (System.nanoTime() - start) / 1_000_000.0);
+        }
+    }
+
+    /**
+     * Reads the applied migrations with one query, creating the migrations table on the first run.
+     * @param conn
+     * @return Checksums by version
+     * @throws SQLException
+     */
+    private static Map<Integer, Long> readAppliedMigrations(Connection conn) throws SQLException {
+        Map<Integer, Long> applied = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM " + MIGRATIONS_TABLE)) {
+            while (rs.next()) {
+                applied.put(rs.getInt("version"), rs.getLong("checksum"));
+            }
+            return applied;
+        } catch (SQLException e) {
+            if (e.getSQLState() == null || !e.getSQLState().startsWith("42")) {
+                throw e;
+            }
+        }
+
+        // The table doesn't exist yet
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS " + MIGRATIONS_TABLE + " (" +
+                "version INT PRIMARY KEY, " +
+                "description VARCHAR(255) NOT NULL, " +
+                "checksum BIGINT NOT NULL, " +
+                "applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
+                ")");
+        }
+        return applied;
+    }
+
+    /**
+     * A numbered set of schema changes.
+     */
+    private static class Migration {
+        private final int version;
+        private final String description;
+        private final List<Step> steps;
+
+        private Migration(int version, String description, Step... steps) {
+            this.version = version;
+            this.description = description;
+            this.steps = Arrays.asList(steps);
+        }
+
+        // CRC32 of the definitions of the steps
+        private long checksum() {
+            CRC32 crc = new CRC32();
+            for (Step step : steps) {
+                crc.update(step.definition.getBytes(StandardCharsets.UTF_8));
+                crc.update('\n');
+            }
+            return crc.getValue();
+        }
+    }
+
+    /**
+     * One schema change. The definition describes the change and is what the checksum is computed from.
+     */
+    private abstract static class Step {
+        private final String definition;
+
+        private Step(String definition) {
+            this.definition = definition;
+        }
+
+        abstract void apply(Connection conn) throws SQLException;
+    }
+
+    private static Step sql(String statement) {
+        return new Step(statement) {
+            @Override
+            void apply(Connection conn) throws SQLException {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate(statement);
+                }
+            }
+        };
+    }
+
+    private static Step addColumnIfMissing(String table, String column, String definition) {
+        String alterQuery = "ALTER TABLE " + table + " ADD " + column + " " + definition;
+        return new Step(alterQuery) {
+            @Override
+            void apply(Connection conn) throws SQLException {
+                DatabaseMetaData metaData = conn.getMetaData();
+                try (ResultSet rs = metaData.getColumns(conn.getCatalog(), null, table, column)) {
+                    if (rs.next()) {
+                        return;
+                    }
+                }
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate(alterQuery);
+                }
+                System.out.printf("Column '%s' added to table '%s'.%n", column, table);
+            }
+        };
+    }
+
+    /**
+     * Creates an index, unless the table already has an index on the same columns
+     * (which is also unique, if a unique index is asked for).
+     */
+    private static Step createIndexIfMissing(String table, String indexName, boolean unique, String... columns) {
+        String createQuery = "CREATE " + (unique ? "UNIQUE " : "") + "INDEX " + indexName + " ON " + table + " (" + String.join(", ", columns) + ")";
+        return new Step(createQuery) {
+            @Override
+            void apply(Connection conn) throws SQLException {
+                Map<String, List<String>> indexColumns = new LinkedHashMap<>();
+                Map<String, Boolean> indexUnique = new HashMap<>();
+                DatabaseMetaData metaData = conn.getMetaData();
+                try (ResultSet rs = metaData.getIndexInfo(conn.getCatalog(), null, table, false, false)) {
+                    while (rs.next()) {
+                        String name = rs.getString("INDEX_NAME");
+                        String columnName = rs.getString("COLUMN_NAME");
+                        if (name == null || columnName == null) {
+                            continue;
+                        }
+                        // Columns are returned in order of their position in the index
+                        indexColumns.computeIfAbsent(name, k -> new ArrayList<>()).add(columnName.toLowerCase());
+                        indexUnique.put(name, !rs.getBoolean("NON_UNIQUE"));
+                    }
+                }
+                List<String> wanted = Arrays.asList(columns);
+                for (Map.Entry<String, List<String>> index : indexColumns.entrySet()) {
+                    if (index.getValue().equals(wanted) && (!unique || indexUnique.get(index.getKey()))) {
+                        return;
+                    }
+                }
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.executeUpdate(createQuery);
+                }
+                System.out.printf("Index '%s' created on table '%s'.%n", indexName, table);
+            }
+        };
+    }
+}
@@ -0,0 +1,228 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class for the Statement Cache.
+ * Every pooled connection has its own cache of prepared statements, keyed by the SQL text.
+ * Closing a cached statement only clears its parameters and hands it back to the cache,
+ * so the managers can keep preparing their constant SQL strings on every call without MySQL parsing them again.
+ * The least recently used statements are closed when the cache is full.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+class StatementCache {
+    private final int maxSize;
+    private final Counters counters;
+    // Access-ordered, so the first entry is always the least recently used one
+    private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Creates a new statement cache for one connection.
+     * @param maxSize Maximum number of statements kept open on the connection
+     * @param counters Counters shared by all caches of the pool
+     */
+    StatementCache(int maxSize, Counters counters) {
+        this.maxSize = maxSize;
+        this.counters = counters;
+    }
+
+    /**
+     * Returns a prepared statement for the given SQL, reusing a cached one when possible.
+     * If the cached statement is already in use (the same query is nested inside itself),
+     * an uncached statement is prepared instead.
+     * @param physical The physical connection the statement belongs to
+     * @param sql The SQL text
+     * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS / NO_GENERATED_KEYS, or null if not given
+     * @return PreparedStatement object, or null if the statement can't be cached and should be prepared directly
+     * @throws SQLException
+     */
+    synchronized PreparedStatement prepare(Connection physical, String sql, Integer autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys == null ? sql : autoGeneratedKeys + "|" + sql;
+        CachedStatement cached = statements.get(key);
+        if (cached != null) {
+            if (cached.inUse) {
+                counters.misses.incrementAndGet();
+                return null;
+            }
+            counters.hits.incrementAndGet();
+            cached.inUse = true;
+            return cached.newHandle();
+        }
+
+        counters.misses.incrementAndGet();
+        PreparedStatement statement = autoGeneratedKeys == null
+            ? physical.prepareStatement(sql)
+            : physical.prepareStatement(sql, autoGeneratedKeys);
+        cached = new CachedStatement(statement);
+        cached.inUse = true;
+        statements.put(key, cached);
+        evictIfFull();
+        return cached.newHandle();
+    }
+
+    /**
+     * Closes the least recently used statements that aren't in use until the cache is within its size.
+     */
+    private void evictIfFull() {
+        Iterator<Map.Entry<String, CachedStatement>> iterator = statements.entrySet().iterator();
+        while (statements.size() > maxSize && iterator.hasNext()) {
+            CachedStatement eldest = iterator.next().getValue();
+            if (!eldest.inUse) {
+                iterator.remove();
+                eldest.closePhysical();
+                counters.evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Hands a statement back to the cache after the caller closed it.
+     */
+    private synchronized void release(CachedStatement cached) {
+        cached.inUse = false;
+        evictIfFull();
+    }
+
+    /**
+     * Drops statements that are still in use when their connection is handed back to the pool
+     * (the borrower never closed them), so they can't be handed out twice.
+     */
+    synchronized void closeAbandoned() {
+        Iterator<CachedStatement> iterator = statements.values().iterator();
+        while (iterator.hasNext()) {
+            CachedStatement cached = iterator.next();
+            if (cached.inUse) {
+                iterator.remove();
+                cached.closePhysical();
+            }
+        }
+    }
+
+    /**
+     * Closes every cached statement. Called before the physical connection is closed.
+     */
+    synchronized void closeAll() {
+        for (CachedStatement cached : statements.values()) {
+            cached.closePhysical();
+        }
+        statements.clear();
+    }
+
+    /**
+     * A physical prepared statement kept open by the cache.
+     */
+    private class CachedStatement {
+        private final PreparedStatement physical;
+        private boolean inUse;
+
+        private CachedStatement(PreparedStatement physical) {
+            this.physical = physical;
+        }
+
+        private PreparedStatement newHandle() {
+            return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                new Handle(this));
+        }
+
+        private void closePhysical() {
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                // The statement is discarded either way
+            }
+        }
+    }
+
+    /**
+     * Invocation handler for a borrowed cached statement.
+     * close() closes the result sets the caller opened, clears the parameters and returns the statement to the cache.
+     */
+    private class Handle implements InvocationHandler {
+        private final CachedStatement cached;
+        private final List<ResultSet> openResultSets = new ArrayList<>();
+        private boolean closed = false;
+
+        private Handle(CachedStatement cached) {
+            this.cached = cached;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        reset();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || cached.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + cached.physical + (closed ? ", closed" : "") + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement has already been closed");
+            }
+
+            try {
+                Object result = method.invoke(cached.physical, args);
+                if (result instanceof ResultSet) {
+                    openResultSets.add((ResultSet) result);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void reset() {
+            try {
+                for (ResultSet resultSet : openResultSets) {
+                    resultSet.close();
+                }
+                openResultSets.clear();
+                cached.physical.clearParameters();
+                cached.physical.clearBatch();
+                cached.physical.clearWarnings();
+                release(cached);
+            } catch (SQLException e) {
+                // A statement that can't be reset is dropped from the cache
+                synchronized (StatementCache.this) {
+                    statements.values().remove(cached);
+                }
+                cached.closePhysical();
+            }
+        }
+    }
+
+    /**
+     * Hit, miss and eviction counters, shared by all statement caches in a pool.
+     */
+    static class Counters {
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong evictions = new AtomicLong();
+    }
+}
@@ -0,0 +1,230 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class for the Transaction Manager.
+ * Runs a unit of work that spans several managers in one database transaction on one connection.
+ * While a transaction is active on the current thread, DatabaseManager.getConnection() hands out the
+ * transaction's connection instead of borrowing a new one, so the managers join it without changes.
+ * The managers keep using try-with-resources and their own commit/rollback calls; on a joined connection
+ * close(), commit() and setAutoCommit() are ignored and rollback() marks the whole transaction for rollback.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+
+public class TransactionManager {
+    /**
+     * How a unit of work relates to a transaction that is already active on the thread.
+     */
+    public enum Propagation {
+        // Join the active transaction, or start a new one if there is none
+        REQUIRED,
+        // Always start a new transaction on its own connection; the active one is suspended until it ends
+        REQUIRES_NEW
+    }
+
+    /**
+     * A unit of work that runs inside a transaction.
+     */
+    public interface TransactionCallback<T> {
+        T doInTransaction() throws SQLException;
+    }
+
+    private static final ThreadLocal<Transaction> currentTransaction = new ThreadLocal<>();
+
+    private TransactionManager() {
+    }
+
+    /**
+     * Runs a unit of work in a transaction. The transaction is committed if the work returns normally,
+     * and rolled back if it throws or if one of the participants rolled back.
+     * A joined (REQUIRED) unit of work that throws marks the outer transaction for rollback.
+     * @param propagation
+     * @param work
+     * @return The result of the work
+     * @throws SQLException if the work failed or the transaction was rolled back
+     */
+    public static <T> T execute(Propagation propagation, TransactionCallback<T> work) throws SQLException {
+        Transaction outer = currentTransaction.get();
+        if (propagation == Propagation.REQUIRED && outer != null) {
+            try {
+                return work.doInTransaction();
+            } catch (SQLException | RuntimeException e) {
+                outer.rollbackOnly = true;
+                throw e;
+            }
+        }
+
+        Transaction transaction = new Transaction(DatabaseManager.borrowConnection());
+        currentTransaction.set(transaction);
+        // The statements of the whole transaction count as one action for the N+1 check
+        QueryMetrics.Action action = QueryMetrics.getInstance().startAction(QueryMetrics.getInstance().findCaller());
+        try {
+            transaction.connection.setAutoCommit(false);
+            T result = work.doInTransaction();
+            if (transaction.rollbackOnly) {
+                transaction.connection.rollback();
+                throw new SQLException("Transaction rolled back because one of its steps failed");
+            }
+            transaction.connection.commit();
+            transaction.committed = true;
+            DatabaseManager.recordWrite();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            if (!transaction.committed) {
+                try {
+                    transaction.connection.rollback();
+                } catch (SQLException rollbackEx) {
+                    rollbackEx.printStackTrace();
+                }
+            }
+            throw e;
+        } finally {
+            action.close();
+            if (outer != null) {
+                currentTransaction.set(outer);
+            } else {
+                currentTransaction.remove();
+            }
+            try {
+                transaction.connection.setAutoCommit(true); // Reset to default auto-commit mode
+                transaction.connection.close();
+            } catch (SQLException closeEx) {
+                closeEx.printStackTrace();
+            }
+            if (transaction.committed) {
+                transaction.runAfterCommit();
+            }
+        }
+    }
+
+    /**
+     * Checks if a transaction is active on the current thread.
+     * @return true if a transaction is active
+     */
+    public static boolean isActive() {
+        return currentTransaction.get() != null;
+    }
+
+    /**
+     * Marks the active transaction for rollback. Does nothing if no transaction is active.
+     */
+    public static void setRollbackOnly() {
+        Transaction transaction = currentTransaction.get();
+        if (transaction != null) {
+            transaction.rollbackOnly = true;
+        }
+    }
+
+    /**
+     * Runs an action once the active transaction has been committed, e.g. updating a cache with the changes.
+     * The action is dropped if the transaction is rolled back, and runs right away if no transaction is active.
+     * @param action
+     */
+    public static void afterCommit(Runnable action) {
+        Transaction transaction = currentTransaction.get();
+        if (transaction == null) {
+            action.run();
+        } else {
+            transaction.afterCommit.add(action);
+        }
+    }
+
+    /**
+     * Returns the connection of the active transaction, wrapped so that the manager using it can't end the transaction.
+     * Used by DatabaseManager.getConnection().
+     * @return Connection object, or null if no transaction is active
+     */
+    static Connection joinCurrentTransaction() {
+        Transaction transaction = currentTransaction.get();
+        if (transaction == null) {
+            return null;
+        }
+        return (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class },
+            new Participant(transaction));
+    }
+
+    /**
+     * A transaction on the current thread.
+     */
+    private static class Transaction {
+        private final Connection connection;
+        private final List<Runnable> afterCommit = new ArrayList<>();
+        private boolean rollbackOnly = false;
+        private boolean committed = false;
+
+        private Transaction(Connection connection) {
+            this.connection = connection;
+        }
+
+        private void runAfterCommit() {
+            for (Runnable action : afterCommit) {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Invocation handler for the connection handed to a manager that joins a transaction.
+     * The transaction is ended by TransactionManager.execute only.
+     */
+    private static class Participant implements InvocationHandler {
+        private final Transaction transaction;
+        private boolean closed = false;
+
+        private Participant(Transaction transaction) {
+            this.transaction = transaction;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    closed = true;
+                    return null;
+                case "isClosed":
+                    return closed || transaction.connection.isClosed();
+                case "commit":
+                case "setAutoCommit":
+                    return null;
+                case "getAutoCommit":
+                    return false;
+                case "rollback":
+                    if (args == null || args.length == 0) {
+                        transaction.rollbackOnly = true;
+                        return null;
+                    }
+                    break; // Rolling back to a savepoint stays inside the transaction
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "TransactionParticipant[" + transaction.connection + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection has already been closed");
+            }
+            try {
+                return method.invoke(transaction.connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
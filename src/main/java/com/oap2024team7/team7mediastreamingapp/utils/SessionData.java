@@ -1,7 +1,9 @@
 package com.oap2024team7.team7mediastreamingapp.utils;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import com.oap2024team7.team7mediastreamingapp.models.Address;
 import com.oap2024team7.team7mediastreamingapp.models.Customer;
@@ -11,6 +13,8 @@ import com.oap2024team7.team7mediastreamingapp.models.Staff;
 import com.oap2024team7.team7mediastreamingapp.models.Rental;
 import com.oap2024team7.team7mediastreamingapp.models.Payment;
 import com.oap2024team7.team7mediastreamingapp.services.ProfileImageManager;
+import com.oap2024team7.team7mediastreamingapp.services.ProfileManager;
+import com.oap2024team7.team7mediastreamingapp.services.ReservationManager;
 
 /**
  * Class for the SessionData object.
@@ -24,9 +28,11 @@ public class SessionData {
     private Customer loggedInCustomer;
     private Staff loggedInStaff;
     private Profile currentProfile;
+    private Set<Film.Rating> allowedRatings; // Ratings the current profile may watch, null when no profile is selected
     private Address customerAddress;
     private Film selectedFilm;
     private Rental newRental;
+    private ReservationManager.Hold rentalHold; // Copy held for newRental until it is paid
     private Payment newPayment;
     private List<Film> savedFilms; // List to store saved films
     private ProfileImageManager profileImageManager; // ProfileImageManager for database operations
@@ -66,6 +72,17 @@ public class SessionData {
 
     public void setCurrentProfile(Profile currentProfile) {
         this.currentProfile = currentProfile;
+        this.allowedRatings = currentProfile != null
+            ? Collections.unmodifiableSet(ProfileManager.getAllowedRatings(currentProfile))
+            : null;
+    }
+
+    /**
+     * Get the film ratings the current profile is allowed to watch.
+     * @return Set of allowed ratings, or null if no profile is selected
+     */
+    public Set<Film.Rating> getAllowedRatings() {
+        return allowedRatings;
     }
 
     public Address getCustomerAddress() {
@@ -92,6 +109,14 @@ public class SessionData {
         this.newRental = newRental;
     }
 
+    public ReservationManager.Hold getRentalHold() {
+        return rentalHold;
+    }
+
+    public void setRentalHold(ReservationManager.Hold rentalHold) {
+        this.rentalHold = rentalHold;
+    }
+
     public Payment getNewPayment() {
         return newPayment;
     }
@@ -104,15 +129,21 @@ public class SessionData {
         loggedInCustomer = null;
         loggedInStaff = null;
         currentProfile = null;
+        allowedRatings = null;
         customerAddress = null;
         selectedFilm = null;
         newRental = null;
+        if (rentalHold != null) {
+            ReservationManager.getInstance().release(rentalHold);
+            rentalHold = null;
+        }
         newPayment = null;
         savedFilms.clear(); // Clear saved films when session is cleared
     }
 
     public void clearProfileData() {
         currentProfile = null;
+        allowedRatings = null;
     }
     
     /**
@@ -7,10 +7,15 @@ import java.util.Map;
 import com.oap2024team7.team7mediastreamingapp.controllers.customer.accountmanagement.EditProfileController;
 import com.oap2024team7.team7mediastreamingapp.controllers.customer.contentmanagement.PrimaryController;
 
+import javafx.beans.value.ChangeListener;
+import javafx.event.EventHandler;
 import javafx.fxml.FXMLLoader;
+import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import javafx.stage.Window;
+import javafx.stage.WindowEvent;
 import javafx.scene.control.Alert.AlertType;
 import javafx.stage.Modality;
 
@@ -124,5 +129,36 @@ public class StageUtils {
         }
     }
 
-
+    /**
+     * Runs an action once the screen a node belongs to is left: when another scene is set on its stage,
+     * or when its window is closed. Used to cancel background loads that are no longer needed.
+     * Works from a controller's initialize method, before the node has a scene.
+     *
+     * @param node Any node of the screen.
+     * @param action The action to run, e.g. scope::cancelAll.
+     */
+    public static void onScreenLeft(Node node, Runnable action) {
+        EventHandler<WindowEvent> onHidden = event -> action.run();
+        ChangeListener<Window> windowListener = (observable, oldWindow, newWindow) -> {
+            if (oldWindow != null) {
+                // The scene was replaced on its stage
+                oldWindow.removeEventHandler(WindowEvent.WINDOW_HIDDEN, onHidden);
+                action.run();
+            }
+            if (newWindow != null) {
+                newWindow.addEventHandler(WindowEvent.WINDOW_HIDDEN, onHidden);
+            }
+        };
+        node.sceneProperty().addListener((observable, oldScene, newScene) -> {
+            if (oldScene != null) {
+                oldScene.windowProperty().removeListener(windowListener);
+            }
+            if (newScene != null) {
+                newScene.windowProperty().addListener(windowListener);
+                if (newScene.getWindow() != null) {
+                    newScene.getWindow().addEventHandler(WindowEvent.WINDOW_HIDDEN, onHidden);
+                }
+            }
+        });
+    }
 }
@@ -0,0 +1,217 @@
+-- Sakila schema for the embedded H2 database (MySQL mode), see EmbeddedDatabase.
+-- Same tables and columns as the MySQL sakila database the app runs against, with the columns and tables
+-- added by migration 1 of SchemaMigrator. MySQL-only types are replaced: YEAR by SMALLINT,
+-- SET by VARCHAR and GEOMETRY by VARBINARY (stored as WKB).
+
+CREATE TABLE language (
+    language_id TINYINT AUTO_INCREMENT PRIMARY KEY,
+    name CHAR(20) NOT NULL,
+    last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+CREATE TABLE category (
+    category_id TINYINT AUTO_INCREMENT PRIMARY KEY,
+    name VARCHAR(25) NOT NULL,
+    last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+CREATE TABLE actor (
+    actor_id SMALLINT AUTO_INCREMENT PRIMARY KEY,
+    first_name VARCHAR(45) NOT NULL,
+    last_name VARCHAR(45) NOT NULL,
+    last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+CREATE INDEX idx_actor_last_name ON actor (last_name);
+
+CREATE TABLE country (
+    country_id SMALLINT AUTO_INCREMENT PRIMARY KEY,
+    country VARCHAR(50) NOT NULL,
+    last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+CREATE TABLE city (
+    city_id SMALLINT AUTO_INCREMENT PRIMARY KEY,
+    city VARCHAR(50) NOT NULL,
+    country_id SMALLINT NOT NULL,
+    last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    FOREIGN KEY (country_id) REFERENCES country(country_id)
+);
+
+CREATE TABLE address (
+    address_id SMALLINT AUTO_INCREMENT PRIMARY KEY,
+    address VARCHAR(50) NOT NULL,
+    address2 VARCHAR(50) DEFAULT NULL,
+    district VARCHAR(20) NOT NULL,
+    city_id SMALLINT NOT NULL,
+    postal_code VARCHAR(10) DEFAULT NULL,
+    phone VARCHAR(20) NOT NULL,
+    location VARBINARY(1024),
+    last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    FOREIGN KEY (city_id) REFERENCES city(city_id)
+);
+
+-- store and staff reference each other, so the references aren't enforced here
+CREATE TABLE store (
+    store_id TINYINT AUTO_INCREMENT PRIMARY KEY,
+    manager_staff_id TINYINT NOT NULL,
+    address_id SMALLINT NOT NULL,
+    last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+CREATE TABLE staff (
+    staff_id TINYINT AUTO_INCREMENT PRIMARY KEY,
+    first_name VARCHAR(45) NOT NULL,
+    last_name VARCHAR(45) NOT NULL,
+    address_id SMALLINT NOT NULL,
+    picture BLOB DEFAULT NULL,
+    email VARCHAR(50) DEFAULT NULL,
+    store_id TINYINT NOT NULL,
+    active BOOLEAN NOT NULL DEFAULT TRUE,
+    username VARCHAR(16) NOT NULL,
+    password VARCHAR(64) DEFAULT NULL,
+    last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+CREATE TABLE customer (
+    customer_id SMALLINT AUTO_INCREMENT PRIMARY KEY,
+    store_id TINYINT NOT NULL,
+    first_name VARCHAR(45) NOT NULL,
+    last_name VARCHAR(45) NOT NULL,
+    email VARCHAR(50) DEFAULT NULL,
+    address_id SMALLINT NOT NULL,
+    active BOOLEAN NOT NULL DEFAULT TRUE,
+    create_date DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_update TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    account_type ENUM('FREE', 'PREMIUM') DEFAULT 'FREE',
+    FOREIGN KEY (address_id) REFERENCES address(address_id)
+);
+CREATE INDEX idx_customer_last_name ON customer (last_name);
+
+CREATE TABLE film (
+    film_id SMALLINT AUTO_INCREMENT PRIMARY KEY,
+    title VARCHAR(128) NOT NULL,
+    description TEXT DEFAULT NULL,
+    release_year SMALLINT DEFAULT NULL,
+    language_id TINYINT NOT NULL,
+    original_language_id TINYINT DEFAULT NULL,
+    rental_duration TINYINT NOT NULL DEFAULT 3,
+    rental_rate DECIMAL(4, 2) NOT NULL DEFAULT 4.99,
+    length SMALLINT DEFAULT NULL,
+    replacement_cost DECIMAL(5, 2) NOT NULL DEFAULT 19.99,
+    rating ENUM('G', 'PG', 'PG-13', 'R', 'NC-17') DEFAULT 'G',
+    special_features VARCHAR(255) DEFAULT NULL,
+    last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    is_streamable BOOLEAN DEFAULT FALSE,
+    is_reviewable BOOLEAN DEFAULT TRUE,
+    is_ratable BOOLEAN DEFAULT TRUE,
+    FOREIGN KEY (language_id) REFERENCES language(language_id)
+);
+CREATE INDEX idx_film_title ON film (title);
+
+CREATE TABLE film_text (
+    film_id SMALLINT PRIMARY KEY,
+    title VARCHAR(255) NOT NULL,
+    description TEXT
+);
+
+CREATE TABLE film_actor (
+    actor_id SMALLINT NOT NULL,
+    film_id SMALLINT NOT NULL,
+    last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (actor_id, film_id),
+    FOREIGN KEY (actor_id) REFERENCES actor(actor_id),
+    FOREIGN KEY (film_id) REFERENCES film(film_id)
+);
+CREATE INDEX idx_film_actor_film_id ON film_actor (film_id);
+
+CREATE TABLE film_category (
+    film_id SMALLINT NOT NULL,
+    category_id TINYINT NOT NULL,
+    last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (film_id, category_id),
+    FOREIGN KEY (film_id) REFERENCES film(film_id),
+    FOREIGN KEY (category_id) REFERENCES category(category_id)
+);
+
+CREATE TABLE inventory (
+    inventory_id INT AUTO_INCREMENT PRIMARY KEY,
+    film_id SMALLINT NOT NULL,
+    store_id TINYINT NOT NULL,
+    last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    FOREIGN KEY (film_id) REFERENCES film(film_id)
+);
+CREATE INDEX idx_inventory_store_id_film_id ON inventory (store_id, film_id);
+
+CREATE TABLE rental (
+    rental_id INT AUTO_INCREMENT PRIMARY KEY,
+    rental_date DATETIME NOT NULL,
+    inventory_id INT NOT NULL,
+    customer_id SMALLINT NOT NULL,
+    return_date DATETIME DEFAULT NULL,
+    staff_id TINYINT NOT NULL,
+    last_update TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    FOREIGN KEY (inventory_id) REFERENCES inventory(inventory_id),
+    FOREIGN KEY (customer_id) REFERENCES customer(customer_id)
+);
+CREATE INDEX idx_rental_inventory_id ON rental (inventory_id);
+CREATE INDEX idx_rental_customer_id ON rental (customer_id);
+
+CREATE TABLE payment (
+    payment_id SMALLINT AUTO_INCREMENT PRIMARY KEY,
+    customer_id SMALLINT NOT NULL,
+    staff_id TINYINT NOT NULL,
+    rental_id INT DEFAULT NULL,
+    amount DECIMAL(5, 2) NOT NULL,
+    payment_date DATETIME NOT NULL,
+    last_update TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    FOREIGN KEY (customer_id) REFERENCES customer(customer_id),
+    FOREIGN KEY (rental_id) REFERENCES rental(rental_id) ON DELETE SET NULL
+);
+
+-- Tables added by migration 1 of SchemaMigrator; its indexes (migration 2) are added by the migrator itself
+CREATE TABLE profile (
+    profile_id INT AUTO_INCREMENT PRIMARY KEY,
+    customer_id SMALLINT NOT NULL,
+    main_profile BOOLEAN DEFAULT FALSE,
+    profile_name VARCHAR(255) NOT NULL,
+    profile_picture VARCHAR(255),
+    birth_date DATE,
+    hashed_password VARCHAR(255),
+    FOREIGN KEY (customer_id) REFERENCES customer(customer_id) ON DELETE CASCADE
+);
+
+CREATE TABLE my_list (
+    list_id INT AUTO_INCREMENT PRIMARY KEY,
+    profile_id INT NOT NULL,
+    film_id SMALLINT NOT NULL,
+    FOREIGN KEY (profile_id) REFERENCES profile(profile_id) ON DELETE CASCADE,
+    FOREIGN KEY (film_id) REFERENCES film(film_id) ON DELETE CASCADE
+);
+
+CREATE TABLE film_discount (
+    discount_id INT AUTO_INCREMENT PRIMARY KEY,
+    film_id SMALLINT NOT NULL,
+    discount_percentage DECIMAL(4, 2) NOT NULL,
+    start_date DATE NOT NULL,
+    expiry_date DATE NOT NULL,
+    FOREIGN KEY (film_id) REFERENCES film(film_id) ON DELETE CASCADE
+);
+
+-- profile_id is unique, ProfileImageManager replaces the image with ON DUPLICATE KEY UPDATE
+CREATE TABLE profile_image (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    profile_id INT NOT NULL UNIQUE,
+    image LONGBLOB,
+    FOREIGN KEY (profile_id) REFERENCES profile(profile_id) ON DELETE CASCADE
+);
+
+CREATE TABLE film_review (
+    review_id INT AUTO_INCREMENT PRIMARY KEY,
+    film_id SMALLINT NOT NULL,
+    profile_id INT NOT NULL,
+    liked BOOLEAN DEFAULT NULL,
+    review TEXT,
+    review_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (film_id) REFERENCES film(film_id) ON DELETE CASCADE,
+    FOREIGN KEY (profile_id) REFERENCES profile(profile_id) ON DELETE CASCADE
+);
@@ -0,0 +1,59 @@
+-- Reference data for the embedded H2 database, see EmbeddedDatabase.
+-- The languages, categories and first films and actors are the ones from sakila; benchmarks add their own data on top.
+-- The staff member "admin" logs in with the password "admin" (SHA-256, see PasswordUtils).
+
+INSERT INTO language (language_id, name) VALUES
+    (1, 'English'), (2, 'Italian'), (3, 'Japanese'), (4, 'Mandarin'), (5, 'French'), (6, 'German');
+
+INSERT INTO category (category_id, name) VALUES
+    (1, 'Action'), (2, 'Animation'), (3, 'Children'), (4, 'Classics'), (5, 'Comedy'), (6, 'Documentary'),
+    (7, 'Drama'), (8, 'Family'), (9, 'Foreign'), (10, 'Games'), (11, 'Horror'), (12, 'Music'),
+    (13, 'New'), (14, 'Sci-Fi'), (15, 'Sports'), (16, 'Travel');
+
+-- AddressManager adds new cities to country 103
+INSERT INTO country (country_id, country) VALUES (103, 'United States');
+INSERT INTO city (city_id, city, country_id) VALUES (1, 'Lethbridge', 103), (2, 'Woodridge', 103);
+INSERT INTO address (address_id, address, district, city_id, postal_code, phone) VALUES
+    (1, '47 MySakila Drive', 'Alberta', 1, '', ''),
+    (2, '28 MySQL Boulevard', 'QLD', 2, '', '');
+
+INSERT INTO store (store_id, manager_staff_id, address_id) VALUES (1, 1, 1), (2, 2, 2);
+INSERT INTO staff (staff_id, first_name, last_name, address_id, email, store_id, active, username, password) VALUES
+    (1, 'Mike', 'Hillyer', 1, 'Mike.Hillyer@sakilastaff.com', 1, TRUE, 'admin', '8c6976e5b5410415bde908bd4dee15dfb167a9c873fc4bb8a81f6f2ab448a918'),
+    (2, 'Jon', 'Stephens', 2, 'Jon.Stephens@sakilastaff.com', 2, TRUE, 'Jon', NULL);
+
+INSERT INTO actor (actor_id, first_name, last_name) VALUES
+    (1, 'PENELOPE', 'GUINESS'), (2, 'NICK', 'WAHLBERG'), (3, 'ED', 'CHASE'), (4, 'JENNIFER', 'DAVIS'),
+    (5, 'JOHNNY', 'LOLLOBRIGIDA'), (6, 'BETTE', 'NICHOLSON'), (7, 'GRACE', 'MOSTEL'), (8, 'MATTHEW', 'JOHANSSON');
+
+INSERT INTO film (film_id, title, description, release_year, language_id, rental_duration, rental_rate, length, replacement_cost, rating, special_features) VALUES
+    (1, 'ACADEMY DINOSAUR', 'A Epic Drama of a Feminist And a Mad Scientist who must Battle a Teacher in The Canadian Rockies', 2006, 1, 6, 0.99, 86, 20.99, 'PG', 'Deleted Scenes,Behind the Scenes'),
+    (2, 'ACE GOLDFINGER', 'A Astounding Epistle of a Database Administrator And a Explorer who must Find a Car in Ancient China', 2006, 1, 3, 4.99, 48, 12.99, 'G', 'Trailers,Deleted Scenes'),
+    (3, 'ADAPTATION HOLES', 'A Astounding Reflection of a Lumberjack And a Car who must Sink a Lumberjack in A Baloon Factory', 2006, 1, 7, 2.99, 50, 18.99, 'NC-17', 'Trailers,Deleted Scenes'),
+    (4, 'AFFAIR PREJUDICE', 'A Fanciful Documentary of a Frisbee And a Lumberjack who must Chase a Monkey in A Shark Tank', 2006, 1, 5, 2.99, 117, 26.99, 'G', 'Commentaries,Behind the Scenes'),
+    (5, 'AFRICAN EGG', 'A Fast-Paced Documentary of a Pastry Chef And a Dentist who must Pursue a Forensic Psychologist in The Gulf of Mexico', 2006, 1, 6, 2.99, 130, 22.99, 'G', 'Deleted Scenes'),
+    (6, 'AGENT TRUMAN', 'A Intrepid Panorama of a Robot And a Boy who must Escape a Sumo Wrestler in Ancient China', 2006, 1, 3, 2.99, 169, 17.99, 'PG', 'Deleted Scenes'),
+    (7, 'AIRPLANE SIERRA', 'A Touching Saga of a Hunter And a Butler who must Discover a Butler in A Jet Boat', 2006, 1, 6, 4.99, 62, 28.99, 'PG-13', 'Trailers,Deleted Scenes'),
+    (8, 'AIRPORT POLLOCK', 'A Epic Tale of a Moose And a Girl who must Confront a Monkey in Ancient India', 2006, 1, 6, 4.99, 54, 15.99, 'R', 'Trailers');
+
+INSERT INTO film_text (film_id, title, description) SELECT film_id, title, description FROM film;
+
+INSERT INTO film_category (film_id, category_id) VALUES
+    (1, 6), (2, 11), (3, 6), (4, 11), (5, 8), (6, 9), (7, 5), (8, 11);
+
+INSERT INTO film_actor (actor_id, film_id) VALUES
+    (1, 1), (1, 8), (2, 3), (3, 2), (4, 5), (5, 6), (6, 7), (7, 4), (8, 1), (8, 7);
+
+INSERT INTO inventory (film_id, store_id) VALUES
+    (1, 1), (1, 1), (1, 2), (2, 2), (3, 2), (4, 1), (4, 2), (5, 2), (6, 1), (6, 2), (7, 1), (7, 2), (8, 1), (8, 2);
+
+-- The explicit IDs above don't move the identity columns on
+ALTER TABLE language ALTER COLUMN language_id RESTART WITH 7;
+ALTER TABLE category ALTER COLUMN category_id RESTART WITH 17;
+ALTER TABLE country ALTER COLUMN country_id RESTART WITH 110;
+ALTER TABLE city ALTER COLUMN city_id RESTART WITH 3;
+ALTER TABLE address ALTER COLUMN address_id RESTART WITH 3;
+ALTER TABLE store ALTER COLUMN store_id RESTART WITH 3;
+ALTER TABLE staff ALTER COLUMN staff_id RESTART WITH 3;
+ALTER TABLE actor ALTER COLUMN actor_id RESTART WITH 9;
+ALTER TABLE film ALTER COLUMN film_id RESTART WITH 9;
@@ -0,0 +1,185 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.oap2024team7.team7mediastreamingapp.models.Film;
+
+/**
+ * Benchmark of the film page hydration on the embedded database.
+ * Loads every page of films once the way the film lists did before (a language and an actor query per film,
+ * the actor query on its own connection) and once with FilmManager.hydrateFilms, and prints the round trips
+ * and the latency per page of both. Fails if a page costs more than one actor query.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+public class FilmHydrationBenchmarkTest {
+    private static final int FILMS = 400;
+    private static final int ACTORS = 50;
+    private static final int ACTORS_PER_FILM = 5;
+    private static final int PAGE_SIZE = 20;
+    private static final int ROUNDS = 5;
+    private static final String PAGE_QUERY = "SELECT * FROM film WHERE film_id > ? ORDER BY film_id LIMIT ?";
+
+    private static int filmCount;
+
+    @BeforeClass
+    public static void createFilms() throws SQLException {
+        DatabaseManager.shutdown();
+        DatabaseManager.configure(new DatabaseConfig(EmbeddedDatabase.url("hydration"), "sa", ""));
+
+        try (Connection conn = DatabaseManager.getConnection()) {
+            List<Integer> rows = new ArrayList<>();
+            for (int i = 0; i < ACTORS; i++) {
+                rows.add(i);
+            }
+            List<Integer> actorIds = new BatchWriter("actor", "first_name", "last_name")
+                .insert(conn, rows, i -> new Object[] { "FIRST" + i, "LAST" + i }, true).getGeneratedKeys();
+
+            rows.clear();
+            for (int i = 0; i < FILMS; i++) {
+                rows.add(i);
+            }
+            List<Integer> filmIds = new BatchWriter("film", "title", "description", "release_year", "language_id", "length", "rating")
+                .insert(conn, rows, i -> new Object[] { "BENCHMARK FILM " + i, "Film number " + i, 2000 + i % 20, 1 + i % 6, 60 + i % 120, "PG" }, true)
+                .getGeneratedKeys();
+
+            List<int[]> assignments = new ArrayList<>();
+            for (int i = 0; i < filmIds.size(); i++) {
+                for (int j = 0; j < ACTORS_PER_FILM; j++) {
+                    assignments.add(new int[] { filmIds.get(i), actorIds.get((i + j) % ACTORS) });
+                }
+            }
+            new BatchWriter("film_actor", "film_id", "actor_id").insert(conn, assignments, a -> new Object[] { a[0], a[1] }, false);
+
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT COUNT(*) FROM film");
+                 ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                filmCount = rs.getInt(1);
+            }
+        }
+    }
+
+    @AfterClass
+    public static void stopDatabase() {
+        DatabaseManager.shutdown();
+    }
+
+    @Test
+    public void pageCostsOneActorQuery() throws SQLException {
+        // Warm up the pool, the statement cache and the language cache of both paths
+        loadAllPages(false);
+        loadAllPages(true);
+
+        Result before = measure(false);
+        Result after = measure(true);
+        System.out.println(String.format("Film pages of %d films: before %s; after %s", PAGE_SIZE, before, after));
+
+        int pages = (filmCount + PAGE_SIZE - 1) / PAGE_SIZE;
+        // One more page query finds that there are no more films
+        int pageQueries = pages + 1;
+        assertEquals(filmCount, before.films);
+        assertEquals(filmCount, after.films);
+        assertEquals("one actor query per film before", filmCount, before.actorQueries);
+        assertEquals("one actor query per page", pages, after.actorQueries);
+        assertEquals("page and actor query only", pageQueries + pages, after.statements);
+        assertEquals("one connection per page", pageQueries, after.connections);
+    }
+
+    @Test
+    public void filmsHaveTheirActorsAndLanguage() throws SQLException {
+        for (Film film : loadAllPages(true)) {
+            assertNotNull(film.getLanguage());
+            assertNotNull(film.getActors());
+            if (film.getTitle().startsWith("BENCHMARK FILM ")) {
+                assertEquals(ACTORS_PER_FILM, film.getActors().size());
+            }
+        }
+    }
+
+    private static Result measure(boolean batched) throws SQLException {
+        QueryMetrics metrics = QueryMetrics.getInstance();
+        Result result = new Result();
+        long nanos = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            metrics.reset();
+            long start = System.nanoTime();
+            List<Film> films = loadAllPages(batched);
+            nanos += System.nanoTime() - start;
+            // The round trips of every round are the same, keep the last one
+            result.films = films.size();
+            result.statements = metrics.getStatementCount();
+            result.actorQueries = metrics.getExecutionCount("film_actor");
+            result.connections = metrics.getConnectionBorrows();
+        }
+        result.millisPerPage = nanos / 1_000_000.0 / ROUNDS / ((filmCount + PAGE_SIZE - 1) / PAGE_SIZE);
+        return result;
+    }
+
+    /**
+     * Reads all films page by page, each page on its own connection like a page of the film list.
+     * @param batched true to hydrate with FilmManager.hydrateFilms, false to hydrate film by film as before
+     */
+    private static List<Film> loadAllPages(boolean batched) throws SQLException {
+        List<Film> films = new ArrayList<>();
+        int lastFilmId = 0;
+        while (true) {
+            List<Film> page;
+            try (Connection conn = DatabaseManager.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(PAGE_QUERY)) {
+                stmt.setInt(1, lastFilmId);
+                stmt.setInt(2, PAGE_SIZE);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    page = batched ? new FilmManager().hydrateFilms(conn, rs) : hydrateFilmByFilm(conn, rs);
+                }
+            }
+            if (page.isEmpty()) {
+                return films;
+            }
+            films.addAll(page);
+            lastFilmId = page.get(page.size() - 1).getFilmId();
+        }
+    }
+
+    // The hydration before the batched path: the language on the page's connection, the actors on a new one
+    private static List<Film> hydrateFilmByFilm(Connection conn, ResultSet rs) throws SQLException {
+        List<Film> films = new ArrayList<>();
+        while (rs.next()) {
+            Film film = new Film(rs.getInt("film_id"), rs.getString("title"), rs.getString("description"),
+                rs.getInt("release_year"), Film.Rating.valueOf(rs.getString("rating").replace("-", "")));
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT * FROM language WHERE language_id = ?")) {
+                stmt.setInt(1, rs.getInt("language_id"));
+                try (ResultSet languageRs = stmt.executeQuery()) {
+                    languageRs.next();
+                }
+            }
+            film.setActors(ActorManager.getInstance().getActorsForFilm(film.getFilmId()));
+            films.add(film);
+        }
+        return films;
+    }
+
+    private static class Result {
+        private int films;
+        private long statements;
+        private long actorQueries;
+        private long connections;
+        private double millisPerPage;
+
+        @Override
+        public String toString() {
+            return String.format("%d statements (%d actor queries) on %d connections, %.2f ms per page",
+                statements, actorQueries, connections, millisPerPage);
+        }
+    }
+}
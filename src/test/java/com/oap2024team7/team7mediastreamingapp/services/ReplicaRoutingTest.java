@@ -0,0 +1,156 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests the routing of read-only queries with two embedded databases, one as the primary and one as the read replica.
+ * Each database has a marker table with its own name, so a query shows which database a connection goes to.
+ * H2 can't report replication lag, so the lag check is turned off (db.replica.maxLagSeconds=-1) unless a test is about it.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+public class ReplicaRoutingTest {
+    private static final String PRIMARY = "primary";
+    private static final String REPLICA = "replica";
+
+    @After
+    public void stopDatabases() {
+        DatabaseManager.shutdown();
+        System.clearProperty("db.replica.maxLagSeconds");
+        System.clearProperty("db.replica.stickySeconds");
+    }
+
+    @Test
+    public void readsGoToReplica() throws SQLException {
+        ReplicaRouter router = connect("readsPrimary", createReplica("readsReplica"), "-1", "10");
+
+        try (Connection conn = DatabaseManager.getReadConnection()) {
+            assertEquals(REPLICA, readMarker(conn));
+        }
+        try (Connection conn = DatabaseManager.getConnection()) {
+            assertEquals("Writes and other queries stay on the primary", PRIMARY, readMarker(conn));
+        }
+        assertTrue(router.isUsable());
+        assertEquals(1, router.getReplicaReads());
+        assertEquals(0, router.getFallbackReads());
+    }
+
+    @Test
+    public void readsStayOnPrimaryAfterWrite() throws SQLException, InterruptedException {
+        ReplicaRouter router = connect("stickyPrimary", createReplica("stickyReplica"), "-1", "1");
+
+        DatabaseManager.recordWrite();
+        try (Connection conn = DatabaseManager.getReadConnection()) {
+            assertEquals(PRIMARY, readMarker(conn));
+        }
+        assertEquals(1, router.getStickyReads());
+
+        // Until the sticky period is over
+        Thread.sleep(1_100);
+        try (Connection conn = DatabaseManager.getReadConnection()) {
+            assertEquals(REPLICA, readMarker(conn));
+        }
+
+        // A committed transaction records the write itself
+        TransactionManager.execute(TransactionManager.Propagation.REQUIRED, () -> {
+            try (Connection conn = DatabaseManager.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("UPDATE routing_marker SET name = name");
+            }
+            return null;
+        });
+        try (Connection conn = DatabaseManager.getReadConnection()) {
+            assertEquals(PRIMARY, readMarker(conn));
+        }
+        assertEquals(2, router.getStickyReads());
+        assertEquals(1, router.getReplicaReads());
+    }
+
+    @Test
+    public void readsFallBackWhenReplicaIsDown() throws SQLException {
+        // IFEXISTS refuses to create the database, so no connection to the replica can be made
+        ReplicaRouter router = connect("downPrimary", EmbeddedDatabase.url("missingReplica") + ";IFEXISTS=TRUE", "-1", "10");
+
+        for (int i = 0; i < 3; i++) {
+            try (Connection conn = DatabaseManager.getReadConnection()) {
+                assertEquals(PRIMARY, readMarker(conn));
+            }
+        }
+        assertFalse(router.isUsable());
+        assertEquals(0, router.getReplicaReads());
+        assertEquals(3, router.getFallbackReads());
+    }
+
+    @Test
+    public void readsFallBackWhenLagIsUnknown() throws SQLException {
+        // The lag of the replica can't be read from H2, which counts the same as a replica that is too far behind
+        ReplicaRouter router = connect("lagPrimary", createReplica("lagReplica"), "5", "10");
+
+        try (Connection conn = DatabaseManager.getReadConnection()) {
+            assertEquals(PRIMARY, readMarker(conn));
+        }
+        assertFalse(router.isUsable());
+        assertEquals(0, router.getReplicaReads());
+        assertEquals(1, router.getFallbackReads());
+        assertEquals("The replica connection the lag was checked on has been handed back", 0, router.getPoolStats().getActive());
+    }
+
+    /**
+     * Connects DatabaseManager to a new primary database with a replica.
+     * @param primaryName Name of the in-memory primary database
+     * @param replicaUrl
+     * @param maxLagSeconds
+     * @param stickySeconds
+     * @return The router of the replica
+     */
+    private static ReplicaRouter connect(String primaryName, String replicaUrl, String maxLagSeconds, String stickySeconds) throws SQLException {
+        System.setProperty("db.replica.maxLagSeconds", maxLagSeconds);
+        System.setProperty("db.replica.stickySeconds", stickySeconds);
+        DatabaseManager.shutdown();
+        DatabaseManager.configure(new DatabaseConfig(EmbeddedDatabase.url(primaryName), "sa", "",
+            new DatabaseConfig(replicaUrl, "sa", "")));
+
+        try (Connection conn = DatabaseManager.getConnection()) {
+            createMarker(conn, PRIMARY);
+        }
+        ReplicaRouter router = DatabaseManager.getReplicaRouter();
+        assertNotNull(router);
+        return router;
+    }
+
+    // The replica isn't bootstrapped by DatabaseManager, it only gets the marker table
+    private static String createReplica(String name) throws SQLException {
+        String url = EmbeddedDatabase.url(name);
+        try (Connection conn = DriverManager.getConnection(url, "sa", "")) {
+            createMarker(conn, REPLICA);
+        }
+        return url;
+    }
+
+    private static void createMarker(Connection conn, String name) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS routing_marker (name VARCHAR(20))");
+            stmt.executeUpdate("DELETE FROM routing_marker");
+            stmt.executeUpdate("INSERT INTO routing_marker VALUES ('" + name + "')");
+        }
+    }
+
+    private static String readMarker(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT name FROM routing_marker")) {
+            assertTrue(rs.next());
+            return rs.getString(1);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.oap2024team7.team7mediastreamingapp.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.oap2024team7.team7mediastreamingapp.models.Rental;
+
+/**
+ * Stress test of ReservationManager on the embedded database.
+ * Many customers rent the few copies of one film at the same moment (reserve + confirm), partly while rentals are
+ * also added straight to the database, as another instance of the app would. Afterwards no copy may be rented twice
+ * for overlapping periods, and every successful confirm of the same period must have got a copy of its own.
+ * Every attempt has to finish without an error; losing the race for a copy is not an error.
+ * Prints the throughput of both runs.
+ * @author Agata (Agy) Olaussen (@agyCoding)
+ */
+public class ReservationStressTest {
+    private static final int COPIES = 5;
+    private static final int THREADS = 300;
+    private static final int STORE_ID = 1;
+    private static final int STAFF_ID = 1;
+    private static final String OVERLAP_QUERY = "SELECT COUNT(*) FROM rental a " +
+                                                "JOIN rental b ON b.inventory_id = a.inventory_id AND b.rental_id > a.rental_id " +
+                                                "AND b.rental_date < a.return_date AND a.rental_date < b.return_date " +
+                                                "JOIN inventory i ON i.inventory_id = a.inventory_id WHERE i.film_id = ?";
+
+    private static int filmId;
+    private static List<Integer> copies;
+    private static List<Integer> customerIds;
+
+    @BeforeClass
+    public static void createFilm() throws SQLException {
+        DatabaseManager.shutdown();
+        DatabaseManager.configure(new DatabaseConfig(EmbeddedDatabase.url("reservations"), "sa", ""));
+        // Forget the copies of databases used by earlier tests
+        AvailabilityEngine.getInstance().invalidate();
+
+        try (Connection conn = DatabaseManager.getConnection()) {
+            filmId = new BatchWriter("film", "title", "language_id")
+                .insert(conn, Collections.singletonList(0), i -> new Object[] { "POPULAR FILM", 1 }, true)
+                .getGeneratedKeys().get(0);
+
+            List<Integer> rows = new ArrayList<>();
+            for (int i = 0; i < COPIES; i++) {
+                rows.add(i);
+            }
+            copies = new BatchWriter("inventory", "film_id", "store_id")
+                .insert(conn, rows, i -> new Object[] { filmId, STORE_ID }, true).getGeneratedKeys();
+
+            rows.clear();
+            for (int i = 0; i < THREADS; i++) {
+                rows.add(i);
+            }
+            customerIds = new BatchWriter("customer", "store_id", "first_name", "last_name", "address_id")
+                .insert(conn, rows, i -> new Object[] { STORE_ID, "CUSTOMER", "NUMBER" + i, 1 }, true).getGeneratedKeys();
+        }
+    }
+
+    @AfterClass
+    public static void stopDatabase() {
+        DatabaseManager.shutdown();
+    }
+
+    @Test
+    public void everyConfirmGetsItsOwnCopy() throws Exception {
+        LocalDateTime start = LocalDateTime.now().plusDays(30).truncatedTo(ChronoUnit.SECONDS);
+        LocalDateTime end = start.plusDays(3);
+        ReservationManager reservations = ReservationManager.getInstance();
+
+        Run run = runAtOnce("Same period", customer -> {
+            ReservationManager.Hold hold = reservations.reserve(filmId, STORE_ID, customerIds.get(customer), start, end);
+            return hold == null ? null : reservations.confirm(hold, STAFF_ID);
+        });
+        List<Rental> rentals = run.rentals;
+
+        assertEquals("Every attempt finished", THREADS, run.completed);
+        assertEquals("Attempts that failed with an error", 0, run.errors);
+
+        Set<Integer> rentedCopies = new HashSet<>();
+        for (Rental rental : rentals) {
+            assertTrue("Copy " + rental.getInventoryId() + " was confirmed twice", rentedCopies.add(rental.getInventoryId()));
+        }
+        assertEquals("Every copy is free for the period, so every copy is rented once", COPIES, rentals.size());
+        assertNoOverlappingRentals();
+    }
+
+    @Test
+    public void noCopyIsRentedTwiceForOverlappingPeriods() throws Exception {
+        LocalDateTime base = LocalDateTime.now().plusDays(60).truncatedTo(ChronoUnit.SECONDS);
+        ReservationManager reservations = ReservationManager.getInstance();
+        RentalManager rentalManager = new RentalManager();
+
+        Run run = runAtOnce("Overlapping periods", customer -> {
+            Random random = new Random(customer);
+            LocalDateTime start = base.plusHours(random.nextInt(10 * 24));
+            LocalDateTime end = start.plusHours(24 + random.nextInt(3 * 24));
+            if (customer % 2 == 0) {
+                ReservationManager.Hold hold = reservations.reserve(filmId, STORE_ID, customerIds.get(customer), start, end);
+                return hold == null ? null : reservations.confirm(hold, STAFF_ID);
+            }
+
+            // Another instance of the app renting a copy of its own choice, without knowing about the holds
+            Rental rental = new Rental(copies.get(random.nextInt(COPIES)), customerIds.get(customer), STAFF_ID, start, end);
+            try {
+                rental.setRentalId(rentalManager.insertRental(rental));
+                return rental;
+            } catch (RentalManager.RentalConflictException e) {
+                return null;
+            }
+        });
+
+        assertEquals("Attempts that failed with an error", 0, run.errors);
+        assertTrue(run.rentals.size() > 0);
+        assertNoOverlappingRentals();
+    }
+
+    /**
+     * Runs one rental attempt per customer, all threads starting at the same moment.
+     * An attempt that throws is counted as an error, so one failing attempt doesn't hide what the others did.
+     * @param name Name of the run in the printed throughput
+     * @param attempt Rental attempt of one customer (index into customerIds), returning null if it got no copy
+     * @return The rentals that were added and the number of attempts that finished and that failed with an error
+     */
+    private static Run runAtOnce(String name, CustomerAttempt attempt) throws InterruptedException {
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        List<Future<Rental>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                int customer = i;
+                Callable<Rental> task = () -> {
+                    startSignal.await();
+                    return attempt.rent(customer);
+                };
+                results.add(threads.submit(task));
+            }
+            long start = System.nanoTime();
+            startSignal.countDown();
+
+            Run run = new Run();
+            for (Future<Rental> result : results) {
+                try {
+                    Rental rental = result.get();
+                    if (rental != null) {
+                        run.rentals.add(rental);
+                    }
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                    run.errors++;
+                }
+                run.completed++;
+            }
+            double millis = (System.nanoTime() - start) / 1_000_000.0;
+            System.out.printf("%s: %d attempts, %d rentals, %d errors in %.1f ms (%.0f attempts/s)%n",
+                name, THREADS, run.rentals.size(), run.errors, millis, THREADS * 1000 / millis);
+            return run;
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    private static class Run {
+        private final List<Rental> rentals = new ArrayList<>();
+        private int completed;
+        private int errors;
+    }
+
+    private interface CustomerAttempt {
+        Rental rent(int customer) throws SQLException;
+    }
+
+    private static void assertNoOverlappingRentals() throws SQLException {
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(OVERLAP_QUERY)) {
+            stmt.setInt(1, filmId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                assertEquals("Rentals of the same copy overlap", 0, rs.getInt(1));
+            }
+        }
+    }
+}